@@ -5,6 +5,7 @@
  */
 package org.jboss.elasticsearch.river.jira;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -37,6 +38,11 @@ public class ChangedIssuesResults {
    */
   private List<Map<String, Object>> issues;
 
+  /**
+   * Position of next issue returned from {@link #nextIssue()}.
+   */
+  private int nextIssuePosition = 0;
+
   /**
    * Constructor.
    * 
@@ -103,6 +109,30 @@ public class ChangedIssuesResults {
     return issues.size();
   }
 
+  /**
+   * Get next issue from this result part. Issues are returned in same order as returned from JIRA. Use this method
+   * instead of {@link #getIssues()} if you want to process results streamed from JIRA also (see
+   * {@link ChangedIssuesStreamedResults}).
+   * 
+   * @return next issue or <code>null</code> if there is no more issues in this result part
+   * @throws IOException if issue data reading failed
+   * @see #close()
+   */
+  public Map<String, Object> nextIssue() throws IOException {
+    if (issues == null || nextIssuePosition >= issues.size())
+      return null;
+    return issues.get(nextIssuePosition++);
+  }
+
+  /**
+   * Release all resources held by this result part. Must be called when processing of issues is finished.
+   * 
+   * @see #nextIssue()
+   */
+  public void close() {
+    // nothing to release for results already read into memory
+  }
+
   @Override
   public String toString() {
     return "ChangedIssuesResults [startAt=" + startAt + ", maxResults=" + maxResults + ", total=" + total + ", issues="
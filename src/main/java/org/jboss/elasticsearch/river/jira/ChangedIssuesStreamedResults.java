@@ -0,0 +1,145 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.xcontent.XContentParser;
+
+/**
+ * Info about changed issues returned from JIRA server where issues are not read into memory at once, but parsed one by
+ * one from JIRA response stream as requested by {@link #nextIssue()}. So only one issue is kept in memory at time.
+ * {@link #close()} must be called always to release underlying JIRA connection!
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ * @see JIRA5RestClient#getJIRAChangedIssues(String, int, java.util.Date, java.util.Date)
+ */
+public class ChangedIssuesStreamedResults extends ChangedIssuesResults {
+
+  private static final ESLogger logger = Loggers.getLogger(ChangedIssuesStreamedResults.class);
+
+  /**
+   * Parser positioned inside of array of issues, <code>null</code> when whole array is read already.
+   */
+  private XContentParser parser;
+
+  /**
+   * Stream with JIRA response, closed together with parser.
+   */
+  private InputStream responseStream;
+
+  /**
+   * Reader used to read issue data from stream, <code>null</code> to read whole issue data.
+   */
+  private final IssueDataReader issueDataReader;
+
+  /**
+   * Number of issues read from stream so far.
+   */
+  private int issuesRead = 0;
+
+  /**
+   * Constructor.
+   *
+   * @param parser JSON parser positioned on the start of issues array in JIRA response
+   * @param responseStream stream with JIRA response parser reads from. Closed when all issues are read or
+   *          {@link #close()} is called.
+   * @param startAt Starting position of returned issues in complete list of issues matching search in JIRA. 0 based.
+   * @param maxResults constraint applied for search of these results
+   * @param total number of issues in JIRA matching performed search criteria on JIRA side.
+   */
+  public ChangedIssuesStreamedResults(XContentParser parser, InputStream responseStream, Integer startAt,
+      Integer maxResults, Integer total) {
+    this(parser, responseStream, null, startAt, maxResults, total);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param parser JSON parser positioned on the start of issues array in JIRA response
+   * @param responseStream stream with JIRA response parser reads from. Closed when all issues are read or
+   *          {@link #close()} is called.
+   * @param issueDataReader reader used to read data of each issue, <code>null</code> to read whole issue data
+   * @param startAt Starting position of returned issues in complete list of issues matching search in JIRA. 0 based.
+   * @param maxResults constraint applied for search of these results
+   * @param total number of issues in JIRA matching performed search criteria on JIRA side.
+   */
+  public ChangedIssuesStreamedResults(XContentParser parser, InputStream responseStream,
+      IssueDataReader issueDataReader, Integer startAt, Integer maxResults, Integer total) {
+    super(null, startAt, maxResults, total);
+    if (parser == null) {
+      throw new IllegalArgumentException("parser cant be null");
+    }
+    this.parser = parser;
+    this.responseStream = responseStream;
+    this.issueDataReader = issueDataReader;
+  }
+
+  /**
+   * Always <code>null</code> as issues are not read into memory, use {@link #nextIssue()}.
+   */
+  @Override
+  public List<Map<String, Object>> getIssues() {
+    return null;
+  }
+
+  /**
+   * Get number of issues read from JIRA response by {@link #nextIssue()} so far.
+   */
+  @Override
+  public int getIssuesCount() {
+    return issuesRead;
+  }
+
+  @Override
+  public Map<String, Object> nextIssue() throws IOException {
+    if (parser == null)
+      return null;
+    XContentParser.Token token = parser.nextToken();
+    if (token == XContentParser.Token.START_OBJECT) {
+      issuesRead++;
+      if (issueDataReader != null)
+        return issueDataReader.readIssue(parser);
+      return parser.map();
+    } else if (token == XContentParser.Token.END_ARRAY || token == null) {
+      close();
+      return null;
+    } else {
+      close();
+      throw new IOException("Bad response structure from JIRA: unexpected token " + token + " in issues array");
+    }
+  }
+
+  @Override
+  public void close() {
+    if (parser != null) {
+      // parser closes JIRA response stream too, closing it once more is not expected by all streams
+      parser.close();
+      parser = null;
+      responseStream = null;
+    }
+    if (responseStream != null) {
+      try {
+        responseStream.close();
+      } catch (IOException e) {
+        logger.debug("JIRA response stream close failed: {}", e.getMessage());
+      }
+      responseStream = null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ChangedIssuesStreamedResults [startAt=" + getStartAt() + ", maxResults=" + getMaxResults() + ", total="
+        + getTotal() + ", issuesRead=" + issuesRead + "]";
+  }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Write-through cache of project related datetime values stored in river persistent store, so coordinator doesn't read
+ * them from ElasticSearch cluster for each project in each check. Only values of configured properties are cached.
+ * Value not stored in persistent store is cached as <code>null</code>, use {@link #contains(String, String)} to
+ * distinguish it from value not cached. Thread safe, synchronize on cache instance to perform more calls atomically.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ * @see JiraRiver#readDatetimeValue(String, String)
+ */
+public class DatetimeValueCache {
+
+	private final List<String> propertyNames;
+
+	private final Set<String> propertyNamesSet;
+
+	private final Map<String, Date> values = new HashMap<String, Date>();
+
+	private boolean loaded = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param propertyNames names of properties whose values are cached
+	 */
+	public DatetimeValueCache(String... propertyNames) {
+		this.propertyNames = Collections.unmodifiableList(Arrays.asList(propertyNames));
+		this.propertyNamesSet = new HashSet<String>(this.propertyNames);
+	}
+
+	/**
+	 * @return names of properties whose values are cached
+	 */
+	public List<String> getPropertyNames() {
+		return propertyNames;
+	}
+
+	/**
+	 * Check if value may be cached.
+	 *
+	 * @param projectKey key of project value is for
+	 * @param propertyName name of property
+	 * @return true if value of this property for this project is cached
+	 */
+	public boolean isCacheable(String projectKey, String propertyName) {
+		return projectKey != null && propertyNamesSet.contains(propertyName);
+	}
+
+	/**
+	 * Check if value is in cache.
+	 *
+	 * @param projectKey key of project value is for
+	 * @param propertyName name of property
+	 * @return true if value is cached (may be <code>null</code> if not stored in persistent store)
+	 */
+	public synchronized boolean contains(String projectKey, String propertyName) {
+		return values.containsKey(prepareKey(projectKey, propertyName));
+	}
+
+	/**
+	 * Get value from cache.
+	 *
+	 * @param projectKey key of project value is for
+	 * @param propertyName name of property
+	 * @return cached value, <code>null</code> if not cached or not stored in persistent store
+	 */
+	public synchronized Date get(String projectKey, String propertyName) {
+		return values.get(prepareKey(projectKey, propertyName));
+	}
+
+	/**
+	 * Put value into cache, ignored if value is not cacheable.
+	 *
+	 * @param projectKey key of project value is for
+	 * @param propertyName name of property
+	 * @param value to put, <code>null</code> if value is not stored in persistent store
+	 */
+	public synchronized void put(String projectKey, String propertyName, Date value) {
+		if (isCacheable(projectKey, propertyName))
+			values.put(prepareKey(projectKey, propertyName), value);
+	}
+
+	/**
+	 * Put value loaded from persistent store into cache, if not cached yet. So newer value written into cache while
+	 * value was loaded is not overwritten.
+	 *
+	 * @param projectKey key of project value is for
+	 * @param propertyName name of property
+	 * @param value to put, <code>null</code> if value is not stored in persistent store
+	 */
+	public synchronized void putLoaded(String projectKey, String propertyName, Date value) {
+		if (!contains(projectKey, propertyName))
+			put(projectKey, propertyName, value);
+	}
+
+	/**
+	 * Remove value from cache, so it is read from persistent store next time.
+	 *
+	 * @param projectKey key of project value is for
+	 * @param propertyName name of property
+	 */
+	public synchronized void invalidate(String projectKey, String propertyName) {
+		values.remove(prepareKey(projectKey, propertyName));
+	}
+
+	/**
+	 * Remove all values from cache and mark it as not loaded.
+	 */
+	public synchronized void clear() {
+		values.clear();
+		loaded = false;
+	}
+
+	/**
+	 * @return true if values were loaded into cache from persistent store already
+	 */
+	public synchronized boolean isLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * @param loaded to set
+	 */
+	public synchronized void setLoaded(boolean loaded) {
+		this.loaded = loaded;
+	}
+
+	private static String prepareKey(String projectKey, String propertyName) {
+		return propertyName + "_" + projectKey;
+	}
+
+}
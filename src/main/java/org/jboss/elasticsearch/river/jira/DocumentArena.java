@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.io.IOException;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.XContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+
+/**
+ * Output buffer shared by all documents prepared for one bulk request. Documents are written one after another into
+ * the same growable byte array and index requests reference their part of it, so one buffer is allocated per bulk
+ * instead of one per document. Data already written are never overwritten, so references obtained from
+ * {@link #documentBytes()} stay valid after buffer grows. Not thread safe, one document may be written at time.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class DocumentArena extends BytesStreamOutput {
+
+	/**
+	 * Initial size of arena buffer.
+	 */
+	protected static final int INITIAL_SIZE = 16 * 1024;
+
+	private int documentStart = 0;
+
+	public DocumentArena() {
+		super(INITIAL_SIZE);
+	}
+
+	/**
+	 * Start new JSON document at the end of already written data.
+	 *
+	 * @return builder to write document into
+	 * @throws IOException
+	 */
+	public XContentBuilder startDocument() throws IOException {
+		return startDocument(JsonXContent.jsonXContent);
+	}
+
+	/**
+	 * Start new document at the end of already written data.
+	 *
+	 * @param xContent content type of document
+	 * @return builder to write document into
+	 * @throws IOException
+	 */
+	public XContentBuilder startDocument(XContent xContent) throws IOException {
+		documentStart = count;
+		return new XContentBuilder(xContent, this);
+	}
+
+	/**
+	 * Get bytes of document written since last {@link #startDocument()}. Builder must be flushed or closed before.
+	 *
+	 * @return document bytes, backed by arena buffer
+	 */
+	public BytesReference documentBytes() {
+		return new BytesArray(buf, documentStart, count - documentStart);
+	}
+
+	@Override
+	public void reset() {
+		throw new UnsupportedOperationException("arena can't be reset as written documents are referenced");
+	}
+
+	@Override
+	public void seek(long position) throws IOException {
+		throw new UnsupportedOperationException("arena can't be rewritten as written documents are referenced");
+	}
+
+	@Override
+	public void seek(int position) {
+		throw new UnsupportedOperationException("arena can't be rewritten as written documents are referenced");
+	}
+
+}
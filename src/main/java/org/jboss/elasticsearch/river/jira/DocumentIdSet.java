@@ -0,0 +1,176 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact set of type and id of search index documents of one JIRA project. Ids of issue documents in
+ * <code>PROJECTKEY-number</code> form and numeric ids of comment and changelog documents are stored as sorted int
+ * arrays per document type, so each id takes 4 bytes only. Other ids are stored as Strings. Thread safe.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ * @see JIRAProjectIndexer#processDelete(java.util.Date)
+ */
+public class DocumentIdSet {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final String keyPrefix;
+
+	private final Map<String, TypeIds> idsByType = new HashMap<String, TypeIds>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param projectKey key of JIRA project documents are for
+	 */
+	public DocumentIdSet(String projectKey) {
+		keyPrefix = projectKey + "-";
+	}
+
+	/**
+	 * Add document into set.
+	 *
+	 * @param type of document
+	 * @param id of document, <code>null</code> is ignored
+	 */
+	public synchronized void add(String type, String id) {
+		if (id == null)
+			return;
+		TypeIds ids = idsByType.get(type);
+		if (ids == null) {
+			ids = new TypeIds();
+			idsByType.put(type, ids);
+		}
+		int number = encodeId(id);
+		if (number != Integer.MIN_VALUE)
+			ids.add(number);
+		else
+			ids.otherIds.add(id);
+	}
+
+	/**
+	 * Check if document is in set.
+	 *
+	 * @param type of document
+	 * @param id of document
+	 * @return true if document is in set
+	 */
+	public synchronized boolean contains(String type, String id) {
+		if (id == null)
+			return false;
+		TypeIds ids = idsByType.get(type);
+		if (ids == null)
+			return false;
+		int number = encodeId(id);
+		if (number != Integer.MIN_VALUE)
+			return ids.contains(number);
+		return ids.otherIds.contains(id);
+	}
+
+	/**
+	 * @return number of documents in set
+	 */
+	public synchronized int size() {
+		int ret = 0;
+		for (TypeIds ids : idsByType.values()) {
+			ids.compact();
+			ret += ids.size + ids.otherIds.size();
+		}
+		return ret;
+	}
+
+	/**
+	 * Encode document id into int. Plain numbers are encoded as is, issue numbers of keys in
+	 * <code>PROJECTKEY-number</code> form as negative numbers so they do not collide.
+	 *
+	 * @param id to encode
+	 * @return encoded id or {@link Integer#MIN_VALUE} if id can't be encoded
+	 */
+	protected int encodeId(String id) {
+		int number = parseNumber(id, 0);
+		if (number >= 0)
+			return number;
+		if (id.startsWith(keyPrefix)) {
+			number = parseNumber(id, keyPrefix.length());
+			if (number >= 0)
+				return -number - 1;
+		}
+		return Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Parse non negative number from end of string.
+	 *
+	 * @param value to parse
+	 * @param start index of first digit
+	 * @return number or -1 if rest of value is not a number without leading zeros fitting into 9 digits
+	 */
+	protected static int parseNumber(String value, int start) {
+		if (value.length() == start || value.length() > start + 9)
+			return -1;
+		// leading zeros would map more ids to one number
+		if (value.charAt(start) == '0' && value.length() > start + 1)
+			return -1;
+		int ret = 0;
+		for (int i = start; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < '0' || c > '9')
+				return -1;
+			ret = ret * 10 + (c - '0');
+		}
+		return ret;
+	}
+
+	/**
+	 * Ids of documents of one type. Encoded ids are appended into array, which is sorted and deduplicated before
+	 * search or grow, as ids are added during update and searched after it.
+	 */
+	private static class TypeIds {
+
+		int[] numbers = new int[INITIAL_CAPACITY];
+
+		int size = 0;
+
+		boolean compacted = true;
+
+		final Set<String> otherIds = new HashSet<String>();
+
+		void add(int number) {
+			if (size == numbers.length) {
+				compact();
+				if (size > numbers.length / 2)
+					numbers = Arrays.copyOf(numbers, numbers.length * 2);
+			}
+			numbers[size++] = number;
+			compacted = false;
+		}
+
+		boolean contains(int number) {
+			compact();
+			return Arrays.binarySearch(numbers, 0, size, number) >= 0;
+		}
+
+		void compact() {
+			if (compacted)
+				return;
+			Arrays.sort(numbers, 0, size);
+			int newSize = 0;
+			for (int i = 0; i < size; i++) {
+				if (newSize == 0 || numbers[newSize - 1] != numbers[i])
+					numbers[newSize++] = numbers[i];
+			}
+			size = newSize;
+			compacted = true;
+		}
+	}
+
+}
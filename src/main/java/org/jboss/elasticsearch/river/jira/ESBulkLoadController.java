@@ -0,0 +1,241 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+/**
+ * Controller of load put on ElasticSearch cluster by bulk requests of all indexers of one river. Items of bulk request
+ * rejected by cluster because its bulk queues are full are retried with backoff. Number of bulk requests in flight and
+ * size of bulk requests executed by {@link JIRAProjectIndexer.BulkPipeline} are adapted within configured maximums:
+ * <ul>
+ * <li>halved when some items of bulk request were rejected
+ * <li>decreased when bulk request took longer than target latency, if configured
+ * <li>increased when bulk request was finished without rejection faster than half of target latency (or any time if
+ * target latency is not configured)
+ * </ul>
+ * Thread safe.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class ESBulkLoadController {
+
+	private static final ESLogger logger = Loggers.getLogger(ESBulkLoadController.class);
+
+	/**
+	 * Minimal ratio of maximal bulk request size used when bulk size is decreased.
+	 */
+	protected static final float MIN_SIZE_RATIO = 1f / 16;
+
+	protected final int maxConcurrentRequests;
+
+	protected final int maxActions;
+
+	protected final long maxBytes;
+
+	protected final long targetLatency;
+
+	protected final int maxRetries;
+
+	protected final long retryBackoffInitial;
+
+	protected final long retryBackoffMax;
+
+	private final Random random = new Random();
+
+	/**
+	 * Current number of bulk requests in flight.
+	 */
+	protected int concurrentRequests;
+
+	/**
+	 * Current ratio of maximal bulk request size.
+	 */
+	protected float sizeRatio = 1f;
+
+	/**
+	 * Number of bulk requests with rejected items.
+	 */
+	protected long rejections = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxConcurrentRequests maximal number of bulk requests in flight for one indexer
+	 * @param maxActions maximal number of actions in one bulk request
+	 * @param maxBytes maximal size of one bulk request [bytes]
+	 * @param targetLatency bulk request response time in milliseconds load is adapted to, 0 if latency is not used
+	 * @param maxRetries max number of retries of rejected items of one bulk request, 0 to disable retry
+	 * @param retryBackoffInitial backoff before first retry in milliseconds, doubled for each next retry
+	 * @param retryBackoffMax max backoff before retry in milliseconds
+	 */
+	public ESBulkLoadController(int maxConcurrentRequests, int maxActions, long maxBytes, long targetLatency,
+			int maxRetries, long retryBackoffInitial, long retryBackoffMax) {
+		this.maxConcurrentRequests = Math.max(1, maxConcurrentRequests);
+		this.maxActions = maxActions;
+		this.maxBytes = maxBytes;
+		this.targetLatency = targetLatency;
+		this.maxRetries = maxRetries;
+		this.retryBackoffInitial = retryBackoffInitial;
+		this.retryBackoffMax = retryBackoffMax;
+		this.concurrentRequests = this.maxConcurrentRequests;
+	}
+
+	/**
+	 * @return number of bulk requests which may be in flight now
+	 */
+	public synchronized int getConcurrentRequests() {
+		return concurrentRequests;
+	}
+
+	/**
+	 * @return max number of actions in one bulk request now
+	 */
+	public synchronized int getMaxActions() {
+		return Math.max(1, (int) (maxActions * sizeRatio));
+	}
+
+	/**
+	 * @return max size of one bulk request now [bytes]
+	 */
+	public synchronized long getMaxBytes() {
+		return Math.max(1, (long) (maxBytes * sizeRatio));
+	}
+
+	/**
+	 * @return max number of retries of rejected items of one bulk request
+	 */
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	/**
+	 * Get time to wait before retry of rejected items.
+	 *
+	 * @param attempt number of retries performed already
+	 * @return backoff in milliseconds
+	 */
+	public long getRetryBackoff(int attempt) {
+		long backoff = retryBackoffInitial << Math.min(attempt, 30);
+		if (backoff <= 0 || backoff > retryBackoffMax)
+			backoff = retryBackoffMax;
+		// jitter to spread retries of more indexers
+		synchronized (random) {
+			return backoff / 2 + (long) (random.nextDouble() * (backoff / 2));
+		}
+	}
+
+	/**
+	 * @return true if load is adapted to cluster state, which means retries or target latency are configured
+	 */
+	public boolean isAdaptive() {
+		return maxRetries > 0 || targetLatency > 0;
+	}
+
+	/**
+	 * Adapt load for bulk request finished without rejected items.
+	 *
+	 * @param latency of bulk request in milliseconds
+	 */
+	public synchronized void onResponse(long latency) {
+		if (targetLatency > 0 && latency > targetLatency) {
+			setLoad(concurrentRequests - 1, sizeRatio * 3 / 4);
+		} else if (targetLatency <= 0 || latency < targetLatency / 2) {
+			setLoad(concurrentRequests + 1, sizeRatio * 5 / 4);
+		}
+	}
+
+	/**
+	 * Adapt load for bulk request with items rejected by cluster.
+	 */
+	public synchronized void onRejected() {
+		rejections++;
+		setLoad(concurrentRequests / 2, sizeRatio / 2);
+	}
+
+	private void setLoad(int newConcurrentRequests, float newSizeRatio) {
+		newConcurrentRequests = Math.max(1, Math.min(maxConcurrentRequests, newConcurrentRequests));
+		newSizeRatio = Math.max(MIN_SIZE_RATIO, Math.min(1f, newSizeRatio));
+		if (logger.isDebugEnabled() && (newConcurrentRequests != concurrentRequests || newSizeRatio != sizeRatio)) {
+			logger.debug("ES bulk load changed to {} concurrent requests with max {} actions", newConcurrentRequests,
+					Math.max(1, (int) (maxActions * newSizeRatio)));
+		}
+		concurrentRequests = newConcurrentRequests;
+		sizeRatio = newSizeRatio;
+	}
+
+	/**
+	 * Prepare retry of failed bulk request. Retry is possible only if all failed items were rejected by cluster due
+	 * overload, see {@link #isRetryableFailure(BulkItemResponse)}.
+	 *
+	 * @param esBulk executed bulk request
+	 * @param response of executed bulk request with failures
+	 * @param retryBulk bulk request failed items are added into
+	 * @return true if all failed items are added into retry bulk request, false if some failure is not retryable
+	 */
+	@SuppressWarnings("rawtypes")
+	public boolean prepareRetry(BulkRequestBuilder esBulk, BulkResponse response, BulkRequestBuilder retryBulk) {
+		List<ActionRequest> requests = esBulk.request().requests();
+		for (BulkItemResponse item : response.getItems()) {
+			if (!item.isFailed())
+				continue;
+			if (!isRetryableFailure(item) || item.getItemId() >= requests.size())
+				return false;
+			ActionRequest request = requests.get(item.getItemId());
+			if (request instanceof IndexRequest)
+				retryBulk.add((IndexRequest) request);
+			else if (request instanceof DeleteRequest)
+				retryBulk.add((DeleteRequest) request);
+			else
+				return false;
+		}
+		return retryBulk.numberOfActions() > 0;
+	}
+
+	/**
+	 * Check if failure of bulk item can be retried, which means item was rejected by cluster due full bulk queue.
+	 *
+	 * @param item to check
+	 * @return true if failure can be retried
+	 */
+	public static boolean isRetryableFailure(BulkItemResponse item) {
+		BulkItemResponse.Failure failure = item.getFailure();
+		if (failure == null)
+			return false;
+		// status of rejection is generic 503 in this ElasticSearch version, so exception must be checked
+		return failure.getMessage() != null && failure.getMessage().contains("EsRejectedExecutionException");
+	}
+
+	/**
+	 * Write current load into object named <code>bulk_load</code> in given builder.
+	 *
+	 * @param builder to write into
+	 * @return builder for chaining
+	 * @throws IOException
+	 */
+	public synchronized XContentBuilder buildDocument(XContentBuilder builder) throws IOException {
+		builder.startObject("bulk_load");
+		builder.field("concurrent_requests", concurrentRequests);
+		builder.field("max_actions", getMaxActions());
+		builder.field("max_bytes", getMaxBytes());
+		builder.field("rejections", rejections);
+		builder.endObject();
+		return builder;
+	}
+
+}
@@ -9,7 +9,11 @@ import java.io.IOException;
 import java.util.Date;
 import java.util.List;
 
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.get.MultiGetResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.IndicesAdminClient;
@@ -92,7 +96,8 @@ public interface IESIntegration {
   BulkRequestBuilder prepareESBulkRequestBuilder();
 
   /**
-   * Execute ElasticSearch bulk request against ElasticSearch cluster.
+   * Execute ElasticSearch bulk request against ElasticSearch cluster. Items rejected by cluster may be retried if
+   * configured.
    * 
    * @param esBulk to perform
    * @throws Exception in case of update failure
@@ -100,6 +105,32 @@ public interface IESIntegration {
    */
   void executeESBulkRequest(BulkRequestBuilder esBulk) throws Exception;
 
+  /**
+   * Execute ElasticSearch bulk request against ElasticSearch cluster without waiting for response.
+   * 
+   * @param esBulk to perform
+   * @param listener notified about response or failure, response may contain failures of some actions
+   * @see #prepareESBulkRequestBuilder()
+   */
+  void executeESBulkRequestAsync(BulkRequestBuilder esBulk, ActionListener<BulkResponse> listener);
+
+  /**
+   * Prepare ElasticSearch multi get request used to get more documents from search index at once.
+   * 
+   * @return multi get request instance
+   * @see #executeESMultiGetRequest(MultiGetRequestBuilder)
+   */
+  MultiGetRequestBuilder prepareESMultiGetRequestBuilder();
+
+  /**
+   * Execute ElasticSearch multi get request against ElasticSearch cluster.
+   * 
+   * @param esMultiGet to perform
+   * @return response with documents
+   * @see #prepareESMultiGetRequestBuilder()
+   */
+  MultiGetResponse executeESMultiGetRequest(MultiGetRequestBuilder esMultiGet);
+
   /**
    * Acquire thread from ElasticSearch infrastructure to run indexing.
    * 
@@ -117,6 +148,14 @@ public interface IESIntegration {
    */
   void refreshSearchIndex(String indexName);
 
+  /**
+   * Add search indices into alias, so they are searchable over it.
+   * 
+   * @param indexNames names of indices to add into alias
+   * @param aliasName name of alias
+   */
+  void addIndicesToAlias(String[] indexNames, String aliasName);
+
   /**
    * Prepare builder for Scroll Search request. See http://www.elasticsearch.org/guide/reference/java-api/search.html.
    * 
@@ -0,0 +1,50 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.util.Date;
+import java.util.concurrent.Future;
+
+/**
+ * Interface for JIRA Client implementation with non-blocking calls, so more requests to JIRA may be in flight without
+ * thread waiting for each of them.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public interface IJIRAAsyncClient extends IJIRAClient {
+
+  /**
+   * Asynchronously get list of issues from remote JIRA instance. Same as
+   * {@link #getJIRAChangedIssues(String, int, Date, Date)} but method returns immediately and JIRA response is
+   * available over returned future.
+   *
+   * @param projectKey mandatory key of JIRA project to get issues for
+   * @param startAt the index of the first issue to return (0-based)
+   * @param updatedAfter optional parameter to return issues updated only after given date.
+   * @param updatedBefore optional parameter to return issues updated only before given date.
+   * @return future with issues informations. Exception from JIRA call is thrown from {@link Future#get()} as cause of
+   *         {@link java.util.concurrent.ExecutionException}.
+   * @throws Exception if request can't be sent to JIRA
+   */
+  public abstract Future<ChangedIssuesResults> getJIRAChangedIssuesAsync(String projectKey, int startAt,
+      Date updatedAfter, Date updatedBefore) throws Exception;
+
+  /**
+   * Asynchronously get list of issues updated in given minute from remote JIRA instance. Same as
+   * {@link #getJIRAChangedIssuesAfterKey(String, Date, String)} but method returns immediately and JIRA response is
+   * available over returned future.
+   *
+   * @param projectKey mandatory key of JIRA project to get issues for
+   * @param updatedMinute mandatory minute to return issues updated in
+   * @param afterIssueKey optional key of issue to return only issues with greater key
+   * @return future with issues informations. Exception from JIRA call is thrown from {@link Future#get()} as cause of
+   *         {@link java.util.concurrent.ExecutionException}.
+   * @throws Exception if request can't be sent to JIRA
+   */
+  public abstract Future<ChangedIssuesResults> getJIRAChangedIssuesAfterKeyAsync(String projectKey,
+      Date updatedMinute, String afterIssueKey) throws Exception;
+
+}
@@ -1,9 +1,12 @@
 package org.jboss.elasticsearch.river.jira;
 
+import java.io.IOException;
 import java.util.Date;
 import java.util.List;
 import java.util.TimeZone;
 
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
 /**
  * Interface for JIRA Client implementation.
  * 
@@ -34,6 +37,49 @@ public interface IJIRAClient {
   public abstract ChangedIssuesResults getJIRAChangedIssues(String projectKey, int startAt, Date updatedAfter,
       Date updatedBefore) throws Exception;
 
+  /**
+   * Get list of issues updated in given minute from remote JIRA instance. Issues are ascending ordered by issue key and
+   * only issues with key greater than given one are returned, so issues updated in the same minute can be paged over
+   * by key of last issue obtained in previous page, without JIRA skipping more and more issues for deep
+   * <code>startAt</code> offsets. List is limited to only some number of issues (given by both JIRA and this client
+   * configuration).
+   * 
+   * @param projectKey mandatory key of JIRA project to get issues for
+   * @param updatedMinute mandatory minute to return issues updated in
+   * @param afterIssueKey optional key of issue to return only issues with greater key, <code>null</code> to start from
+   *          the first issue updated in given minute
+   * @return issues informations
+   * @throws Exception
+   */
+  public abstract ChangedIssuesResults getJIRAChangedIssuesAfterKey(String projectKey, Date updatedMinute,
+      String afterIssueKey) throws Exception;
+
+  /**
+   * Get list of issues updated in any of given JIRA projects by one JIRA call, to check which projects changed. Issues
+   * are ascending ordered by date of last update, and contain only <code>key</code> and <code>fields.updated</code>.
+   * 
+   * @param projectKeys mandatory keys of JIRA projects to get issues for
+   * @param startAt the index of the first issue to return (0-based)
+   * @param updatedAfter mandatory parameter to return issues updated only after given date.
+   * @return issues informations
+   * @throws Exception
+   */
+  public abstract ChangedIssuesResults getJIRAChangedIssuesInProjects(List<String> projectKeys, int startAt,
+      Date updatedAfter) throws Exception;
+
+  /**
+   * Get keys of all issues in given JIRA project, ascending ordered by issue key. Issues contain only <code>key</code>,
+   * so many more issues are returned by one call than for indexing. Used to find issues deleted from JIRA without full
+   * update.
+   * 
+   * @param projectKey mandatory key of JIRA project to get issue keys for
+   * @param afterIssueKey optional key of issue to return only issues with greater key, <code>null</code> to start from
+   *          the first issue of project
+   * @return issues informations
+   * @throws Exception
+   */
+  public abstract ChangedIssuesResults getJIRAIssueKeys(String projectKey, String afterIssueKey) throws Exception;
+
   /**
    * Configuration - Set Timezone used to format date into JQL.
    * 
@@ -57,6 +103,44 @@ public interface IJIRAClient {
    */
   public abstract int getListJIRAIssuesMax();
 
+  /**
+   * Configuration - Set bounds for adaptive page size. If <code>min</code> is lower than <code>max</code> then number
+   * of issues returned from {@link #getJIRAChangedIssues(String, int, Date, Date)} is adapted for each project based
+   * on JIRA response times, timeouts and response sizes, starting from value set by {@link #setListJIRAIssuesMax(int)}.
+   * Called in time of configuration after {@link #setListJIRAIssuesMax(int)}.
+   * 
+   * @param min minimal number of issues returned by one call
+   * @param max maximal number of issues returned by one call
+   */
+  public abstract void setListJIRAIssuesMaxBounds(int min, int max);
+
+  /**
+   * Configuration - Set if issues returned from {@link #getJIRAChangedIssues(String, int, Date, Date)} are parsed from
+   * JIRA response stream one by one during {@link ChangedIssuesResults#nextIssue()} calls, so whole JIRA response is
+   * never kept in memory. Called in time of configuration.
+   * 
+   * @param streamingResponseParsing <code>true</code> to enable streaming mode
+   */
+  public abstract void setStreamingResponseParsing(boolean streamingResponseParsing);
+
+  /**
+   * Configuration - Set if compressed (gzip or deflate) responses are requested from JIRA. Called in time of
+   * configuration.
+   * 
+   * @param compression <code>true</code> to request compressed responses
+   */
+  public abstract void setCompression(boolean compression);
+
+  /**
+   * Write statistics of this client (eg. numbers of bytes transferred from JIRA) into object named
+   * <code>jira_client</code> in given builder.
+   * 
+   * @param builder to write statistics into
+   * @return builder for chaining
+   * @throws IOException
+   */
+  public abstract XContentBuilder buildStatisticsDocument(XContentBuilder builder) throws IOException;
+
   /**
    * Add index structure builder so JIRA client can obtain only fields necessary for indexing.
    * 
@@ -72,4 +156,35 @@ public interface IJIRAClient {
    */
   public IJIRAIssueIndexStructureBuilder getIndexStructureBuilder();
 
-}
\ No newline at end of file
+  /**
+   * Configuration - Send all requests to JIRA over governor shared with other rivers on this node which use the same
+   * JIRA server. Governor limits rate and concurrency of requests and grants them to rivers in fair manner. Its circuit
+   * breaker pauses all requests to JIRA server for some time if it seems down. Called in time of configuration.
+   * 
+   * @param riverName name of river this client is for
+   * @param maxRequestsPerSecond max requests per second to JIRA server, 0 for unlimited
+   * @param maxConcurrentRequests max concurrent requests to JIRA server, 0 for unlimited
+   * @param circuitBreakerThreshold number of consecutive failed requests after which all requests are paused, 0 to
+   *          disable circuit breaker
+   * @param circuitBreakerPause time in milliseconds requests are paused for
+   * @see JIRARequestGovernor
+   */
+  public abstract void setRequestGovernance(String riverName, double maxRequestsPerSecond, int maxConcurrentRequests,
+      int circuitBreakerThreshold, long circuitBreakerPause);
+
+  /**
+   * Configuration - Set retry policy for JIRA calls failed due retryable problem (timeout, HTTP code 429, 502, 503 or
+   * 504). Called in time of configuration.
+   * 
+   * @param maxRetries max number of retries of one call, 0 to disable retry
+   * @param retryBackoffInitial backoff before first retry in milliseconds, doubled for each next retry
+   * @param retryBackoffMax max backoff before retry in milliseconds
+   */
+  public abstract void setRetryPolicy(int maxRetries, long retryBackoffInitial, long retryBackoffMax);
+
+  /**
+   * Release all resources (threads, connections) held by this client. Client can't be used after this call.
+   */
+  public abstract void close();
+
+}
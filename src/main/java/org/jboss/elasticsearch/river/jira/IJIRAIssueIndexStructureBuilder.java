@@ -9,6 +9,7 @@ import java.util.Date;
 import java.util.Map;
 
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.search.SearchHit;
 import org.jboss.elasticsearch.tools.content.StructuredContentPreprocessor;
@@ -36,6 +37,13 @@ public interface IJIRAIssueIndexStructureBuilder {
 	 */
 	String getIssuesSearchIndexName(String jiraProjectKey);
 
+	/**
+	 * Get name of alias joining all search indices issues are stored into, if more indices are used.
+	 * 
+	 * @return alias name, <code>null</code> if issues are stored into one index only
+	 */
+	String getIssuesSearchAliasName();
+
 	/**
 	 * Get issue fields required from JIRA to build index document. Used to construct JIRA request.
 	 * 
@@ -50,6 +58,33 @@ public interface IJIRAIssueIndexStructureBuilder {
 	 */
 	String getRequiredJIRACallIssueExpands();
 
+	/**
+	 * Get name of field in indexed documents where hash of document content is stored. Documents with the same hash as
+	 * already indexed ones need not to be indexed again.
+	 * 
+	 * @return name of field, <code>null</code> if content hash is not stored in indexed documents
+	 */
+	String getIndexFieldForContentHash();
+
+	/**
+	 * Get name of field in issue documents where state of comments and changelog items indexed as separate documents is
+	 * stored. State is array of <code>type/id@updated</code> values, so documents of comments and changelog items not
+	 * changed since issue was indexed last time need not to be indexed again. Issue document is the first one added into
+	 * bulk by {@link #indexIssue(BulkRequestBuilder, String, Map)}, followed by documents of its comments and changelog
+	 * items.
+	 * 
+	 * @return name of field, <code>null</code> if state is not stored in issue documents
+	 */
+	String getIndexFieldForExtraDocumentsState();
+
+	/**
+	 * Get reader used to read issue data from JIRA response stream, so only parts of issue data necessary to build
+	 * index documents are read into memory.
+	 * 
+	 * @return reader or <code>null</code> if whole issue data must be read
+	 */
+	IssueDataReader getIssueDataReader();
+
 	/**
 	 * Get key for issue from data obtained from JIRA.
 	 * 
@@ -87,6 +122,26 @@ public interface IJIRAIssueIndexStructureBuilder {
 	 */
 	void buildSearchForIndexedDocumentsNotUpdatedAfter(SearchRequestBuilder srb, String jiraProjectKey, Date date);
 
+	/**
+	 * Construct search request to find all issues, comment and changelog indexed documents for given JIRA project. Key of
+	 * issue each found document belongs to is returned, see {@link #extractIssueKeyFromIndexedDocument(SearchHit)}. Used
+	 * during delete sync to remove documents of issues not presented in JIRA anymore. Results from this query are
+	 * processed by {@link #deleteIssueDocument(BulkRequestBuilder, SearchHit)}
+	 * 
+	 * @param srb search request builder to add necessary conditions into
+	 * @param jiraProjectKey key of jira project to search documents for
+	 */
+	void buildSearchForIndexedDocuments(SearchRequestBuilder srb, String jiraProjectKey);
+
+	/**
+	 * Get key of issue document found by {@link #buildSearchForIndexedDocuments(SearchRequestBuilder, String)} belongs
+	 * to.
+	 * 
+	 * @param indexedDocument found issue or comment document
+	 * @return issue key, <code>null</code> if not available
+	 */
+	String extractIssueKeyFromIndexedDocument(SearchHit indexedDocument);
+
 	/**
 	 * Delete issues related document (issue or comment or changelog document) from search index. Query to obtain
 	 * documents to be deleted is constructed using
@@ -99,4 +154,18 @@ public interface IJIRAIssueIndexStructureBuilder {
 	 */
 	boolean deleteIssueDocument(BulkRequestBuilder esBulk, SearchHit issueDocumentToDelete) throws Exception;
 
+	/**
+	 * Delete document of comment or changelog item removed from issue in JIRA from search index.
+	 * 
+	 * @param esBulk bulk operation builder used to delete data from search index
+	 * @param issueDocumentRequest request to index document of issue comment or changelog item belonged to
+	 * @param issueKey key of issue comment or changelog item belonged to
+	 * @param type type of document to delete
+	 * @param id id of document to delete
+	 * @throws Exception
+	 * @see #getIndexFieldForExtraDocumentsState()
+	 */
+	void deleteIssueExtraDocument(BulkRequestBuilder esBulk, IndexRequest issueDocumentRequest, String issueKey,
+			String type, String id) throws Exception;
+
 }
@@ -0,0 +1,228 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
+
+/**
+ * Compiled configuration of one field of search index document. Path to the value in JIRA data is split into segments
+ * and value filter is resolved once when extractor is created, so nothing is parsed or looked up in configuration when
+ * value is extracted from data of each issue. Instances are immutable.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ * @see JIRA5RestIssueIndexStructureBuilder
+ */
+public class IndexFieldExtractor {
+
+	private static final ESLogger logger = Loggers.getLogger(IndexFieldExtractor.class);
+
+	private final String indexField;
+
+	private final String valuePath;
+
+	private final String[] pathSegments;
+
+	private final boolean nested;
+
+	private final Map<String, String> valueFilter;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param indexField name of field in search index document
+	 * @param valuePath path to get value from data structure. Dot notation for nested values can be used here (see
+	 *          {@link XContentMapValues#extractValue(String, Map)}).
+	 * @param valueFilter if value is JSON Object (java Map here) or List of JSON Objects, then fields in this objects are
+	 *          filtered to leave only fields named here and remap them - see {@link Utils#remapDataInMap(Map, Map)}. No
+	 *          filtering performed if this is <code>null</code> or empty.
+	 */
+	public IndexFieldExtractor(String indexField, String valuePath, Map<String, String> valueFilter) {
+		this.indexField = indexField;
+		this.valuePath = valuePath;
+		this.pathSegments = valuePath.split("\\.");
+		this.nested = valuePath.contains(".");
+		this.valueFilter = (valueFilter != null && !valueFilter.isEmpty()) ? valueFilter : null;
+	}
+
+	/**
+	 * @return name of field in search index document
+	 */
+	public String getIndexField() {
+		return indexField;
+	}
+
+	/**
+	 * @return path to get value from data structure
+	 */
+	public String getValuePath() {
+		return valuePath;
+	}
+
+	/**
+	 * @return filter applied to extracted value, <code>null</code> if value is not filtered
+	 */
+	public Map<String, String> getValueFilter() {
+		return valueFilter;
+	}
+
+	/**
+	 * Extract value from data structure and filter it if filter is configured.
+	 *
+	 * @param values structure to get value from. Can be <code>null</code>.
+	 * @return value, <code>null</code> if not found
+	 */
+	@SuppressWarnings("unchecked")
+	public Object extractValue(Map<String, Object> values) {
+		if (values == null) {
+			return null;
+		}
+		Object v = null;
+		if (nested) {
+			v = extractValue(0, values);
+		} else {
+			v = values.get(valuePath);
+		}
+		if (v != null && valueFilter != null) {
+			if (v instanceof Map) {
+				Utils.remapDataInMap((Map<String, Object>) v, valueFilter);
+			} else if (v instanceof List) {
+				for (Object o : (List<?>) v) {
+					if (o instanceof Map) {
+						Utils.remapDataInMap((Map<String, Object>) o, valueFilter);
+					} else {
+						logger.warn("Filter defined for field which is not filterable - jira array field '{}' with value: {}",
+								valuePath, v);
+					}
+				}
+			} else {
+				logger.warn("Filter defined for field which is not filterable - jira field '{}' with value: {}", valuePath, v);
+			}
+		}
+		return v;
+	}
+
+	/**
+	 * Extract value from data structure and write it into index document field. Filter is applied while value is
+	 * written, so renamed fields of filtered JSON Objects are written directly into builder and data structure is not
+	 * changed. Written content is the same as if value returned from {@link #extractValue(Map)} is written into field.
+	 *
+	 * @param out builder to write field into
+	 * @param values structure to get value from. Can be <code>null</code> - nothing written in this case.
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	public void writeValue(XContentBuilder out, Map<String, Object> values) throws IOException {
+		if (values == null) {
+			return;
+		}
+		Object v = nested ? extractValue(0, values) : values.get(valuePath);
+		if (v == null) {
+			return;
+		}
+		if (valueFilter == null) {
+			out.field(indexField, v);
+		} else if (v instanceof Map) {
+			out.startObject(indexField);
+			writeFilteredFields(out, (Map<String, Object>) v);
+			out.endObject();
+		} else if (v instanceof List) {
+			out.startArray(indexField);
+			for (Object o : (List<?>) v) {
+				if (o instanceof Map) {
+					out.startObject();
+					writeFilteredFields(out, (Map<String, Object>) o);
+					out.endObject();
+				} else {
+					logger.warn("Filter defined for field which is not filterable - jira array field '{}' with value: {}",
+							valuePath, v);
+					out.value(o);
+				}
+			}
+			out.endArray();
+		} else {
+			logger.warn("Filter defined for field which is not filterable - jira field '{}' with value: {}", valuePath, v);
+			out.field(indexField, v);
+		}
+	}
+
+	private void writeFilteredFields(XContentBuilder out, Map<String, Object> value) throws IOException {
+		for (Map.Entry<String, String> e : valueFilter.entrySet()) {
+			if (value.containsKey(e.getKey())) {
+				out.field(e.getValue(), value.get(e.getKey()));
+			}
+		}
+	}
+
+	/**
+	 * Walk over path segments the same way as {@link XContentMapValues#extractValue(String, Map)} does, so keys
+	 * containing dot and lists of objects are supported.
+	 */
+	@SuppressWarnings("unchecked")
+	private Object extractValue(int index, Object currentValue) {
+		if (index == pathSegments.length) {
+			return currentValue;
+		}
+		if (currentValue instanceof Map) {
+			Map<String, Object> map = (Map<String, Object>) currentValue;
+			String key = pathSegments[index];
+			Object mapValue = map.get(key);
+			int nextIndex = index + 1;
+			while (mapValue == null && nextIndex != pathSegments.length) {
+				key += "." + pathSegments[nextIndex];
+				mapValue = map.get(key);
+				nextIndex++;
+			}
+			return extractValue(nextIndex, mapValue);
+		}
+		if (currentValue instanceof List) {
+			List<?> valueList = (List<?>) currentValue;
+			List<Object> newList = new ArrayList<Object>(valueList.size());
+			for (Object o : valueList) {
+				Object listValue = extractValue(index, o);
+				if (listValue != null) {
+					newList.add(listValue);
+				}
+			}
+			return newList;
+		}
+		return null;
+	}
+
+	/**
+	 * Compile fields configuration into array of extractors.
+	 *
+	 * @param fieldsConfig configuration of fields, key is name of field in search index document, value contains
+	 *          <code>jira_field</code> and optional <code>value_filter</code>
+	 * @param filtersConfig configuration of value filters referenced from fields configuration
+	 * @return array of extractors in order of fields configuration, never null
+	 */
+	public static IndexFieldExtractor[] compile(Map<String, Map<String, String>> fieldsConfig,
+			Map<String, Map<String, String>> filtersConfig) {
+		if (fieldsConfig == null) {
+			return new IndexFieldExtractor[0];
+		}
+		List<IndexFieldExtractor> ret = new ArrayList<IndexFieldExtractor>(fieldsConfig.size());
+		for (Map.Entry<String, Map<String, String>> e : fieldsConfig.entrySet()) {
+			String filterName = e.getValue().get(JIRA5RestIssueIndexStructureBuilder.CONFIG_FIELDS_VALUEFILTER);
+			Map<String, String> filter = null;
+			if (!Utils.isEmpty(filterName) && filtersConfig != null) {
+				filter = filtersConfig.get(filterName);
+			}
+			ret.add(new IndexFieldExtractor(e.getKey(), e.getValue().get(
+					JIRA5RestIssueIndexStructureBuilder.CONFIG_FIELDS_JIRAFIELD), filter));
+		}
+		return ret.toArray(new IndexFieldExtractor[ret.size()]);
+	}
+
+}
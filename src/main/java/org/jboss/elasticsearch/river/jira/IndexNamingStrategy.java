@@ -0,0 +1,75 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import org.elasticsearch.common.settings.SettingsException;
+
+/**
+ * Strategy of naming of search indices issues are stored into. Used to configure
+ * {@link IJIRAIssueIndexStructureBuilder} implementations. Configured index name is used as alias for all indices
+ * created by strategies other than {@link #SINGLE}, and as prefix of their names.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public enum IndexNamingStrategy {
+
+	/**
+	 * All issues are stored into one index with configured name.
+	 */
+	SINGLE("single"),
+
+	/**
+	 * Issues of each project are stored into own index.
+	 */
+	PROJECT("project"),
+
+	/**
+	 * Issues of configured groups of projects are stored into index for group. Projects not in any group are stored
+	 * into own index.
+	 */
+	PROJECT_GROUP("project_group"),
+
+	/**
+	 * Issues are stored into index for year they was created in.
+	 */
+	CREATED_YEAR("created_year");
+
+	private String configValue;
+
+	private IndexNamingStrategy(String configValue) {
+		this.configValue = configValue;
+	}
+
+	/**
+	 * Get value used to represent this value in configuration.
+	 *
+	 * @return configuration value
+	 */
+	public String getConfigValue() {
+		return configValue;
+	}
+
+	/**
+	 * Get enum value based on String value read from configuration file.
+	 *
+	 * @param value to be parsed
+	 * @param defaultValue used if value is null or empty
+	 * @return Enum value, never null, default is used if value is null or empty.
+	 * @throws SettingsException for bad value
+	 */
+	public static IndexNamingStrategy parseConfiguration(String value, IndexNamingStrategy defaultValue)
+			throws SettingsException {
+		if (Utils.isEmpty(value)) {
+			return defaultValue;
+		}
+		for (IndexNamingStrategy s : values()) {
+			if (s.getConfigValue().equalsIgnoreCase(value))
+				return s;
+		}
+		throw new SettingsException("unsupported value for index naming strategy: " + value);
+	}
+
+}
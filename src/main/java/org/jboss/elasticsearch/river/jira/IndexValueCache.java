@@ -0,0 +1,155 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+/**
+ * Bounded cache of filtered JIRA objects (users, statuses, versions, components etc.) which appear repeatedly in issues
+ * read from JIRA. Objects are identified by their <code>self</code> URL, which is unique in whole JIRA instance,
+ * together with filter applied to them when read. Rest of cached object is skipped in JIRA response, so it is not
+ * parsed and filtered again, and issues kept in memory (eg. prefetched pages) share one instance of it. Changes of
+ * cached object in JIRA are not visible until it is evicted or cache is cleared. Least recently used objects are
+ * evicted when cache is full. Cached objects are shared, so they must not be modified. Thread safe.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ * @see IssueDataReader#setValueCache(IndexValueCache)
+ */
+public class IndexValueCache {
+
+	/**
+	 * Name of field with URL of JIRA object used as its identifier.
+	 */
+	protected static final String JIRA_FIELD_SELF = "self";
+
+	private final Map<Key, Map<String, Object>> cache;
+
+	private long hits = 0;
+
+	private long misses = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxSize maximal number of objects kept in cache
+	 */
+	public IndexValueCache(final int maxSize) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("maxSize must be positive");
+		cache = new LinkedHashMap<Key, Map<String, Object>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Map<String, Object>> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Get cached JIRA object.
+	 *
+	 * @param filter identifier of filter applied to the object, compared by identity
+	 * @param id <code>self</code> URL of the object
+	 * @return cached object or <code>null</code> if not cached
+	 */
+	public synchronized Map<String, Object> get(Object filter, String id) {
+		Map<String, Object> ret = cache.get(new Key(filter, id));
+		if (ret != null)
+			hits++;
+		else
+			misses++;
+		return ret;
+	}
+
+	/**
+	 * Put JIRA object into cache.
+	 *
+	 * @param filter identifier of filter applied to the object, compared by identity
+	 * @param id <code>self</code> URL of the object
+	 * @param value filtered JIRA object
+	 */
+	public synchronized void put(Object filter, String id, Map<String, Object> value) {
+		cache.put(new Key(filter, id), value);
+	}
+
+	/**
+	 * Remove all objects from cache, so they are read from JIRA again.
+	 */
+	public synchronized void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * @return number of objects found in cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return number of objects not found in cache
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return number of objects in cache
+	 */
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	/**
+	 * Write info about this cache into object named <code>value_cache</code> in given builder.
+	 *
+	 * @param builder to write info into
+	 * @return builder for chaining
+	 * @throws IOException
+	 */
+	public synchronized XContentBuilder buildDocument(XContentBuilder builder) throws IOException {
+		builder.startObject("value_cache");
+		builder.field("size", cache.size());
+		builder.field("hits", hits);
+		builder.field("misses", misses);
+		builder.endObject();
+		return builder;
+	}
+
+	/**
+	 * Cache key. Filters are compared by identity as they come from one compiled configuration.
+	 */
+	private static final class Key {
+
+		private final Object filter;
+
+		private final String id;
+
+		Key(Object filter, String id) {
+			this.filter = filter;
+			this.id = id;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(filter) + id.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return filter == other.filter && id.equals(other.id);
+		}
+	}
+
+}
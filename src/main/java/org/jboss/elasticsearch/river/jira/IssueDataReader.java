@@ -0,0 +1,241 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentParser.Token;
+
+/**
+ * Reader of JIRA issue data from JSON token stream which builds only parts of issue data structure used to build search
+ * index documents. Other parts are skipped in the stream without being allocated. Returned data have the same structure
+ * as data returned from {@link XContentParser#map()}, only unused parts are missing, so the same code can extract
+ * values from them.
+ * <p>
+ * If value cache is set, then filtered JSON Objects are cached by their <code>self</code> URL as they are read. Rest of
+ * object found in cache is skipped in the stream and cached instance is used, so objects repeated in many issues are
+ * parsed and kept in memory only once.
+ * <p>
+ * Paths are registered by {@link #addPath(String, Map)} during configuration, reading is thread safe then.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ * @see IJIRAIssueIndexStructureBuilder#getIssueDataReader()
+ */
+public class IssueDataReader {
+
+	/**
+	 * Marker of value not read from stream.
+	 */
+	private static final Object SKIPPED = new Object();
+
+	private final Node root = new Node();
+
+	private IndexValueCache valueCache;
+
+	/**
+	 * Register path to value which must be read from issue data.
+	 *
+	 * @param valuePath path to value in issue data. Dot notation for nested values can be used here, same as in
+	 *          {@link IndexFieldExtractor}.
+	 * @param valueFilter filter applied to the value, only fields named here are read from JSON Object (or List of JSON
+	 *          Objects) value then. Whole value is read if this is <code>null</code> or empty.
+	 * @return this reader for chaining
+	 */
+	public IssueDataReader addPath(String valuePath, Map<String, String> valueFilter) {
+		if (Utils.isEmpty(valuePath))
+			return this;
+		addPath(root, valuePath.trim().split("\\."), 0, valueFilter);
+		return this;
+	}
+
+	private void addPath(Node node, String[] segments, int index, Map<String, String> valueFilter) {
+		// keys containing dot are supported by extraction, so all of them must be read
+		StringBuilder key = new StringBuilder();
+		for (int i = index; i < segments.length; i++) {
+			if (i > index)
+				key.append(".");
+			key.append(segments[i]);
+			Node child = node.child(key.toString());
+			if (i < segments.length - 1) {
+				addPath(child, segments, i + 1, valueFilter);
+			} else if (valueFilter == null || valueFilter.isEmpty()) {
+				child.whole = true;
+			} else {
+				child.scalars = true;
+				for (String filteredField : valueFilter.keySet()) {
+					child.child(filteredField).whole = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Set cache of filtered JSON Objects. Objects are cached only if they contain
+	 * {@link IndexValueCache#JIRA_FIELD_SELF} field, it is not necessary to have it in value filter.
+	 *
+	 * @param valueCache to use, <code>null</code> to not use cache
+	 * @return this reader for chaining
+	 */
+	public IssueDataReader setValueCache(IndexValueCache valueCache) {
+		this.valueCache = valueCache;
+		return this;
+	}
+
+	/**
+	 * @return cache of filtered JSON Objects, <code>null</code> if not used
+	 */
+	public IndexValueCache getValueCache() {
+		return valueCache;
+	}
+
+	/**
+	 * Read issue data.
+	 *
+	 * @param parser positioned on the start of JSON Object with issue data, positioned on the end of it when method
+	 *          returns
+	 * @return issue data
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, Object> readIssue(XContentParser parser) throws IOException {
+		if (parser.currentToken() != Token.START_OBJECT)
+			throw new IOException("Bad issue data structure: unexpected token " + parser.currentToken());
+		return (Map<String, Object>) readValue(parser, Token.START_OBJECT, root);
+	}
+
+	private Object readValue(XContentParser parser, Token token, Node node) throws IOException {
+		if (node.whole) {
+			return readWholeValue(parser, token);
+		}
+		if (token == Token.START_OBJECT) {
+			// node reading scalars is node with value filter
+			boolean cacheable = node.scalars && valueCache != null;
+			String id = null;
+			Map<String, Object> ret = new HashMap<String, Object>();
+			while ((token = parser.nextToken()) == Token.FIELD_NAME) {
+				String name = parser.currentName();
+				token = parser.nextToken();
+				if (cacheable && id == null && token == Token.VALUE_STRING
+						&& IndexValueCache.JIRA_FIELD_SELF.equals(name)) {
+					id = parser.text();
+					Map<String, Object> cached = valueCache.get(node, id);
+					if (cached != null) {
+						skipObjectFields(parser);
+						return cached;
+					}
+				}
+				Node child = node.children != null ? node.children.get(name) : null;
+				if (child == null) {
+					parser.skipChildren();
+				} else {
+					Object value = readValue(parser, token, child);
+					if (value != SKIPPED)
+						ret.put(name, value);
+				}
+			}
+			if (id != null)
+				valueCache.put(node, id, ret);
+			return ret;
+		} else if (token == Token.START_ARRAY) {
+			List<Object> ret = new ArrayList<Object>();
+			while ((token = parser.nextToken()) != Token.END_ARRAY && token != null) {
+				Object value = readValue(parser, token, node);
+				if (value != SKIPPED)
+					ret.add(value);
+			}
+			return ret;
+		} else if (node.scalars) {
+			return readScalarValue(parser, token);
+		}
+		return SKIPPED;
+	}
+
+	/**
+	 * Skip rest of fields of JSON Object, parser is positioned on the end of it then.
+	 */
+	private void skipObjectFields(XContentParser parser) throws IOException {
+		while (parser.nextToken() == Token.FIELD_NAME) {
+			parser.nextToken();
+			parser.skipChildren();
+		}
+	}
+
+	private Object readWholeValue(XContentParser parser, Token token) throws IOException {
+		if (token == Token.START_OBJECT) {
+			return parser.map();
+		} else if (token == Token.START_ARRAY) {
+			List<Object> ret = new ArrayList<Object>();
+			while ((token = parser.nextToken()) != Token.END_ARRAY && token != null) {
+				ret.add(readWholeValue(parser, token));
+			}
+			return ret;
+		}
+		return readScalarValue(parser, token);
+	}
+
+	/**
+	 * Read scalar value the same way as {@link XContentParser#map()} does.
+	 */
+	private Object readScalarValue(XContentParser parser, Token token) throws IOException {
+		if (token == Token.VALUE_STRING) {
+			return parser.text();
+		} else if (token == Token.VALUE_NUMBER) {
+			XContentParser.NumberType numberType = parser.numberType();
+			if (numberType == XContentParser.NumberType.INT) {
+				return parser.intValue();
+			} else if (numberType == XContentParser.NumberType.LONG) {
+				return parser.longValue();
+			} else if (numberType == XContentParser.NumberType.FLOAT) {
+				return parser.floatValue();
+			} else if (numberType == XContentParser.NumberType.DOUBLE) {
+				return parser.doubleValue();
+			}
+		} else if (token == Token.VALUE_BOOLEAN) {
+			return parser.booleanValue();
+		} else if (token == Token.VALUE_EMBEDDED_OBJECT) {
+			return parser.binaryValue();
+		}
+		return null;
+	}
+
+	/**
+	 * Node of tree of registered paths.
+	 */
+	private static final class Node {
+
+		/**
+		 * Nodes for fields of JSON Object value, <code>null</code> if no any field is necessary.
+		 */
+		Map<String, Node> children;
+
+		/**
+		 * <code>true</code> if whole value must be read.
+		 */
+		boolean whole = false;
+
+		/**
+		 * <code>true</code> if value must be read if it is not JSON Object or Array.
+		 */
+		boolean scalars = false;
+
+		Node child(String name) {
+			if (children == null)
+				children = new HashMap<String, Node>();
+			Node ret = children.get(name);
+			if (ret == null) {
+				ret = new Node();
+				children.put(name, ret);
+			}
+			return ret;
+		}
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.util.BitSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compact set of JIRA issue keys of one project. Keys in <code>PROJECTKEY-number</code> form are stored as bits
+ * indexed by issue number, so keys of project with hundreds of thousands issues take only tens of kilobytes. Other keys
+ * (eg. of issues moved from other project) are stored as Strings. Not thread safe.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ * @see JIRAProjectIndexer#processDeleteSync()
+ */
+public class IssueKeySet {
+
+	private final String keyPrefix;
+
+	private final BitSet numbers = new BitSet();
+
+	private final Set<String> otherKeys = new TreeSet<String>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param projectKey key of JIRA project issues are for
+	 */
+	public IssueKeySet(String projectKey) {
+		keyPrefix = projectKey + "-";
+	}
+
+	/**
+	 * Add issue key into set.
+	 *
+	 * @param issueKey to add, <code>null</code> is ignored
+	 */
+	public void add(String issueKey) {
+		if (issueKey == null)
+			return;
+		int number = parseIssueNumber(issueKey);
+		if (number >= 0)
+			numbers.set(number);
+		else
+			otherKeys.add(issueKey);
+	}
+
+	/**
+	 * Check if issue key is in set.
+	 *
+	 * @param issueKey to check
+	 * @return true if key is in set
+	 */
+	public boolean contains(String issueKey) {
+		if (issueKey == null)
+			return false;
+		int number = parseIssueNumber(issueKey);
+		if (number >= 0)
+			return numbers.get(number);
+		return otherKeys.contains(issueKey);
+	}
+
+	/**
+	 * @return number of keys in set
+	 */
+	public int size() {
+		return numbers.cardinality() + otherKeys.size();
+	}
+
+	/**
+	 * Get issue number from key of issue in this project.
+	 *
+	 * @param issueKey to parse
+	 * @return issue number or -1 if key is not in <code>PROJECTKEY-number</code> form
+	 */
+	protected int parseIssueNumber(String issueKey) {
+		if (!issueKey.startsWith(keyPrefix) || issueKey.length() == keyPrefix.length()
+				|| issueKey.length() > keyPrefix.length() + 9)
+			return -1;
+		int ret = 0;
+		for (int i = keyPrefix.length(); i < issueKey.length(); i++) {
+			char c = issueKey.charAt(i);
+			if (c < '0' || c > '9')
+				return -1;
+			ret = ret * 10 + (c - '0');
+		}
+		// leading zeros would map more keys to one number
+		if (issueKey.charAt(keyPrefix.length()) == '0' && issueKey.length() > keyPrefix.length() + 1)
+			return -1;
+		return ret;
+	}
+
+}
@@ -0,0 +1,573 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.NameValuePair;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.DefaultHttpAsyncClient;
+import org.apache.http.impl.nio.conn.PoolingClientAsyncConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.params.CoreConnectionPNames;
+import org.apache.http.params.CoreProtocolPNames;
+import org.apache.http.params.HttpParams;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.SettingsException;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+
+/**
+ * JIRA 5 REST API version 2 client using non-blocking http client, so one small pool of I/O threads serves all
+ * requests to JIRA and many requests may be in flight at the same time. No blocking http client is created, blocking
+ * methods from {@link IJIRAClient} are supported over the same non-blocking one, they wait for response of
+ * non-blocking call. If request governor is configured, permits for non-blocking calls are obtained by one dispatcher
+ * thread of this client, so threads sending calls never wait for them. Failed non-blocking search calls are repeated
+ * from the dispatcher thread after backoff too.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class JIRA5AsyncRestClient extends JIRA5RestClient implements IJIRAAsyncClient {
+
+	private static final ESLogger logger = Loggers.getLogger(JIRA5AsyncRestClient.class);
+
+	/**
+	 * Default number of I/O threads used by non-blocking http client.
+	 */
+	public static final int DEFAULT_IO_THREAD_COUNT = 2;
+
+	/**
+	 * Number of I/O threads used by non-blocking http client.
+	 */
+	protected final int ioThreadCount;
+
+	private DefaultHttpAsyncClient asyncHttpClient;
+
+	/**
+	 * Executor with one thread waiting for request permits from request governor and repeating failed calls.
+	 */
+	private final ScheduledExecutorService dispatcher;
+
+	/**
+	 * Futures of calls waiting in dispatcher, failed when client is closed.
+	 */
+	private final Set<BasicFuture<?>> dispatchedFutures = Collections
+			.newSetFromMap(new ConcurrentHashMap<BasicFuture<?>, Boolean>());
+
+	/**
+	 * Constructor to create and configure remote JIRA REST API client.
+	 *
+	 * @param jiraUrlBase JIRA base URL used to call JIRA (see {@link #prepareAPIURLFromBaseURL(String)})
+	 * @param jiraUsername optional username to authenticate into JIRA
+	 * @param jiraPassword optional password to authenticate into JIRA
+	 * @param timeout JIRA http/s connection timeout in milliseconds
+	 */
+	public JIRA5AsyncRestClient(String jiraUrlBase, String jiraUsername, String jiraPassword, Integer timeout) {
+		this(jiraUrlBase, jiraUsername, jiraPassword, timeout, DEFAULT_IO_THREAD_COUNT);
+	}
+
+	/**
+	 * Constructor to create and configure remote JIRA REST API client.
+	 *
+	 * @param jiraUrlBase JIRA base URL used to call JIRA (see {@link #prepareAPIURLFromBaseURL(String)})
+	 * @param jiraUsername optional username to authenticate into JIRA
+	 * @param jiraPassword optional password to authenticate into JIRA
+	 * @param timeout JIRA http/s connection timeout in milliseconds
+	 * @param ioThreadCount number of I/O threads used by non-blocking http client
+	 */
+	public JIRA5AsyncRestClient(String jiraUrlBase, String jiraUsername, String jiraPassword, Integer timeout,
+			int ioThreadCount) {
+		super(jiraUrlBase, jiraUsername, jiraPassword, timeout, false);
+		this.ioThreadCount = Math.max(1, ioThreadCount);
+
+		URL url = null;
+		try {
+			url = new URL(jiraRestAPIUrlBase);
+		} catch (MalformedURLException e) {
+			throw new SettingsException("Parameter jira/urlBase is malformed " + e.getMessage());
+		}
+
+		try {
+			IOReactorConfig ioReactorConfig = new IOReactorConfig();
+			ioReactorConfig.setIoThreadCount(this.ioThreadCount);
+			DefaultConnectingIOReactor ioReactor = new DefaultConnectingIOReactor(ioReactorConfig,
+					EsExecutors.daemonThreadFactory("jira_river_async_http"));
+			PoolingClientAsyncConnectionManager connectionManager = new PoolingClientAsyncConnectionManager(ioReactor);
+			connectionManager.setDefaultMaxPerRoute(20);
+			connectionManager.setMaxTotal(20);
+			asyncHttpClient = new DefaultHttpAsyncClient(connectionManager);
+		} catch (IOReactorException e) {
+			throw new SettingsException("Non-blocking http client for JIRA can't be created: " + e.getMessage(), e);
+		}
+
+		HttpParams params = asyncHttpClient.getParams();
+		params.setParameter(CoreProtocolPNames.HTTP_CONTENT_CHARSET, "UTF-8");
+		if (timeout != null) {
+			params.setParameter(CoreConnectionPNames.SO_TIMEOUT, timeout);
+			params.setParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, timeout);
+		}
+
+		if (jiraUsername != null && !"".equals(jiraUsername.trim())) {
+			asyncHttpClient.getCredentialsProvider().setCredentials(new AuthScope(url.getHost(), AuthScope.ANY_PORT),
+					new UsernamePasswordCredentials(jiraUsername, jiraPassword));
+		}
+		asyncHttpClient.start();
+		dispatcher = Executors.newSingleThreadScheduledExecutor(EsExecutors
+				.daemonThreadFactory("jira_river_async_dispatcher"));
+	}
+
+	@Override
+	public Future<ChangedIssuesResults> getJIRAChangedIssuesAsync(String projectKey, int startAt, Date updatedAfter,
+			Date updatedBefore) throws Exception {
+		return searchJIRAChangedIssuesAsync(projectKey,
+				prepareJIRAChangedIssuesRESTParams(projectKey, startAt, updatedAfter, updatedBefore));
+	}
+
+	@Override
+	public Future<ChangedIssuesResults> getJIRAChangedIssuesAfterKeyAsync(String projectKey, Date updatedMinute,
+			String afterIssueKey) throws Exception {
+		return searchJIRAChangedIssuesAsync(projectKey,
+				prepareJIRAChangedIssuesAfterKeyRESTParams(projectKey, updatedMinute, afterIssueKey));
+	}
+
+	/**
+	 * Asynchronously perform JIRA search REST call for changed issues. Call failed due retryable problem is repeated as
+	 * configured by {@link #setRetryPolicy(int, long, long)}, without blocking of calling thread.
+	 * 
+	 * @param projectKey key of JIRA project call is for
+	 * @param params parameters of search call
+	 * @return future with issues informations
+	 * @throws Exception if request can't be prepared
+	 */
+	protected Future<ChangedIssuesResults> searchJIRAChangedIssuesAsync(String projectKey, List<NameValuePair> params)
+			throws Exception {
+		ChangedIssuesResultsFuture ret = new ChangedIssuesResultsFuture(projectKey, params);
+		ret.sendAttempt(prepareJIRAGetRESTCallMethod("search", params));
+		return ret;
+	}
+
+	/**
+	 * Blocking http GET method execution is implemented over non-blocking one.
+	 */
+	@Override
+	protected HttpResponse executeJIRAGetRESTCall(HttpGet method) throws Exception {
+		ResponseTimer timer = new ResponseTimer();
+		Future<HttpResponse> responseFuture = executeJIRAGetRESTCallAsync(method, timer);
+		try {
+			HttpResponse ret = responseFuture.get();
+			lastRequestWaitTime.set(timer.getWaitTime());
+			return ret;
+		} catch (ExecutionException e) {
+			throw unwrapExecutionException(e);
+		} catch (InterruptedException e) {
+			responseFuture.cancel(true);
+			throw e;
+		}
+	}
+
+	/**
+	 * Request permit of non-blocking call is released by {@link JIRARequestFuture} already, when whole response is
+	 * received.
+	 */
+	@Override
+	protected void releaseJIRAGetRESTCall(HttpGet method, boolean executed) {
+		method.releaseConnection();
+	}
+
+	/**
+	 * Execute http GET method against JIRA with preemptive authentication using non-blocking http client. Method
+	 * returns immediately, also if request must wait for permit from request governor.
+	 *
+	 * @param method to execute
+	 * @param callback optional callback notified when call is finished. If it is {@link ResponseTimer} then it is
+	 *          notified when request is sent too.
+	 * @return future with http response
+	 */
+	protected Future<HttpResponse> executeJIRAGetRESTCallAsync(HttpGet method, FutureCallback<HttpResponse> callback) {
+		JIRARequestFuture ret = new JIRARequestFuture(method, callback);
+		if (requestGovernor == null) {
+			ret.send(false);
+		} else {
+			dispatchedFutures.add(ret);
+			try {
+				dispatcher.execute(new PermitTask(ret));
+			} catch (RejectedExecutionException e) {
+				dispatchedFutures.remove(ret);
+				ret.failed(new IOException("JIRA client closed"));
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Repeat failed non-blocking search call after backoff, from dispatcher thread.
+	 * 
+	 * @param future of call to repeat
+	 * @param backoff time to wait before call is repeated in milliseconds
+	 */
+	protected void scheduleJIRAChangedIssuesRetry(final ChangedIssuesResultsFuture future, long backoff) {
+		dispatchedFutures.add(future.response);
+		try {
+			dispatcher.schedule(new Runnable() {
+				@Override
+				public void run() {
+					dispatchedFutures.remove(future.response);
+					future.sendAttempt(null);
+				}
+			}, backoff, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			dispatchedFutures.remove(future.response);
+			future.response.failed(new IOException("JIRA client closed"));
+		}
+	}
+
+	/**
+	 * Send http GET method to JIRA over non-blocking http client.
+	 *
+	 * @param method to send
+	 * @param callback notified when call is finished
+	 */
+	protected void sendJIRAGetRESTCallAsync(HttpGet method, FutureCallback<HttpResponse> callback) {
+		asyncHttpClient.execute(method, prepareJIRAGetRESTCallContext(method), callback);
+	}
+
+	private static Exception unwrapExecutionException(ExecutionException e) {
+		if (e.getCause() instanceof Exception)
+			return (Exception) e.getCause();
+		return e;
+	}
+
+	@Override
+	public void close() {
+		super.close();
+		dispatcher.shutdownNow();
+		for (BasicFuture<?> future : dispatchedFutures) {
+			future.failed(new IOException("JIRA client closed"));
+		}
+		dispatchedFutures.clear();
+		try {
+			asyncHttpClient.shutdown();
+		} catch (InterruptedException e) {
+			logger.warn("Interrupted during non-blocking http client shutdown");
+		}
+	}
+
+	/**
+	 * Future of non-blocking JIRA call, which may wait for request permit before it is sent to JIRA. Request permit is
+	 * released when call is finished, which is when whole response is received as non-blocking http client reads
+	 * response content into memory before call is finished. Cancel aborts request sent to JIRA already.
+	 */
+	protected class JIRARequestFuture extends BasicFuture<HttpResponse> {
+
+		private final HttpGet method;
+
+		private final FutureCallback<HttpResponse> callback;
+
+		protected JIRARequestFuture(HttpGet method, FutureCallback<HttpResponse> callback) {
+			super(callback);
+			this.method = method;
+			this.callback = callback;
+		}
+
+		/**
+		 * Send request to JIRA.
+		 *
+		 * @param permitAcquired true if request permit was acquired for this request, so it must be released
+		 */
+		protected void send(final boolean permitAcquired) {
+			if (isCancelled()) {
+				if (permitAcquired)
+					releaseJIRARequestPermit();
+				return;
+			}
+			if (callback instanceof ResponseTimer)
+				((ResponseTimer) callback).sent();
+			try {
+				sendJIRAGetRESTCallAsync(method, new FutureCallback<HttpResponse>() {
+					@Override
+					public void completed(HttpResponse result) {
+						if (permitAcquired)
+							releaseJIRARequestPermit();
+						JIRARequestFuture.this.completed(result);
+					}
+
+					@Override
+					public void failed(Exception ex) {
+						if (permitAcquired)
+							releaseJIRARequestPermit();
+						JIRARequestFuture.this.failed(ex);
+					}
+
+					@Override
+					public void cancelled() {
+						if (permitAcquired)
+							releaseJIRARequestPermit();
+						JIRARequestFuture.this.cancel(true);
+					}
+				});
+			} catch (RuntimeException e) {
+				if (permitAcquired)
+					releaseJIRARequestPermit();
+				failed(e);
+			}
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean ret = super.cancel(mayInterruptIfRunning);
+			if (ret)
+				method.abort();
+			return ret;
+		}
+	}
+
+	/**
+	 * Task run by dispatcher thread to wait for request permit and send request to JIRA then.
+	 */
+	protected class PermitTask implements Runnable {
+
+		private final JIRARequestFuture future;
+
+		protected PermitTask(JIRARequestFuture future) {
+			this.future = future;
+		}
+
+		@Override
+		public void run() {
+			dispatchedFutures.remove(future);
+			if (future.isCancelled())
+				return;
+			try {
+				acquireJIRARequestPermit();
+			} catch (InterruptedException e) {
+				future.failed(e);
+				return;
+			}
+			future.send(true);
+		}
+	}
+
+	/**
+	 * Callback measuring time of non-blocking JIRA call, as response may be obtained from future much later than it is
+	 * received. Time spent waiting for request permit is measured separately.
+	 */
+	protected static class ResponseTimer implements FutureCallback<HttpResponse> {
+
+		private volatile long startTime = System.currentTimeMillis();
+
+		private volatile long waitTime = 0;
+
+		private volatile long latency = -1;
+
+		/**
+		 * Notify timer that request is sent to JIRA, so time elapsed until now is time spent waiting for request permit.
+		 */
+		public void sent() {
+			long now = System.currentTimeMillis();
+			waitTime = now - startTime;
+			startTime = now;
+		}
+
+		/**
+		 * @return time request waited for request permit in milliseconds
+		 */
+		public long getWaitTime() {
+			return waitTime;
+		}
+
+		@Override
+		public void completed(HttpResponse result) {
+			latency = System.currentTimeMillis() - startTime;
+		}
+
+		@Override
+		public void failed(Exception ex) {
+			latency = System.currentTimeMillis() - startTime;
+		}
+
+		@Override
+		public void cancelled() {
+		}
+
+		/**
+		 * @return latency of finished call in milliseconds, or time elapsed from call start if not notified about end
+		 */
+		public long getLatency() {
+			if (latency < 0)
+				return System.currentTimeMillis() - startTime;
+			return latency;
+		}
+	}
+
+	/**
+	 * Future converting http response from JIRA search REST call into {@link ChangedIssuesResults} when obtained. If
+	 * call failed due retryable problem and retry is configured, call is repeated from dispatcher thread after backoff,
+	 * so neither calling thread nor I/O threads wait for it.
+	 */
+	protected class ChangedIssuesResultsFuture implements Future<ChangedIssuesResults> {
+
+		private final String projectKey;
+
+		private final List<NameValuePair> params;
+
+		/**
+		 * Response of last attempt, completed when call succeeded or failed without next attempt.
+		 */
+		protected final BasicFuture<HttpResponse> response = new BasicFuture<HttpResponse>(null);
+
+		private volatile int attempt = 0;
+
+		private volatile HttpGet method;
+
+		private volatile ResponseTimer timer;
+
+		private volatile Future<HttpResponse> attemptFuture;
+
+		protected ChangedIssuesResultsFuture(String projectKey, List<NameValuePair> params) {
+			this.projectKey = projectKey;
+			this.params = params;
+		}
+
+		/**
+		 * Send next attempt of call to JIRA.
+		 * 
+		 * @param preparedMethod method to send, new one is prepared if null
+		 */
+		protected void sendAttempt(HttpGet preparedMethod) {
+			if (response.isDone())
+				return;
+			try {
+				method = preparedMethod != null ? preparedMethod : prepareJIRAGetRESTCallMethod("search", params);
+			} catch (Exception e) {
+				response.failed(e);
+				return;
+			}
+			final HttpGet attemptMethod = method;
+			timer = new ResponseTimer() {
+				@Override
+				public void completed(HttpResponse result) {
+					super.completed(result);
+					if (result.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+						try {
+							checkJIRAGetRESTCallResponseStatus(result);
+						} catch (Exception e) {
+							attemptMethod.releaseConnection();
+							handleFailure(e);
+							return;
+						}
+					}
+					response.completed(result);
+				}
+
+				@Override
+				public void failed(Exception ex) {
+					super.failed(ex);
+					handleFailure(ex);
+				}
+
+				@Override
+				public void cancelled() {
+					response.cancel(true);
+				}
+			};
+			attemptFuture = executeJIRAGetRESTCallAsync(method, timer);
+		}
+
+		private void handleFailure(Exception e) {
+			if (e instanceof SocketTimeoutException)
+				recordJIRAChangedIssuesTimeout(projectKey);
+			long backoff = prepareJIRARequestRetry(e, attempt);
+			if (backoff < 0 || response.isDone()) {
+				response.failed(e);
+				return;
+			}
+			attempt++;
+			scheduleJIRAChangedIssuesRetry(this, backoff);
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean ret = response.cancel(mayInterruptIfRunning);
+			Future<HttpResponse> f = attemptFuture;
+			if (f != null)
+				f.cancel(mayInterruptIfRunning);
+			return ret;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return response.isCancelled();
+		}
+
+		@Override
+		public boolean isDone() {
+			return response.isDone();
+		}
+
+		@Override
+		public ChangedIssuesResults get() throws InterruptedException, ExecutionException {
+			return convert(response.get());
+		}
+
+		@Override
+		public ChangedIssuesResults get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+				TimeoutException {
+			return convert(response.get(timeout, unit));
+		}
+
+		private ChangedIssuesResults convert(HttpResponse response) throws ExecutionException {
+			boolean streamHandedOver = false;
+			try {
+				ChangedIssuesResults ret = null;
+				recordJIRARequestSuccess();
+				if (streamingResponseParsing && response.getEntity() != null) {
+					streamHandedOver = true;
+					// response is received into memory already, so only bytes are counted when stream is closed
+					ChangedIssuesResponseRecorder recorder = new ChangedIssuesResponseRecorder(
+							openJIRAGetRESTCallResponseContent(response.getEntity()), projectKey, 0);
+					recorder.setLatency(timer.getLatency());
+					ret = parseJIRAChangedIssuesResponseStream(recorder);
+					recorder.setResults(ret);
+				} else {
+					byte[] responseData = readJIRAGetRESTCallResponse(response);
+					long bytes = responseData != null ? responseData.length : 0;
+					ret = parseJIRAChangedIssuesResponse(responseData);
+					recordJIRAChangedIssuesResponse(projectKey, ret, timer.getLatency(), bytes);
+				}
+				return ret;
+			} catch (Exception e) {
+				throw new ExecutionException(e.getMessage(), e);
+			} finally {
+				if (!streamHandedOver)
+					method.releaseConnection();
+			}
+		}
+	}
+
+}
@@ -5,40 +5,62 @@
  */
 package org.jboss.elasticsearch.river.jira;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
 import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
 import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.NameValuePair;
+import org.apache.http.NoHttpResponseException;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.AuthCache;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.protocol.ClientContext;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.params.CoreConnectionPNames;
 import org.apache.http.params.CoreProtocolPNames;
 import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
+import org.elasticsearch.common.io.Streams;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.SettingsException;
+import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentParser.Token;
 import org.elasticsearch.common.xcontent.XContentType;
 
 /**
@@ -59,8 +81,78 @@ public class JIRA5RestClient implements IJIRAClient {
 
 	protected int listJIRAIssuesMax = -1;
 
+	/**
+	 * Target JIRA response time used for adaptive page size if no timeout is configured.
+	 */
+	protected static final long DEFAULT_PAGE_SIZE_TARGET_LATENCY = 2000;
+
+	protected Integer timeout;
+
+	/**
+	 * Page size controller used if adaptive page size is configured, <code>null</code> for fixed page size given by
+	 * {@link #listJIRAIssuesMax}.
+	 */
+	protected JIRAPageSizeController pageSizeController;
+
+	protected boolean streamingResponseParsing = false;
+
+	protected boolean compression = false;
+
+	/**
+	 * Statistics - number of JIRA REST API responses read.
+	 */
+	protected final AtomicLong statsResponses = new AtomicLong();
+
+	/**
+	 * Statistics - number of JIRA REST API response bytes received over the wire.
+	 */
+	protected final AtomicLong statsBytesReceived = new AtomicLong();
+
+	/**
+	 * Statistics - number of JIRA REST API response bytes after decompression.
+	 */
+	protected final AtomicLong statsBytesUncompressed = new AtomicLong();
+
 	protected IJIRAIssueIndexStructureBuilder indexStructureBuilder;
 
+	/**
+	 * Governor all requests to JIRA go through, <code>null</code> if not configured.
+	 */
+	protected JIRARequestGovernor requestGovernor;
+
+	/**
+	 * Name of river this client is for, used to identify requests in {@link #requestGovernor}.
+	 */
+	protected String requestGovernorRiverName;
+
+	/**
+	 * Statistics - total time in milliseconds requests of this client waited in {@link #requestGovernor}.
+	 */
+	protected final AtomicLong statsRequestsWaitTime = new AtomicLong();
+
+	/**
+	 * Time in milliseconds the last request of current thread waited in {@link #requestGovernor}, so it can be excluded
+	 * from measured JIRA response time.
+	 */
+	protected final ThreadLocal<Long> lastRequestWaitTime = new ThreadLocal<Long>();
+
+	/**
+	 * Max number of retries of JIRA REST API call failed due retryable problem.
+	 */
+	protected int maxRetries = 0;
+
+	/**
+	 * Backoff before first retry of failed JIRA REST API call in milliseconds, doubled for each next retry.
+	 */
+	protected long retryBackoffInitial = 1000;
+
+	/**
+	 * Max backoff before retry of failed JIRA REST API call in milliseconds.
+	 */
+	protected long retryBackoffMax = 60 * 1000;
+
+	private final Random random = new Random();
+
 	/**
 	 * Constructor to create and configure remote JIRA REST API client.
 	 * 
@@ -70,7 +162,23 @@ public class JIRA5RestClient implements IJIRAClient {
 	 * @param timeout JIRA http/s connection timeout in milliseconds
 	 */
 	public JIRA5RestClient(String jiraUrlBase, String jiraUsername, String jiraPassword, Integer timeout) {
+		this(jiraUrlBase, jiraUsername, jiraPassword, timeout, true);
+	}
+
+	/**
+	 * Constructor to create and configure remote JIRA REST API client.
+	 * 
+	 * @param jiraRestAPIUrlBase JIRA API URL used to call JIRA (see {@link #prepareAPIURLFromBaseURL(String)})
+	 * @param jiraUsername optional username to authenticate into JIRA
+	 * @param jiraPassword optional password to authenticate into JIRA
+	 * @param timeout JIRA http/s connection timeout in milliseconds
+	 * @param blockingHttpClient if false then blocking http client is not created, so subclass must override
+	 *          {@link #executeJIRAGetRESTCall(HttpGet)} to use other one
+	 */
+	protected JIRA5RestClient(String jiraUrlBase, String jiraUsername, String jiraPassword, Integer timeout,
+			boolean blockingHttpClient) {
 
+		this.timeout = timeout;
 		jiraRestAPIUrlBase = prepareAPIURLFromBaseURL(jiraUrlBase);
 		if (jiraRestAPIUrlBase == null) {
 			throw new SettingsException("Parameter jira/urlBase must be set!");
@@ -83,6 +191,13 @@ public class JIRA5RestClient implements IJIRAClient {
 			throw new SettingsException("Parameter jira/urlBase is malformed " + e.getMessage());
 		}
 
+		if (jiraUsername != null && !"".equals(jiraUsername.trim())) {
+			isAuthConfigured = true;
+		}
+
+		if (!blockingHttpClient)
+			return;
+
 		PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager();
 		connectionManager.setDefaultMaxPerRoute(20);
 		connectionManager.setMaxTotal(20);
@@ -95,11 +210,10 @@ public class JIRA5RestClient implements IJIRAClient {
 			params.setParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, timeout);
 		}
 
-		if (jiraUsername != null && !"".equals(jiraUsername.trim())) {
+		if (isAuthConfigured) {
 			String host = url.getHost();
 			httpclient.getCredentialsProvider().setCredentials(new AuthScope(host, AuthScope.ANY_PORT),
 					new UsernamePasswordCredentials(jiraUsername, jiraPassword));
-			isAuthConfigured = true;
 		}
 	}
 
@@ -163,10 +277,104 @@ public class JIRA5RestClient implements IJIRAClient {
 	 * @throws Exception
 	 */
 	@Override
-	@SuppressWarnings("unchecked")
 	public ChangedIssuesResults getJIRAChangedIssues(String projectKey, int startAt, Date updatedAfter, Date updatedBefore)
 			throws Exception {
-		byte[] responseData = performJIRAChangedIssuesREST(projectKey, startAt, updatedAfter, updatedBefore);
+		long startTime = System.currentTimeMillis();
+		lastRequestWaitTime.remove();
+		ChangedIssuesResults ret = null;
+		long bytes = 0;
+		try {
+			if (streamingResponseParsing) {
+				InputStream responseStream = performJIRAChangedIssuesRESTStream(projectKey, startAt, updatedAfter,
+						updatedBefore);
+				ChangedIssuesResponseRecorder recorder = new ChangedIssuesResponseRecorder(responseStream, projectKey,
+						startTime + getLastRequestWaitTime());
+				ret = parseJIRAChangedIssuesResponseStream(recorder);
+				recorder.setResults(ret);
+				return ret;
+			} else {
+				byte[] responseData = performJIRAChangedIssuesREST(projectKey, startAt, updatedAfter, updatedBefore);
+				if (responseData != null)
+					bytes = responseData.length;
+				ret = parseJIRAChangedIssuesResponse(responseData);
+			}
+		} catch (SocketTimeoutException e) {
+			recordJIRAChangedIssuesTimeout(projectKey);
+			throw e;
+		}
+		recordJIRAChangedIssuesResponse(projectKey, ret, System.currentTimeMillis() - startTime
+				- getLastRequestWaitTime(), bytes);
+		return ret;
+	}
+
+	@Override
+	public ChangedIssuesResults getJIRAChangedIssuesAfterKey(String projectKey, Date updatedMinute, String afterIssueKey)
+			throws Exception {
+		List<NameValuePair> params = prepareJIRAChangedIssuesAfterKeyRESTParams(projectKey, updatedMinute, afterIssueKey);
+		long startTime = System.currentTimeMillis();
+		lastRequestWaitTime.remove();
+		ChangedIssuesResults ret = null;
+		long bytes = 0;
+		try {
+			if (streamingResponseParsing) {
+				InputStream responseStream = performJIRAGetRESTCallStream("search", params);
+				ChangedIssuesResponseRecorder recorder = new ChangedIssuesResponseRecorder(responseStream, projectKey,
+						startTime + getLastRequestWaitTime());
+				ret = parseJIRAChangedIssuesResponseStream(recorder);
+				recorder.setResults(ret);
+				return ret;
+			} else {
+				byte[] responseData = performJIRAGetRESTCall("search", params);
+				if (responseData != null)
+					bytes = responseData.length;
+				ret = parseJIRAChangedIssuesResponse(responseData);
+			}
+		} catch (SocketTimeoutException e) {
+			recordJIRAChangedIssuesTimeout(projectKey);
+			throw e;
+		}
+		recordJIRAChangedIssuesResponse(projectKey, ret, System.currentTimeMillis() - startTime
+				- getLastRequestWaitTime(), bytes);
+		return ret;
+	}
+
+	/**
+	 * Record successful JIRA search call so page size can be adapted if configured. Streamed response is recorded when
+	 * it is closed, see {@link ChangedIssuesResponseRecorder}.
+	 * 
+	 * @param projectKey key of JIRA project call was for
+	 * @param res results of call
+	 * @param latency of call in milliseconds
+	 * @param bytes size of uncompressed response in bytes
+	 */
+	protected void recordJIRAChangedIssuesResponse(String projectKey, ChangedIssuesResults res, long latency, long bytes) {
+		if (pageSizeController != null) {
+			// issues count is not known yet for streamed results, so count issues in page from pagination info
+			int issuesCount = Math.max(0, Math.min(res.getMaxResults(), res.getTotal() - res.getStartAt()));
+			pageSizeController.onResponse(projectKey, res.getMaxResults(), issuesCount, latency, bytes);
+		}
+	}
+
+	/**
+	 * Record timed out JIRA search call so page size can be adapted if configured.
+	 * 
+	 * @param projectKey key of JIRA project call was for
+	 */
+	protected void recordJIRAChangedIssuesTimeout(String projectKey) {
+		if (pageSizeController != null) {
+			pageSizeController.onTimeout(projectKey);
+		}
+	}
+
+	/**
+	 * Parse JIRA search response.
+	 * 
+	 * @param responseData JIRA search response
+	 * @return results, never null
+	 * @throws Exception in case of bad response structure
+	 */
+	@SuppressWarnings("unchecked")
+	protected ChangedIssuesResults parseJIRAChangedIssuesResponse(byte[] responseData) throws Exception {
 		logger.debug("JIRA REST response data: {}", new String(responseData));
 
 		XContentParser parser = XContentFactory.xContent(XContentType.JSON).createParser(responseData);
@@ -182,6 +390,73 @@ public class JIRA5RestClient implements IJIRAClient {
 		return new ChangedIssuesResults(issues, startAtRet, maxResults, total);
 	}
 
+	/**
+	 * Parse JIRA search response from stream. Pagination informations are read from the beginning of response and
+	 * returned results are positioned at the start of issues array, so issues are parsed one by one during
+	 * {@link ChangedIssuesResults#nextIssue()} calls. If JIRA sends pagination informations after the issues array, then
+	 * issues are read into memory as there is no other way to get them.
+	 * 
+	 * @param responseStream stream with JIRA search response. Closed by this method or by returned results.
+	 * @return results, never null
+	 * @throws Exception in case of response reading problem or bad response structure
+	 */
+	protected ChangedIssuesResults parseJIRAChangedIssuesResponseStream(InputStream responseStream) throws Exception {
+		XContentParser parser = null;
+		boolean streamHandedOver = false;
+		IssueDataReader issueDataReader = indexStructureBuilder != null ? indexStructureBuilder.getIssueDataReader() : null;
+		try {
+			parser = XContentFactory.xContent(XContentType.JSON).createParser(responseStream);
+			if (parser.nextToken() != Token.START_OBJECT) {
+				throw new IllegalArgumentException("Bad response structure from JIRA: JSON object expected");
+			}
+			Integer startAtRet = null;
+			Integer maxResults = null;
+			Integer total = null;
+			List<Map<String, Object>> issues = null;
+			Token token = null;
+			while ((token = parser.nextToken()) == Token.FIELD_NAME) {
+				String fieldName = parser.currentName();
+				token = parser.nextToken();
+				if ("issues".equals(fieldName) && token == Token.START_ARRAY) {
+					if (startAtRet != null && maxResults != null && total != null) {
+						streamHandedOver = true;
+						return new ChangedIssuesStreamedResults(parser, responseStream, issueDataReader, startAtRet,
+								maxResults, total);
+					}
+					logger.debug("JIRA response contains issues before pagination informations, so we must read them at once");
+					issues = new ArrayList<Map<String, Object>>();
+					while ((token = parser.nextToken()) == Token.START_OBJECT) {
+						issues.add(issueDataReader != null ? issueDataReader.readIssue(parser) : parser.map());
+					}
+				} else if ("startAt".equals(fieldName)) {
+					startAtRet = parser.intValue();
+				} else if ("maxResults".equals(fieldName)) {
+					maxResults = parser.intValue();
+				} else if ("total".equals(fieldName)) {
+					total = parser.intValue();
+				} else {
+					parser.skipChildren();
+				}
+			}
+			if (startAtRet == null || maxResults == null || total == null) {
+				throw new IllegalArgumentException("Bad response structure from JIRA: startAt=" + startAtRet + " maxResults="
+						+ maxResults + " total=" + total);
+			}
+			if (issues == null) {
+				issues = Collections.emptyList();
+			}
+			return new ChangedIssuesResults(issues, startAtRet, maxResults, total);
+		} finally {
+			if (!streamHandedOver) {
+				// parser closes response stream too
+				if (parser != null)
+					parser.close();
+				else
+					responseStream.close();
+			}
+		}
+	}
+
 	/**
 	 * Performs JIRA REST call for {@link #getJIRAChangedIssues(String)}.
 	 * 
@@ -195,10 +470,64 @@ public class JIRA5RestClient implements IJIRAClient {
 	 */
 	protected byte[] performJIRAChangedIssuesREST(String projectKey, int startAt, Date updatedAfter, Date updatedBefore)
 			throws Exception {
+		return performJIRAGetRESTCall("search",
+				prepareJIRAChangedIssuesRESTParams(projectKey, startAt, updatedAfter, updatedBefore));
+	}
+
+	/**
+	 * Performs JIRA REST call for {@link #getJIRAChangedIssues(String, int, Date, Date)} with response available as
+	 * stream.
+	 * 
+	 * @param projectKey mandatory key of JIRA project to get issues for
+	 * @param startAt the index of the first issue to return (0-based)
+	 * @param updatedAfter optional parameter to return issues updated only after given date.
+	 * @param updatedBefore optional parameter to return issues updated only before given date.
+	 * @return stream with data returned from JIRA REST call (JSON formatted). Must be closed by caller!
+	 * @throws Exception
+	 * @see #performJIRAChangedIssuesREST(String, int, Date, Date)
+	 */
+	protected InputStream performJIRAChangedIssuesRESTStream(String projectKey, int startAt, Date updatedAfter,
+			Date updatedBefore) throws Exception {
+		return performJIRAGetRESTCallStream("search",
+				prepareJIRAChangedIssuesRESTParams(projectKey, startAt, updatedAfter, updatedBefore));
+	}
+
+	/**
+	 * Prepare parameters for JIRA REST 'search' call used to get changed issues.
+	 * 
+	 * @param projectKey mandatory key of JIRA project to get issues for
+	 * @param startAt the index of the first issue to return (0-based)
+	 * @param updatedAfter optional parameter to return issues updated only after given date.
+	 * @param updatedBefore optional parameter to return issues updated only before given date.
+	 * @return list of parameters
+	 */
+	protected List<NameValuePair> prepareJIRAChangedIssuesRESTParams(String projectKey, int startAt, Date updatedAfter,
+			Date updatedBefore) {
+		return prepareJIRAChangedIssuesRESTParams(projectKey, prepareJIRAChangedIssuesJQL(projectKey, updatedAfter,
+				updatedBefore), startAt);
+	}
+
+	/**
+	 * Prepare parameters for JIRA REST 'search' call used to get changed issues in given minute paged over by issue key.
+	 * 
+	 * @param projectKey mandatory key of JIRA project to get issues for
+	 * @param updatedMinute mandatory minute to return issues updated in
+	 * @param afterIssueKey optional key of issue to return only issues with greater key
+	 * @return list of parameters
+	 * @see #getJIRAChangedIssuesAfterKey(String, Date, String)
+	 */
+	protected List<NameValuePair> prepareJIRAChangedIssuesAfterKeyRESTParams(String projectKey, Date updatedMinute,
+			String afterIssueKey) {
+		return prepareJIRAChangedIssuesRESTParams(projectKey,
+				prepareJIRAChangedIssuesAfterKeyJQL(projectKey, updatedMinute, afterIssueKey), 0);
+	}
+
+	private List<NameValuePair> prepareJIRAChangedIssuesRESTParams(String projectKey, String jql, int startAt) {
 		List<NameValuePair> params = new ArrayList<NameValuePair>();
-		params.add(new BasicNameValuePair("jql", prepareJIRAChangedIssuesJQL(projectKey, updatedAfter, updatedBefore)));
-		if (listJIRAIssuesMax > 0)
-			params.add(new BasicNameValuePair("maxResults", "" + listJIRAIssuesMax));
+		params.add(new BasicNameValuePair("jql", jql));
+		int maxResults = getListJIRAIssuesMax(projectKey);
+		if (maxResults > 0)
+			params.add(new BasicNameValuePair("maxResults", "" + maxResults));
 		params.add(new BasicNameValuePair("startAt", startAt + ""));
 
 		if (indexStructureBuilder != null) {
@@ -211,8 +540,7 @@ public class JIRA5RestClient implements IJIRAClient {
 				params.add(new BasicNameValuePair("expand", expands));
 			}
 		}
-
-		return performJIRAGetRESTCall("search", params);
+		return params;
 	}
 
 	/**
@@ -244,6 +572,121 @@ public class JIRA5RestClient implements IJIRAClient {
 		return sb.toString();
 	}
 
+	/**
+	 * Prepare JQL query text used to implement {@link #getJIRAChangedIssuesAfterKey(String, Date, String)} operation.
+	 * 
+	 * @param projectKey mandatory key of JIRA project to get issues for
+	 * @param updatedMinute mandatory minute to return issues updated in
+	 * @param afterIssueKey optional key of issue to return only issues with greater key
+	 * @return JQL string for given conditions
+	 * @throws IllegalArgumentException if some input parameter is illegal
+	 */
+	protected String prepareJIRAChangedIssuesAfterKeyJQL(String projectKey, Date updatedMinute, String afterIssueKey) {
+		if (Utils.isEmpty(projectKey)) {
+			throw new IllegalArgumentException("projectKey must be defined");
+		}
+		if (updatedMinute == null) {
+			throw new IllegalArgumentException("updatedMinute must be defined");
+		}
+		Date minuteStart = DateTimeUtils.roundDateTimeToMinutePrecise(updatedMinute);
+		StringBuilder sb = new StringBuilder();
+		sb.append("project='").append(projectKey).append("'");
+		sb.append(" and updatedDate >= \"").append(formatJQLDate(minuteStart)).append("\"");
+		sb.append(" and updatedDate < \"").append(formatJQLDate(new Date(minuteStart.getTime() + 60 * 1000)))
+				.append("\"");
+		if (!Utils.isEmpty(afterIssueKey)) {
+			sb.append(" and key > \"").append(afterIssueKey).append("\"");
+		}
+		sb.append(" ORDER BY key ASC");
+		logger.debug("JIRA JQL string: {}", sb.toString());
+		return sb.toString();
+	}
+
+	/**
+	 * Max number of issues requested by one call of {@link #getJIRAChangedIssuesInProjects(List, int, Date)}. JIRA
+	 * may return less due its configuration.
+	 */
+	protected static final int CHANGED_ISSUES_IN_PROJECTS_MAX = 1000;
+
+	@Override
+	public ChangedIssuesResults getJIRAChangedIssuesInProjects(List<String> projectKeys, int startAt, Date updatedAfter)
+			throws Exception {
+		List<NameValuePair> params = new ArrayList<NameValuePair>();
+		params.add(new BasicNameValuePair("jql", prepareJIRAChangedIssuesInProjectsJQL(projectKeys, updatedAfter)));
+		params.add(new BasicNameValuePair("maxResults", "" + CHANGED_ISSUES_IN_PROJECTS_MAX));
+		params.add(new BasicNameValuePair("startAt", startAt + ""));
+		params.add(new BasicNameValuePair("fields", "updated"));
+		return parseJIRAChangedIssuesResponse(performJIRAGetRESTCall("search", params));
+	}
+
+	/**
+	 * Prepare JQL query text used to implement {@link #getJIRAChangedIssuesInProjects(List, int, Date)} operation.
+	 * 
+	 * @param projectKeys mandatory keys of JIRA projects to get issues for
+	 * @param updatedAfter mandatory parameter to return issues updated only after given date.
+	 * @return JQL string for given conditions
+	 * @throws IllegalArgumentException if some input parameter is illegal
+	 */
+	protected String prepareJIRAChangedIssuesInProjectsJQL(List<String> projectKeys, Date updatedAfter) {
+		if (projectKeys == null || projectKeys.isEmpty()) {
+			throw new IllegalArgumentException("projectKeys must be defined");
+		}
+		if (updatedAfter == null) {
+			throw new IllegalArgumentException("updatedAfter must be defined");
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append("project in (");
+		boolean first = true;
+		for (String projectKey : projectKeys) {
+			if (!first)
+				sb.append(",");
+			sb.append("'").append(projectKey).append("'");
+			first = false;
+		}
+		sb.append(") and updatedDate >= \"").append(formatJQLDate(updatedAfter)).append("\"");
+		sb.append(" ORDER BY updated ASC");
+		logger.debug("JIRA JQL string: {}", sb.toString());
+		return sb.toString();
+	}
+
+	/**
+	 * Max number of issues requested by one call of {@link #getJIRAIssueKeys(String, String)}. JIRA may return less due
+	 * its configuration.
+	 */
+	protected static final int ISSUE_KEYS_MAX = 1000;
+
+	@Override
+	public ChangedIssuesResults getJIRAIssueKeys(String projectKey, String afterIssueKey) throws Exception {
+		List<NameValuePair> params = new ArrayList<NameValuePair>();
+		params.add(new BasicNameValuePair("jql", prepareJIRAIssueKeysJQL(projectKey, afterIssueKey)));
+		params.add(new BasicNameValuePair("maxResults", "" + ISSUE_KEYS_MAX));
+		params.add(new BasicNameValuePair("startAt", "0"));
+		params.add(new BasicNameValuePair("fields", "key"));
+		return parseJIRAChangedIssuesResponse(performJIRAGetRESTCall("search", params));
+	}
+
+	/**
+	 * Prepare JQL query text used to implement {@link #getJIRAIssueKeys(String, String)} operation.
+	 * 
+	 * @param projectKey mandatory key of JIRA project to get issue keys for
+	 * @param afterIssueKey optional key of issue to return only issues with greater key
+	 * @return JQL string for given conditions
+	 * @throws IllegalArgumentException if some input parameter is illegal
+	 */
+	protected String prepareJIRAIssueKeysJQL(String projectKey, String afterIssueKey) {
+		if (Utils.isEmpty(projectKey)) {
+			throw new IllegalArgumentException("projectKey must be defined");
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append("project='").append(projectKey).append("'");
+		if (!Utils.isEmpty(afterIssueKey)) {
+			sb.append(" and key > \"").append(afterIssueKey).append("\"");
+		}
+		sb.append(" ORDER BY key ASC");
+		logger.debug("JIRA JQL string: {}", sb.toString());
+		return sb.toString();
+	}
+
 	private static final String JQL_DATE_FORMAT_PATTERN = "yyyy-MM-dd HH:mm";
 
 	protected SimpleDateFormat jqlDateFormat = new SimpleDateFormat(JQL_DATE_FORMAT_PATTERN);
@@ -275,7 +718,319 @@ public class JIRA5RestClient implements IJIRAClient {
 	 * @throws Exception in case of unsuccessful call
 	 */
 	protected byte[] performJIRAGetRESTCall(String restOperation, List<NameValuePair> params) throws Exception {
+		for (int attempt = 0;; attempt++) {
+			HttpGet method = prepareJIRAGetRESTCallMethod(restOperation, params);
+			HttpResponse response = null;
+			Exception failure = null;
+			try {
+				response = executeJIRAGetRESTCall(method);
+				byte[] ret = readJIRAGetRESTCallResponse(response);
+				recordJIRARequestSuccess();
+				return ret;
+			} catch (Exception e) {
+				failure = e;
+			} finally {
+				releaseJIRAGetRESTCall(method, response != null);
+			}
+			if (!handleJIRARequestFailure(failure, attempt))
+				throw failure;
+		}
+	}
+
+	/**
+	 * Check if exception from JIRA REST API call is retryable, so call may succeed later. These are timeouts, refused
+	 * connections and HTTP codes 429, 502, 503 and 504.
+	 * 
+	 * @param e exception to check
+	 * @return true if call failed due retryable problem
+	 */
+	protected static boolean isRetryableJIRARequestFailure(Throwable e) {
+		if (e instanceof JIRARestCallException) {
+			int statusCode = ((JIRARestCallException) e).getStatusCode();
+			return statusCode == 429 || statusCode == HttpStatus.SC_BAD_GATEWAY
+					|| statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE || statusCode == HttpStatus.SC_GATEWAY_TIMEOUT;
+		}
+		return e instanceof SocketTimeoutException || e instanceof ConnectTimeoutException
+				|| e instanceof ConnectException || e instanceof NoHttpResponseException;
+	}
 
+	/**
+	 * Handle failed JIRA REST API call. Retryable failures are recorded into circuit breaker of request governor, and
+	 * thread waits before next attempt if allowed by retry configuration.
+	 * 
+	 * @param e failure
+	 * @param attempt number of failed attempt (0 based)
+	 * @return true if call should be repeated, false if failure should be thrown
+	 * @throws InterruptedException if interrupted while waiting for next attempt
+	 * @see #setRetryPolicy(int, long, long)
+	 */
+	protected boolean handleJIRARequestFailure(Exception e, int attempt) throws InterruptedException {
+		long backoff = prepareJIRARequestRetry(e, attempt);
+		if (backoff < 0)
+			return false;
+		Thread.sleep(backoff);
+		return true;
+	}
+
+	/**
+	 * Prepare repeating of failed JIRA REST API call. Retryable failures are recorded into circuit breaker of request
+	 * governor.
+	 * 
+	 * @param e failure
+	 * @param attempt number of failed attempt (0 based)
+	 * @return time to wait before next attempt in milliseconds, -1 if call should not be repeated
+	 * @see #setRetryPolicy(int, long, long)
+	 */
+	protected long prepareJIRARequestRetry(Exception e, int attempt) {
+		if (!isRetryableJIRARequestFailure(e))
+			return -1;
+		recordJIRARequestFailure();
+		if (attempt >= maxRetries)
+			return -1;
+		long backoff = getRetryBackoff(e, attempt);
+		logger.warn("JIRA REST API call failed, attempt {} will be repeated after {}ms: {}", attempt + 1, backoff,
+				e.getMessage());
+		return backoff;
+	}
+
+	/**
+	 * Get time to wait before repeated JIRA REST API call. Jittered exponential backoff is used, or time requested by
+	 * JIRA in <code>Retry-After</code> HTTP header. Both are limited by configured max backoff.
+	 * 
+	 * @param e failure of previous call
+	 * @param attempt number of failed attempt (0 based)
+	 * @return time to wait in milliseconds
+	 */
+	protected long getRetryBackoff(Exception e, int attempt) {
+		if (e instanceof JIRARestCallException) {
+			long retryAfter = parseRetryAfter(((JIRARestCallException) e).getRetryAfter(), System.currentTimeMillis());
+			if (retryAfter >= 0)
+				return Math.min(retryAfter, retryBackoffMax);
+		}
+		long backoff = retryBackoffInitial << Math.min(attempt, 30);
+		if (backoff <= 0 || backoff > retryBackoffMax)
+			backoff = retryBackoffMax;
+		// jitter to spread retries of more threads
+		return backoff / 2 + (long) (random.nextDouble() * (backoff / 2));
+	}
+
+	/**
+	 * Parse value of <code>Retry-After</code> HTTP header.
+	 * 
+	 * @param retryAfter value of header, can be null
+	 * @param now current time
+	 * @return time to wait in milliseconds, -1 if not defined or invalid
+	 */
+	protected static long parseRetryAfter(String retryAfter, long now) {
+		if (Utils.isEmpty(retryAfter))
+			return -1;
+		retryAfter = retryAfter.trim();
+		try {
+			return Math.max(0, Long.parseLong(retryAfter) * 1000);
+		} catch (NumberFormatException e) {
+			try {
+				return Math.max(0, DateUtils.parseDate(retryAfter).getTime() - now);
+			} catch (DateParseException e1) {
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Record successful JIRA REST API call into circuit breaker of request governor.
+	 */
+	protected void recordJIRARequestSuccess() {
+		if (requestGovernor != null)
+			requestGovernor.recordSuccess();
+	}
+
+	/**
+	 * Record JIRA REST API call failed due retryable problem into circuit breaker of request governor.
+	 */
+	protected void recordJIRARequestFailure() {
+		if (requestGovernor != null)
+			requestGovernor.recordFailure();
+	}
+
+	/**
+	 * Read content of response from JIRA REST API call.
+	 * 
+	 * @param response to read
+	 * @return response content if call was successful
+	 * @throws Exception in case of unsuccessful call
+	 */
+	protected byte[] readJIRAGetRESTCallResponse(HttpResponse response) throws Exception {
+		checkJIRAGetRESTCallResponseStatus(response);
+		if (response.getEntity() == null) {
+			return null;
+		}
+		return Streams.copyToByteArray(openJIRAGetRESTCallResponseContent(response.getEntity()));
+	}
+
+	/**
+	 * Check status code of response from JIRA REST API call.
+	 * 
+	 * @param response to check
+	 * @throws Exception in case of unsuccessful call
+	 */
+	protected void checkJIRAGetRESTCallResponseStatus(HttpResponse response) throws Exception {
+		int statusCode = response.getStatusLine().getStatusCode();
+		if (statusCode != HttpStatus.SC_OK) {
+			byte[] responseContent = null;
+			if (response.getEntity() != null) {
+				responseContent = EntityUtils.toByteArray(response.getEntity());
+			}
+			Header retryAfter = response.getFirstHeader("Retry-After");
+			throw new JIRARestCallException("Failed JIRA REST API call. HTTP error code: " + statusCode + " Response body: "
+					+ responseContent, statusCode, retryAfter != null ? retryAfter.getValue() : null);
+		}
+	}
+
+	/**
+	 * Open content of response from JIRA REST API call. Content compressed by JIRA (see
+	 * {@link #setCompression(boolean)}) is decompressed on the fly as it is read from returned stream, so it is never
+	 * kept in memory whole. Numbers of received and decompressed bytes are recorded into client statistics when returned
+	 * stream is closed.
+	 * 
+	 * @param entity of response to open content for
+	 * @return stream with uncompressed response content. Must be closed by caller!
+	 * @throws IOException
+	 */
+	protected InputStream openJIRAGetRESTCallResponseContent(HttpEntity entity) throws IOException {
+		final CountingInputStream receivedStream = new CountingInputStream(entity.getContent());
+		InputStream contentStream = receivedStream;
+		Header contentEncoding = entity.getContentEncoding();
+		if (contentEncoding != null && contentEncoding.getValue() != null) {
+			String encoding = contentEncoding.getValue().trim().toLowerCase(Locale.ENGLISH);
+			if ("gzip".equals(encoding) || "x-gzip".equals(encoding)) {
+				contentStream = new GZIPInputStream(receivedStream);
+			} else if ("deflate".equals(encoding)) {
+				contentStream = new InflaterInputStream(receivedStream);
+			}
+		}
+		return new CountingInputStream(contentStream) {
+			private boolean recorded = false;
+
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					if (!recorded) {
+						recorded = true;
+						recordJIRAGetRESTCallResponseTransfer(receivedStream.getCount(), getCount());
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Record numbers of bytes transferred for one JIRA REST API call response into client statistics.
+	 * 
+	 * @param bytesReceived number of bytes received over the wire
+	 * @param bytesUncompressed number of bytes after decompression
+	 */
+	protected void recordJIRAGetRESTCallResponseTransfer(long bytesReceived, long bytesUncompressed) {
+		statsResponses.incrementAndGet();
+		statsBytesReceived.addAndGet(bytesReceived);
+		statsBytesUncompressed.addAndGet(bytesUncompressed);
+		logger.debug("JIRA REST API call response received {} bytes, {} bytes uncompressed", bytesReceived,
+				bytesUncompressed);
+	}
+
+	/**
+	 * Perform defined REST call to remote JIRA REST API with response available as stream, so it is not necessary to
+	 * keep whole response in memory. Call is repeated if it failed due retryable problem before response headers were
+	 * received. Retryable failure while response body is read from returned stream (eg. read timeout) is recorded into
+	 * circuit breaker of request governor, but it is not repeated as data read from the stream before are processed by
+	 * caller already. It is thrown from the stream, so indexing of JIRA project fails and is repeated in next indexing
+	 * run from last stored checkpoint.
+	 * 
+	 * @param restOperation name of REST operation to call on JIRA API (eg. 'search' or 'project' )
+	 * @param params GET parameters used for call
+	 * @return stream with response from server if successful. Must be closed by caller to release http connection!
+	 * @throws Exception in case of unsuccessful call
+	 */
+	protected InputStream performJIRAGetRESTCallStream(String restOperation, List<NameValuePair> params)
+			throws Exception {
+		for (int attempt = 0;; attempt++) {
+			final HttpGet method = prepareJIRAGetRESTCallMethod(restOperation, params);
+			HttpResponse response = null;
+			Exception failure = null;
+			boolean streamHandedOver = false;
+			try {
+				response = executeJIRAGetRESTCall(method);
+				checkJIRAGetRESTCallResponseStatus(response);
+				recordJIRARequestSuccess();
+				if (response.getEntity() == null) {
+					throw new Exception("Failed JIRA REST API call. No response body.");
+				}
+				InputStream ret = new FilterInputStream(openJIRAGetRESTCallResponseContent(response.getEntity())) {
+					private boolean released = false;
+
+					@Override
+					public int read() throws IOException {
+						try {
+							return super.read();
+						} catch (IOException e) {
+							handleReadFailure(e);
+							throw e;
+						}
+					}
+
+					@Override
+					public int read(byte[] b, int off, int len) throws IOException {
+						try {
+							return super.read(b, off, len);
+						} catch (IOException e) {
+							handleReadFailure(e);
+							throw e;
+						}
+					}
+
+					private void handleReadFailure(IOException e) {
+						if (isRetryableJIRARequestFailure(e)) {
+							logger.warn("JIRA REST API call failed while response was read, it can't be repeated: {}",
+									e.getMessage());
+							recordJIRARequestFailure();
+						}
+					}
+
+					@Override
+					public void close() throws IOException {
+						try {
+							super.close();
+						} finally {
+							if (!released) {
+								released = true;
+								releaseJIRAGetRESTCall(method, true);
+							}
+						}
+					}
+				};
+				streamHandedOver = true;
+				return ret;
+			} catch (Exception e) {
+				failure = e;
+			} finally {
+				if (!streamHandedOver)
+					releaseJIRAGetRESTCall(method, response != null);
+			}
+			if (!handleJIRARequestFailure(failure, attempt))
+				throw failure;
+		}
+	}
+
+	/**
+	 * Prepare http GET method for defined REST call to remote JIRA REST API.
+	 * 
+	 * @param restOperation name of REST operation to call on JIRA API (eg. 'search' or 'project' )
+	 * @param params GET parameters used for call
+	 * @return method to be executed
+	 * @throws Exception in case of bad parameters
+	 */
+	protected HttpGet prepareJIRAGetRESTCallMethod(String restOperation, List<NameValuePair> params) throws Exception {
 		String url = jiraRestAPIUrlBase + restOperation;
 		logger.debug("Go to perform JIRA REST API call to the {} with parameters {}", url, params);
 
@@ -287,33 +1042,117 @@ public class JIRA5RestClient implements IJIRAClient {
 		}
 		HttpGet method = new HttpGet(builder.build());
 		method.addHeader("Accept", "application/json");
-		try {
+		if (compression) {
+			method.addHeader("Accept-Encoding", "gzip, deflate");
+		}
+		return method;
+	}
 
-			// Preemptive authentication enabled - see
-			// http://hc.apache.org/httpcomponents-client-ga/tutorial/html/authentication.html#d5e1032
-			HttpHost targetHost = new HttpHost(builder.getHost(), builder.getPort(), builder.getScheme());
-			AuthCache authCache = new BasicAuthCache();
-			BasicScheme basicAuth = new BasicScheme();
-			authCache.put(targetHost, basicAuth);
-			BasicHttpContext localcontext = new BasicHttpContext();
-			localcontext.setAttribute(ClientContext.AUTH_CACHE, authCache);
-
-			HttpResponse response = httpclient.execute(method, localcontext);
-			int statusCode = response.getStatusLine().getStatusCode();
-			byte[] responseContent = null;
-			if (response.getEntity() != null) {
-				responseContent = EntityUtils.toByteArray(response.getEntity());
-			}
-			if (statusCode != HttpStatus.SC_OK) {
-				throw new Exception("Failed JIRA REST API call. HTTP error code: " + statusCode + " Response body: "
-						+ responseContent);
-			}
-			return responseContent;
+	/**
+	 * Execute http GET method against JIRA with preemptive authentication. Request permit from request governor is held
+	 * until response is read, so {@link #releaseJIRAGetRESTCall(HttpGet, boolean)} must be called when response body
+	 * is read whole or is not needed anymore.
+	 * 
+	 * @param method to execute
+	 * @return http response
+	 * @throws Exception in case of unsuccessful call, request permit is released already in this case
+	 */
+	protected HttpResponse executeJIRAGetRESTCall(HttpGet method) throws Exception {
+		acquireJIRARequestPermit();
+		boolean executed = false;
+		try {
+			HttpResponse ret = sendJIRAGetRESTCall(method);
+			executed = true;
+			return ret;
 		} finally {
-			method.releaseConnection();
+			if (!executed)
+				releaseJIRARequestPermit();
 		}
 	}
 
+	/**
+	 * Send http GET method to JIRA over blocking http client.
+	 * 
+	 * @param method to send
+	 * @return http response
+	 * @throws Exception in case of unsuccessful call
+	 */
+	protected HttpResponse sendJIRAGetRESTCall(HttpGet method) throws Exception {
+		return httpclient.execute(method, prepareJIRAGetRESTCallContext(method));
+	}
+
+	/**
+	 * Release http connection and request permit of JIRA REST API call when its response is read or is not needed
+	 * anymore.
+	 * 
+	 * @param method executed http GET method
+	 * @param executed true if method was executed by {@link #executeJIRAGetRESTCall(HttpGet)} successfully, so request
+	 *          permit is held
+	 */
+	protected void releaseJIRAGetRESTCall(HttpGet method, boolean executed) {
+		method.releaseConnection();
+		if (executed)
+			releaseJIRARequestPermit();
+	}
+
+	/**
+	 * Wait for permit to send request to JIRA from request governor if configured. {@link #releaseJIRARequestPermit()}
+	 * must be called when response is read.
+	 * 
+	 * @return time spent waiting for permit in milliseconds
+	 * @throws InterruptedException
+	 * @see #setRequestGovernance(String, double, int, int, long)
+	 */
+	protected long acquireJIRARequestPermit() throws InterruptedException {
+		if (requestGovernor != null) {
+			long waitTime = requestGovernor.acquire(requestGovernorRiverName);
+			lastRequestWaitTime.set(waitTime);
+			statsRequestsWaitTime.addAndGet(waitTime);
+			if (waitTime > 0)
+				logger.debug("JIRA REST API call waited {}ms for request permit", waitTime);
+			return waitTime;
+		}
+		return 0;
+	}
+
+	/**
+	 * Get time the last request of current thread waited for permit in {@link #acquireJIRARequestPermit()}.
+	 * 
+	 * @return wait time in milliseconds
+	 */
+	protected long getLastRequestWaitTime() {
+		Long ret = lastRequestWaitTime.get();
+		return ret != null ? ret : 0;
+	}
+
+	/**
+	 * Release permit obtained by {@link #acquireJIRARequestPermit()}.
+	 */
+	protected void releaseJIRARequestPermit() {
+		if (requestGovernor != null) {
+			requestGovernor.release();
+		}
+	}
+
+	/**
+	 * Prepare context for http GET method execution against JIRA with preemptive authentication.
+	 * 
+	 * @param method to be executed
+	 * @return http context
+	 */
+	protected HttpContext prepareJIRAGetRESTCallContext(HttpGet method) {
+		// Preemptive authentication enabled - see
+		// http://hc.apache.org/httpcomponents-client-ga/tutorial/html/authentication.html#d5e1032
+		HttpHost targetHost = new HttpHost(method.getURI().getHost(), method.getURI().getPort(), method.getURI()
+				.getScheme());
+		AuthCache authCache = new BasicAuthCache();
+		BasicScheme basicAuth = new BasicScheme();
+		authCache.put(targetHost, basicAuth);
+		BasicHttpContext localcontext = new BasicHttpContext();
+		localcontext.setAttribute(ClientContext.AUTH_CACHE, authCache);
+		return localcontext;
+	}
+
 	@Override
 	public void setIndexStructureBuilder(IJIRAIssueIndexStructureBuilder indexStructureBuilder) {
 		this.indexStructureBuilder = indexStructureBuilder;
@@ -334,4 +1173,234 @@ public class JIRA5RestClient implements IJIRAClient {
 		return listJIRAIssuesMax;
 	}
 
+	@Override
+	public void setListJIRAIssuesMaxBounds(int min, int max) {
+		if (min < max) {
+			pageSizeController = new JIRAPageSizeController(min, max, listJIRAIssuesMax > 0 ? listJIRAIssuesMax : min,
+					timeout != null ? timeout / 3 : DEFAULT_PAGE_SIZE_TARGET_LATENCY);
+		} else {
+			pageSizeController = null;
+		}
+	}
+
+	/**
+	 * Get maximal number of issues to be requested from JIRA by next search call for given project.
+	 * 
+	 * @param projectKey key of JIRA project
+	 * @return number of issues, 0 or less to use JIRA default
+	 */
+	protected int getListJIRAIssuesMax(String projectKey) {
+		if (pageSizeController != null)
+			return pageSizeController.getPageSize(projectKey);
+		return listJIRAIssuesMax;
+	}
+
+	@Override
+	public void setStreamingResponseParsing(boolean streamingResponseParsing) {
+		this.streamingResponseParsing = streamingResponseParsing;
+	}
+
+	@Override
+	public void setCompression(boolean compression) {
+		this.compression = compression;
+	}
+
+	@Override
+	public void setRetryPolicy(int maxRetries, long retryBackoffInitial, long retryBackoffMax) {
+		this.maxRetries = maxRetries;
+		this.retryBackoffInitial = retryBackoffInitial;
+		this.retryBackoffMax = retryBackoffMax;
+	}
+
+	@Override
+	public void setRequestGovernance(String riverName, double maxRequestsPerSecond, int maxConcurrentRequests,
+			int circuitBreakerThreshold, long circuitBreakerPause) {
+		URI uri = URI.create(jiraRestAPIUrlBase);
+		int port = uri.getPort();
+		if (port < 0)
+			port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+		requestGovernor = JIRARequestGovernor.getInstance(uri.getHost() + ":" + port);
+		requestGovernorRiverName = riverName;
+		requestGovernor.register(riverName, maxRequestsPerSecond, maxConcurrentRequests, circuitBreakerThreshold,
+				circuitBreakerPause);
+	}
+
+	@Override
+	public void close() {
+		if (requestGovernor != null) {
+			requestGovernor.unregister(requestGovernorRiverName);
+		}
+		if (httpclient != null)
+			httpclient.getConnectionManager().shutdown();
+	}
+
+	@Override
+	public XContentBuilder buildStatisticsDocument(XContentBuilder builder) throws IOException {
+		builder.startObject("jira_client");
+		builder.field("compression", compression);
+		builder.field("responses", statsResponses.get());
+		builder.field("bytes_received", statsBytesReceived.get());
+		builder.field("bytes_uncompressed", statsBytesUncompressed.get());
+		if (pageSizeController != null)
+			pageSizeController.buildDocument(builder);
+		if (requestGovernor != null) {
+			builder.field("requests_wait_time", statsRequestsWaitTime.get() + "ms");
+			requestGovernor.buildDocument(builder);
+		}
+		IssueDataReader issueDataReader = indexStructureBuilder != null ? indexStructureBuilder.getIssueDataReader() : null;
+		if (issueDataReader != null && issueDataReader.getValueCache() != null)
+			issueDataReader.getValueCache().buildDocument(builder);
+		builder.endObject();
+		return builder;
+	}
+
+	/**
+	 * Stream with streamed JIRA search response which records successful call by
+	 * {@link JIRA5RestClient#recordJIRAChangedIssuesResponse(String, ChangedIssuesResults, long, long)} when it is
+	 * closed, so number of response bytes read through it and latency including time the response body was read are
+	 * used. Call is recorded by {@link JIRA5RestClient#recordJIRAChangedIssuesTimeout(String)} instead if response body
+	 * read timed out.
+	 */
+	protected class ChangedIssuesResponseRecorder extends CountingInputStream {
+
+		private final String projectKey;
+
+		private final long startTime;
+
+		private long latency = -1;
+
+		private ChangedIssuesResults results;
+
+		private boolean closed = false;
+
+		private boolean recorded = false;
+
+		private volatile boolean timedOut = false;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param in stream with JIRA search response
+		 * @param projectKey key of JIRA project call is for
+		 * @param startTime time the call started at, time spent waiting for request permit excluded
+		 */
+		protected ChangedIssuesResponseRecorder(InputStream in, String projectKey, long startTime) {
+			super(in);
+			this.projectKey = projectKey;
+			this.startTime = startTime;
+		}
+
+		/**
+		 * Set latency of call to be recorded instead of time elapsed until stream is closed, eg. if response was
+		 * received into memory already.
+		 * 
+		 * @param latency in milliseconds
+		 */
+		public void setLatency(long latency) {
+			this.latency = latency;
+		}
+
+		/**
+		 * Set results parsed from this stream, call is recorded when stream is closed.
+		 * 
+		 * @param results to set
+		 */
+		public synchronized void setResults(ChangedIssuesResults results) {
+			this.results = results;
+			recordIfFinished();
+		}
+
+		@Override
+		public int read() throws IOException {
+			try {
+				return super.read();
+			} catch (SocketTimeoutException e) {
+				timedOut = true;
+				throw e;
+			}
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			try {
+				return super.read(b, off, len);
+			} catch (SocketTimeoutException e) {
+				timedOut = true;
+				throw e;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				synchronized (this) {
+					closed = true;
+					recordIfFinished();
+				}
+			}
+		}
+
+		private void recordIfFinished() {
+			// timeout before results are parsed is recorded by caller
+			if (recorded || !closed || results == null)
+				return;
+			recorded = true;
+			if (timedOut) {
+				recordJIRAChangedIssuesTimeout(projectKey);
+				return;
+			}
+			recordJIRAChangedIssuesResponse(projectKey, results, latency >= 0 ? latency : System.currentTimeMillis()
+					- startTime, getCount());
+		}
+	}
+
+	/**
+	 * Stream counting bytes read through it.
+	 */
+	protected static class CountingInputStream extends FilterInputStream {
+
+		private long count = 0;
+
+		protected CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1)
+				count++;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0)
+				count += n;
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		/**
+		 * @return number of bytes read through this stream so far
+		 */
+		public long getCount() {
+			return count;
+		}
+	}
+
 }
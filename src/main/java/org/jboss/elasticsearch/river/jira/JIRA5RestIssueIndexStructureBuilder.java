@@ -7,27 +7,42 @@ package org.jboss.elasticsearch.river.jira;
 
 import static org.elasticsearch.client.Requests.deleteRequest;
 import static org.elasticsearch.client.Requests.indexRequest;
-import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 
+import java.io.IOException;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TimeZone;
+import java.util.WeakHashMap;
 
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.common.Base64;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.BytesStream;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.SettingsException;
 import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.common.xcontent.support.XContentMapValues;
+import org.elasticsearch.index.query.BoolFilterBuilder;
 import org.elasticsearch.index.query.FilterBuilder;
 import org.elasticsearch.index.query.FilterBuilders;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHitField;
 import org.jboss.elasticsearch.tools.content.StructuredContentPreprocessor;
 
 /**
@@ -57,6 +72,10 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 	 * JIRA REST response field constant - updated date field
 	 */
 	public static final String JF_UPDATED = "fields.updated";
+	/**
+	 * JIRA REST response field constant - created date field
+	 */
+	public static final String JF_CREATED = "fields.created";
 	/**
 	 * JIRA REST response field constant - field where structure of comments is stored
 	 */
@@ -75,6 +94,17 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 	 */
 	public static final String JF_CHANGELOG_ARRAY = JF_CHANGELOG + ".histories";
 
+	/**
+	 * JIRA field for date of last update of comment, relative to comment data.
+	 */
+	public static final String JF_COMMENT_UPDATED = "updated";
+
+	/**
+	 * JIRA field for date of creation of changelog item, relative to changelog item data. Changelog items are never
+	 * updated.
+	 */
+	public static final String JF_CHANGELOG_CREATED = "created";
+
 	/**
 	 * Name of River to be stored in document to mark indexing source
 	 */
@@ -99,6 +129,7 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 	protected static final String CONFIG_FIELDPROJECTKEY = "field_project_key";
 	protected static final String CONFIG_FIELDISSUEKEY = "field_issue_key";
 	protected static final String CONFIG_FIELDJIRAURL = "field_jira_url";
+	protected static final String CONFIG_FIELDCONTENTHASH = "field_content_hash";
 	protected static final String CONFIG_COMMENTMODE = "comment_mode";
 	protected static final String CONFIG_FIELDCOMMENTS = "field_comments";
 	protected static final String CONFIG_COMMENTTYPE = "comment_type";
@@ -108,6 +139,18 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 	protected static final String CONFIG_FIELDCHANGELOGS = "field_changelogs";
 	protected static final String CONFIG_CHANGELOGTYPE = "changelog_type";
 	protected static final String CONFIG_CHANGELOGFILEDS = "changelog_fields";
+	protected static final String CONFIG_PRUNEISSUEDATA = "prune_issue_data";
+	protected static final String CONFIG_VALUECACHESIZE = "value_cache_size";
+	protected static final String CONFIG_SOURCEFORMAT = "source_format";
+	protected static final String CONFIG_INDEXSTRATEGY = "index_strategy";
+	protected static final String CONFIG_PROJECTGROUPS = "project_groups";
+	protected static final String CONFIG_ROUTINGBYPROJECT = "routing_by_project";
+	protected static final String CONFIG_FIELDEXTRADOCUMENTSSTATE = "field_extra_documents_state";
+
+	/**
+	 * Name of search hit field with routing value of indexed document.
+	 */
+	protected static final String FIELD_ROUTING = "_routing";
 
 	/**
 	 * Field in jira data to get indexed document id from for issue. If empty or do not provide value then issue key is
@@ -121,6 +164,11 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 	 */
 	protected Map<String, Map<String, String>> fieldsConfig;
 
+	/**
+	 * Extractors of issue fields compiled from {@link #fieldsConfig}.
+	 */
+	protected IndexFieldExtractor[] fieldExtractors;
+
 	/**
 	 * Value filters configuration structure. Key is name of filter. Value is map of filter configurations to be used in
 	 * {@link Utils#remapDataInMap(Map, Map)}.
@@ -147,6 +195,48 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 	 */
 	protected String indexFieldForJiraURL = null;
 
+	/**
+	 * Name of field in search index where hash of indexed document content is stored, <code>null</code> if not stored.
+	 */
+	protected String indexFieldForContentHash = null;
+
+	/**
+	 * Name of field in issue document where state of comments and changelog items indexed as separate documents is
+	 * stored, <code>null</code> if not stored.
+	 */
+	protected String indexFieldForExtraDocumentsState = null;
+
+	/**
+	 * Maximal number of filtered JIRA objects cached by {@link #issueDataReader}, 0 if cache is not used.
+	 */
+	protected int valueCacheSize = 0;
+
+	/**
+	 * Strategy of naming of indices issues are stored into.
+	 */
+	protected IndexNamingStrategy indexNamingStrategy = IndexNamingStrategy.SINGLE;
+
+	/**
+	 * Groups of projects for {@link IndexNamingStrategy#PROJECT_GROUP}. Key is JIRA project key, value is name of group.
+	 */
+	protected Map<String, String> projectGroups = new HashMap<String, String>();
+
+	/**
+	 * If true then all documents of one JIRA project are routed to the same shard by project key.
+	 */
+	protected boolean routingByProject = false;
+
+	/**
+	 * Content type of sources of documents stored into search index.
+	 */
+	protected XContentType sourceContentType = XContentType.JSON;
+
+	/**
+	 * Output buffers shared by documents prepared for the same bulk request.
+	 */
+	private final Map<BulkRequestBuilder, DocumentArena> bulkArenas = Collections
+			.synchronizedMap(new WeakHashMap<BulkRequestBuilder, DocumentArena>());
+
 	/**
 	 * Set of issue fields requested from JIRA during call
 	 */
@@ -187,6 +277,11 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 	 */
 	protected Map<String, Map<String, String>> commentFieldsConfig;
 
+	/**
+	 * Extractors of comment fields compiled from {@link #commentFieldsConfig}.
+	 */
+	protected IndexFieldExtractor[] commentFieldExtractors;
+
 	/**
 	 * Issue changelog indexing mode.
 	 */
@@ -210,6 +305,26 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 	 */
 	protected Map<String, Map<String, String>> changelogFieldsConfig;
 
+	/**
+	 * Extractors of changelog fields compiled from {@link #changelogFieldsConfig}.
+	 */
+	protected IndexFieldExtractor[] changelogFieldExtractors;
+
+	private static final IndexFieldExtractor UPDATED_EXTRACTOR = new IndexFieldExtractor(JF_UPDATED, JF_UPDATED, null);
+
+	private static final IndexFieldExtractor CREATED_EXTRACTOR = new IndexFieldExtractor(JF_CREATED, JF_CREATED, null);
+
+	private static final IndexFieldExtractor COMMENTS_EXTRACTOR = new IndexFieldExtractor(JF_COMMENTS, JF_COMMENTS, null);
+
+	private static final IndexFieldExtractor CHANGELOGS_EXTRACTOR = new IndexFieldExtractor(JF_CHANGELOG_ARRAY,
+			JF_CHANGELOG_ARRAY, null);
+
+	/**
+	 * Reader of issue data from JIRA response which reads only parts of data used to build index documents,
+	 * <code>null</code> if whole issue data are read.
+	 */
+	protected IssueDataReader issueDataReader;
+
 	/**
 	 * List of data preprocessors used inside {@link #indexIssue(BulkRequestBuilder, String, Map)}.
 	 */
@@ -236,6 +351,7 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 	public JIRA5RestIssueIndexStructureBuilder(String riverName, String indexName, String issueTypeName,
 			String jiraUrlBase, Map<String, Object> settings) throws SettingsException {
 		super();
+		boolean pruneIssueData = false;
 		this.riverName = riverName;
 		this.indexName = indexName;
 		this.issueTypeName = issueTypeName;
@@ -248,6 +364,10 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 			indexFieldForProjectKey = XContentMapValues.nodeStringValue(settings.get(CONFIG_FIELDPROJECTKEY), null);
 			indexFieldForIssueKey = XContentMapValues.nodeStringValue(settings.get(CONFIG_FIELDISSUEKEY), null);
 			indexFieldForJiraURL = XContentMapValues.nodeStringValue(settings.get(CONFIG_FIELDJIRAURL), null);
+			indexFieldForContentHash = Utils.trimToNull(XContentMapValues.nodeStringValue(
+					settings.get(CONFIG_FIELDCONTENTHASH), null));
+			indexFieldForExtraDocumentsState = Utils.trimToNull(XContentMapValues.nodeStringValue(
+					settings.get(CONFIG_FIELDEXTRADOCUMENTSSTATE), null));
 			filtersConfig = (Map<String, Map<String, String>>) settings.get(CONFIG_FILTERS);
 			fieldsConfig = (Map<String, Map<String, String>>) settings.get(CONFIG_FIELDS);
 
@@ -262,10 +382,73 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 			indexFieldForChangelogs = XContentMapValues.nodeStringValue(settings.get(CONFIG_FIELDCHANGELOGS), null);
 			changelogTypeName = XContentMapValues.nodeStringValue(settings.get(CONFIG_CHANGELOGTYPE), null);
 			changelogFieldsConfig = (Map<String, Map<String, String>>) settings.get(CONFIG_CHANGELOGFILEDS);
+			pruneIssueData = XContentMapValues.nodeBooleanValue(settings.get(CONFIG_PRUNEISSUEDATA), false);
+			valueCacheSize = XContentMapValues.nodeIntegerValue(settings.get(CONFIG_VALUECACHESIZE), 0);
+			sourceContentType = parseSourceFormat(XContentMapValues.nodeStringValue(settings.get(CONFIG_SOURCEFORMAT), null));
+			indexNamingStrategy = IndexNamingStrategy.parseConfiguration(
+					XContentMapValues.nodeStringValue(settings.get(CONFIG_INDEXSTRATEGY), null), IndexNamingStrategy.SINGLE);
+			projectGroups = parseProjectGroups(settings.get(CONFIG_PROJECTGROUPS));
+			routingByProject = XContentMapValues.nodeBooleanValue(settings.get(CONFIG_ROUTINGBYPROJECT), false);
 		}
 		loadDefaultsIfNecessary();
 		validateConfiguration();
 		prepareJiraCallFieldSet();
+		prepareFieldExtractors();
+		if (pruneIssueData)
+			prepareIssueDataReader();
+	}
+
+	/**
+	 * Parse source format configuration.
+	 * 
+	 * @param value to parse
+	 * @return content type of document sources, JSON if value is empty
+	 * @throws SettingsException for unsupported value
+	 */
+	protected static XContentType parseSourceFormat(String value) throws SettingsException {
+		if (Utils.isEmpty(value) || "json".equalsIgnoreCase(value)) {
+			return XContentType.JSON;
+		} else if ("smile".equalsIgnoreCase(value)) {
+			return XContentType.SMILE;
+		} else {
+			throw new SettingsException("unsupported value for index/" + CONFIG_SOURCEFORMAT + ": " + value);
+		}
+	}
+
+	/**
+	 * Parse configuration of groups of projects.
+	 * 
+	 * @param value configuration, map where key is name of group and value is list or CSV string of JIRA project keys
+	 * @return map where key is JIRA project key and value is name of group
+	 * @throws SettingsException for bad configuration
+	 */
+	protected static Map<String, String> parseProjectGroups(Object value) throws SettingsException {
+		Map<String, String> ret = new HashMap<String, String>();
+		if (value == null)
+			return ret;
+		if (!(value instanceof Map))
+			throw new SettingsException("index/" + CONFIG_PROJECTGROUPS + " must be map of project groups");
+		for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+			String group = Utils.trimToNull(XContentMapValues.nodeStringValue(e.getKey(), null));
+			if (group == null)
+				throw new SettingsException("Empty group name found in 'index/" + CONFIG_PROJECTGROUPS + "' map.");
+			List<String> keys = null;
+			if (e.getValue() instanceof List) {
+				keys = new ArrayList<String>();
+				for (Object k : (List<?>) e.getValue()) {
+					keys.add(XContentMapValues.nodeStringValue(k, null));
+				}
+			} else {
+				keys = Utils.parseCsvString(XContentMapValues.nodeStringValue(e.getValue(), null));
+			}
+			if (keys != null) {
+				for (String key : keys) {
+					if (!Utils.isEmpty(key))
+						ret.put(key.trim(), group);
+				}
+			}
+		}
+		return ret;
 	}
 
 	private void loadDefaultsIfNecessary() {
@@ -312,6 +495,9 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 		validateConfigurationObject(commentFieldsConfig, "index/comment_fields");
 		validateConfigurationString(commentTypeName, "index/comment_type");
 		validateConfigurationString(indexFieldForComments, "index/field_comments");
+		if (indexNamingStrategy == IndexNamingStrategy.PROJECT_GROUP && projectGroups.isEmpty())
+			throw new SettingsException("'index/" + CONFIG_PROJECTGROUPS + "' must be defined for '"
+					+ IndexNamingStrategy.PROJECT_GROUP.getConfigValue() + "' index strategy");
 
 		validateConfigurationObject(changelogIndexingMode, "index/changelog_mode");
 		validateConfigurationObject(changelogFieldsConfig, "index/changelog_fields");
@@ -320,14 +506,60 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 
 		validateConfigurationFieldsStructure(fieldsConfig, "index/fields");
 		validateConfigurationFieldsStructure(commentFieldsConfig, "index/comment_fields");
+		validateConfigurationFieldsStructure(changelogFieldsConfig, "index/changelog_fields");
 
 	}
 
+	/**
+	 * Compile fields configuration into extractors used for each indexed issue.
+	 */
+	protected void prepareFieldExtractors() {
+		fieldExtractors = IndexFieldExtractor.compile(fieldsConfig, filtersConfig);
+		commentFieldExtractors = IndexFieldExtractor.compile(commentFieldsConfig, filtersConfig);
+		changelogFieldExtractors = IndexFieldExtractor.compile(changelogFieldsConfig, filtersConfig);
+	}
+
+	/**
+	 * Prepare {@link #issueDataReader} reading only issue data used by configured fields.
+	 */
+	protected void prepareIssueDataReader() {
+		IssueDataReader reader = new IssueDataReader();
+		reader.addPath(JF_KEY, null);
+		reader.addPath(JF_UPDATED, null);
+		if (indexNamingStrategy == IndexNamingStrategy.CREATED_YEAR)
+			reader.addPath(JF_CREATED, null);
+		reader.addPath(jiraFieldForIssueDocumentId, null);
+		for (IndexFieldExtractor extractor : fieldExtractors) {
+			reader.addPath(extractor.getValuePath(), extractor.getValueFilter());
+		}
+		if (commentIndexingMode != IssueCommentIndexingMode.NONE) {
+			reader.addPath(JF_COMMENTS + "." + JF_ID, null);
+			if (commentIndexingMode.isExtraDocumentIndexed() && indexFieldForExtraDocumentsState != null)
+				reader.addPath(JF_COMMENTS + "." + JF_COMMENT_UPDATED, null);
+			for (IndexFieldExtractor extractor : commentFieldExtractors) {
+				reader.addPath(JF_COMMENTS + "." + extractor.getValuePath(), extractor.getValueFilter());
+			}
+		}
+		if (changelogIndexingMode != IssueCommentIndexingMode.NONE) {
+			reader.addPath(JF_CHANGELOG_ARRAY + "." + JF_ID, null);
+			if (changelogIndexingMode.isExtraDocumentIndexed() && indexFieldForExtraDocumentsState != null)
+				reader.addPath(JF_CHANGELOG_ARRAY + "." + JF_CHANGELOG_CREATED, null);
+			for (IndexFieldExtractor extractor : changelogFieldExtractors) {
+				reader.addPath(JF_CHANGELOG_ARRAY + "." + extractor.getValuePath(), extractor.getValueFilter());
+			}
+		}
+		if (valueCacheSize > 0)
+			reader.setValueCache(new IndexValueCache(valueCacheSize));
+		issueDataReader = reader;
+	}
+
 	protected void prepareJiraCallFieldSet() {
 		jiraCallFieldSet.clear();
 		jiraCallExpandSet.clear();
 		// fields always necessary to get from jira
 		jiraCallFieldSet.add(getJiraCallFieldName(JF_UPDATED));
+		if (indexNamingStrategy == IndexNamingStrategy.CREATED_YEAR)
+			jiraCallFieldSet.add(getJiraCallFieldName(JF_CREATED));
 		// other fields from configuration
 		for (Map<String, String> fc : fieldsConfig.values()) {
 			String jf = getJiraCallFieldName(fc.get(CONFIG_FIELDS_JIRAFIELD));
@@ -357,9 +589,50 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 
 	@Override
 	public String getIssuesSearchIndexName(String jiraProjectKey) {
+		switch (indexNamingStrategy) {
+		case PROJECT:
+			return prepareIndexName(jiraProjectKey);
+		case PROJECT_GROUP:
+			String group = projectGroups.get(jiraProjectKey);
+			return prepareIndexName(group != null ? group : jiraProjectKey);
+		default:
+			// created year indices of project are searched over alias
+			return indexName;
+		}
+	}
+
+	@Override
+	public String getIssuesSearchAliasName() {
+		if (indexNamingStrategy == IndexNamingStrategy.SINGLE)
+			return null;
 		return indexName;
 	}
 
+	/**
+	 * Get name of index given issue is stored into.
+	 * 
+	 * @param jiraProjectKey JIRA project key issue is for
+	 * @param issue data obtained from JIRA
+	 * @return name of index
+	 */
+	protected String prepareIssueIndexName(String jiraProjectKey, Map<String, Object> issue) {
+		if (indexNamingStrategy == IndexNamingStrategy.CREATED_YEAR) {
+			Date created = DateTimeUtils.parseISODateTime(XContentMapValues.nodeStringValue(
+					CREATED_EXTRACTOR.extractValue(issue), null));
+			if (created == null)
+				throw new IllegalArgumentException("Issue '" + JF_CREATED + "' field not found in JIRA response for issue "
+						+ extractIssueKey(issue));
+			Calendar c = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+			c.setTime(created);
+			return prepareIndexName(Integer.toString(c.get(Calendar.YEAR)));
+		}
+		return getIssuesSearchIndexName(jiraProjectKey);
+	}
+
+	private String prepareIndexName(String suffix) {
+		return indexName + "_" + suffix.toLowerCase(Locale.ENGLISH);
+	}
+
 	@Override
 	public String getRequiredJIRACallIssueFields() {
 		return Utils.createCsvString(jiraCallFieldSet);
@@ -374,8 +647,11 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 	public void indexIssue(BulkRequestBuilder esBulk, String jiraProjectKey, Map<String, Object> issue) throws Exception {
 
 		issue = preprocessIssueData(jiraProjectKey, issue);
-		esBulk.add(indexRequest(indexName).type(issueTypeName).id(prepareIssueDocumentId(issue))
-				.source(prepareIssueIndexedDocument(jiraProjectKey, issue)));
+		String issueIndexName = prepareIssueIndexName(jiraProjectKey, issue);
+		String routing = prepareRouting(jiraProjectKey);
+		DocumentArena arena = getDocumentArena(esBulk);
+		esBulk.add(indexRequest(issueIndexName).type(issueTypeName).id(prepareIssueDocumentId(issue)).routing(routing)
+				.source(prepareDocumentSource(prepareIssueIndexedDocument(jiraProjectKey, issue, arena)), false));
 
 		if (commentIndexingMode.isExtraDocumentIndexed()) {
 			List<Map<String, Object>> comments = extractIssueComments(issue);
@@ -383,8 +659,9 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 				String issueKey = extractIssueKey(issue);
 				for (Map<String, Object> comment : comments) {
 					String commentId = extractCommentId(comment);
-					IndexRequest irq = indexRequest(indexName).type(commentTypeName).id(commentId)
-							.source(prepareCommentIndexedDocument(jiraProjectKey, issueKey, comment));
+					IndexRequest irq = indexRequest(issueIndexName).type(commentTypeName).id(commentId).routing(routing)
+							.source(
+									prepareDocumentSource(prepareCommentIndexedDocument(jiraProjectKey, issueKey, comment, arena)), false);
 					if (commentIndexingMode == IssueCommentIndexingMode.CHILD) {
 						irq.parent(issueKey);
 					}
@@ -399,8 +676,10 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 				String issueKey = extractIssueKey(issue);
 				for (Map<String, Object> changelog : changelogs) {
 					String commentId = extractChangelogId(changelog);
-					IndexRequest irq = indexRequest(indexName).type(changelogTypeName).id(commentId)
-							.source(prepareChangelogIndexedDocument(jiraProjectKey, issueKey, changelog));
+					IndexRequest irq = indexRequest(issueIndexName).type(changelogTypeName).id(commentId).routing(routing)
+							.source(
+									prepareDocumentSource(prepareChangelogIndexedDocument(jiraProjectKey, issueKey, changelog,
+											arena)), false);
 					if (changelogIndexingMode == IssueCommentIndexingMode.CHILD) {
 						irq.parent(issueKey);
 					}
@@ -411,6 +690,61 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 
 	}
 
+	/**
+	 * Prepare routing value for documents of JIRA project. Routing set before parent is kept for child documents, so
+	 * they are stored into the same shard as their parent issue.
+	 * 
+	 * @param jiraProjectKey key of JIRA project
+	 * @return routing value or <code>null</code> to use default routing
+	 */
+	protected String prepareRouting(String jiraProjectKey) {
+		return routingByProject ? jiraProjectKey : null;
+	}
+
+	/**
+	 * Get output buffer for documents prepared for bulk request. One buffer is used for all documents of the bulk.
+	 * 
+	 * @param esBulk bulk request documents are prepared for
+	 * @return arena to write documents into
+	 */
+	protected DocumentArena getDocumentArena(BulkRequestBuilder esBulk) {
+		synchronized (bulkArenas) {
+			DocumentArena arena = bulkArenas.get(esBulk);
+			if (arena == null) {
+				arena = new DocumentArena();
+				bulkArenas.put(esBulk, arena);
+			}
+			return arena;
+		}
+	}
+
+	/**
+	 * Start new document to be stored into search index.
+	 * 
+	 * @param arena to write document into, <code>null</code> to use own buffer for document
+	 * @return builder to write document into
+	 * @throws IOException
+	 */
+	protected XContentBuilder startDocument(DocumentArena arena) throws IOException {
+		if (arena != null)
+			return arena.startDocument(sourceContentType.xContent());
+		return XContentFactory.contentBuilder(sourceContentType);
+	}
+
+	/**
+	 * Get source of finished document.
+	 * 
+	 * @param out builder document is written into
+	 * @return document source, not copied if document is written into arena
+	 */
+	protected BytesReference prepareDocumentSource(XContentBuilder out) {
+		if (out.stream() instanceof DocumentArena) {
+			out.close();
+			return ((DocumentArena) out.stream()).documentBytes();
+		}
+		return out.bytes();
+	}
+
 	protected String prepareIssueDocumentId(Map<String, Object> issue) {
 		String documentId = null;
 		if (jiraFieldForIssueDocumentId != null) {
@@ -422,6 +756,26 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 		return documentId;
 	}
 
+	@Override
+	public String getIndexFieldForContentHash() {
+		return indexFieldForContentHash;
+	}
+
+	@Override
+	public String getIndexFieldForExtraDocumentsState() {
+		if (commentIndexingMode.isExtraDocumentIndexed() || changelogIndexingMode.isExtraDocumentIndexed())
+			return indexFieldForExtraDocumentsState;
+		return null;
+	}
+
+	@Override
+	public IssueDataReader getIssueDataReader() {
+		// preprocessors may use any issue data
+		if (issueDataPreprocessors != null)
+			return null;
+		return issueDataReader;
+	}
+
 	@Override
 	public String extractIssueKey(Map<String, Object> issue) {
 		return XContentMapValues.nodeStringValue(issue.get(JF_KEY), null);
@@ -429,8 +783,8 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 
 	@Override
 	public Date extractIssueUpdated(Map<String, Object> issue) {
-		return DateTimeUtils.parseISODateTime(XContentMapValues.nodeStringValue(
-				XContentMapValues.extractValue(JF_UPDATED, issue), null));
+		return DateTimeUtils.parseISODateTime(XContentMapValues.nodeStringValue(UPDATED_EXTRACTOR.extractValue(issue),
+				null));
 	}
 
 	public String extractCommentId(Map<String, Object> comment) {
@@ -459,11 +813,35 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 
 	@Override
 	public void buildSearchForIndexedDocumentsNotUpdatedAfter(SearchRequestBuilder srb, String jiraProjectKey, Date date) {
-		FilterBuilder filterTime = FilterBuilders.rangeFilter("_timestamp").lt(date);
-		FilterBuilder filterProject = FilterBuilders.termFilter(indexFieldForProjectKey, jiraProjectKey);
-		FilterBuilder filterSource = FilterBuilders.termFilter(indexFieldForRiverName, riverName);
-		FilterBuilder filter = FilterBuilders.boolFilter().must(filterTime).must(filterProject).must(filterSource);
+		buildSearchForIndexedDocuments(srb, jiraProjectKey, FilterBuilders.rangeFilter("_timestamp").lt(date));
+	}
+
+	@Override
+	public void buildSearchForIndexedDocuments(SearchRequestBuilder srb, String jiraProjectKey) {
+		buildSearchForIndexedDocuments(srb, jiraProjectKey, null);
+		srb.addField(indexFieldForIssueKey);
+	}
+
+	/**
+	 * Construct search request to find issues, comment and changelog indexed documents for given JIRA project.
+	 * 
+	 * @param srb search request builder to add necessary conditions into
+	 * @param jiraProjectKey key of jira project to search documents for
+	 * @param additionalFilter filter documents must match too, can be <code>null</code>
+	 */
+	private void buildSearchForIndexedDocuments(SearchRequestBuilder srb, String jiraProjectKey,
+			FilterBuilder additionalFilter) {
+		BoolFilterBuilder filter = FilterBuilders.boolFilter();
+		if (additionalFilter != null)
+			filter.must(additionalFilter);
+		filter.must(FilterBuilders.termFilter(indexFieldForProjectKey, jiraProjectKey));
+		filter.must(FilterBuilders.termFilter(indexFieldForRiverName, riverName));
 		srb.setQuery(QueryBuilders.matchAllQuery()).addField("_id").setPostFilter(filter);
+		String routing = prepareRouting(jiraProjectKey);
+		if (routing != null) {
+			// only shard with documents of the project is searched, routing is returned to be used for delete
+			srb.setRouting(routing).addField(FIELD_ROUTING);
+		}
 		Set<String> st = new LinkedHashSet<String>();
 		st.add(issueTypeName);
 		if (commentIndexingMode.isExtraDocumentIndexed())
@@ -473,9 +851,23 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 		srb.setTypes(st.toArray(new String[st.size()]));
 	}
 
+	@Override
+	public String extractIssueKeyFromIndexedDocument(SearchHit indexedDocument) {
+		SearchHitField field = indexedDocument.field(indexFieldForIssueKey);
+		if (field != null && field.getValue() != null)
+			return field.getValue().toString();
+		return null;
+	}
+
 	@Override
 	public boolean deleteIssueDocument(BulkRequestBuilder esBulk, SearchHit documentToDelete) throws Exception {
-		esBulk.add(deleteRequest(indexName).type(documentToDelete.getType()).id(documentToDelete.getId()));
+		// document is deleted from concrete index it was found in if more indices are used
+		String index = indexNamingStrategy == IndexNamingStrategy.SINGLE ? indexName : documentToDelete.getIndex();
+		DeleteRequest drq = deleteRequest(index).type(documentToDelete.getType()).id(documentToDelete.getId());
+		SearchHitField routing = documentToDelete.field(FIELD_ROUTING);
+		if (routing != null && routing.getValue() != null)
+			drq.routing(routing.getValue().toString());
+		esBulk.add(drq);
 		return issueTypeName.equals(documentToDelete.getType());
 	}
 
@@ -489,18 +881,30 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 	 */
 	protected XContentBuilder prepareIssueIndexedDocument(String jiraProjectKey, Map<String, Object> issue)
 			throws Exception {
+		return prepareIssueIndexedDocument(jiraProjectKey, issue, null);
+	}
+
+	/**
+	 * Convert JIRA returned REST data into JSON document to be stored in search index.
+	 * 
+	 * @param jiraProjectKey key of jira project document is for.
+	 * @param issue issue data from JIRA REST call
+	 * @param arena to write document into, can be <code>null</code>
+	 * @return JSON builder with issue document for index
+	 * @throws Exception
+	 */
+	protected XContentBuilder prepareIssueIndexedDocument(String jiraProjectKey, Map<String, Object> issue,
+			DocumentArena arena) throws Exception {
 		String issueKey = extractIssueKey(issue);
 
-		XContentBuilder out = jsonBuilder().startObject();
+		XContentBuilder out = startDocument(arena).startObject();
 		addValueToTheIndexField(out, indexFieldForRiverName, riverName);
 		addValueToTheIndexField(out, indexFieldForProjectKey, jiraProjectKey);
 		addValueToTheIndexField(out, indexFieldForIssueKey, issueKey);
 		addValueToTheIndexField(out, indexFieldForJiraURL, prepareJIRAGUIUrl(issueKey, null));
 
-		for (String indexFieldName : fieldsConfig.keySet()) {
-			Map<String, String> fieldConfig = fieldsConfig.get(indexFieldName);
-			addValueToTheIndex(out, indexFieldName, fieldConfig.get(CONFIG_FIELDS_JIRAFIELD), issue,
-					fieldConfig.get(CONFIG_FIELDS_VALUEFILTER));
+		for (IndexFieldExtractor extractor : fieldExtractors) {
+			extractor.writeValue(out, issue);
 		}
 
 		if (commentIndexingMode == IssueCommentIndexingMode.EMBEDDED) {
@@ -527,9 +931,65 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 				out.endArray();
 			}
 		}
+		addExtraDocumentsStateField(out, issue);
+		addContentHashField(out);
 		return out.endObject();
 	}
 
+	/**
+	 * Add state of comments and changelog items indexed as separate documents into issue document, if configured. State
+	 * is array of <code>type/id@updated</code> values, one for each document.
+	 * 
+	 * @param out issue document builder
+	 * @param issue issue data from JIRA REST call
+	 * @throws IOException
+	 * @see #getIndexFieldForExtraDocumentsState()
+	 */
+	protected void addExtraDocumentsStateField(XContentBuilder out, Map<String, Object> issue) throws IOException {
+		String field = getIndexFieldForExtraDocumentsState();
+		if (field == null)
+			return;
+		// empty array is stored too, so documents of removed comments are deleted
+		out.startArray(field);
+		if (commentIndexingMode.isExtraDocumentIndexed()) {
+			List<Map<String, Object>> comments = extractIssueComments(issue);
+			if (comments != null) {
+				for (Map<String, Object> comment : comments) {
+					out.value(prepareExtraDocumentStateValue(commentTypeName, extractCommentId(comment),
+							comment.get(JF_COMMENT_UPDATED)));
+				}
+			}
+		}
+		if (changelogIndexingMode.isExtraDocumentIndexed()) {
+			List<Map<String, Object>> changelogs = extractIssueChangelogs(issue);
+			if (changelogs != null) {
+				for (Map<String, Object> changelog : changelogs) {
+					out.value(prepareExtraDocumentStateValue(changelogTypeName, extractChangelogId(changelog),
+							changelog.get(JF_CHANGELOG_CREATED)));
+				}
+			}
+		}
+		out.endArray();
+	}
+
+	private static String prepareExtraDocumentStateValue(String type, String id, Object updated) {
+		return type + "/" + id + "@" + XContentMapValues.nodeStringValue(updated, "");
+	}
+
+	@Override
+	public void deleteIssueExtraDocument(BulkRequestBuilder esBulk, IndexRequest issueDocumentRequest, String issueKey,
+			String type, String id) throws Exception {
+		DeleteRequest drq = deleteRequest(issueDocumentRequest.index()).type(type).id(id);
+		if (issueDocumentRequest.routing() != null) {
+			drq.routing(issueDocumentRequest.routing());
+		} else if ((commentIndexingMode == IssueCommentIndexingMode.CHILD && type.equals(commentTypeName))
+				|| (changelogIndexingMode == IssueCommentIndexingMode.CHILD && type.equals(changelogTypeName))) {
+			// child documents are routed by parent issue
+			drq.routing(issueKey);
+		}
+		esBulk.add(drq);
+	}
+
 	/**
 	 * Convert JIRA returned REST data into JSON document to be stored in search index for comments in child and
 	 * standalone mode.
@@ -542,21 +1002,36 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 	 */
 	protected XContentBuilder prepareCommentIndexedDocument(String projectKey, String issueKey,
 			Map<String, Object> comment) throws Exception {
-		XContentBuilder out = jsonBuilder().startObject();
+		return prepareCommentIndexedDocument(projectKey, issueKey, comment, null);
+	}
+
+	/**
+	 * Convert JIRA returned REST data into JSON document to be stored in search index for comments in child and
+	 * standalone mode.
+	 * 
+	 * @param projectKey key of jira project document is for.
+	 * @param issueKey this comment is for
+	 * @param comment data from JIRA REST call
+	 * @param arena to write document into, can be <code>null</code>
+	 * @return JSON builder with comment document for index
+	 * @throws Exception
+	 */
+	protected XContentBuilder prepareCommentIndexedDocument(String projectKey, String issueKey,
+			Map<String, Object> comment, DocumentArena arena) throws Exception {
+		XContentBuilder out = startDocument(arena).startObject();
 		addValueToTheIndexField(out, indexFieldForRiverName, riverName);
 		addValueToTheIndexField(out, indexFieldForProjectKey, projectKey);
 		addValueToTheIndexField(out, indexFieldForIssueKey, issueKey);
 		addCommonFieldsToCommentIndexedDocument(out, issueKey, comment);
+		addContentHashField(out);
 		return out.endObject();
 	}
 
-	private void addCommonFieldsToCommentIndexedDocument(XContentBuilder out, String issueKey, Map<String, Object> comment)
-			throws Exception {
+	private void addCommonFieldsToCommentIndexedDocument(XContentBuilder out, String issueKey,
+			Map<String, Object> comment) throws Exception {
 		addValueToTheIndexField(out, indexFieldForJiraURL, prepareJIRAGUIUrl(issueKey, extractCommentId(comment)));
-		for (String indexFieldName : commentFieldsConfig.keySet()) {
-			Map<String, String> commentFieldConfig = commentFieldsConfig.get(indexFieldName);
-			addValueToTheIndex(out, indexFieldName, commentFieldConfig.get(CONFIG_FIELDS_JIRAFIELD), comment,
-					commentFieldConfig.get(CONFIG_FIELDS_VALUEFILTER));
+		for (IndexFieldExtractor extractor : commentFieldExtractors) {
+			extractor.writeValue(out, comment);
 		}
 	}
 
@@ -568,7 +1043,7 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 	 */
 	@SuppressWarnings("unchecked")
 	protected List<Map<String, Object>> extractIssueComments(Map<String, Object> issue) {
-		List<Map<String, Object>> comments = (List<Map<String, Object>>) XContentMapValues.extractValue(JF_COMMENTS, issue);
+		List<Map<String, Object>> comments = (List<Map<String, Object>>) COMMENTS_EXTRACTOR.extractValue(issue);
 		return comments;
 	}
 
@@ -584,21 +1059,36 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 	 */
 	protected XContentBuilder prepareChangelogIndexedDocument(String projectKey, String issueKey,
 			Map<String, Object> changelog) throws Exception {
-		XContentBuilder out = jsonBuilder().startObject();
+		return prepareChangelogIndexedDocument(projectKey, issueKey, changelog, null);
+	}
+
+	/**
+	 * Convert JIRA returned REST data into JSON document to be stored in search index for changelogs in child and
+	 * standalone mode.
+	 * 
+	 * @param projectKey key of jira project document is for.
+	 * @param issueKey this changelog is for
+	 * @param changelog data from JIRA REST call
+	 * @param arena to write document into, can be <code>null</code>
+	 * @return JSON builder with changelog document for index
+	 * @throws Exception
+	 */
+	protected XContentBuilder prepareChangelogIndexedDocument(String projectKey, String issueKey,
+			Map<String, Object> changelog, DocumentArena arena) throws Exception {
+		XContentBuilder out = startDocument(arena).startObject();
 		addValueToTheIndexField(out, indexFieldForRiverName, riverName);
 		addValueToTheIndexField(out, indexFieldForProjectKey, projectKey);
 		addValueToTheIndexField(out, indexFieldForIssueKey, issueKey);
 		addCommonFieldsToChangelogIndexedDocument(out, issueKey, changelog);
+		addContentHashField(out);
 		return out.endObject();
 	}
 
 	private void addCommonFieldsToChangelogIndexedDocument(XContentBuilder out, String issueKey,
 			Map<String, Object> changelog) throws Exception {
 		addValueToTheIndexField(out, indexFieldForJiraURL, prepareJIRAGUIUrl(issueKey, null));
-		for (String indexFieldName : changelogFieldsConfig.keySet()) {
-			Map<String, String> changelogFieldConfig = changelogFieldsConfig.get(indexFieldName);
-			addValueToTheIndex(out, indexFieldName, changelogFieldConfig.get(CONFIG_FIELDS_JIRAFIELD), changelog,
-					changelogFieldConfig.get(CONFIG_FIELDS_VALUEFILTER));
+		for (IndexFieldExtractor extractor : changelogFieldExtractors) {
+			extractor.writeValue(out, changelog);
 		}
 	}
 
@@ -610,8 +1100,7 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 	 */
 	@SuppressWarnings("unchecked")
 	protected List<Map<String, Object>> extractIssueChangelogs(Map<String, Object> issue) {
-		List<Map<String, Object>> changelogs = (List<Map<String, Object>>) XContentMapValues.extractValue(
-				JF_CHANGELOG_ARRAY, issue);
+		List<Map<String, Object>> changelogs = (List<Map<String, Object>>) CHANGELOGS_EXTRACTOR.extractValue(issue);
 		return changelogs;
 	}
 
@@ -668,35 +1157,12 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 	 *          {@link Utils#remapDataInMap(Map, Map)}. No filtering performed if this is <code>null</code>.
 	 * @throws Exception
 	 */
-	@SuppressWarnings("unchecked")
 	protected void addValueToTheIndex(XContentBuilder out, String indexField, String valuePath,
 			Map<String, Object> values, Map<String, String> valueFieldFilter) throws Exception {
 		if (values == null) {
 			return;
 		}
-		Object v = null;
-		if (valuePath.contains(".")) {
-			v = XContentMapValues.extractValue(valuePath, values);
-		} else {
-			v = values.get(valuePath);
-		}
-		if (v != null && valueFieldFilter != null && !valueFieldFilter.isEmpty()) {
-			if (v instanceof Map) {
-				Utils.remapDataInMap((Map<String, Object>) v, valueFieldFilter);
-			} else if (v instanceof List) {
-				for (Object o : (List<?>) v) {
-					if (o instanceof Map) {
-						Utils.remapDataInMap((Map<String, Object>) o, valueFieldFilter);
-					} else {
-						logger.warn("Filter defined for field which is not filterable - jira array field '{}' with value: {}",
-								valuePath, v);
-					}
-				}
-			} else {
-				logger.warn("Filter defined for field which is not filterable - jira field '{}' with value: {}", valuePath, v);
-			}
-		}
-		addValueToTheIndexField(out, indexField, v);
+		new IndexFieldExtractor(indexField, valuePath, valueFieldFilter).writeValue(out, values);
 	}
 
 	/**
@@ -714,6 +1180,32 @@ public class JIRA5RestIssueIndexStructureBuilder implements IJIRAIssueIndexStruc
 			out.field(indexField, value);
 	}
 
+	/**
+	 * Add hash of document content written into builder so far into {@link #indexFieldForContentHash} field, if
+	 * configured. Hash is stable for the same content, so it can be used to detect documents not changed since last
+	 * indexing.
+	 * 
+	 * @param out content builder to add field into, positioned inside of the document object
+	 * @throws Exception
+	 */
+	protected void addContentHashField(XContentBuilder out) throws Exception {
+		if (indexFieldForContentHash == null)
+			return;
+		out.flush();
+		BytesReference content = null;
+		if (out.stream() instanceof DocumentArena)
+			content = ((DocumentArena) out.stream()).documentBytes();
+		else
+			content = ((BytesStream) out.stream()).bytes();
+		MessageDigest digest = MessageDigest.getInstance("SHA-1");
+		if (content.hasArray()) {
+			digest.update(content.array(), content.arrayOffset(), content.length());
+		} else {
+			digest.update(content.toBytes());
+		}
+		out.field(indexFieldForContentHash, Base64.encodeBytes(digest.digest()));
+	}
+
 	/**
 	 * Get name of JIRA field used in REST call from full jira field name.
 	 * 
@@ -0,0 +1,145 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+/**
+ * Controller of number of issues requested from JIRA by one search REST call (page size). Page size is maintained per
+ * JIRA project and adapted after each call within configured bounds:
+ * <ul>
+ * <li>halved when JIRA call timed out
+ * <li>decreased by quarter when JIRA response took longer than target latency
+ * <li>increased by quarter when full page was returned faster than half of target latency
+ * <li>limited so expected response size (given by observed bytes per issue) is under {@link #TARGET_RESPONSE_BYTES}
+ * </ul>
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class JIRAPageSizeController {
+
+	private static final ESLogger logger = Loggers.getLogger(JIRAPageSizeController.class);
+
+	/**
+	 * Maximal expected size of one JIRA search response in bytes (uncompressed).
+	 */
+	protected static final long TARGET_RESPONSE_BYTES = 4 * 1024 * 1024;
+
+	protected final int min;
+
+	protected final int max;
+
+	protected final int initial;
+
+	protected final long targetLatency;
+
+	/**
+	 * Current page size for JIRA project keys.
+	 */
+	protected final ConcurrentMap<String, Integer> pageSizes = new ConcurrentHashMap<String, Integer>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param min minimal page size
+	 * @param max maximal page size
+	 * @param initial page size used for first call for each project, trimmed into bounds
+	 * @param targetLatency JIRA response time in milliseconds page size is adapted to
+	 */
+	public JIRAPageSizeController(int min, int max, int initial, long targetLatency) {
+		if (min < 1 || max < min) {
+			throw new IllegalArgumentException("Bad page size bounds: min=" + min + ", max=" + max);
+		}
+		this.min = min;
+		this.max = max;
+		this.initial = trim(initial);
+		this.targetLatency = targetLatency;
+	}
+
+	/**
+	 * Get page size to be used for next JIRA call for given project.
+	 *
+	 * @param projectKey key of JIRA project
+	 * @return page size
+	 */
+	public int getPageSize(String projectKey) {
+		Integer ret = pageSizes.get(projectKey);
+		if (ret == null)
+			return initial;
+		return ret;
+	}
+
+	/**
+	 * Adapt page size of project for successful JIRA call.
+	 *
+	 * @param projectKey key of JIRA project call was for
+	 * @param pageSize page size used for call (as returned by JIRA in <code>maxResults</code>)
+	 * @param issuesCount number of issues returned by call
+	 * @param latency of JIRA call in milliseconds
+	 * @param bytes size of JIRA response in bytes, 0 if not known
+	 */
+	public void onResponse(String projectKey, int pageSize, int issuesCount, long latency, long bytes) {
+		if (pageSize <= 0)
+			pageSize = getPageSize(projectKey);
+		int newSize = pageSize;
+		if (latency > targetLatency) {
+			newSize = pageSize * 3 / 4;
+		} else if (issuesCount >= pageSize && latency < targetLatency / 2) {
+			newSize = pageSize + pageSize / 4 + 1;
+		}
+		if (bytes > 0 && issuesCount > 0) {
+			long bytesPerIssue = Math.max(1, bytes / issuesCount);
+			newSize = (int) Math.min(newSize, TARGET_RESPONSE_BYTES / bytesPerIssue);
+		}
+		setPageSize(projectKey, newSize);
+	}
+
+	/**
+	 * Adapt page size of project for JIRA call which timed out.
+	 *
+	 * @param projectKey key of JIRA project call was for
+	 */
+	public void onTimeout(String projectKey) {
+		setPageSize(projectKey, getPageSize(projectKey) / 2);
+	}
+
+	protected void setPageSize(String projectKey, int pageSize) {
+		pageSize = trim(pageSize);
+		Integer old = pageSizes.put(projectKey, pageSize);
+		if (logger.isDebugEnabled() && (old == null || old.intValue() != pageSize)) {
+			logger.debug("JIRA page size for project {} changed to {}", projectKey, pageSize);
+		}
+	}
+
+	private int trim(int pageSize) {
+		return Math.max(min, Math.min(max, pageSize));
+	}
+
+	/**
+	 * Write current page sizes into object named <code>page_size</code> in given builder.
+	 *
+	 * @param builder to write into
+	 * @return builder for chaining
+	 * @throws IOException
+	 */
+	public XContentBuilder buildDocument(XContentBuilder builder) throws IOException {
+		builder.startObject("page_size");
+		for (Map.Entry<String, Integer> e : new TreeMap<String, Integer>(pageSizes).entrySet()) {
+			builder.field(e.getKey(), e.getValue());
+		}
+		builder.endObject();
+		return builder;
+	}
+
+}
@@ -6,14 +6,47 @@
 package org.jboss.elasticsearch.river.jira;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.get.GetField;
 import org.elasticsearch.search.SearchHit;
 
 /**
@@ -48,6 +81,83 @@ public class JIRAProjectIndexer implements Runnable {
 	 */
 	protected final String projectKey;
 
+	/**
+	 * Maximal number of pages of updated issues requested from JIRA in advance while previous page is indexed. 0 means
+	 * no prefetch, next page is requested after previous page is indexed.
+	 */
+	protected int prefetchDepth = 0;
+
+	/**
+	 * Number of time windows update history is split into during full update, each window is indexed separately. 0 or 1
+	 * means no split.
+	 */
+	protected int fullUpdateSlices = 0;
+
+	/**
+	 * Maximal number of threads used to index time windows in parallel during full update.
+	 * 
+	 * @see #fullUpdateSlices
+	 */
+	protected int fullUpdateSliceThreads = 1;
+
+	/**
+	 * If <code>true</code> then issues updated in the same minute which do not fit into one page are paged over by issue
+	 * key instead of <code>startAt</code> offset.
+	 * 
+	 * @see JIRAPagePosition#keysetPagination
+	 */
+	protected boolean keysetPagination = false;
+
+	/**
+	 * Maximal number of bulk requests executed in parallel by {@link BulkPipeline}. 0 means no pipeline, one bulk
+	 * request is executed for each page of issues and indexing waits for its response.
+	 */
+	protected int bulkConcurrentRequests = 0;
+
+	/**
+	 * Maximal number of actions in one bulk request executed by {@link BulkPipeline}.
+	 */
+	protected int bulkMaxActions = 1000;
+
+	/**
+	 * Maximal size of one bulk request executed by {@link BulkPipeline} [bytes].
+	 */
+	protected long bulkMaxBytes = 5 * 1024 * 1024;
+
+	/**
+	 * Maximal time actions are collected into one bulk request by {@link BulkPipeline} [ms].
+	 */
+	protected long bulkFlushInterval = 5 * 1000;
+
+	/**
+	 * If <code>true</code> then documents of issues deleted from JIRA are removed from search index after incremental
+	 * update.
+	 * 
+	 * @see #processDeleteSync()
+	 */
+	protected boolean deleteSync = false;
+
+	/**
+	 * Controller of load put on ElasticSearch cluster by bulk requests, <code>null</code> if rejected items are not
+	 * retried and bulk requests are not adapted to cluster load.
+	 */
+	protected ESBulkLoadController bulkLoadController;
+
+	/**
+	 * Pipeline used to execute bulk requests during current update, <code>null</code> if not used.
+	 */
+	protected BulkPipeline bulkPipeline;
+
+	/**
+	 * How long to wait for prefetched page before check if river is closed [ms].
+	 */
+	protected static final long PREFETCH_POLL_TIMEOUT = 500;
+
+	/**
+	 * How long to wait for bulk request permit before check if some retry of rejected items is due [ms].
+	 */
+	protected static final long RETRY_POLL_TIMEOUT = 50;
+
 	/**
 	 * Time when indexing started.
 	 */
@@ -58,6 +168,30 @@ public class JIRAProjectIndexer implements Runnable {
 	 */
 	protected ProjectIndexingInfo indexingInfo;
 
+	/**
+	 * Type and id of all documents prepared for issues obtained from JIRA during full update where documents with
+	 * unchanged content are not rewritten. <code>null</code> if unchanged documents are rewritten.
+	 * 
+	 * @see #removeUnchangedDocuments(BulkRequestBuilder, String)
+	 * @see #processDelete(Date)
+	 */
+	protected DocumentIdSet indexedDocumentIds;
+
+	/**
+	 * Name of field in issue documents with state of comments and changelog items indexed as separate documents, used
+	 * during incremental update to index only changed ones. <code>null</code> if all of them are indexed again.
+	 * 
+	 * @see #removeUnchangedExtraDocuments(BulkRequestBuilder, Map, String)
+	 */
+	protected String extraDocumentsStateField;
+
+	/**
+	 * Names of indices already added into alias during this indexing run.
+	 * 
+	 * @see #addIndicesToAlias(BulkRequestBuilder)
+	 */
+	protected Set<String> aliasedIndices = Collections.synchronizedSet(new HashSet<String>());
+
 	/**
 	 * Create and configure indexer.
 	 * 
@@ -85,6 +219,7 @@ public class JIRAProjectIndexer implements Runnable {
 		try {
 			processUpdate();
 			processDelete(new Date(startTime));
+			processDeleteSync();
 			indexingInfo.timeElapsed = (System.currentTimeMillis() - startTime);
 			indexingInfo.finishedOK = true;
 			esIntegrationComponent.reportIndexingFinished(indexingInfo);
@@ -105,6 +240,15 @@ public class JIRAProjectIndexer implements Runnable {
 		}
 	}
 
+	/**
+	 * Clear cache of JIRA objects used by issue data reader, so changes of them are indexed by full update.
+	 */
+	protected void clearValueCache() {
+		IssueDataReader reader = jiraIssueIndexStructureBuilder.getIssueDataReader();
+		if (reader != null && reader.getValueCache() != null)
+			reader.getValueCache().clear();
+	}
+
 	/**
 	 * Process update of search index for configured JIRA project. A {@link #updatedCount} field is updated inside of this
 	 * method. A {@link #fullUpdate} field can be updated inside of this method.
@@ -120,80 +264,1281 @@ public class JIRAProjectIndexer implements Runnable {
 		Date updatedAfterStarting = updatedAfter;
 		if (updatedAfter == null)
 			indexingInfo.fullUpdate = true;
-		Date lastIssueUpdatedDate = null;
-
-		int startAt = 0;
+		if (indexingInfo.fullUpdate && jiraIssueIndexStructureBuilder.getIndexFieldForContentHash() != null)
+			indexedDocumentIds = new DocumentIdSet(projectKey);
+		if (indexingInfo.fullUpdate)
+			clearValueCache();
+		if (!indexingInfo.fullUpdate)
+			extraDocumentsStateField = jiraIssueIndexStructureBuilder.getIndexFieldForExtraDocumentsState();
 
 		logger.info("Go to perform {} update for JIRA project {}", indexingInfo.fullUpdate ? "full" : "incremental",
 				projectKey);
 
-		boolean cont = true;
-		while (cont) {
+		Date lastIssueUpdatedDate = null;
+		if (bulkConcurrentRequests > 0)
+			bulkPipeline = new BulkPipeline(bulkConcurrentRequests, bulkMaxActions, bulkMaxBytes, bulkFlushInterval);
+		try {
+			if (indexingInfo.fullUpdate && fullUpdateSlices > 1) {
+				lastIssueUpdatedDate = processUpdateSliced();
+			} else if (prefetchDepth > 0) {
+				lastIssueUpdatedDate = processUpdatePagesPrefetched(preparePagePosition(updatedAfter, null));
+			} else {
+				lastIssueUpdatedDate = processUpdatePages(preparePagePosition(updatedAfter, null));
+			}
+			if (bulkPipeline != null)
+				bulkPipeline.close();
+		} finally {
+			bulkPipeline = null;
+		}
+
+		if (indexingInfo.issuesUpdated > 0 && lastIssueUpdatedDate != null && updatedAfterStarting != null
+				&& updatedAfterStarting.equals(lastIssueUpdatedDate)) {
+			// no any new issue during this update cycle, go to increment lastIssueUpdatedDate in store by one minute not to
+			// index last issue again and again in next cycle - this is here due JQL minute precise on timestamp search
+			storeLastIssueUpdatedDate(null, projectKey,
+					DateTimeUtils.roundDateTimeToMinutePrecise(new Date(lastIssueUpdatedDate.getTime() + 64 * 1000)));
+		}
+	}
+
+	/**
+	 * Go over pages of updated issues from JIRA and index them. Next page is requested from JIRA after previous page is
+	 * indexed.
+	 * 
+	 * @param position to start paging from
+	 * @return updated date of last indexed issue, <code>null</code> if no any issue was indexed
+	 * @throws Exception
+	 */
+	protected Date processUpdatePages(JIRAPagePosition position) throws Exception {
+		Date lastIssueUpdatedDate = null;
+		while (position.cont) {
 			if (isClosed())
 				throw new InterruptedException("Interrupted because River is closed");
 
-			if (logger.isDebugEnabled())
-				logger.debug("Go to ask for updated JIRA issues for project {} with startAt {} updated {}", projectKey,
-						startAt, (updatedAfter != null ? ("after " + updatedAfter) : "in whole history"));
+			ChangedIssuesResults res = getJIRAChangedIssuesPage(position);
+			try {
+				Date pageLastIssueUpdatedDate = indexIssuesPage(res, position, true);
+				if (pageLastIssueUpdatedDate != null)
+					lastIssueUpdatedDate = pageLastIssueUpdatedDate;
+			} finally {
+				res.close();
+			}
+		}
+		return lastIssueUpdatedDate;
+	}
+
+	/**
+	 * Go over pages of updated issues from JIRA and index them. Next pages are requested from JIRA by
+	 * {@link JIRAPagePrefetcher} running in another thread while previous page is indexed, up to {@link #prefetchDepth}
+	 * pages in advance. Pages are indexed in the same order as with {@link #processUpdatePages(JIRAPagePosition)}, so
+	 * "last indexed issue update date" checkpoint semantic is kept.
+	 * 
+	 * @param position to start paging from
+	 * @return updated date of last indexed issue, <code>null</code> if no any issue was indexed
+	 * @throws Exception
+	 */
+	protected Date processUpdatePagesPrefetched(JIRAPagePosition position) throws Exception {
+		if (jiraClient instanceof IJIRAAsyncClient) {
+			return processUpdatePagesAsync(position, (IJIRAAsyncClient) jiraClient);
+		}
+		Date lastIssueUpdatedDate = null;
+		JIRAPagePrefetcher prefetcher = new JIRAPagePrefetcher(position, prefetchDepth);
+		Thread prefetcherThread = esIntegrationComponent.acquireIndexingThread("jira_river_prefetcher_" + projectKey,
+				prefetcher);
+		prefetcher.thread = prefetcherThread;
+		prefetcherThread.start();
+		try {
+			ChangedIssuesResults res = null;
+			while ((res = prefetcher.nextPage()) != null) {
+				Date pageLastIssueUpdatedDate = indexIssuesPage(res, null, true);
+				if (pageLastIssueUpdatedDate != null)
+					lastIssueUpdatedDate = pageLastIssueUpdatedDate;
+			}
+		} finally {
+			prefetcher.stop();
+		}
+		return lastIssueUpdatedDate;
+	}
+
+	/**
+	 * Process full update of search index for configured JIRA project with update history split into
+	 * {@link #fullUpdateSlices} time windows indexed in parallel by up to {@link #fullUpdateSliceThreads} threads. Windows
+	 * do not store "last indexed issue update date" checkpoint as they are indexed in random order. It is stored when all
+	 * windows are indexed, and then issues updated during indexing are indexed by normal sequential paging, so issues
+	 * moved between windows due update in JIRA are not lost and {@link #processDelete(Date)} works correctly.
+	 * 
+	 * @return updated date of last indexed issue, <code>null</code> if no any issue was indexed
+	 * @throws Exception
+	 */
+	protected Date processUpdateSliced() throws Exception {
+		Date firstIssueUpdatedDate = null;
+		ChangedIssuesResults res = getJIRAChangedIssuesPage(new JIRAPagePosition(null));
+		try {
+			Map<String, Object> issue = res.nextIssue();
+			if (issue != null)
+				firstIssueUpdatedDate = extractIssueUpdatedDate(jiraIssueIndexStructureBuilder.extractIssueKey(issue), issue);
+		} finally {
+			res.close();
+		}
+		if (firstIssueUpdatedDate == null)
+			return null;
 
-			ChangedIssuesResults res = jiraClient.getJIRAChangedIssues(projectKey, startAt, updatedAfter, null);
+		List<JIRAPagePosition> windows = prepareUpdateSlices(firstIssueUpdatedDate,
+				DateTimeUtils.roundDateTimeToMinutePrecise(getCurrentDate()), fullUpdateSlices);
+		for (JIRAPagePosition window : windows) {
+			window.keysetPagination = keysetPagination;
+		}
+		Date windowsEnd = windows.get(windows.size() - 1).updatedBefore;
+		logger.debug("Go to perform full update for JIRA project {} in {} time windows from {} to {}", projectKey,
+				windows.size(), firstIssueUpdatedDate, windowsEnd);
 
-			if (res.getIssuesCount() == 0) {
-				cont = false;
-			} else {
-				if (isClosed())
-					throw new InterruptedException("Interrupted because River is closed");
+		UpdateSlicesTask task = new UpdateSlicesTask(windows);
+		int threadsCount = Math.min(windows.size(), Math.max(1, fullUpdateSliceThreads));
+		List<Thread> threads = new ArrayList<Thread>();
+		try {
+			for (int i = 0; i < threadsCount; i++) {
+				Thread t = esIntegrationComponent.acquireIndexingThread("jira_river_indexer_" + projectKey + "_slice_" + i,
+						task);
+				threads.add(t);
+				t.start();
+			}
+			for (Thread t : threads) {
+				t.join();
+			}
+		} finally {
+			task.stopped = true;
+			for (Thread t : threads) {
+				t.interrupt();
+			}
+		}
+		Throwable e = task.error;
+		if (e instanceof Exception)
+			throw (Exception) e;
+		else if (e != null)
+			throw new Exception(e.getMessage(), e);
 
-				Date firstIssueUpdatedDate = null;
-				BulkRequestBuilder esBulk = esIntegrationComponent.prepareESBulkRequestBuilder();
-				for (Map<String, Object> issue : res.getIssues()) {
-					String issueKey = jiraIssueIndexStructureBuilder.extractIssueKey(issue);
-					if (issueKey == null) {
-						throw new IllegalArgumentException("Issue 'key' field not found in JIRA response for project " + projectKey
-								+ " within issue data: " + issue);
-					}
-					lastIssueUpdatedDate = DateTimeUtils.roundDateTimeToMinutePrecise(jiraIssueIndexStructureBuilder
-							.extractIssueUpdated(issue));
-					logger.debug("Go to update index for issue {} with updated {}", issueKey, lastIssueUpdatedDate);
-					if (lastIssueUpdatedDate == null) {
-						throw new IllegalArgumentException("'updated' field not found in JIRA response data for issue " + issueKey);
+		// merge checkpoints of windows
+		Date lastIssueUpdatedDate = task.lastIssueUpdatedDate;
+		if (lastIssueUpdatedDate != null) {
+			if (bulkPipeline != null)
+				bulkPipeline.add(null, lastIssueUpdatedDate);
+			else
+				storeLastIssueUpdatedDate(null, projectKey, lastIssueUpdatedDate);
+		}
+
+		// index issues updated during windows indexing
+		Date catchUpLastIssueUpdatedDate = processUpdatePages(preparePagePosition(windowsEnd, null));
+		if (catchUpLastIssueUpdatedDate != null)
+			lastIssueUpdatedDate = catchUpLastIssueUpdatedDate;
+		return lastIssueUpdatedDate;
+	}
+
+	/**
+	 * Prepare position to start paging over updated issues from, configured by this indexer.
+	 * 
+	 * @param updatedAfter date to request issues updated after, <code>null</code> means whole history
+	 * @param updatedBefore date to request issues updated before, <code>null</code> means no limit
+	 * @return position
+	 */
+	protected JIRAPagePosition preparePagePosition(Date updatedAfter, Date updatedBefore) {
+		JIRAPagePosition ret = new JIRAPagePosition(updatedAfter, updatedBefore);
+		ret.keysetPagination = keysetPagination;
+		return ret;
+	}
+
+	/**
+	 * Split update history into disjoint time windows of the same length. Windows are minute precise due JQL limitations.
+	 * 
+	 * @param start minute precise date to start first window at
+	 * @param end minute precise date to end last window at
+	 * @param slices requested number of windows
+	 * @return list of windows, at least one, less than requested if history is too short
+	 */
+	protected static List<JIRAPagePosition> prepareUpdateSlices(Date start, Date end, int slices) {
+		long minutes = Math.max(1, (end.getTime() - start.getTime()) / MINUTE);
+		long windowMinutes = (minutes + slices - 1) / slices;
+		List<JIRAPagePosition> ret = new ArrayList<JIRAPagePosition>();
+		long windowStart = start.getTime();
+		while (windowStart < end.getTime() || ret.isEmpty()) {
+			long windowEnd = Math.min(windowStart + windowMinutes * MINUTE, Math.max(end.getTime(), start.getTime() + MINUTE));
+			ret.add(new JIRAPagePosition(new Date(windowStart), new Date(windowEnd)));
+			windowStart = windowEnd;
+		}
+		return ret;
+	}
+
+	private static final long MINUTE = 60 * 1000;
+
+	/**
+	 * Get current date used to end time windows of full update. Unit tests may override it.
+	 * 
+	 * @return current date
+	 */
+	protected Date getCurrentDate() {
+		return new Date();
+	}
+
+	/**
+	 * Task indexing time windows of update history. Can be run by more threads in parallel, each takes next window to
+	 * index from common queue.
+	 */
+	protected class UpdateSlicesTask implements Runnable {
+
+		private final Queue<JIRAPagePosition> windows;
+
+		protected volatile boolean stopped = false;
+
+		protected volatile Throwable error;
+
+		/**
+		 * Maximal updated date of issues indexed in all windows.
+		 */
+		protected Date lastIssueUpdatedDate;
+
+		protected UpdateSlicesTask(List<JIRAPagePosition> windows) {
+			this.windows = new ConcurrentLinkedQueue<JIRAPagePosition>(windows);
+		}
+
+		@Override
+		public void run() {
+			try {
+				JIRAPagePosition position = null;
+				while (!stopped && (position = windows.poll()) != null) {
+					logger.debug("Go to index JIRA project {} issues updated from {} to {}", projectKey,
+							position.updatedAfter, position.updatedBefore);
+					Date windowLastIssueUpdatedDate = null;
+					while (position.cont) {
+						if (isClosed())
+							throw new InterruptedException("Interrupted because River is closed");
+						if (stopped)
+							return;
+						ChangedIssuesResults res = getJIRAChangedIssuesPage(position);
+						try {
+							Date pageLastIssueUpdatedDate = indexIssuesPage(res, position, false);
+							if (pageLastIssueUpdatedDate != null)
+								windowLastIssueUpdatedDate = pageLastIssueUpdatedDate;
+						} finally {
+							res.close();
+						}
 					}
-					if (firstIssueUpdatedDate == null) {
-						firstIssueUpdatedDate = lastIssueUpdatedDate;
+					mergeLastIssueUpdatedDate(windowLastIssueUpdatedDate);
+				}
+			} catch (Throwable e) {
+				if (!stopped) {
+					error = e;
+					stopped = true;
+				}
+			}
+		}
+
+		private synchronized void mergeLastIssueUpdatedDate(Date windowLastIssueUpdatedDate) {
+			if (windowLastIssueUpdatedDate != null
+					&& (lastIssueUpdatedDate == null || lastIssueUpdatedDate.before(windowLastIssueUpdatedDate)))
+				lastIssueUpdatedDate = windowLastIssueUpdatedDate;
+		}
+	}
+
+	/**
+	 * Go over pages of updated issues from JIRA and index them. Next pages are requested from JIRA over non-blocking
+	 * client as soon as their position is known, so no additional thread is necessary to download up to
+	 * {@link #prefetchDepth} pages in advance while previous page is indexed.
+	 * 
+	 * @param position to start paging from
+	 * @param asyncClient non-blocking JIRA client to be used
+	 * @return updated date of last indexed issue, <code>null</code> if no any issue was indexed
+	 * @throws Exception
+	 * @see #processUpdatePagesPrefetched(JIRAPagePosition)
+	 */
+	protected Date processUpdatePagesAsync(JIRAPagePosition position, IJIRAAsyncClient asyncClient) throws Exception {
+		Date lastIssueUpdatedDate = null;
+		LinkedList<ChangedIssuesResults> pages = new LinkedList<ChangedIssuesResults>();
+		Future<ChangedIssuesResults> pending = getJIRAChangedIssuesPageAsync(position, asyncClient);
+		try {
+			while (pending != null || !pages.isEmpty()) {
+				// take over all already downloaded pages so next page is requested from JIRA as soon as possible
+				while (pending != null && (pages.isEmpty() || (pages.size() < prefetchDepth && pending.isDone()))) {
+					if (isClosed())
+						throw new InterruptedException("Interrupted because River is closed");
+					ChangedIssuesResults page = null;
+					try {
+						page = readIssuesPage(pending.get(), position);
+					} catch (ExecutionException e) {
+						if (e.getCause() instanceof Exception)
+							throw (Exception) e.getCause();
+						throw e;
 					}
+					pending = position.cont ? getJIRAChangedIssuesPageAsync(position, asyncClient) : null;
+					if (page != null)
+						pages.add(page);
+				}
+				if (!pages.isEmpty()) {
+					Date pageLastIssueUpdatedDate = indexIssuesPage(pages.removeFirst(), null, true);
+					if (pageLastIssueUpdatedDate != null)
+						lastIssueUpdatedDate = pageLastIssueUpdatedDate;
+				}
+			}
+		} finally {
+			if (pending != null)
+				pending.cancel(true);
+		}
+		return lastIssueUpdatedDate;
+	}
+
+	/**
+	 * Asynchronously get page of updated issues from JIRA for given position.
+	 * 
+	 * @param position to get page for
+	 * @param asyncClient non-blocking JIRA client to be used
+	 * @return future page of issues. Page must be closed by caller!
+	 * @throws Exception
+	 */
+	protected Future<ChangedIssuesResults> getJIRAChangedIssuesPageAsync(JIRAPagePosition position,
+			IJIRAAsyncClient asyncClient) throws Exception {
+		if (position.keysetMinute != null) {
+			logger.debug("Go to asynchronously ask for JIRA issues for project {} updated in {} after issue {}", projectKey,
+					position.keysetMinute, position.afterIssueKey);
+			return asyncClient.getJIRAChangedIssuesAfterKeyAsync(projectKey, position.keysetMinute, position.afterIssueKey);
+		}
+		if (logger.isDebugEnabled())
+			logger.debug("Go to asynchronously ask for updated JIRA issues for project {} with startAt {} updated {}",
+					projectKey, position.startAt, (position.updatedAfter != null ? ("after " + position.updatedAfter)
+							: "in whole history"));
+		return asyncClient.getJIRAChangedIssuesAsync(projectKey, position.startAt, position.updatedAfter,
+				position.updatedBefore);
+	}
+
+	/**
+	 * Read whole page of issues obtained from JIRA into memory and move position after it.
+	 * 
+	 * @param res page of issues obtained from JIRA, closed by this method
+	 * @param position to be moved after this page
+	 * @return page with issues read into memory, <code>null</code> if page is empty
+	 * @throws Exception
+	 */
+	protected ChangedIssuesResults readIssuesPage(ChangedIssuesResults res, JIRAPagePosition position) throws Exception {
+		List<Map<String, Object>> issues = new ArrayList<Map<String, Object>>();
+		Date firstIssueUpdatedDate = null;
+		Date lastIssueUpdatedDate = null;
+		String lastIssueKey = null;
+		try {
+			Map<String, Object> issue = null;
+			while ((issue = res.nextIssue()) != null) {
+				issues.add(issue);
+				lastIssueKey = jiraIssueIndexStructureBuilder.extractIssueKey(issue);
+				lastIssueUpdatedDate = extractIssueUpdatedDate(lastIssueKey, issue);
+				if (firstIssueUpdatedDate == null)
+					firstIssueUpdatedDate = lastIssueUpdatedDate;
+			}
+		} finally {
+			res.close();
+		}
+		position.moveAfterPage(res, firstIssueUpdatedDate, lastIssueUpdatedDate, lastIssueKey);
+		if (issues.isEmpty())
+			return null;
+		return new ChangedIssuesResults(issues, res.getStartAt(), res.getMaxResults(), res.getTotal());
+	}
+
+	/**
+	 * Get page of updated issues from JIRA for given position.
+	 * 
+	 * @param position to get page for
+	 * @return page of issues. Must be closed by caller!
+	 * @throws Exception
+	 */
+	protected ChangedIssuesResults getJIRAChangedIssuesPage(JIRAPagePosition position) throws Exception {
+		if (position.keysetMinute != null) {
+			logger.debug("Go to ask for JIRA issues for project {} updated in {} after issue {}", projectKey,
+					position.keysetMinute, position.afterIssueKey);
+			return jiraClient.getJIRAChangedIssuesAfterKey(projectKey, position.keysetMinute, position.afterIssueKey);
+		}
+		if (logger.isDebugEnabled())
+			logger.debug("Go to ask for updated JIRA issues for project {} with startAt {} updated {}", projectKey,
+					position.startAt, (position.updatedAfter != null ? ("after " + position.updatedAfter)
+							: "in whole history"));
+		return jiraClient.getJIRAChangedIssues(projectKey, position.startAt, position.updatedAfter,
+				position.updatedBefore);
+	}
 
-					jiraIssueIndexStructureBuilder.indexIssue(esBulk, projectKey, issue);
-					indexingInfo.issuesUpdated++;
+	/**
+	 * Index one page of issues obtained from JIRA. All issues from page are indexed in one ES bulk request together with
+	 * "last indexed issue update date" checkpoint if requested.
+	 * 
+	 * @param res page of issues to index
+	 * @param position if not <code>null</code> then it is moved after this page so next page can be requested from JIRA.
+	 * @param storeCheckpoint if <code>true</code> then "last indexed issue update date" is stored with page
+	 * @return updated date of last issue in page, <code>null</code> if page is empty
+	 * @throws Exception
+	 */
+	protected Date indexIssuesPage(ChangedIssuesResults res, JIRAPagePosition position, boolean storeCheckpoint)
+			throws Exception {
+		Date firstIssueUpdatedDate = null;
+		Date lastIssueUpdatedDate = null;
+		String lastIssueKey = null;
+		BulkRequestBuilder esBulk = null;
+		int issuesUpdated = 0;
+		// position of issue document request in bulk and issue key
+		Map<Integer, String> issueRequests = extraDocumentsStateField != null ? new LinkedHashMap<Integer, String>() : null;
+		try {
+			Map<String, Object> issue = null;
+			// issues are read one by one, so results streamed from JIRA are never kept in memory at once
+			while ((issue = res.nextIssue()) != null) {
+				if (esBulk == null) {
 					if (isClosed())
 						throw new InterruptedException("Interrupted because River is closed");
+					esBulk = esIntegrationComponent.prepareESBulkRequestBuilder();
+				}
+				String issueKey = jiraIssueIndexStructureBuilder.extractIssueKey(issue);
+				if (issueKey == null) {
+					throw new IllegalArgumentException("Issue 'key' field not found in JIRA response for project " + projectKey
+							+ " within issue data: " + issue);
 				}
+				lastIssueKey = issueKey;
+				lastIssueUpdatedDate = extractIssueUpdatedDate(issueKey, issue);
+				logger.debug("Go to update index for issue {} with updated {}", issueKey, lastIssueUpdatedDate);
+				if (firstIssueUpdatedDate == null) {
+					firstIssueUpdatedDate = lastIssueUpdatedDate;
+				}
+
+				if (issueRequests != null)
+					issueRequests.put(esBulk.numberOfActions(), issueKey);
+				jiraIssueIndexStructureBuilder.indexIssue(esBulk, projectKey, issue);
+				issuesUpdated++;
+				if (isClosed())
+					throw new InterruptedException("Interrupted because River is closed");
+			}
+		} finally {
+			// pages may be indexed by more threads in parallel
+			synchronized (indexingInfo) {
+				indexingInfo.issuesUpdated += issuesUpdated;
+			}
+		}
 
-				storeLastIssueUpdatedDate(esBulk, projectKey, lastIssueUpdatedDate);
+		if (esBulk != null) {
+			if (issueRequests != null)
+				esBulk = removeUnchangedExtraDocuments(esBulk, issueRequests, extraDocumentsStateField);
+			if (indexedDocumentIds != null)
+				esBulk = removeUnchangedDocuments(esBulk, jiraIssueIndexStructureBuilder.getIndexFieldForContentHash());
+			if (bulkPipeline != null) {
+				bulkPipeline.add(esBulk, storeCheckpoint ? lastIssueUpdatedDate : null);
+			} else {
+				if (storeCheckpoint)
+					storeLastIssueUpdatedDate(esBulk, projectKey, lastIssueUpdatedDate);
 				esIntegrationComponent.executeESBulkRequest(esBulk);
+				addIndicesToAlias(esBulk);
+			}
+		}
+		if (position != null)
+			position.moveAfterPage(res, firstIssueUpdatedDate, lastIssueUpdatedDate, lastIssueKey);
+		return lastIssueUpdatedDate;
+	}
+
+	/**
+	 * Remove requests to index documents with the same content as already indexed, so unchanged documents are not
+	 * rewritten during full update. Content is compared by hash stored in documents by index structure builder, hashes
+	 * of indexed documents are obtained by one multi get request. Type and id of all documents are stored into
+	 * {@link #indexedDocumentIds} for {@link #processDelete(Date)}.
+	 * 
+	 * @param esBulk with requests prepared for page of issues
+	 * @param contentHashField name of field with content hash in indexed documents
+	 * @return bulk with requests for changed documents only
+	 * @throws Exception
+	 */
+	@SuppressWarnings("rawtypes")
+	protected BulkRequestBuilder removeUnchangedDocuments(BulkRequestBuilder esBulk, String contentHashField)
+			throws Exception {
+		List<ActionRequest> requests = esBulk.request().requests();
+		MultiGetRequestBuilder esMultiGet = null;
+		for (ActionRequest request : requests) {
+			if (request instanceof IndexRequest) {
+				IndexRequest ir = (IndexRequest) request;
+				indexedDocumentIds.add(ir.type(), ir.id());
+				if (esMultiGet == null)
+					esMultiGet = esIntegrationComponent.prepareESMultiGetRequestBuilder();
+				esMultiGet.add(new MultiGetRequest.Item(ir.index(), ir.type(), ir.id()).routing(ir.routing()).fields(
+						contentHashField));
+			}
+		}
+		if (esMultiGet == null)
+			return esBulk;
+
+		Map<String, String> indexedHashes = new HashMap<String, String>();
+		for (MultiGetItemResponse item : esIntegrationComponent.executeESMultiGetRequest(esMultiGet)) {
+			if (!item.isFailed() && item.getResponse().isExists()) {
+				GetField field = item.getResponse().getField(contentHashField);
+				if (field != null && field.getValue() != null)
+					indexedHashes.put(prepareDocumentIdKey(item.getType(), item.getId()), field.getValue().toString());
+			}
+		}
+
+		BulkRequestBuilder ret = esIntegrationComponent.prepareESBulkRequestBuilder();
+		int unchanged = 0;
+		for (ActionRequest request : requests) {
+			if (request instanceof IndexRequest) {
+				IndexRequest ir = (IndexRequest) request;
+				String indexedHash = indexedHashes.get(prepareDocumentIdKey(ir.type(), ir.id()));
+				if (indexedHash != null && indexedHash.equals(extractContentHash(ir, contentHashField))) {
+					unchanged++;
+				} else {
+					ret.add(ir);
+				}
+			} else if (request instanceof DeleteRequest) {
+				ret.add((DeleteRequest) request);
+			}
+		}
+		logger.debug("{} unchanged documents not indexed again for JIRA project {}", unchanged, projectKey);
+		return ret;
+	}
+
+	/**
+	 * Remove requests to index comments and changelog items not changed since their issue was indexed last time, and add
+	 * requests to delete documents of comments and changelog items removed from issue. Changes are detected by comparing
+	 * state stored in issue documents by index structure builder, previous states are obtained by one multi get request.
+	 * 
+	 * @param esBulk with requests prepared for page of issues
+	 * @param issueRequests position of issue document request in bulk as key, issue key as value. Requests for comments
+	 *          and changelog items of issue follow its issue document request.
+	 * @param stateField name of field with state in issue documents
+	 * @return bulk with requests for changed documents only
+	 * @throws Exception
+	 */
+	@SuppressWarnings("rawtypes")
+	protected BulkRequestBuilder removeUnchangedExtraDocuments(BulkRequestBuilder esBulk,
+			Map<Integer, String> issueRequests, String stateField) throws Exception {
+		if (issueRequests.isEmpty())
+			return esBulk;
+		List<ActionRequest> requests = esBulk.request().requests();
+		MultiGetRequestBuilder esMultiGet = esIntegrationComponent.prepareESMultiGetRequestBuilder();
+		for (Integer position : issueRequests.keySet()) {
+			IndexRequest ir = (IndexRequest) requests.get(position);
+			esMultiGet.add(new MultiGetRequest.Item(ir.index(), ir.type(), ir.id()).routing(ir.routing()).fields(stateField));
+		}
+
+		Map<String, Set<String>> indexedStates = new HashMap<String, Set<String>>();
+		for (MultiGetItemResponse item : esIntegrationComponent.executeESMultiGetRequest(esMultiGet)) {
+			if (!item.isFailed() && item.getResponse().isExists()) {
+				GetField field = item.getResponse().getField(stateField);
+				if (field != null) {
+					Set<String> state = new HashSet<String>();
+					for (Object value : field.getValues()) {
+						state.add(value.toString());
+					}
+					indexedStates.put(prepareDocumentIdKey(item.getType(), item.getId()), state);
+				}
+			}
+		}
+
+		BulkRequestBuilder ret = esIntegrationComponent.prepareESBulkRequestBuilder();
+		int unchanged = 0;
+		int deleted = 0;
+		Set<String> unchangedIds = Collections.emptySet();
+		for (int i = 0; i < requests.size(); i++) {
+			ActionRequest request = requests.get(i);
+			String issueKey = issueRequests.get(i);
+			if (issueKey != null) {
+				IndexRequest ir = (IndexRequest) request;
+				ret.add(ir);
+				unchangedIds = new HashSet<String>();
+				Set<String> indexedState = indexedStates.get(prepareDocumentIdKey(ir.type(), ir.id()));
+				if (indexedState == null)
+					continue;
+				Set<String> currentIds = new HashSet<String>();
+				for (String value : extractExtraDocumentsState(ir, stateField)) {
+					String id = extractExtraDocumentStateId(value);
+					currentIds.add(id);
+					if (indexedState.contains(value))
+						unchangedIds.add(id);
+				}
+				for (String value : indexedState) {
+					String id = extractExtraDocumentStateId(value);
+					int idx = id.lastIndexOf('/');
+					if (!currentIds.contains(id) && idx > 0) {
+						jiraIssueIndexStructureBuilder.deleteIssueExtraDocument(ret, ir, issueKey, id.substring(0, idx),
+								id.substring(idx + 1));
+						deleted++;
+					}
+				}
+			} else if (request instanceof IndexRequest) {
+				IndexRequest ir = (IndexRequest) request;
+				if (unchangedIds.contains(prepareDocumentIdKey(ir.type(), ir.id())))
+					unchanged++;
+				else
+					ret.add(ir);
+			} else if (request instanceof DeleteRequest) {
+				ret.add((DeleteRequest) request);
+			}
+		}
+		if (deleted > 0) {
+			synchronized (indexingInfo) {
+				indexingInfo.commentsDeleted += deleted;
+			}
+		}
+		logger.debug("{} unchanged comment and changelog documents not indexed again and {} deleted for JIRA project {}",
+				unchanged, deleted, projectKey);
+		return ret;
+	}
+
+	/**
+	 * Get type and id of document from value of state stored in issue document.
+	 * 
+	 * @param value <code>type/id@updated</code> value
+	 * @return <code>type/id</code>
+	 */
+	private static String extractExtraDocumentStateId(String value) {
+		int idx = value.lastIndexOf('@');
+		return idx < 0 ? value : value.substring(0, idx);
+	}
+
+	/**
+	 * Get state of comments and changelog items from source of issue document to be indexed.
+	 * 
+	 * @param request to get state from
+	 * @param stateField name of field with state
+	 * @return list of state values, empty if not present
+	 * @throws IOException
+	 */
+	protected static List<String> extractExtraDocumentsState(IndexRequest request, String stateField) throws IOException {
+		List<String> ret = new ArrayList<String>();
+		XContentParser parser = XContentHelper.createParser(request.source());
+		try {
+			if (parser.nextToken() != XContentParser.Token.START_OBJECT)
+				return ret;
+			while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+				String name = parser.currentName();
+				XContentParser.Token token = parser.nextToken();
+				if (stateField.equals(name) && token == XContentParser.Token.START_ARRAY) {
+					while (parser.nextToken() == XContentParser.Token.VALUE_STRING) {
+						ret.add(parser.text());
+					}
+					return ret;
+				}
+				parser.skipChildren();
+			}
+			return ret;
+		} finally {
+			parser.close();
+		}
+	}
+
+	/**
+	 * Add indices issues were stored into by executed bulk into alias, if issues are stored into more indices.
+	 * 
+	 * @param esBulk executed bulk request
+	 */
+	@SuppressWarnings("rawtypes")
+	protected void addIndicesToAlias(BulkRequestBuilder esBulk) {
+		String aliasName = jiraIssueIndexStructureBuilder.getIssuesSearchAliasName();
+		if (aliasName == null)
+			return;
+		// bulk contains river state documents too, which are not in alias
+		String indexNamePrefix = aliasName + "_";
+		List<String> newIndices = new ArrayList<String>();
+		for (ActionRequest request : esBulk.request().requests()) {
+			if (request instanceof IndexRequest) {
+				String index = ((IndexRequest) request).index();
+				if (index.startsWith(indexNamePrefix) && aliasedIndices.add(index))
+					newIndices.add(index);
+			}
+		}
+		if (!newIndices.isEmpty()) {
+			logger.debug("Go to add indices {} into alias {}", newIndices, aliasName);
+			esIntegrationComponent.addIndicesToAlias(newIndices.toArray(new String[newIndices.size()]), aliasName);
+		}
+	}
+
+	private static String prepareDocumentIdKey(String type, String id) {
+		return type + "/" + id;
+	}
+
+	/**
+	 * Get content hash from source of document to be indexed.
+	 * 
+	 * @param request to get hash from
+	 * @param contentHashField name of field with content hash
+	 * @return hash or <code>null</code> if not present
+	 * @throws IOException
+	 */
+	protected static String extractContentHash(IndexRequest request, String contentHashField) throws IOException {
+		XContentParser parser = XContentHelper.createParser(request.source());
+		try {
+			if (parser.nextToken() != XContentParser.Token.START_OBJECT)
+				return null;
+			while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+				String name = parser.currentName();
+				XContentParser.Token token = parser.nextToken();
+				if (contentHashField.equals(name) && token == XContentParser.Token.VALUE_STRING)
+					return parser.text();
+				parser.skipChildren();
+			}
+			return null;
+		} finally {
+			parser.close();
+		}
+	}
 
-				// next logic depends on issues sorted by update time ascending when returned from
-				// jiraClient.getJIRAChangedIssues()!!!!
-				if (!lastIssueUpdatedDate.equals(firstIssueUpdatedDate)) {
-					// processed issues updated in different times, so we can continue by issue filtering based on latest time
-					// of update which is more safe for concurrent changes in JIRA
-					updatedAfter = lastIssueUpdatedDate;
-					cont = res.getTotal() > (res.getStartAt() + res.getIssuesCount());
+	/**
+	 * Extract minute precise 'updated' date from JIRA issue data.
+	 * 
+	 * @param issueKey key of issue, used for error message
+	 * @param issue data to extract date from
+	 * @return minute precise updated date, never null
+	 * @throws IllegalArgumentException if date is not present in data
+	 */
+	protected Date extractIssueUpdatedDate(String issueKey, Map<String, Object> issue) {
+		Date updated = DateTimeUtils.roundDateTimeToMinutePrecise(jiraIssueIndexStructureBuilder
+				.extractIssueUpdated(issue));
+		if (updated == null) {
+			throw new IllegalArgumentException("'updated' field not found in JIRA response data for issue " + issueKey);
+		}
+		return updated;
+	}
+
+	/**
+	 * Position of paging over updated issues obtained from JIRA.
+	 */
+	protected static class JIRAPagePosition {
+
+		/**
+		 * Index of first issue to be requested from JIRA.
+		 */
+		protected int startAt = 0;
+
+		/**
+		 * Request issues updated after this date only, <code>null</code> means whole history.
+		 */
+		protected Date updatedAfter;
+
+		/**
+		 * Request issues updated before this date only, <code>null</code> means no limit.
+		 */
+		protected final Date updatedBefore;
+
+		/**
+		 * <code>true</code> if next page should be requested from JIRA.
+		 */
+		protected boolean cont = true;
+
+		/**
+		 * If <code>true</code> then issues updated in the same minute which do not fit into one page are paged over by
+		 * issue key, so each page costs the same for JIRA and concurrent changes in JIRA can't shift issues between pages
+		 * as with <code>startAt</code> offset.
+		 */
+		protected boolean keysetPagination = false;
+
+		/**
+		 * Minute precise date of issues currently paged over by issue key, <code>null</code> if not paging by key.
+		 */
+		protected Date keysetMinute;
+
+		/**
+		 * Key of last issue obtained during paging by issue key, <code>null</code> to start from first issue updated in
+		 * {@link #keysetMinute}.
+		 */
+		protected String afterIssueKey;
+
+		protected JIRAPagePosition(Date updatedAfter) {
+			this(updatedAfter, null);
+		}
+
+		protected JIRAPagePosition(Date updatedAfter, Date updatedBefore) {
+			this.updatedAfter = updatedAfter;
+			this.updatedBefore = updatedBefore;
+		}
+
+		/**
+		 * Move position after page of issues obtained from JIRA.
+		 * 
+		 * @param res page of issues
+		 * @param firstIssueUpdatedDate minute precise updated date of first issue in page
+		 * @param lastIssueUpdatedDate minute precise updated date of last issue in page, <code>null</code> if page is empty
+		 * @param lastIssueKey key of last issue in page, <code>null</code> if page is empty
+		 */
+		protected void moveAfterPage(ChangedIssuesResults res, Date firstIssueUpdatedDate, Date lastIssueUpdatedDate,
+				String lastIssueKey) {
+			if (keysetMinute != null) {
+				if (lastIssueKey == null || res.getTotal() <= res.getIssuesCount()) {
+					// all issues updated in this minute are processed, continue with issues updated later
+					updatedAfter = new Date(keysetMinute.getTime() + MINUTE);
+					keysetMinute = null;
+					afterIssueKey = null;
 					startAt = 0;
+					cont = updatedBefore == null || !updatedAfter.after(updatedBefore);
 				} else {
-					// more issues updated in same time, we must go over them using pagination only, which may sometimes lead
-					// to some issue update lost due concurrent changes in JIRA
-					startAt = res.getStartAt() + res.getIssuesCount();
-					cont = res.getTotal() > startAt;
+					afterIssueKey = lastIssueKey;
 				}
+				return;
+			}
+			if (lastIssueUpdatedDate == null) {
+				cont = false;
+				return;
+			}
+			// next logic depends on issues sorted by update time ascending when returned from
+			// jiraClient.getJIRAChangedIssues()!!!!
+			if (!lastIssueUpdatedDate.equals(firstIssueUpdatedDate)) {
+				// processed issues updated in different times, so we can continue by issue filtering based on latest
+				// time of update which is more safe for concurrent changes in JIRA
+				updatedAfter = lastIssueUpdatedDate;
+				cont = res.getTotal() > (res.getStartAt() + res.getIssuesCount());
+				startAt = 0;
+			} else if (keysetPagination && res.getTotal() > (res.getStartAt() + res.getIssuesCount())) {
+				// more issues updated in same time than fits into page, go over them ordered by issue key, starting by the
+				// first one as issues in this page are ordered by exact update time
+				keysetMinute = lastIssueUpdatedDate;
+				afterIssueKey = null;
+				startAt = 0;
+			} else {
+				// more issues updated in same time, we must go over them using pagination only, which may sometimes
+				// lead to some issue update lost due concurrent changes in JIRA
+				startAt = res.getStartAt() + res.getIssuesCount();
+				cont = res.getTotal() > startAt;
 			}
 		}
+	}
 
-		if (indexingInfo.issuesUpdated > 0 && lastIssueUpdatedDate != null && updatedAfterStarting != null
-				&& updatedAfterStarting.equals(lastIssueUpdatedDate)) {
-			// no any new issue during this update cycle, go to increment lastIssueUpdatedDate in store by one minute not to
-			// index last issue again and again in next cycle - this is here due JQL minute precise on timestamp search
-			storeLastIssueUpdatedDate(null, projectKey,
-					DateTimeUtils.roundDateTimeToMinutePrecise(new Date(lastIssueUpdatedDate.getTime() + 64 * 1000)));
+	/**
+	 * Task requesting pages of updated issues from JIRA in advance, so next page is downloaded from JIRA while previous
+	 * one is indexed into ES. Pages are read into memory as next page position depends on their content.
+	 */
+	protected class JIRAPagePrefetcher implements Runnable {
+
+		/**
+		 * Marker of the end of pages in {@link #pages} queue.
+		 */
+		private final ChangedIssuesResults endOfPages = new ChangedIssuesResults(null, 0, 0, 0);
+
+		private final JIRAPagePosition position;
+
+		private final BlockingQueue<ChangedIssuesResults> pages;
+
+		private volatile boolean stopped = false;
+
+		private volatile Throwable error;
+
+		protected Thread thread;
+
+		/**
+		 * @param position to start paging from
+		 * @param prefetchDepth maximal number of pages downloaded from JIRA in advance
+		 */
+		protected JIRAPagePrefetcher(JIRAPagePosition position, int prefetchDepth) {
+			this.position = position;
+			this.pages = new ArrayBlockingQueue<ChangedIssuesResults>(prefetchDepth);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (position.cont && !stopped) {
+					if (isClosed())
+						throw new InterruptedException("Interrupted because River is closed");
+					ChangedIssuesResults page = readIssuesPage(getJIRAChangedIssuesPage(position), position);
+					if (page != null)
+						pages.put(page);
+				}
+			} catch (InterruptedException e) {
+				if (!stopped)
+					error = e;
+			} catch (Throwable e) {
+				error = e;
+			} finally {
+				if (!stopped) {
+					try {
+						pages.put(endOfPages);
+					} catch (InterruptedException e) {
+						// stopped, nobody waits for pages
+					}
+				}
+			}
+		}
+
+		/**
+		 * Get next page prefetched from JIRA. Waits for it if necessary.
+		 * 
+		 * @return next page or <code>null</code> if there is no more pages.
+		 * @throws Exception if page obtaining from JIRA failed
+		 */
+		protected ChangedIssuesResults nextPage() throws Exception {
+			ChangedIssuesResults res = null;
+			while ((res = pages.poll(PREFETCH_POLL_TIMEOUT, TimeUnit.MILLISECONDS)) == null) {
+				if (isClosed())
+					throw new InterruptedException("Interrupted because River is closed");
+			}
+			if (res == endOfPages) {
+				Throwable e = error;
+				if (e instanceof Exception)
+					throw (Exception) e;
+				else if (e != null)
+					throw new Exception(e.getMessage(), e);
+				return null;
+			}
+			return res;
+		}
+
+		/**
+		 * Stop prefetching.
+		 */
+		protected void stop() {
+			stopped = true;
+			if (thread != null)
+				thread.interrupt();
+			pages.clear();
+		}
+	}
+
+	/**
+	 * Pipeline executing requests prepared for pages of issues in bulk requests bounded by number of actions, size and
+	 * time, with up to configured number of bulk requests in flight without waiting for their response. Indexing waits
+	 * when maximal number of bulk requests is in flight. Checkpoint of page ("last indexed issue update date") is stored
+	 * only after bulk requests with all actions of this and previous pages are acknowledged, so incremental update
+	 * continues from correct point even if some bulk request fails. Number of bulk requests in flight and their size
+	 * are adapted by {@link ESBulkLoadController}, which also decides if items rejected by cluster are retried. Retry
+	 * keeps permit of original bulk request and is executed by indexing thread when its backoff elapses. Used by more
+	 * indexing threads in parallel.
+	 */
+	protected class BulkPipeline {
+
+		/**
+		 * Estimated size of action in bulk request without document source [bytes].
+		 */
+		protected static final int REQUEST_OVERHEAD = 50;
+
+		protected final int concurrentRequests;
+
+		protected final int maxActions;
+
+		protected final long maxBytes;
+
+		protected final long flushInterval;
+
+		protected final ESBulkLoadController controller;
+
+		private final Semaphore permits;
+
+		/**
+		 * Retries of bulk requests with items rejected by cluster, waiting for their backoff.
+		 */
+		private final List<PendingRetry> retries = new ArrayList<PendingRetry>();
+
+		/**
+		 * Bulk request actions are collected into, <code>null</code> if there is no any action waiting.
+		 */
+		private BulkRequestBuilder buffer;
+
+		private long bufferBytes;
+
+		private long bufferStartTime;
+
+		/**
+		 * Sequence number of next bulk request executed.
+		 */
+		private long nextSequence = 0;
+
+		/**
+		 * Number of bulk requests acknowledged without any gap from the first one.
+		 */
+		private long acknowledgedCount = 0;
+
+		/**
+		 * Sequence numbers of acknowledged bulk requests after gap.
+		 */
+		private final Set<Long> acknowledgedAfterGap = new HashSet<Long>();
+
+		/**
+		 * Checkpoints waiting for bulk requests. Key is number of bulk requests which must be acknowledged before
+		 * checkpoint is stored.
+		 */
+		private final SortedMap<Long, Date> checkpoints = new TreeMap<Long, Date>();
+
+		/**
+		 * The latest checkpoint all bulk requests are acknowledged for, <code>null</code> if there is no one to store.
+		 */
+		private Date readyCheckpoint;
+
+		/**
+		 * Acknowledged bulk requests not processed by {@link JIRAProjectIndexer#addIndicesToAlias(BulkRequestBuilder)}
+		 * yet.
+		 */
+		private final List<BulkRequestBuilder> executed = new ArrayList<BulkRequestBuilder>();
+
+		private volatile Throwable error;
+
+		protected BulkPipeline(int concurrentRequests, int maxActions, long maxBytes, long flushInterval) {
+			this.concurrentRequests = concurrentRequests;
+			this.maxActions = maxActions;
+			this.maxBytes = maxBytes;
+			this.flushInterval = flushInterval;
+			if (bulkLoadController != null)
+				controller = bulkLoadController;
+			else
+				controller = new ESBulkLoadController(concurrentRequests, maxActions, maxBytes, 0, 0, 0, 0);
+			permits = new Semaphore(concurrentRequests);
+		}
+
+		/**
+		 * Add requests prepared for page of issues into pipeline. Bulk requests are executed when limits are reached.
+		 * 
+		 * @param esBulk with requests to add, can be <code>null</code> if only checkpoint is added
+		 * @param checkpoint "last indexed issue update date" to be stored when all requests added so far are
+		 *          acknowledged, <code>null</code> if no checkpoint is stored with these requests
+		 * @throws Exception if some bulk request failed before
+		 */
+		@SuppressWarnings("rawtypes")
+		public void add(BulkRequestBuilder esBulk, Date checkpoint) throws Exception {
+			checkError();
+			executeDueRetries();
+			Map<Long, BulkRequestBuilder> toExecute = new LinkedHashMap<Long, BulkRequestBuilder>();
+			synchronized (this) {
+				if (esBulk != null) {
+					for (ActionRequest request : esBulk.request().requests()) {
+						addToBuffer(request, toExecute);
+					}
+				}
+				if (buffer != null && System.currentTimeMillis() - bufferStartTime >= flushInterval)
+					flushBuffer(toExecute);
+				if (checkpoint != null) {
+					checkpoints.put(nextSequence + (buffer != null ? 1 : 0), checkpoint);
+					updateReadyCheckpoint();
+				}
+			}
+			execute(toExecute);
+			addExecutedIndicesToAlias();
+		}
+
+		/**
+		 * Execute all waiting actions, wait for all bulk requests in flight and store the latest checkpoint.
+		 * 
+		 * @throws Exception if some bulk request failed
+		 */
+		public void close() throws Exception {
+			Map<Long, BulkRequestBuilder> toExecute = new LinkedHashMap<Long, BulkRequestBuilder>();
+			synchronized (this) {
+				flushBuffer(toExecute);
+			}
+			execute(toExecute);
+			for (int i = 0; i < concurrentRequests; i++) {
+				acquirePermit(false);
+			}
+			permits.release(concurrentRequests);
+			checkError();
+			addExecutedIndicesToAlias();
+			Date checkpoint = null;
+			synchronized (this) {
+				checkpoint = readyCheckpoint;
+				readyCheckpoint = null;
+			}
+			if (checkpoint != null)
+				storeLastIssueUpdatedDate(null, projectKey, checkpoint);
+		}
+
+		@SuppressWarnings("rawtypes")
+		private void addToBuffer(ActionRequest request, Map<Long, BulkRequestBuilder> toExecute) throws Exception {
+			if (buffer == null) {
+				buffer = esIntegrationComponent.prepareESBulkRequestBuilder();
+				bufferBytes = 0;
+				bufferStartTime = System.currentTimeMillis();
+			}
+			bufferBytes += REQUEST_OVERHEAD;
+			if (request instanceof IndexRequest) {
+				IndexRequest ir = (IndexRequest) request;
+				buffer.add(ir);
+				if (ir.source() != null)
+					bufferBytes += ir.source().length();
+			} else if (request instanceof DeleteRequest) {
+				buffer.add((DeleteRequest) request);
+			}
+			if (buffer.numberOfActions() >= controller.getMaxActions() || bufferBytes >= controller.getMaxBytes())
+				flushBuffer(toExecute);
+		}
+
+		/**
+		 * Close buffer so it is executed. Checkpoint ready to be stored is stored by this bulk request.
+		 */
+		private void flushBuffer(Map<Long, BulkRequestBuilder> toExecute) throws Exception {
+			if (buffer == null)
+				return;
+			if (readyCheckpoint != null) {
+				storeLastIssueUpdatedDate(buffer, projectKey, readyCheckpoint);
+				readyCheckpoint = null;
+			}
+			toExecute.put(nextSequence++, buffer);
+			buffer = null;
+		}
+
+		private void execute(Map<Long, BulkRequestBuilder> toExecute) throws Exception {
+			for (Map.Entry<Long, BulkRequestBuilder> e : toExecute.entrySet()) {
+				acquirePermit(true);
+				logger.debug("Go to execute bulk request {} with {} actions for JIRA project {}", e.getKey(), e.getValue()
+						.numberOfActions(), projectKey);
+				executeBulk(e.getKey(), e.getValue(), e.getValue(), 0);
+			}
+		}
+
+		/**
+		 * Execute bulk request, permit must be acquired for it already.
+		 * 
+		 * @param sequence number of bulk request
+		 * @param esBulk bulk request as added into pipeline
+		 * @param toSend bulk request to send, original one or retry with rejected items only
+		 * @param attempt number of retries performed already
+		 */
+		private void executeBulk(final long sequence, final BulkRequestBuilder esBulk, final BulkRequestBuilder toSend,
+				final int attempt) {
+			final long startTime = System.currentTimeMillis();
+			try {
+				esIntegrationComponent.executeESBulkRequestAsync(toSend, new ActionListener<BulkResponse>() {
+
+					@Override
+					public void onResponse(BulkResponse response) {
+						if (!response.hasFailures()) {
+							controller.onResponse(System.currentTimeMillis() - startTime);
+							acknowledged(sequence, esBulk);
+							return;
+						}
+						BulkRequestBuilder retryBulk = esIntegrationComponent.prepareESBulkRequestBuilder();
+						if (attempt < controller.getMaxRetries() && controller.prepareRetry(toSend, response, retryBulk)) {
+							controller.onRejected();
+							long backoff = controller.getRetryBackoff(attempt);
+							logger.warn("{} actions of bulk request {} for JIRA project {} rejected, retry in {} ms",
+									retryBulk.numberOfActions(), sequence, projectKey, backoff);
+							synchronized (BulkPipeline.this) {
+								retries.add(new PendingRetry(sequence, esBulk, retryBulk, attempt + 1, System.currentTimeMillis()
+										+ backoff));
+							}
+						} else {
+							onFailure(new ElasticsearchException("Failed to execute ES index bulk update: "
+									+ response.buildFailureMessage()));
+						}
+					}
+
+					@Override
+					public void onFailure(Throwable e) {
+						if (error == null)
+							error = e;
+						permits.release();
+					}
+				});
+			} catch (RuntimeException ex) {
+				error = ex;
+				permits.release();
+				throw ex;
+			}
+		}
+
+		/**
+		 * Execute retries of rejected items whose backoff elapsed.
+		 * 
+		 * @return true if some retry is still waiting for its backoff
+		 */
+		private boolean executeDueRetries() {
+			List<PendingRetry> due = null;
+			boolean waiting = false;
+			synchronized (this) {
+				if (retries.isEmpty())
+					return false;
+				long now = System.currentTimeMillis();
+				for (Iterator<PendingRetry> it = retries.iterator(); it.hasNext();) {
+					PendingRetry retry = it.next();
+					if (retry.dueTime <= now) {
+						if (due == null)
+							due = new ArrayList<PendingRetry>();
+						due.add(retry);
+						it.remove();
+					}
+				}
+				waiting = !retries.isEmpty();
+			}
+			if (due != null) {
+				for (PendingRetry retry : due) {
+					logger.debug("Go to retry {} actions of bulk request {} for JIRA project {}",
+							retry.retryBulk.numberOfActions(), retry.sequence, projectKey);
+					executeBulk(retry.sequence, retry.esBulk, retry.retryBulk, retry.attempt);
+				}
+			}
+			return waiting;
+		}
+
+		private void acknowledged(long sequence, BulkRequestBuilder esBulk) {
+			synchronized (this) {
+				acknowledgedAfterGap.add(sequence);
+				while (acknowledgedAfterGap.remove(acknowledgedCount)) {
+					acknowledgedCount++;
+				}
+				executed.add(esBulk);
+				updateReadyCheckpoint();
+			}
+			permits.release();
+		}
+
+		private void updateReadyCheckpoint() {
+			SortedMap<Long, Date> ready = checkpoints.headMap(acknowledgedCount + 1);
+			if (!ready.isEmpty()) {
+				readyCheckpoint = ready.get(ready.lastKey());
+				ready.clear();
+			}
+		}
+
+		/**
+		 * Acquire permit for bulk request, retries due meanwhile are executed.
+		 * 
+		 * @param adaptive if <code>true</code> then number of bulk requests in flight is limited by controller, if
+		 *          <code>false</code> then configured maximum is used only
+		 */
+		private void acquirePermit(boolean adaptive) throws InterruptedException {
+			while (true) {
+				boolean retriesWaiting = executeDueRetries();
+				if (permits.tryAcquire(retriesWaiting ? RETRY_POLL_TIMEOUT : PREFETCH_POLL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+					if (!adaptive || concurrentRequests - permits.availablePermits() <= controller.getConcurrentRequests())
+						return;
+					// controller lowered concurrency, so wait for some bulk request in flight
+					permits.release();
+					Thread.sleep(RETRY_POLL_TIMEOUT);
+				}
+				if (isClosed())
+					throw new InterruptedException("Interrupted because River is closed");
+			}
+		}
+
+		private void addExecutedIndicesToAlias() {
+			List<BulkRequestBuilder> bulks = null;
+			synchronized (this) {
+				if (executed.isEmpty())
+					return;
+				bulks = new ArrayList<BulkRequestBuilder>(executed);
+				executed.clear();
+			}
+			for (BulkRequestBuilder esBulk : bulks) {
+				addIndicesToAlias(esBulk);
+			}
+		}
+
+		private void checkError() throws Exception {
+			Throwable e = error;
+			if (e instanceof Exception)
+				throw (Exception) e;
+			else if (e != null)
+				throw new Exception(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Retry of bulk request items rejected by cluster, waiting in {@link BulkPipeline} for its backoff.
+	 */
+	private static class PendingRetry {
+
+		final long sequence;
+
+		final BulkRequestBuilder esBulk;
+
+		final BulkRequestBuilder retryBulk;
+
+		final int attempt;
+
+		final long dueTime;
+
+		PendingRetry(long sequence, BulkRequestBuilder esBulk, BulkRequestBuilder retryBulk, int attempt, long dueTime) {
+			this.sequence = sequence;
+			this.esBulk = esBulk;
+			this.retryBulk = retryBulk;
+			this.attempt = attempt;
+			this.dueTime = dueTime;
 		}
 	}
 
@@ -211,6 +1556,7 @@ public class JIRAProjectIndexer implements Runnable {
 
 		indexingInfo.issuesDeleted = 0;
 		indexingInfo.commentsDeleted = 0;
+		indexingInfo.deletesExecuted = 0;
 
 		if (!indexingInfo.fullUpdate)
 			return;
@@ -221,10 +1567,81 @@ public class JIRAProjectIndexer implements Runnable {
 		String indexName = jiraIssueIndexStructureBuilder.getIssuesSearchIndexName(projectKey);
 		esIntegrationComponent.refreshSearchIndex(indexName);
 
+		if (indexedDocumentIds != null) {
+			// unchanged documents were not rewritten so they are not updated after bound date, so all documents are checked
+			// against documents prepared during update
+			boundDate = new Date();
+		}
+
 		logger.debug("go to delete indexed issues for project {} not updated after {}", projectKey, boundDate);
 		SearchRequestBuilder srb = esIntegrationComponent.prepareESScrollSearchRequestBuilder(indexName);
 		jiraIssueIndexStructureBuilder.buildSearchForIndexedDocumentsNotUpdatedAfter(srb, projectKey, boundDate);
+		deleteIndexedDocuments(srb, null);
+	}
 
+	/**
+	 * Process delete sync of search index for configured JIRA project. Keys of all issues in project are obtained from
+	 * JIRA by lightweight calls, and documents of issues not in JIRA anymore are deleted from search index. So issues
+	 * deleted from JIRA are removed from search index without full update. Performed only if enabled by
+	 * {@link #setDeleteSync(boolean)} and update is incremental, as full update deletes these documents itself.
+	 * 
+	 * @throws Exception
+	 */
+	protected void processDeleteSync() throws Exception {
+		if (!deleteSync || indexingInfo.fullUpdate)
+			return;
+
+		logger.debug("Go to process delete sync for JIRA project {}", projectKey);
+		IssueKeySet issueKeys = readJIRAIssueKeys();
+		logger.debug("{} issues exist in JIRA project {}", issueKeys.size(), projectKey);
+
+		String indexName = jiraIssueIndexStructureBuilder.getIssuesSearchIndexName(projectKey);
+		esIntegrationComponent.refreshSearchIndex(indexName);
+		SearchRequestBuilder srb = esIntegrationComponent.prepareESScrollSearchRequestBuilder(indexName);
+		jiraIssueIndexStructureBuilder.buildSearchForIndexedDocuments(srb, projectKey);
+		deleteIndexedDocuments(srb, issueKeys);
+	}
+
+	/**
+	 * Read keys of all issues in configured JIRA project, paged over by issue key.
+	 * 
+	 * @return set of issue keys
+	 * @throws Exception
+	 */
+	protected IssueKeySet readJIRAIssueKeys() throws Exception {
+		IssueKeySet ret = new IssueKeySet(projectKey);
+		String afterIssueKey = null;
+		while (true) {
+			if (isClosed())
+				throw new InterruptedException("Interrupted because River is closed");
+			ChangedIssuesResults res = jiraClient.getJIRAIssueKeys(projectKey, afterIssueKey);
+			String lastIssueKey = null;
+			try {
+				Map<String, Object> issue = null;
+				while ((issue = res.nextIssue()) != null) {
+					lastIssueKey = jiraIssueIndexStructureBuilder.extractIssueKey(issue);
+					ret.add(lastIssueKey);
+				}
+			} finally {
+				res.close();
+			}
+			if (lastIssueKey == null || res.getIssuesCount() >= res.getTotal())
+				return ret;
+			afterIssueKey = lastIssueKey;
+		}
+	}
+
+	/**
+	 * Delete documents found by scroll search request from search index. Delete requests are written by bulk requests
+	 * with up to {@link #bulkMaxActions} actions while scrolling over found documents. Each bulk request is executed
+	 * asynchronously so next scroll page is read while it is running, last one is executed synchronously at the end.
+	 * 
+	 * @param srb scroll search request for documents to delete
+	 * @param liveIssueKeys keys of issues existing in JIRA, documents of these issues are not deleted. <code>null</code>
+	 *          if issue keys are not checked.
+	 * @throws Exception
+	 */
+	protected void deleteIndexedDocuments(SearchRequestBuilder srb, IssueKeySet liveIssueKeys) throws Exception {
 		SearchResponse scrollResp = esIntegrationComponent.executeESSearchRequest(srb);
 
 		if (scrollResp.getHits().getTotalHits() > 0) {
@@ -232,21 +1649,85 @@ public class JIRAProjectIndexer implements Runnable {
 				throw new InterruptedException("Interrupted because River is closed");
 			scrollResp = esIntegrationComponent.executeESScrollSearchNextRequest(scrollResp);
 			BulkRequestBuilder esBulk = esIntegrationComponent.prepareESBulkRequestBuilder();
+			PlainActionFuture<BulkResponse> pendingBulk = null;
+			BulkRequestBuilder pendingEsBulk = null;
 			while (scrollResp.getHits().getHits().length > 0) {
 				for (SearchHit hit : scrollResp.getHits()) {
+					if (indexedDocumentIds != null && indexedDocumentIds.contains(hit.getType(), hit.getId()))
+						continue;
+					if (liveIssueKeys != null) {
+						String issueKey = jiraIssueIndexStructureBuilder.extractIssueKeyFromIndexedDocument(hit);
+						if (issueKey == null || liveIssueKeys.contains(issueKey))
+							continue;
+					}
 					logger.debug("Go to delete indexed issue for document id {}", hit.getId());
 					if (jiraIssueIndexStructureBuilder.deleteIssueDocument(esBulk, hit)) {
 						indexingInfo.issuesDeleted++;
 					} else {
 						indexingInfo.commentsDeleted++;
 					}
+					if (esBulk.numberOfActions() >= (bulkLoadController != null ? bulkLoadController.getMaxActions()
+							: bulkMaxActions)) {
+						// only one bulk request is in flight so memory used by deletes is bounded
+						waitForDeleteBulk(pendingBulk, pendingEsBulk);
+						pendingEsBulk = esBulk;
+						logger.debug("Go to execute bulk request with {} deletes for JIRA project {}",
+								esBulk.numberOfActions(), projectKey);
+						pendingBulk = PlainActionFuture.newFuture();
+						esIntegrationComponent.executeESBulkRequestAsync(esBulk, pendingBulk);
+						esBulk = esIntegrationComponent.prepareESBulkRequestBuilder();
+					}
 				}
 				if (isClosed())
 					throw new InterruptedException("Interrupted because River is closed");
 				scrollResp = esIntegrationComponent.executeESScrollSearchNextRequest(scrollResp);
 			}
+			waitForDeleteBulk(pendingBulk, pendingEsBulk);
 			esIntegrationComponent.executeESBulkRequest(esBulk);
+			indexingInfo.deletesExecuted += esBulk.numberOfActions();
+		}
+	}
+
+	/**
+	 * Wait until asynchronously executed bulk request with deletes is finished. Items rejected by cluster are retried
+	 * synchronously if allowed by {@link #bulkLoadController}.
+	 * 
+	 * @param pendingBulk response of bulk request to wait for, can be <code>null</code>
+	 * @param esBulk bulk request executed, its number of actions is added to {@link ProjectIndexingInfo#deletesExecuted}
+	 * @throws Exception if bulk request failed or River is closed
+	 */
+	protected void waitForDeleteBulk(PlainActionFuture<BulkResponse> pendingBulk, BulkRequestBuilder esBulk)
+			throws Exception {
+		if (pendingBulk == null)
+			return;
+		BulkResponse response = null;
+		while (response == null) {
+			try {
+				response = pendingBulk.get(PREFETCH_POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				if (isClosed())
+					throw new InterruptedException("Interrupted because River is closed");
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Exception)
+					throw (Exception) e.getCause();
+				throw e;
+			}
+		}
+		if (response.hasFailures()) {
+			BulkRequestBuilder retryBulk = esIntegrationComponent.prepareESBulkRequestBuilder();
+			if (bulkLoadController == null || bulkLoadController.getMaxRetries() == 0
+					|| !bulkLoadController.prepareRetry(esBulk, response, retryBulk)) {
+				throw new ElasticsearchException("Failed to execute ES index bulk update: " + response.buildFailureMessage());
+			}
+			bulkLoadController.onRejected();
+			long backoff = bulkLoadController.getRetryBackoff(0);
+			logger.warn("{} deletes for JIRA project {} rejected, retry in {} ms", retryBulk.numberOfActions(), projectKey,
+					backoff);
+			Thread.sleep(backoff);
+			// next retries are performed by ES integration component
+			esIntegrationComponent.executeESBulkRequest(retryBulk);
 		}
+		indexingInfo.deletesExecuted += esBulk.numberOfActions();
 	}
 
 	/**
@@ -288,6 +1769,75 @@ public class JIRAProjectIndexer implements Runnable {
 				lastIssueUpdatedDate, esBulk);
 	}
 
+	/**
+	 * Set maximal number of pages of updated issues requested from JIRA in advance while previous page is indexed.
+	 * 
+	 * @param prefetchDepth to set. 0 means no prefetch.
+	 */
+	public void setPrefetchDepth(int prefetchDepth) {
+		this.prefetchDepth = prefetchDepth;
+	}
+
+	/**
+	 * Set number of time windows update history is split into during full update, and number of threads used to index
+	 * them in parallel.
+	 * 
+	 * @param fullUpdateSlices number of time windows, 0 or 1 means no split
+	 * @param fullUpdateSliceThreads maximal number of threads used to index windows in parallel
+	 */
+	public void setFullUpdateSlices(int fullUpdateSlices, int fullUpdateSliceThreads) {
+		this.fullUpdateSlices = fullUpdateSlices;
+		this.fullUpdateSliceThreads = fullUpdateSliceThreads;
+	}
+
+	/**
+	 * Set if issues updated in the same minute which do not fit into one page are paged over by issue key instead of
+	 * <code>startAt</code> offset.
+	 * 
+	 * @param keysetPagination to set
+	 */
+	public void setKeysetPagination(boolean keysetPagination) {
+		this.keysetPagination = keysetPagination;
+	}
+
+	/**
+	 * Set if documents of issues deleted from JIRA are removed from search index after incremental update.
+	 * 
+	 * @param deleteSync to set
+	 * @see #processDeleteSync()
+	 */
+	public void setDeleteSync(boolean deleteSync) {
+		this.deleteSync = deleteSync;
+	}
+
+	/**
+	 * Set configuration of pipeline used to execute bulk requests in parallel.
+	 * 
+	 * @param bulkConcurrentRequests maximal number of bulk requests in flight, 0 means no pipeline
+	 * @param bulkMaxActions maximal number of actions in one bulk request
+	 * @param bulkMaxBytes maximal size of one bulk request [bytes]
+	 * @param bulkFlushInterval maximal time actions are collected into one bulk request [ms]
+	 * @see BulkPipeline
+	 */
+	public void setBulkPipeline(int bulkConcurrentRequests, int bulkMaxActions, long bulkMaxBytes,
+			long bulkFlushInterval) {
+		this.bulkConcurrentRequests = bulkConcurrentRequests;
+		this.bulkMaxActions = bulkMaxActions;
+		this.bulkMaxBytes = bulkMaxBytes;
+		this.bulkFlushInterval = bulkFlushInterval;
+	}
+
+	/**
+	 * Set controller of load put on ElasticSearch cluster by bulk requests.
+	 * 
+	 * @param bulkLoadController to set, <code>null</code> if rejected items are not retried and bulk requests are not
+	 *          adapted to cluster load
+	 * @see BulkPipeline
+	 */
+	public void setBulkLoadController(ESBulkLoadController bulkLoadController) {
+		this.bulkLoadController = bulkLoadController;
+	}
+
 	/**
 	 * Get current indexing info.
 	 * 
@@ -7,11 +7,16 @@ package org.jboss.elasticsearch.river.jira;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
@@ -55,6 +60,15 @@ public class JIRAProjectIndexerCoordinator implements IJIRAProjectIndexerCoordin
    */
   protected static final String STORE_PROPERTYNAME_FORCE_INDEX_FULL_UPDATE_DATE = "forceIndexFullUpdateDate";
 
+  /**
+   * Property value where "last index delete sync date" is stored for JIRA project
+   * 
+   * @see IESIntegration#storeDatetimeValue(String, String, Date, BulkRequestBuilder)
+   * @see IESIntegration#readDatetimeValue(String, String)
+   * @see #projectIndexDeleteSyncNecessary(String)
+   */
+  protected static final String STORE_PROPERTYNAME_LAST_INDEX_DELETE_SYNC_DATE = "lastIndexDeleteSyncDate";
+
   protected static final int COORDINATOR_THREAD_WAITS_QUICK = 2 * 1000;
   protected static final int COORDINATOR_THREAD_WAITS_SLOW = 30 * 1000;
   protected int coordinatorThreadWaits = COORDINATOR_THREAD_WAITS_QUICK;
@@ -80,6 +94,102 @@ public class JIRAProjectIndexerCoordinator implements IJIRAProjectIndexerCoordin
    */
   protected long indexFullUpdatePeriod = -1;
 
+  /**
+   * Period of removal of issues deleted from JIRA during incremental update [ms]. value <= 0 means never.
+   * 
+   * @see JIRAProjectIndexer#setDeleteSync(boolean)
+   */
+  protected long indexDeleteSyncPeriod = 0;
+
+  /**
+   * Maximal number of pages of updated issues requested from JIRA in advance by indexers. 0 means no prefetch.
+   * 
+   * @see JIRAProjectIndexer#setPrefetchDepth(int)
+   */
+  protected int prefetchDepth = 0;
+
+  /**
+   * Number of time windows update history is split into during full update by indexers. 0 or 1 means no split.
+   * 
+   * @see JIRAProjectIndexer#setFullUpdateSlices(int, int)
+   */
+  protected int fullUpdateSlices = 0;
+
+  /**
+   * Maximal number of threads used by one indexer to index time windows in parallel during full update.
+   * 
+   * @see JIRAProjectIndexer#setFullUpdateSlices(int, int)
+   */
+  protected int fullUpdateSliceThreads = 1;
+
+  /**
+   * If <code>true</code> then indexers page over issues updated in the same minute by issue key.
+   * 
+   * @see JIRAProjectIndexer#setKeysetPagination(boolean)
+   */
+  protected boolean keysetPagination = false;
+
+  /**
+   * Maximal number of bulk requests in flight for one indexer. 0 means indexers wait for bulk request of each page.
+   * 
+   * @see JIRAProjectIndexer#setBulkPipeline(int, int, long, long)
+   */
+  protected int bulkConcurrentRequests = 0;
+
+  /**
+   * Maximal number of actions in one bulk request executed by indexers.
+   * 
+   * @see JIRAProjectIndexer#setBulkPipeline(int, int, long, long)
+   */
+  protected int bulkMaxActions = 1000;
+
+  /**
+   * Maximal size of one bulk request executed by indexers [bytes].
+   * 
+   * @see JIRAProjectIndexer#setBulkPipeline(int, int, long, long)
+   */
+  protected long bulkMaxBytes = 5 * 1024 * 1024;
+
+  /**
+   * Maximal time actions are collected into one bulk request by indexers [ms].
+   * 
+   * @see JIRAProjectIndexer#setBulkPipeline(int, int, long, long)
+   */
+  protected long bulkFlushInterval = 5 * 1000;
+
+  /**
+   * Controller of load put on ElasticSearch cluster by bulk requests of all indexers, <code>null</code> if not used.
+   * 
+   * @see JIRAProjectIndexer#setBulkLoadController(ESBulkLoadController)
+   */
+  protected ESBulkLoadController bulkLoadController;
+
+  /**
+   * Max number of projects checked for changes by one JIRA call in incremental update. 0 or 1 means projects are not
+   * checked, but indexer is started for each of them.
+   * 
+   * @see #filterChangedProjects(List)
+   */
+  protected int incrementalBatchSize = 0;
+
+  /**
+   * Safety margin [ms] for differences between clock of this node and JIRA server used when projects are checked for
+   * changes.
+   */
+  protected static final long CHANGES_CHECK_CLOCK_MARGIN = 60 * 1000;
+
+  /**
+   * Map of dates all changes of JIRA project done before are indexed. Date of last successful indexing start is used,
+   * or date of check without changes found for project. Date of check is kept only here, it is not written into
+   * persistent store, so check of many projects costs no write. Filled only when {@link #incrementalBatchSize} is used.
+   */
+  protected final Map<String, Date> projectIndexedUntil = new ConcurrentHashMap<String, Date>();
+
+  /**
+   * Map of start dates of currently running JIRA project indexers.
+   */
+  protected final Map<String, Date> projectIndexerStartDates = new HashMap<String, Date>();
+
   /**
    * Queue of project keys which needs to be reindexed in near future.
    * 
@@ -153,6 +263,7 @@ public class JIRAProjectIndexerCoordinator implements IJIRAProjectIndexerCoordin
         }
         projectIndexerThreads.clear();
         projectIndexers.clear();
+        projectIndexerStartDates.clear();
       }
       logger.info("JIRA river projects indexing coordinator task stopped");
     }
@@ -191,6 +302,7 @@ public class JIRAProjectIndexerCoordinator implements IJIRAProjectIndexerCoordin
   protected void fillProjectKeysToIndexQueue() throws Exception, InterruptedException {
     List<String> ap = esIntegrationComponent.getAllIndexedProjectsKeys();
     if (ap != null && !ap.isEmpty()) {
+      List<String> projectsToCheck = new ArrayList<String>();
       for (String projectKey : ap) {
         if (esIntegrationComponent.isClosed())
           throw new InterruptedException();
@@ -201,10 +313,128 @@ public class JIRAProjectIndexerCoordinator implements IJIRAProjectIndexerCoordin
           }
         }
         if (!projectKeysToIndexQueue.contains(projectKey) && projectIndexUpdateNecessary(projectKey)) {
-          projectKeysToIndexQueue.add(projectKey);
+          // deleted issues are not found by check for changes, so project must be indexed if delete sync is necessary
+          if (incrementalBatchSize > 1 && projectIndexedUntil.containsKey(projectKey)
+              && !projectIndexFullUpdateNecessary(projectKey) && !projectIndexDeleteSyncNecessary(projectKey)) {
+            projectsToCheck.add(projectKey);
+          } else {
+            projectKeysToIndexQueue.add(projectKey);
+          }
+        }
+      }
+      if (!projectsToCheck.isEmpty()) {
+        projectKeysToIndexQueue.addAll(filterChangedProjects(projectsToCheck));
+      }
+    }
+  }
+
+  /**
+   * Check which of given JIRA projects changed since they were indexed last time. Projects with similar date of last
+   * indexing are grouped into batches of {@link #incrementalBatchSize} projects, and one JIRA call is used to get
+   * issues updated in projects of batch. Projects without change are marked as indexed now in
+   * {@link #projectIndexedUntil}, so indexer is not started for them. Start date of their next indexing is stored as
+   * usual.
+   * 
+   * @param projectKeys keys of projects to check, all must have date in {@link #projectIndexedUntil}
+   * @return keys of projects which changed or can't be checked, so indexer must be started for them
+   * @throws InterruptedException if indexing interruption is requested by ES server
+   */
+  protected List<String> filterChangedProjects(List<String> projectKeys) throws InterruptedException {
+    List<String> sorted = new ArrayList<String>(projectKeys);
+    Collections.sort(sorted, new Comparator<String>() {
+      @Override
+      public int compare(String o1, String o2) {
+        return getProjectIndexedUntil(o1).compareTo(getProjectIndexedUntil(o2));
+      }
+    });
+    List<String> ret = new ArrayList<String>();
+    for (int i = 0; i < sorted.size(); i += incrementalBatchSize) {
+      if (esIntegrationComponent.isClosed())
+        throw new InterruptedException();
+      List<String> batch = sorted.subList(i, Math.min(sorted.size(), i + incrementalBatchSize));
+      Date checkDate = new Date();
+      try {
+        Set<String> changed = getChangedProjects(batch);
+        for (String projectKey : batch) {
+          if (changed.contains(projectKey)) {
+            ret.add(projectKey);
+          } else {
+            projectIndexedUntil.put(projectKey, checkDate);
+          }
+        }
+        logger.debug("Projects {} checked for changes, changed projects {}", batch, changed);
+      } catch (InterruptedException e) {
+        throw e;
+      } catch (Exception e) {
+        logger.warn("Failed to check JIRA projects {} for changes, all will be indexed: {}", batch, e.getMessage());
+        ret.addAll(batch);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Get JIRA projects from given batch which have some issue updated after date they were indexed until. Issues are
+   * not paged by offset, because their order by update date changes if some issue is updated during check. Projects
+   * found changed are removed from next JIRA call, and issues updated before minute of the last returned issue are
+   * skipped by it, so usually one JIRA call is enough. Projects which can't be checked because too many issues were
+   * updated in one minute are returned as changed.
+   * 
+   * @param batch of project keys to check, sorted by {@link #projectIndexedUntil} date
+   * @return set of changed project keys
+   * @throws Exception
+   */
+  protected Set<String> getChangedProjects(List<String> batch) throws Exception {
+    Set<String> changed = new HashSet<String>();
+    List<String> unchanged = new ArrayList<String>(batch);
+    Date updatedFrom = null;
+    while (!unchanged.isEmpty()) {
+      Date updatedAfter = new Date(getProjectIndexedUntil(unchanged.get(0)).getTime() - CHANGES_CHECK_CLOCK_MARGIN);
+      if (updatedFrom != null && updatedFrom.after(updatedAfter))
+        updatedAfter = updatedFrom;
+      ChangedIssuesResults res = jiraClient.getJIRAChangedIssuesInProjects(new ArrayList<String>(unchanged), 0,
+          updatedAfter);
+      boolean changeFound = false;
+      Date lastUpdated = null;
+      try {
+        Map<String, Object> issue = null;
+        while ((issue = res.nextIssue()) != null) {
+          String issueKey = jiraIssueIndexStructureBuilder.extractIssueKey(issue);
+          String projectKey = issueKey != null && issueKey.lastIndexOf('-') > 0 ? issueKey.substring(0,
+              issueKey.lastIndexOf('-')) : null;
+          Date updated = jiraIssueIndexStructureBuilder.extractIssueUpdated(issue);
+          if (updated != null)
+            lastUpdated = updated;
+          if (projectKey == null || !unchanged.contains(projectKey))
+            continue;
+          if (updated == null
+              || updated.getTime() >= getProjectIndexedUntil(projectKey).getTime() - CHANGES_CHECK_CLOCK_MARGIN) {
+            changed.add(projectKey);
+            unchanged.remove(projectKey);
+            changeFound = true;
+          }
         }
+      } finally {
+        res.close();
+      }
+      if (res.getIssuesCount() == 0 || res.getIssuesCount() >= res.getTotal())
+        break;
+      // JQL is minute precise, so issues from minute of the last returned one are requested again
+      Date nextUpdatedFrom = DateTimeUtils.roundDateTimeToMinutePrecise(lastUpdated);
+      if (!changeFound && (nextUpdatedFrom == null || !nextUpdatedFrom.after(updatedAfter))) {
+        logger.debug("Too many issues updated in one minute, projects {} can't be checked for changes", unchanged);
+        changed.addAll(unchanged);
+        break;
       }
+      if (nextUpdatedFrom != null)
+        updatedFrom = nextUpdatedFrom;
     }
+    return changed;
+  }
+
+  private Date getProjectIndexedUntil(String projectKey) {
+    Date ret = projectIndexedUntil.get(projectKey);
+    return ret != null ? ret : new Date(0);
   }
 
   /**
@@ -237,19 +467,29 @@ public class JIRAProjectIndexerCoordinator implements IJIRAProjectIndexerCoordin
 
       JIRAProjectIndexer indexer = new JIRAProjectIndexer(projectKey, fullUpdateNecessary, jiraClient,
           esIntegrationComponent, jiraIssueIndexStructureBuilder);
+      indexer.setPrefetchDepth(prefetchDepth);
+      indexer.setFullUpdateSlices(fullUpdateSlices, fullUpdateSliceThreads);
+      indexer.setKeysetPagination(keysetPagination);
+      indexer.setBulkPipeline(bulkConcurrentRequests, bulkMaxActions, bulkMaxBytes, bulkFlushInterval);
+      indexer.setBulkLoadController(bulkLoadController);
+      if (!fullUpdateNecessary)
+        indexer.setDeleteSync(projectIndexDeleteSyncNecessary(projectKey));
       Thread it = esIntegrationComponent.acquireIndexingThread("jira_river_indexer_" + projectKey, indexer);
-      esIntegrationComponent.storeDatetimeValue(projectKey, STORE_PROPERTYNAME_LAST_INDEX_UPDATE_START_DATE,
-          new Date(), null);
+      Date startDate = new Date();
+      esIntegrationComponent.storeDatetimeValue(projectKey, STORE_PROPERTYNAME_LAST_INDEX_UPDATE_START_DATE, startDate,
+          null);
       synchronized (projectIndexerThreads) {
         projectIndexerThreads.put(projectKey, it);
         projectIndexers.put(projectKey, indexer);
+        projectIndexerStartDates.put(projectKey, startDate);
       }
       it.start();
     }
   }
 
   /**
-   * Check if search index update for given JIRA project have to be performed now.
+   * Check if search index update for given JIRA project have to be performed now. Date of check without changes found
+   * in {@link #projectIndexedUntil} is used if it is newer than stored date of last indexing start.
    * 
    * @param projectKey JIRA project key
    * @return true to perform index update now
@@ -258,6 +498,9 @@ public class JIRAProjectIndexerCoordinator implements IJIRAProjectIndexerCoordin
   protected boolean projectIndexUpdateNecessary(String projectKey) throws Exception {
     Date lastIndexing = esIntegrationComponent.readDatetimeValue(projectKey,
         STORE_PROPERTYNAME_LAST_INDEX_UPDATE_START_DATE);
+    Date indexedUntil = projectIndexedUntil.get(projectKey);
+    if (indexedUntil != null && (lastIndexing == null || indexedUntil.after(lastIndexing)))
+      lastIndexing = indexedUntil;
     if (logger.isDebugEnabled())
       logger.debug("Project {} last indexing start date is {}. We perform next indexing after {}ms.", projectKey,
           lastIndexing, indexUpdatePeriod);
@@ -285,6 +528,26 @@ public class JIRAProjectIndexerCoordinator implements IJIRAProjectIndexerCoordin
     return lastIndexing == null || lastIndexing.getTime() < ((System.currentTimeMillis() - indexFullUpdatePeriod));
   }
 
+  /**
+   * Check if issues deleted from JIRA have to be removed from search index for given JIRA project during incremental
+   * update performed now.
+   * 
+   * @param projectKey JIRA project key
+   * @return true to perform delete sync now
+   * @throws IOException
+   */
+  protected boolean projectIndexDeleteSyncNecessary(String projectKey) throws Exception {
+    if (indexDeleteSyncPeriod < 1) {
+      return false;
+    }
+    Date lastDeleteSync = esIntegrationComponent.readDatetimeValue(projectKey,
+        STORE_PROPERTYNAME_LAST_INDEX_DELETE_SYNC_DATE);
+    if (logger.isDebugEnabled())
+      logger.debug("Project {} last delete sync date is {}. We perform next delete sync after {}ms.", projectKey,
+          lastDeleteSync, indexDeleteSyncPeriod);
+    return lastDeleteSync == null || lastDeleteSync.getTime() < ((System.currentTimeMillis() - indexDeleteSyncPeriod));
+  }
+
   @Override
   public void forceFullReindex(String projectKey) throws Exception {
     esIntegrationComponent.storeDatetimeValue(projectKey, STORE_PROPERTYNAME_FORCE_INDEX_FULL_UPDATE_DATE, new Date(),
@@ -293,9 +556,17 @@ public class JIRAProjectIndexerCoordinator implements IJIRAProjectIndexerCoordin
 
   @Override
   public void reportIndexingFinished(String jiraProjectKey, boolean finishedOK, boolean fullUpdate) {
+    Date startDate = null;
+    JIRAProjectIndexer indexer = null;
     synchronized (projectIndexerThreads) {
       projectIndexerThreads.remove(jiraProjectKey);
-      projectIndexers.remove(jiraProjectKey);
+      indexer = projectIndexers.remove(jiraProjectKey);
+      startDate = projectIndexerStartDates.remove(jiraProjectKey);
+    }
+    if (finishedOK && startDate != null && incrementalBatchSize > 1) {
+      projectIndexedUntil.put(jiraProjectKey, startDate);
+    } else {
+      projectIndexedUntil.remove(jiraProjectKey);
     }
     if (finishedOK && fullUpdate) {
       try {
@@ -310,6 +581,15 @@ public class JIRAProjectIndexerCoordinator implements IJIRAProjectIndexerCoordin
         logger.error("Can't store {} value due: {}", STORE_PROPERTYNAME_FORCE_INDEX_FULL_UPDATE_DATE, e.getMessage());
       }
     }
+    // full update removes deleted issues too
+    if (finishedOK && indexDeleteSyncPeriod > 0 && (fullUpdate || (indexer != null && indexer.deleteSync))) {
+      try {
+        esIntegrationComponent.storeDatetimeValue(jiraProjectKey, STORE_PROPERTYNAME_LAST_INDEX_DELETE_SYNC_DATE,
+            new Date(), null);
+      } catch (Exception e) {
+        logger.error("Can't store {} value due: {}", STORE_PROPERTYNAME_LAST_INDEX_DELETE_SYNC_DATE, e.getMessage());
+      }
+    }
   }
 
   /**
@@ -321,6 +601,87 @@ public class JIRAProjectIndexerCoordinator implements IJIRAProjectIndexerCoordin
     this.indexFullUpdatePeriod = indexFullUpdatePeriod;
   }
 
+  /**
+   * Configuration - Set period of removal of issues deleted from JIRA during incremental update [ms]. value <= 0 means
+   * never.
+   * 
+   * @param indexDeleteSyncPeriod to set
+   * @see JIRAProjectIndexer#setDeleteSync(boolean)
+   */
+  public void setIndexDeleteSyncPeriod(long indexDeleteSyncPeriod) {
+    this.indexDeleteSyncPeriod = indexDeleteSyncPeriod;
+  }
+
+  /**
+   * Configuration - Set maximal number of pages of updated issues requested from JIRA in advance by indexers.
+   * 
+   * @param prefetchDepth to set. 0 means no prefetch.
+   * @see JIRAProjectIndexer#setPrefetchDepth(int)
+   */
+  public void setPrefetchDepth(int prefetchDepth) {
+    this.prefetchDepth = prefetchDepth;
+  }
+
+  /**
+   * Configuration - Set number of time windows update history is split into during full update by indexers, and number
+   * of threads used by one indexer to index them in parallel.
+   * 
+   * @param fullUpdateSlices number of time windows, 0 or 1 means no split
+   * @param fullUpdateSliceThreads maximal number of threads used to index windows in parallel
+   * @see JIRAProjectIndexer#setFullUpdateSlices(int, int)
+   */
+  public void setFullUpdateSlices(int fullUpdateSlices, int fullUpdateSliceThreads) {
+    this.fullUpdateSlices = fullUpdateSlices;
+    this.fullUpdateSliceThreads = fullUpdateSliceThreads;
+  }
+
+  /**
+   * Configuration - Set if indexers page over issues updated in the same minute by issue key instead of
+   * <code>startAt</code> offset.
+   * 
+   * @param keysetPagination to set
+   * @see JIRAProjectIndexer#setKeysetPagination(boolean)
+   */
+  public void setKeysetPagination(boolean keysetPagination) {
+    this.keysetPagination = keysetPagination;
+  }
+
+  /**
+   * Configuration - Set pipeline used by indexers to execute bulk requests in parallel.
+   * 
+   * @param bulkConcurrentRequests maximal number of bulk requests in flight for one indexer, 0 means no pipeline
+   * @param bulkMaxActions maximal number of actions in one bulk request
+   * @param bulkMaxBytes maximal size of one bulk request [bytes]
+   * @param bulkFlushInterval maximal time actions are collected into one bulk request [ms]
+   * @see JIRAProjectIndexer#setBulkPipeline(int, int, long, long)
+   */
+  public void setBulkPipeline(int bulkConcurrentRequests, int bulkMaxActions, long bulkMaxBytes, long bulkFlushInterval) {
+    this.bulkConcurrentRequests = bulkConcurrentRequests;
+    this.bulkMaxActions = bulkMaxActions;
+    this.bulkMaxBytes = bulkMaxBytes;
+    this.bulkFlushInterval = bulkFlushInterval;
+  }
+
+  /**
+   * Configuration - Set controller of load put on ElasticSearch cluster by bulk requests of all indexers.
+   * 
+   * @param bulkLoadController to set
+   * @see JIRAProjectIndexer#setBulkLoadController(ESBulkLoadController)
+   */
+  public void setBulkLoadController(ESBulkLoadController bulkLoadController) {
+    this.bulkLoadController = bulkLoadController;
+  }
+
+  /**
+   * Configuration - Set max number of projects checked for changes by one JIRA call in incremental update.
+   * 
+   * @param incrementalBatchSize to set. 0 or 1 means projects are not checked, but indexer is started for each of them.
+   * @see #filterChangedProjects(List)
+   */
+  public void setIncrementalBatchSize(int incrementalBatchSize) {
+    this.incrementalBatchSize = incrementalBatchSize;
+  }
+
   @Override
   public List<ProjectIndexingInfo> getCurrentProjectIndexingInfo() {
     List<ProjectIndexingInfo> ret = new ArrayList<ProjectIndexingInfo>();
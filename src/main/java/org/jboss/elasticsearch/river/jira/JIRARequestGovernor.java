@@ -0,0 +1,335 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+/**
+ * Governor of requests sent to one JIRA server, shared by all JIRA rivers running on the node which use the same JIRA
+ * server. It limits both rate of requests (token bucket with one second burst) and number of requests in flight.
+ * Permits are granted to waiting rivers in round robin manner, so river with more indexing threads can't starve other
+ * rivers. Circuit breaker pauses all requests for some time if configured number of consecutive requests failed, so
+ * indexers do not time out one after another while JIRA is down. Each river registers own limits, the most restrictive
+ * ones are used.
+ * <p>
+ * Usage: call {@link #acquire(String)} before request is sent to JIRA and {@link #release()} when response is read.
+ * Call {@link #recordSuccess()} or {@link #recordFailure()} when result of request is known.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ * @see #getInstance(String)
+ */
+public class JIRARequestGovernor {
+
+	private static final ESLogger logger = Loggers.getLogger(JIRARequestGovernor.class);
+
+	/**
+	 * Governors for JIRA servers on this node. Key is JIRA host with port.
+	 */
+	private static final ConcurrentMap<String, JIRARequestGovernor> governors = new ConcurrentHashMap<String, JIRARequestGovernor>();
+
+	/**
+	 * Get governor for given JIRA server, create new one if not exists yet.
+	 *
+	 * @param jiraHost host (with port) of JIRA server
+	 * @return governor, never null
+	 */
+	public static JIRARequestGovernor getInstance(String jiraHost) {
+		JIRARequestGovernor ret = governors.get(jiraHost);
+		if (ret == null) {
+			ret = new JIRARequestGovernor(jiraHost);
+			JIRARequestGovernor old = governors.putIfAbsent(jiraHost, ret);
+			if (old != null)
+				ret = old;
+		}
+		return ret;
+	}
+
+	protected final String jiraHost;
+
+	/**
+	 * Limits registered by rivers. Key is river name, value is array with max requests per second, max concurrent
+	 * requests, circuit breaker threshold and circuit breaker pause.
+	 */
+	protected final Map<String, double[]> riverLimits = new HashMap<String, double[]>();
+
+	/**
+	 * Effective max requests per second, 0 means unlimited.
+	 */
+	protected double maxRequestsPerSecond = 0;
+
+	/**
+	 * Effective max concurrent requests, 0 means unlimited.
+	 */
+	protected int maxConcurrentRequests = 0;
+
+	/**
+	 * Effective number of consecutive failed requests which opens circuit breaker, 0 means circuit breaker disabled.
+	 */
+	protected int circuitBreakerThreshold = 0;
+
+	/**
+	 * Effective time in milliseconds requests are paused for when circuit breaker is open.
+	 */
+	protected long circuitBreakerPause = 0;
+
+	private int consecutiveFailures = 0;
+
+	/**
+	 * Time until circuit breaker is open, 0 if closed.
+	 */
+	private long circuitOpenUntil = 0;
+
+	private double tokens = 1;
+
+	private long lastRefillTime = System.nanoTime();
+
+	private int inFlight = 0;
+
+	/**
+	 * Rivers waiting for permit in order they get it. Each river is here only once.
+	 */
+	private final LinkedList<String> waitingRivers = new LinkedList<String>();
+
+	/**
+	 * Number of threads waiting for permit per river.
+	 */
+	private final Map<String, Integer> waitingCounts = new HashMap<String, Integer>();
+
+	private long statsRequests = 0;
+
+	private long statsWaitTimeTotal = 0;
+
+	private long statsWaitTimeMax = 0;
+
+	protected JIRARequestGovernor(String jiraHost) {
+		this.jiraHost = jiraHost;
+	}
+
+	/**
+	 * Register limits of given river. Effective limits of governor are recalculated.
+	 *
+	 * @param riverName name of river
+	 * @param maxRequestsPerSecond max requests per second to JIRA server, 0 for unlimited
+	 * @param maxConcurrentRequests max concurrent requests to JIRA server, 0 for unlimited
+	 * @param circuitBreakerThreshold number of consecutive failed requests which opens circuit breaker, 0 to disable it
+	 * @param circuitBreakerPause time in milliseconds requests are paused for when circuit breaker is open
+	 */
+	public synchronized void register(String riverName, double maxRequestsPerSecond, int maxConcurrentRequests,
+			int circuitBreakerThreshold, long circuitBreakerPause) {
+		riverLimits.put(riverName, new double[] { maxRequestsPerSecond, maxConcurrentRequests, circuitBreakerThreshold,
+				circuitBreakerPause });
+		recalculateLimits();
+	}
+
+	/**
+	 * Unregister limits of given river. Effective limits of governor are recalculated.
+	 *
+	 * @param riverName name of river
+	 */
+	public synchronized void unregister(String riverName) {
+		riverLimits.remove(riverName);
+		recalculateLimits();
+	}
+
+	private void recalculateLimits() {
+		double rps = 0;
+		int conc = 0;
+		int cbThreshold = 0;
+		long cbPause = 0;
+		for (double[] limits : riverLimits.values()) {
+			if (limits[0] > 0 && (rps == 0 || limits[0] < rps))
+				rps = limits[0];
+			if (limits[1] > 0 && (conc == 0 || limits[1] < conc))
+				conc = (int) limits[1];
+			if (limits[2] > 0 && (cbThreshold == 0 || limits[2] < cbThreshold))
+				cbThreshold = (int) limits[2];
+			if (limits[3] > cbPause)
+				cbPause = (long) limits[3];
+		}
+		circuitBreakerThreshold = cbThreshold;
+		circuitBreakerPause = cbPause;
+		if (circuitBreakerThreshold == 0)
+			circuitOpenUntil = 0;
+		if (rps != maxRequestsPerSecond || conc != maxConcurrentRequests) {
+			logger.info("JIRA requests limits for {} changed to {} requests per second and {} concurrent requests",
+					jiraHost, rps, conc);
+		}
+		maxRequestsPerSecond = rps;
+		maxConcurrentRequests = conc;
+		notifyAll();
+	}
+
+	/**
+	 * Wait for permit to send request to JIRA. {@link #release()} must be called when response is read.
+	 *
+	 * @param riverName name of river request is for
+	 * @return time spent waiting for permit in milliseconds
+	 * @throws InterruptedException if interrupted during wait, permit is not granted in this case
+	 */
+	public synchronized long acquire(String riverName) throws InterruptedException {
+		long startTime = System.currentTimeMillis();
+		Integer count = waitingCounts.get(riverName);
+		if (count == null) {
+			waitingRivers.addLast(riverName);
+			count = 0;
+		}
+		waitingCounts.put(riverName, count + 1);
+		boolean granted = false;
+		try {
+			while (true) {
+				long circuitWait = circuitOpenUntil - System.currentTimeMillis();
+				if (circuitWait > 0) {
+					wait(circuitWait);
+					continue;
+				}
+				long waitNanos = 0;
+				if (riverName.equals(waitingRivers.getFirst())
+						&& (maxConcurrentRequests <= 0 || inFlight < maxConcurrentRequests)) {
+					waitNanos = takeToken();
+					if (waitNanos == 0) {
+						inFlight++;
+						granted = true;
+						break;
+					}
+				}
+				if (waitNanos > 0) {
+					TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+				} else {
+					wait();
+				}
+			}
+		} finally {
+			// move river to the end of queue so other rivers get next permits (round robin)
+			int c = waitingCounts.get(riverName) - 1;
+			waitingRivers.remove(riverName);
+			if (c > 0) {
+				waitingCounts.put(riverName, c);
+				waitingRivers.addLast(riverName);
+			} else {
+				waitingCounts.remove(riverName);
+			}
+			notifyAll();
+		}
+		long waitTime = System.currentTimeMillis() - startTime;
+		if (granted) {
+			statsRequests++;
+			statsWaitTimeTotal += waitTime;
+			if (waitTime > statsWaitTimeMax)
+				statsWaitTimeMax = waitTime;
+		}
+		return waitTime;
+	}
+
+	/**
+	 * Take token from bucket if available.
+	 *
+	 * @return 0 if token was taken, time in nanoseconds until next token is available otherwise
+	 */
+	private long takeToken() {
+		if (maxRequestsPerSecond <= 0)
+			return 0;
+		long now = System.nanoTime();
+		tokens = Math.min(Math.max(1, maxRequestsPerSecond), tokens + (now - lastRefillTime) * maxRequestsPerSecond
+				/ TimeUnit.SECONDS.toNanos(1));
+		lastRefillTime = now;
+		if (tokens >= 1) {
+			tokens -= 1;
+			return 0;
+		}
+		return Math.max(1, (long) ((1 - tokens) * TimeUnit.SECONDS.toNanos(1) / maxRequestsPerSecond));
+	}
+
+	/**
+	 * Release permit obtained by {@link #acquire(String)}.
+	 */
+	public synchronized void release() {
+		if (inFlight > 0)
+			inFlight--;
+		notifyAll();
+	}
+
+	/**
+	 * Record successful request to JIRA, so circuit breaker is closed.
+	 */
+	public synchronized void recordSuccess() {
+		consecutiveFailures = 0;
+		if (circuitOpenUntil > 0) {
+			circuitOpenUntil = 0;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Record request to JIRA failed due JIRA server problem (timeout, service unavailable etc.). Circuit breaker is
+	 * opened if threshold of consecutive failures is reached.
+	 */
+	public synchronized void recordFailure() {
+		consecutiveFailures++;
+		if (circuitBreakerThreshold > 0 && consecutiveFailures >= circuitBreakerThreshold && !isCircuitOpen()) {
+			circuitOpenUntil = System.currentTimeMillis() + circuitBreakerPause;
+			logger.warn("JIRA server {} seems down after {} consecutive failed requests, all requests paused for {}ms",
+					jiraHost, consecutiveFailures, circuitBreakerPause);
+		}
+	}
+
+	/**
+	 * @return true if circuit breaker is open so requests are paused
+	 */
+	public synchronized boolean isCircuitOpen() {
+		return circuitOpenUntil > System.currentTimeMillis();
+	}
+
+	/**
+	 * Write info about this governor into object named <code>request_governor</code> in given builder.
+	 *
+	 * @param builder to write into
+	 * @return builder for chaining
+	 * @throws IOException
+	 */
+	public synchronized XContentBuilder buildDocument(XContentBuilder builder) throws IOException {
+		builder.startObject("request_governor");
+		builder.field("jira_host", jiraHost);
+		builder.field("max_requests_per_second", maxRequestsPerSecond);
+		builder.field("max_concurrent_requests", maxConcurrentRequests);
+		builder.field("requests", statsRequests);
+		builder.field("in_flight", getInFlightCount());
+		builder.field("waiting", getWaitingCount());
+		builder.field("wait_time_total", statsWaitTimeTotal + "ms");
+		builder.field("wait_time_max", statsWaitTimeMax + "ms");
+		builder.field("circuit_breaker", isCircuitOpen() ? "open" : "closed");
+		builder.field("consecutive_failures", consecutiveFailures);
+		builder.endObject();
+		return builder;
+	}
+
+	/**
+	 * @return number of requests holding permit
+	 */
+	public synchronized int getInFlightCount() {
+		return inFlight;
+	}
+
+	/**
+	 * @return number of threads waiting for permit
+	 */
+	public synchronized int getWaitingCount() {
+		int ret = 0;
+		for (Integer c : waitingCounts.values())
+			ret += c;
+		return ret;
+	}
+
+}
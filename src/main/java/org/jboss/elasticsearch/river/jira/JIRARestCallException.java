@@ -0,0 +1,48 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+/**
+ * Exception thrown when JIRA REST API call returns unsuccessful HTTP status code.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class JIRARestCallException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int statusCode;
+
+	private final String retryAfter;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param message of exception
+	 * @param statusCode HTTP status code returned from JIRA
+	 * @param retryAfter value of <code>Retry-After</code> HTTP header returned from JIRA, can be null
+	 */
+	public JIRARestCallException(String message, int statusCode, String retryAfter) {
+		super(message);
+		this.statusCode = statusCode;
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * @return HTTP status code returned from JIRA
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * @return value of <code>Retry-After</code> HTTP header returned from JIRA, null if not returned
+	 */
+	public String getRetryAfter() {
+		return retryAfter;
+	}
+
+}
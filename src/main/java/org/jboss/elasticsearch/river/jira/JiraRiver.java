@@ -15,17 +15,24 @@ import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.get.MultiGetResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.action.support.IndicesOptions;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.SettingsException;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.common.xcontent.XContentBuilder;
@@ -69,6 +76,16 @@ public class JiraRiver extends AbstractRiverComponent implements River, IESInteg
 
 	public static final String INDEX_ACTIVITY_TYPE_NAME_DEFAULT = "jira_river_indexupdate";
 
+	/**
+	 * Value of jira/transport config - blocking http client is used to call JIRA.
+	 */
+	public static final String JIRA_TRANSPORT_SYNC = "sync";
+
+	/**
+	 * Value of jira/transport config - non-blocking http client is used to call JIRA.
+	 */
+	public static final String JIRA_TRANSPORT_ASYNC = "async";
+
 	/**
 	 * ElasticSearch client to be used for indexing
 	 */
@@ -89,6 +106,56 @@ public class JiraRiver extends AbstractRiverComponent implements River, IESInteg
 	 */
 	protected int maxIndexingThreads;
 
+	/**
+	 * Config - maximal number of pages of updated issues requested from JIRA in advance by one indexing thread
+	 */
+	protected int prefetchDepth = 0;
+
+	/**
+	 * Config - number of time windows project update history is split into during full update
+	 */
+	protected int fullUpdateSlices = 0;
+
+	/**
+	 * Config - maximal number of threads used by one indexing thread to index time windows during full update
+	 */
+	protected int fullUpdateSliceThreads = 1;
+
+	/**
+	 * Config - if issues updated in the same minute are paged over by issue key instead of startAt offset
+	 */
+	protected boolean keysetPagination = false;
+
+	/**
+	 * Config - maximal number of bulk requests in flight for one indexing thread, 0 means no bulk pipeline
+	 */
+	protected int bulkConcurrentRequests = 0;
+
+	/**
+	 * Config - maximal number of actions in one bulk request
+	 */
+	protected int bulkMaxActions = 1000;
+
+	/**
+	 * Config - maximal size of one bulk request [bytes]
+	 */
+	protected long bulkMaxBytes = 5 * 1024 * 1024;
+
+	/**
+	 * Config - maximal time actions are collected into one bulk request [ms]
+	 */
+	protected long bulkFlushInterval = 5 * 1000;
+
+	/**
+	 * Controller of load put on ElasticSearch cluster by bulk requests, created from configuration
+	 */
+	protected ESBulkLoadController bulkLoadController;
+
+	/**
+	 * Config - maximal number of projects checked for changes by one JIRA call in incremental update
+	 */
+	protected int incrementalBatchSize = 0;
+
 	/**
 	 * Config - index update period [ms]
 	 */
@@ -99,6 +166,11 @@ public class JiraRiver extends AbstractRiverComponent implements River, IESInteg
 	 */
 	protected long indexFullUpdatePeriod = -1;
 
+	/**
+	 * Config - period of removal of issues deleted from JIRA during incremental update [ms]. 0 means never.
+	 */
+	protected long indexDeleteSyncPeriod = 0;
+
 	/**
 	 * Config - name of ElasticSearch index used to store issues from this river
 	 */
@@ -166,6 +238,18 @@ public class JiraRiver extends AbstractRiverComponent implements River, IESInteg
 	 */
 	protected Map<String, ProjectIndexingInfo> lastProjectIndexingInfo = new HashMap<String, ProjectIndexingInfo>();
 
+	/**
+	 * Cache of project related datetime values read by coordinator for each project in each check. Cleared when river
+	 * is started, so values changed in persistent store when river was stopped are read again.
+	 * 
+	 * @see #readDatetimeValue(String, String)
+	 */
+	protected final DatetimeValueCache datetimeValueCache = new DatetimeValueCache(
+			JIRAProjectIndexerCoordinator.STORE_PROPERTYNAME_LAST_INDEX_UPDATE_START_DATE,
+			JIRAProjectIndexerCoordinator.STORE_PROPERTYNAME_LAST_INDEX_FULL_UPDATE_DATE,
+			JIRAProjectIndexerCoordinator.STORE_PROPERTYNAME_FORCE_INDEX_FULL_UPDATE_DATE,
+			JIRAProjectIndexerCoordinator.STORE_PROPERTYNAME_LAST_INDEX_DELETE_SYNC_DATE);
+
 	/**
 	 * Date of last restart of this river.
 	 */
@@ -213,17 +297,101 @@ public class JiraRiver extends AbstractRiverComponent implements River, IESInteg
 			}
 			Integer timeout = new Long(Utils.parseTimeValue(jiraSettings, "timeout", 5, TimeUnit.SECONDS)).intValue();
 			jiraUser = XContentMapValues.nodeStringValue(jiraSettings.get("username"), "Anonymous access");
-			jiraClient = new JIRA5RestClient(jiraUrlBase, XContentMapValues.nodeStringValue(jiraSettings.get("username"),
-					null), XContentMapValues.nodeStringValue(jiraSettings.get("pwd"), null), timeout);
-			jiraClient.setListJIRAIssuesMax(XContentMapValues.nodeIntegerValue(jiraSettings.get("maxIssuesPerRequest"), 50));
+			String transport = XContentMapValues.nodeStringValue(jiraSettings.get("transport"), JIRA_TRANSPORT_SYNC);
+			IJIRAClient newJiraClient = null;
+			if (JIRA_TRANSPORT_SYNC.equalsIgnoreCase(transport)) {
+				newJiraClient = new JIRA5RestClient(jiraUrlBase, XContentMapValues.nodeStringValue(
+						jiraSettings.get("username"), null), XContentMapValues.nodeStringValue(jiraSettings.get("pwd"), null),
+						timeout);
+			} else if (JIRA_TRANSPORT_ASYNC.equalsIgnoreCase(transport)) {
+				newJiraClient = new JIRA5AsyncRestClient(jiraUrlBase, XContentMapValues.nodeStringValue(
+						jiraSettings.get("username"), null), XContentMapValues.nodeStringValue(jiraSettings.get("pwd"), null),
+						timeout, XContentMapValues.nodeIntegerValue(jiraSettings.get("asyncIoThreads"),
+								JIRA5AsyncRestClient.DEFAULT_IO_THREAD_COUNT));
+			} else {
+				throw new SettingsException("jira/transport element of configuration structure contains unsupported value '"
+						+ transport + "', use '" + JIRA_TRANSPORT_SYNC + "' or '" + JIRA_TRANSPORT_ASYNC + "'");
+			}
+			closeJiraClient();
+			jiraClient = newJiraClient;
+			int maxIssuesPerRequest = XContentMapValues.nodeIntegerValue(jiraSettings.get("maxIssuesPerRequest"), 50);
+			jiraClient.setListJIRAIssuesMax(maxIssuesPerRequest);
+			int maxIssuesPerRequestMin = XContentMapValues.nodeIntegerValue(jiraSettings.get("maxIssuesPerRequestMin"),
+					maxIssuesPerRequest);
+			int maxIssuesPerRequestMax = XContentMapValues.nodeIntegerValue(jiraSettings.get("maxIssuesPerRequestMax"),
+					maxIssuesPerRequest);
+			if (maxIssuesPerRequestMin < 1 || maxIssuesPerRequestMin > maxIssuesPerRequestMax) {
+				throw new SettingsException(
+						"jira/maxIssuesPerRequestMin element of configuration structure must be positive and not greater than jira/maxIssuesPerRequestMax");
+			}
+			jiraClient.setListJIRAIssuesMaxBounds(maxIssuesPerRequestMin, maxIssuesPerRequestMax);
+			jiraClient.setStreamingResponseParsing(XContentMapValues.nodeBooleanValue(
+					jiraSettings.get("streamingResponseParsing"), false));
+			jiraClient.setCompression(XContentMapValues.nodeBooleanValue(jiraSettings.get("compression"), false));
+			double maxRequestsPerSecond = XContentMapValues.nodeDoubleValue(jiraSettings.get("maxRequestsPerSecond"), 0);
+			int maxConcurrentRequests = XContentMapValues.nodeIntegerValue(jiraSettings.get("maxConcurrentRequests"), 0);
+			if (maxRequestsPerSecond < 0 || maxConcurrentRequests < 0) {
+				throw new SettingsException(
+						"jira/maxRequestsPerSecond and jira/maxConcurrentRequests elements of configuration structure can't be negative");
+			}
+			int circuitBreakerThreshold = XContentMapValues.nodeIntegerValue(jiraSettings.get("circuitBreakerThreshold"), 0);
+			if (circuitBreakerThreshold < 0) {
+				throw new SettingsException(
+						"jira/circuitBreakerThreshold element of configuration structure can't be negative");
+			}
+			jiraClient.setRequestGovernance(riverName().getName(), maxRequestsPerSecond, maxConcurrentRequests,
+					circuitBreakerThreshold, Utils.parseTimeValue(jiraSettings, "circuitBreakerPause", 1, TimeUnit.MINUTES));
+			int maxRetries = XContentMapValues.nodeIntegerValue(jiraSettings.get("maxRetries"), 0);
+			if (maxRetries < 0) {
+				throw new SettingsException("jira/maxRetries element of configuration structure can't be negative");
+			}
+			jiraClient.setRetryPolicy(maxRetries,
+					Utils.parseTimeValue(jiraSettings, "retryBackoffInitial", 1, TimeUnit.SECONDS),
+					Utils.parseTimeValue(jiraSettings, "retryBackoffMax", 1, TimeUnit.MINUTES));
 			if (jiraSettings.get("jqlTimeZone") != null) {
 				TimeZone tz = TimeZone.getTimeZone(XContentMapValues.nodeStringValue(jiraSettings.get("jqlTimeZone"), null));
 				jiraJqlTimezone = tz.getDisplayName();
 				jiraClient.setJQLDateFormatTimezone(tz);
 			}
 			maxIndexingThreads = XContentMapValues.nodeIntegerValue(jiraSettings.get("maxIndexingThreads"), 1);
+			prefetchDepth = XContentMapValues.nodeIntegerValue(jiraSettings.get("prefetchDepth"), 0);
+			if (prefetchDepth < 0) {
+				throw new SettingsException("jira/prefetchDepth element of configuration structure can't be negative");
+			}
+			fullUpdateSlices = XContentMapValues.nodeIntegerValue(jiraSettings.get("fullUpdateSlices"), 0);
+			fullUpdateSliceThreads = XContentMapValues.nodeIntegerValue(jiraSettings.get("fullUpdateSliceThreads"),
+					Math.max(1, fullUpdateSlices));
+			if (fullUpdateSliceThreads < 1) {
+				throw new SettingsException("jira/fullUpdateSliceThreads element of configuration structure must be positive");
+			}
+			keysetPagination = XContentMapValues.nodeBooleanValue(jiraSettings.get("keysetPagination"), false);
+			incrementalBatchSize = XContentMapValues.nodeIntegerValue(jiraSettings.get("incrementalBatchSize"), 0);
+			if (incrementalBatchSize < 0) {
+				throw new SettingsException("jira/incrementalBatchSize element of configuration structure can't be negative");
+			}
+			bulkConcurrentRequests = XContentMapValues.nodeIntegerValue(jiraSettings.get("bulkConcurrentRequests"), 0);
+			if (bulkConcurrentRequests < 0) {
+				throw new SettingsException("jira/bulkConcurrentRequests element of configuration structure can't be negative");
+			}
+			bulkMaxActions = XContentMapValues.nodeIntegerValue(jiraSettings.get("bulkMaxActions"), 1000);
+			if (bulkMaxActions < 1) {
+				throw new SettingsException("jira/bulkMaxActions element of configuration structure must be positive");
+			}
+			bulkMaxBytes = ByteSizeValue.parseBytesSizeValue(
+					XContentMapValues.nodeStringValue(jiraSettings.get("bulkMaxSize"), null), new ByteSizeValue(5, ByteSizeUnit.MB))
+					.bytes();
+			bulkFlushInterval = Utils.parseTimeValue(jiraSettings, "bulkFlushInterval", 5, TimeUnit.SECONDS);
+			int bulkMaxRetries = XContentMapValues.nodeIntegerValue(jiraSettings.get("bulkMaxRetries"), 0);
+			if (bulkMaxRetries < 0) {
+				throw new SettingsException("jira/bulkMaxRetries element of configuration structure can't be negative");
+			}
+			bulkLoadController = new ESBulkLoadController(bulkConcurrentRequests, bulkMaxActions, bulkMaxBytes,
+					Utils.parseTimeValue(jiraSettings, "bulkTargetLatency", 0, TimeUnit.SECONDS), bulkMaxRetries,
+					Utils.parseTimeValue(jiraSettings, "bulkRetryBackoffInitial", 1, TimeUnit.SECONDS),
+					Utils.parseTimeValue(jiraSettings, "bulkRetryBackoffMax", 1, TimeUnit.MINUTES));
 			indexUpdatePeriod = Utils.parseTimeValue(jiraSettings, "indexUpdatePeriod", 5, TimeUnit.MINUTES);
 			indexFullUpdatePeriod = Utils.parseTimeValue(jiraSettings, "indexFullUpdatePeriod", 12, TimeUnit.HOURS);
+			indexDeleteSyncPeriod = Utils.parseTimeValue(jiraSettings, "indexDeleteSyncPeriod", 0, TimeUnit.MINUTES);
 			if (jiraSettings.containsKey("projectKeysIndexed")) {
 				allIndexedProjectsKeys = Utils.parseCsvString(XContentMapValues.nodeStringValue(
 						jiraSettings.get("projectKeysIndexed"), null));
@@ -280,6 +448,15 @@ public class JiraRiver extends AbstractRiverComponent implements River, IESInteg
 		}
 	}
 
+	/**
+	 * Release resources held by current {@link #jiraClient} if any.
+	 */
+	protected void closeJiraClient() {
+		if (jiraClient != null) {
+			jiraClient.close();
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	private void preparePreprocessors(Map<String, Object> indexSettings,
 			IJIRAIssueIndexStructureBuilder indexStructureBuilder) {
@@ -316,7 +493,7 @@ public class JiraRiver extends AbstractRiverComponent implements River, IESInteg
 		synchronized (riverInstances) {
 			addRunningInstance(this);
 		}
-		refreshSearchIndex(getRiverIndexName());
+		datetimeValueCache.clear();
 		try {
 			if ((permanentStopDate = readDatetimeValue(null, PERMSTOREPROP_RIVER_STOPPED_PERMANENTLY)) != null) {
 				logger
@@ -329,8 +506,16 @@ public class JiraRiver extends AbstractRiverComponent implements River, IESInteg
 		logger.info("starting JIRA River indexing process");
 		closed = false;
 		lastRestartDate = new Date();
-		coordinatorInstance = new JIRAProjectIndexerCoordinator(jiraClient, this, jiraIssueIndexStructureBuilder,
-				indexUpdatePeriod, maxIndexingThreads, indexFullUpdatePeriod);
+		JIRAProjectIndexerCoordinator coordinator = new JIRAProjectIndexerCoordinator(jiraClient, this,
+				jiraIssueIndexStructureBuilder, indexUpdatePeriod, maxIndexingThreads, indexFullUpdatePeriod);
+		coordinator.setPrefetchDepth(prefetchDepth);
+		coordinator.setFullUpdateSlices(fullUpdateSlices, fullUpdateSliceThreads);
+		coordinator.setIncrementalBatchSize(incrementalBatchSize);
+		coordinator.setKeysetPagination(keysetPagination);
+		coordinator.setBulkPipeline(bulkConcurrentRequests, bulkMaxActions, bulkMaxBytes, bulkFlushInterval);
+		coordinator.setBulkLoadController(bulkLoadController);
+		coordinator.setIndexDeleteSyncPeriod(indexDeleteSyncPeriod);
+		coordinatorInstance = coordinator;
 		coordinatorThread = acquireIndexingThread("jira_river_coordinator", coordinatorInstance);
 		coordinatorThread.start();
 	}
@@ -345,6 +530,7 @@ public class JiraRiver extends AbstractRiverComponent implements River, IESInteg
 		// free instances created in #start()
 		coordinatorThread = null;
 		coordinatorInstance = null;
+		closeJiraClient();
 		synchronized (riverInstances) {
 			riverInstances.remove(riverName().getName());
 		}
@@ -494,6 +680,12 @@ public class JiraRiver extends AbstractRiverComponent implements River, IESInteg
 			builder.field("name", esNode.getName());
 			builder.endObject();
 		}
+		if (jiraClient != null) {
+			jiraClient.buildStatisticsDocument(builder);
+		}
+		if (bulkLoadController != null && bulkLoadController.isAdaptive()) {
+			bulkLoadController.buildDocument(builder);
+		}
 		if (coordinatorInstance != null) {
 			List<ProjectIndexingInfo> currProjectIndexingInfo = coordinatorInstance.getCurrentProjectIndexingInfo();
 			if (currProjectIndexingInfo != null) {
@@ -650,11 +842,14 @@ public class JiraRiver extends AbstractRiverComponent implements River, IESInteg
 					"Going to write {} property with datetime value {} for project {} using {} update. Document name is {}.",
 					propertyName, datetime, projectKey, (esBulk != null ? "bulk" : "direct"), documentName);
 		if (esBulk != null) {
+			// bulk request may fail, so value is read from persistent store next time
+			datetimeValueCache.invalidate(projectKey, propertyName);
 			esBulk.add(indexRequest(getRiverIndexName()).type(riverName.name()).id(documentName)
 					.source(storeDatetimeValueBuildDocument(projectKey, propertyName, datetime)));
 		} else {
 			client.prepareIndex(getRiverIndexName(), riverName.name(), documentName)
 					.setSource(storeDatetimeValueBuildDocument(projectKey, propertyName, datetime)).execute().actionGet();
+			datetimeValueCache.put(projectKey, propertyName, datetime);
 		}
 	}
 
@@ -691,26 +886,80 @@ public class JiraRiver extends AbstractRiverComponent implements River, IESInteg
 
 	@Override
 	public Date readDatetimeValue(String projectKey, String propertyName) throws IOException {
-		Date lastDate = null;
+		boolean cacheable = datetimeValueCache.isCacheable(projectKey, propertyName);
+		if (cacheable) {
+			if (!datetimeValueCache.isLoaded())
+				loadDatetimeValueCache();
+			synchronized (datetimeValueCache) {
+				if (datetimeValueCache.contains(projectKey, propertyName))
+					return datetimeValueCache.get(projectKey, propertyName);
+			}
+		}
+
 		String documentName = prepareValueStoreDocumentName(projectKey, propertyName);
 
 		if (logger.isDebugEnabled())
 			logger.debug("Going to read datetime value from {} property for project {}. Document name is {}.", propertyName,
 					projectKey, documentName);
 
-		refreshSearchIndex(getRiverIndexName());
-		GetResponse lastSeqGetResponse = client.prepareGet(getRiverIndexName(), riverName.name(), documentName).execute()
-				.actionGet();
-		if (lastSeqGetResponse.isExists()) {
-			Object timestamp = lastSeqGetResponse.getSourceAsMap().get(STORE_FIELD_VALUE);
+		// realtime get returns the latest stored value without refresh of index
+		GetResponse lastSeqGetResponse = client.prepareGet(getRiverIndexName(), riverName.name(), documentName)
+				.setRealtime(true).execute().actionGet();
+		Date lastDate = readDatetimeValue(lastSeqGetResponse);
+		if (cacheable)
+			datetimeValueCache.putLoaded(projectKey, propertyName, lastDate);
+		return lastDate;
+	}
+
+	/**
+	 * Read datetime value from document obtained from persistent store.
+	 * 
+	 * @param response with document
+	 * @return datetime value or null if document doesn't exist
+	 */
+	private Date readDatetimeValue(GetResponse response) {
+		if (response.isExists()) {
+			Object timestamp = response.getSourceAsMap().get(STORE_FIELD_VALUE);
 			if (timestamp != null) {
-				lastDate = DateTimeUtils.parseISODateTime(timestamp.toString());
+				return DateTimeUtils.parseISODateTime(timestamp.toString());
 			}
 		} else {
 			if (logger.isDebugEnabled())
-				logger.debug("{} document doesn't exist in JIRA river persistent store", documentName);
+				logger.debug("{} document doesn't exist in JIRA river persistent store", response.getId());
 		}
-		return lastDate;
+		return null;
+	}
+
+	/**
+	 * Load values of all cached properties for all indexed projects into {@link #datetimeValueCache} by one multi get
+	 * request. Values not loaded (eg. if list of projects is not known yet) are read on demand later.
+	 */
+	protected void loadDatetimeValueCache() {
+		List<String> projectKeys = allIndexedProjectsKeys;
+		List<String> propertyNames = datetimeValueCache.getPropertyNames();
+		if (projectKeys != null && !projectKeys.isEmpty()) {
+			logger.debug("Going to load datetime values of {} projects from JIRA river persistent store", projectKeys.size());
+			try {
+				MultiGetRequestBuilder esMultiGet = client.prepareMultiGet().setRealtime(true);
+				for (String projectKey : projectKeys) {
+					for (String propertyName : propertyNames) {
+						esMultiGet.add(getRiverIndexName(), riverName.name(),
+								prepareValueStoreDocumentName(projectKey, propertyName));
+					}
+				}
+				MultiGetItemResponse[] items = esMultiGet.execute().actionGet().getResponses();
+				// responses are in order of requests
+				for (int i = 0; i < items.length; i++) {
+					if (!items[i].isFailed()) {
+						datetimeValueCache.putLoaded(projectKeys.get(i / propertyNames.size()),
+								propertyNames.get(i % propertyNames.size()), readDatetimeValue(items[i].getResponse()));
+					}
+				}
+			} catch (Exception e) {
+				logger.warn("Datetime values loading failed, so they will be read one by one: {}", e.getMessage());
+			}
+		}
+		datetimeValueCache.setLoaded(true);
 	}
 
 	@Override
@@ -721,10 +970,10 @@ public class JiraRiver extends AbstractRiverComponent implements River, IESInteg
 			logger.debug("Going to delete datetime value from {} property for project {}. Document name is {}.",
 					propertyName, projectKey, documentName);
 
-		refreshSearchIndex(getRiverIndexName());
-
+		datetimeValueCache.invalidate(projectKey, propertyName);
 		DeleteResponse lastSeqGetResponse = client.prepareDelete(getRiverIndexName(), riverName.name(), documentName)
 				.execute().actionGet();
+		datetimeValueCache.put(projectKey, propertyName, null);
 		if (!lastSeqGetResponse.isFound()) {
 			if (logger.isDebugEnabled()) {
 				logger.debug("{} document doesn't exist in JIRA river persistent store", documentName);
@@ -768,12 +1017,44 @@ public class JiraRiver extends AbstractRiverComponent implements River, IESInteg
 
 	@Override
 	public void executeESBulkRequest(BulkRequestBuilder esBulk) throws Exception {
-		BulkResponse response = esBulk.execute().actionGet();
-		if (response.hasFailures()) {
-			throw new ElasticsearchException("Failed to execute ES index bulk update: " + response.buildFailureMessage());
+		if (esBulk.numberOfActions() == 0)
+			return;
+		for (int attempt = 0;; attempt++) {
+			long startTime = System.currentTimeMillis();
+			BulkResponse response = esBulk.execute().actionGet();
+			if (!response.hasFailures()) {
+				if (bulkLoadController != null)
+					bulkLoadController.onResponse(System.currentTimeMillis() - startTime);
+				return;
+			}
+			BulkRequestBuilder retryBulk = prepareESBulkRequestBuilder();
+			if (bulkLoadController == null || attempt >= bulkLoadController.getMaxRetries()
+					|| !bulkLoadController.prepareRetry(esBulk, response, retryBulk)) {
+				throw new ElasticsearchException("Failed to execute ES index bulk update: " + response.buildFailureMessage());
+			}
+			bulkLoadController.onRejected();
+			long backoff = bulkLoadController.getRetryBackoff(attempt);
+			logger.warn("{} actions of ES bulk request rejected, retry in {} ms", retryBulk.numberOfActions(), backoff);
+			Thread.sleep(backoff);
+			esBulk = retryBulk;
 		}
 	}
 
+	@Override
+	public void executeESBulkRequestAsync(BulkRequestBuilder esBulk, ActionListener<BulkResponse> listener) {
+		esBulk.execute(listener);
+	}
+
+	@Override
+	public MultiGetRequestBuilder prepareESMultiGetRequestBuilder() {
+		return client.prepareMultiGet();
+	}
+
+	@Override
+	public MultiGetResponse executeESMultiGetRequest(MultiGetRequestBuilder esMultiGet) {
+		return esMultiGet.execute().actionGet();
+	}
+
 	@Override
 	public Thread acquireIndexingThread(String threadName, Runnable runnable) {
 		return EsExecutors.daemonThreadFactory(settings.globalSettings(), threadName).newThread(runnable);
@@ -781,15 +1062,22 @@ public class JiraRiver extends AbstractRiverComponent implements River, IESInteg
 
 	@Override
 	public void refreshSearchIndex(String indexName) {
-		client.admin().indices().prepareRefresh(indexName).execute().actionGet();
+		// index need not exist yet if issues are distributed into more indices
+		client.admin().indices().prepareRefresh(indexName).setIndicesOptions(IndicesOptions.lenient()).execute()
+				.actionGet();
+	}
+
+	@Override
+	public void addIndicesToAlias(String[] indexNames, String aliasName) {
+		client.admin().indices().prepareAliases().addAlias(indexNames, aliasName).execute().actionGet();
 	}
 
 	private static final long ES_SCROLL_KEEPALIVE = 60000;
 
 	@Override
 	public SearchRequestBuilder prepareESScrollSearchRequestBuilder(String indexName) {
-		return client.prepareSearch(indexName).setScroll(new TimeValue(ES_SCROLL_KEEPALIVE)).setSearchType(SearchType.SCAN)
-				.setSize(100);
+		return client.prepareSearch(indexName).setIndicesOptions(IndicesOptions.lenient())
+				.setScroll(new TimeValue(ES_SCROLL_KEEPALIVE)).setSearchType(SearchType.SCAN).setSize(100);
 	}
 
 	public SearchResponse executeESSearchRequest(SearchRequestBuilder searchRequestBuilder) {
@@ -28,6 +28,7 @@ public class ProjectIndexingInfo {
 	public static final String DOCFIELD_UPDATE_TYPE = "update_type";
 	public static final String DOCFIELD_START_DATE = "start_date";
 	public static final String DOCFIELD_PROJECT_KEY = "project_key";
+	public static final String DOCFIELD_DELETES_EXECUTED = "deletes_executed";
 	/**
 	 * Key of JIRA project this indexing is for.
 	 */
@@ -48,6 +49,11 @@ public class ProjectIndexingInfo {
 	 * Number of comment/changelog documents deleted during this indexing run.
 	 */
 	public int commentsDeleted;
+	/**
+	 * Number of delete requests (issues, comments and changelogs) already executed in search index during this indexing
+	 * run. Shows progress of delete phase of full update.
+	 */
+	public int deletesExecuted;
 
 	/**
 	 * Date of indexing start.
@@ -124,6 +130,8 @@ public class ProjectIndexingInfo {
 		builder.field(DOCFIELD_START_DATE, startDate);
 		builder.field(DOCFIELD_ISSUES_UPDATED, issuesUpdated);
 		builder.field(DOCFIELD_ISSUES_DELETED, issuesDeleted);
+		if (deletesExecuted > 0)
+			builder.field(DOCFIELD_DELETES_EXECUTED, deletesExecuted);
 		if (printFinalStatus) {
 			builder.field(DOCFIELD_RESULT, finishedOK ? DOCVAL_RESULT_OK : "ERROR");
 			builder.field(DOCFIELD_TIME_ELAPSED, timeElapsed + "ms");
@@ -149,6 +157,8 @@ public class ProjectIndexingInfo {
 		ret.startDate = DateTimeUtils.parseISODateTime((String) document.get(DOCFIELD_START_DATE));
 		ret.issuesUpdated = Utils.nodeIntegerValue(document.get(DOCFIELD_ISSUES_UPDATED));
 		ret.issuesDeleted = Utils.nodeIntegerValue(document.get(DOCFIELD_ISSUES_DELETED));
+		if (document.containsKey(DOCFIELD_DELETES_EXECUTED))
+			ret.deletesExecuted = Utils.nodeIntegerValue(document.get(DOCFIELD_DELETES_EXECUTED));
 		ret.finishedOK = DOCVAL_RESULT_OK.equals(document.get(DOCFIELD_RESULT));
 		ret.timeElapsed = Long.parseLong(((String) document.get(DOCFIELD_TIME_ELAPSED)).replace("ms", ""));
 		ret.errorMessage = (String) document.get(DOCFIELD_ERROR_MESSAGE);
@@ -65,6 +65,24 @@ public class ChangedIssuesResultsTest {
     Assert.assertEquals(1, tested.getIssuesCount());
   }
 
+  @Test
+  public void nextIssue() throws Exception {
+    ChangedIssuesResults tested = new ChangedIssuesResults(null, 1, 2, 3);
+    Assert.assertNull(tested.nextIssue());
+
+    List<Map<String, Object>> issues = new ArrayList<Map<String, Object>>();
+    Map<String, Object> issue1 = new HashMap<String, Object>();
+    Map<String, Object> issue2 = new HashMap<String, Object>();
+    issues.add(issue1);
+    issues.add(issue2);
+    tested = new ChangedIssuesResults(issues, 1, 2, 3);
+    Assert.assertEquals(issue1, tested.nextIssue());
+    Assert.assertEquals(issue2, tested.nextIssue());
+    Assert.assertNull(tested.nextIssue());
+    Assert.assertEquals(2, tested.getIssuesCount());
+    tested.close();
+  }
+
   @Test
   public void toStringTest() {
     ChangedIssuesResults tested = new ChangedIssuesResults(null, 1, 2, 3);
@@ -0,0 +1,78 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.util.Date;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link DatetimeValueCache}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class DatetimeValueCacheTest {
+
+	@Test
+	public void isCacheable() {
+		DatetimeValueCache tested = new DatetimeValueCache("prop1", "prop2");
+		Assert.assertEquals(2, tested.getPropertyNames().size());
+		Assert.assertTrue(tested.isCacheable("ORG", "prop1"));
+		Assert.assertTrue(tested.isCacheable("ORG", "prop2"));
+		Assert.assertFalse(tested.isCacheable("ORG", "prop3"));
+		Assert.assertFalse(tested.isCacheable(null, "prop1"));
+	}
+
+	@Test
+	public void putGetInvalidate() {
+		DatetimeValueCache tested = new DatetimeValueCache("prop1", "prop2");
+		Date d1 = new Date(1000);
+		Date d2 = new Date(2000);
+
+		Assert.assertFalse(tested.contains("ORG", "prop1"));
+		Assert.assertNull(tested.get("ORG", "prop1"));
+
+		tested.put("ORG", "prop1", d1);
+		tested.put("ORG", "prop2", null);
+		tested.put("ORG", "prop3", d1);
+		tested.put(null, "prop1", d1);
+		Assert.assertTrue(tested.contains("ORG", "prop1"));
+		Assert.assertEquals(d1, tested.get("ORG", "prop1"));
+		// case - value known as not stored is cached
+		Assert.assertTrue(tested.contains("ORG", "prop2"));
+		Assert.assertNull(tested.get("ORG", "prop2"));
+		// case - not cacheable values are ignored
+		Assert.assertFalse(tested.contains("ORG", "prop3"));
+		Assert.assertFalse(tested.contains(null, "prop1"));
+		Assert.assertFalse(tested.contains("AAA", "prop1"));
+
+		// case - loaded value doesn't overwrite value written meantime
+		tested.putLoaded("ORG", "prop1", d2);
+		Assert.assertEquals(d1, tested.get("ORG", "prop1"));
+		tested.putLoaded("AAA", "prop1", d2);
+		Assert.assertEquals(d2, tested.get("AAA", "prop1"));
+
+		tested.invalidate("ORG", "prop1");
+		Assert.assertFalse(tested.contains("ORG", "prop1"));
+		Assert.assertTrue(tested.contains("AAA", "prop1"));
+	}
+
+	@Test
+	public void clear() {
+		DatetimeValueCache tested = new DatetimeValueCache("prop1");
+		Assert.assertFalse(tested.isLoaded());
+		tested.put("ORG", "prop1", new Date());
+		tested.setLoaded(true);
+		Assert.assertTrue(tested.isLoaded());
+
+		tested.clear();
+		Assert.assertFalse(tested.isLoaded());
+		Assert.assertFalse(tested.contains("ORG", "prop1"));
+	}
+
+}
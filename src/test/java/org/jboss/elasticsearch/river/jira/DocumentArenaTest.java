@@ -0,0 +1,58 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link DocumentArena}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class DocumentArenaTest {
+
+	@Test
+	public void documents() throws Exception {
+		DocumentArena tested = new DocumentArena();
+		List<BytesReference> docs = new ArrayList<BytesReference>();
+		// more documents than initial buffer size so buffer grows
+		for (int i = 0; i < 1000; i++) {
+			XContentBuilder out = tested.startDocument();
+			out.startObject().field("id", i).field("text", "some text of document").endObject();
+			out.close();
+			docs.add(tested.documentBytes());
+		}
+		Assert.assertTrue(tested.size() > DocumentArena.INITIAL_SIZE);
+		for (int i = 0; i < docs.size(); i++) {
+			Assert.assertEquals("{\"id\":" + i + ",\"text\":\"some text of document\"}", docs.get(i).toUtf8());
+		}
+	}
+
+	@Test
+	public void rewriteNotAllowed() throws Exception {
+		DocumentArena tested = new DocumentArena();
+		try {
+			tested.reset();
+			Assert.fail("UnsupportedOperationException must be thrown");
+		} catch (UnsupportedOperationException e) {
+			// OK
+		}
+		try {
+			tested.seek(0);
+			Assert.fail("UnsupportedOperationException must be thrown");
+		} catch (UnsupportedOperationException e) {
+			// OK
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link DocumentIdSet}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class DocumentIdSetTest {
+
+	@Test
+	public void addAndContains() {
+		DocumentIdSet tested = new DocumentIdSet("ORG");
+		Assert.assertEquals(0, tested.size());
+		Assert.assertFalse(tested.contains("t", "ORG-1"));
+		Assert.assertFalse(tested.contains("t", null));
+
+		tested.add("t", "ORG-1");
+		tested.add("t", "ORG-125000");
+		tested.add("t", "ORG-1");
+		tested.add("t", null);
+		tested.add("c", "1");
+		tested.add("c", "123456789");
+		// ids not encoded as numbers
+		tested.add("t", "AAA-12");
+		tested.add("t", "ORG-01");
+		tested.add("c", "1234567890");
+		tested.add("c", "1a");
+
+		Assert.assertEquals(8, tested.size());
+		Assert.assertTrue(tested.contains("t", "ORG-1"));
+		Assert.assertTrue(tested.contains("t", "ORG-125000"));
+		Assert.assertTrue(tested.contains("c", "1"));
+		Assert.assertTrue(tested.contains("c", "123456789"));
+		Assert.assertTrue(tested.contains("t", "AAA-12"));
+		Assert.assertTrue(tested.contains("t", "ORG-01"));
+		Assert.assertTrue(tested.contains("c", "1234567890"));
+		Assert.assertTrue(tested.contains("c", "1a"));
+
+		// case - id in other type or encoded to other number is not in set
+		Assert.assertFalse(tested.contains("c", "ORG-1"));
+		Assert.assertFalse(tested.contains("t", "1"));
+		Assert.assertFalse(tested.contains("x", "ORG-1"));
+		Assert.assertFalse(tested.contains("t", "ORG-2"));
+		Assert.assertFalse(tested.contains("t", "AAA-1"));
+		Assert.assertFalse(tested.contains("c", "0"));
+	}
+
+	@Test
+	public void addMany() {
+		DocumentIdSet tested = new DocumentIdSet("ORG");
+		for (int i = 10000; i > 0; i--) {
+			tested.add("t", "ORG-" + i);
+			tested.add("c", "" + (i * 3));
+			if (i % 100 == 0)
+				Assert.assertTrue(tested.contains("t", "ORG-" + i));
+		}
+		// duplicities are not stored
+		for (int i = 1; i <= 10000; i++) {
+			tested.add("t", "ORG-" + i);
+		}
+		Assert.assertEquals(20000, tested.size());
+		for (int i = 1; i <= 10000; i++) {
+			Assert.assertTrue(tested.contains("t", "ORG-" + i));
+			Assert.assertTrue(tested.contains("c", "" + (i * 3)));
+			Assert.assertFalse(tested.contains("c", "" + (i * 3 + 1)));
+		}
+		Assert.assertFalse(tested.contains("t", "ORG-0"));
+		Assert.assertFalse(tested.contains("t", "ORG-10001"));
+	}
+
+	@Test
+	public void encodeId() {
+		DocumentIdSet tested = new DocumentIdSet("ORG");
+		Assert.assertEquals(0, tested.encodeId("0"));
+		Assert.assertEquals(123, tested.encodeId("123"));
+		Assert.assertEquals(-1, tested.encodeId("ORG-0"));
+		Assert.assertEquals(-124, tested.encodeId("ORG-123"));
+		Assert.assertEquals(Integer.MIN_VALUE, tested.encodeId("ORG-"));
+		Assert.assertEquals(Integer.MIN_VALUE, tested.encodeId("ORG-1a"));
+		Assert.assertEquals(Integer.MIN_VALUE, tested.encodeId("AAA-1"));
+		Assert.assertEquals(Integer.MIN_VALUE, tested.encodeId("01"));
+		Assert.assertEquals(Integer.MIN_VALUE, tested.encodeId(""));
+		Assert.assertEquals(Integer.MIN_VALUE, tested.encodeId("1234567890"));
+	}
+
+}
@@ -0,0 +1,155 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import junit.framework.Assert;
+
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link ESBulkLoadController}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class ESBulkLoadControllerTest {
+
+	@Test
+	public void onRejected() {
+		ESBulkLoadController tested = new ESBulkLoadController(4, 100, 1000, 0, 2, 1000, 5000);
+		Assert.assertEquals(4, tested.getConcurrentRequests());
+		Assert.assertEquals(100, tested.getMaxActions());
+		Assert.assertEquals(1000, tested.getMaxBytes());
+
+		tested.onRejected();
+		Assert.assertEquals(2, tested.getConcurrentRequests());
+		Assert.assertEquals(50, tested.getMaxActions());
+		Assert.assertEquals(500, tested.getMaxBytes());
+
+		// case - load is never lowered under minimum
+		for (int i = 0; i < 10; i++)
+			tested.onRejected();
+		Assert.assertEquals(1, tested.getConcurrentRequests());
+		Assert.assertEquals(6, tested.getMaxActions());
+		Assert.assertEquals(62, tested.getMaxBytes());
+
+		// case - load raised back to maximum when cluster recovers
+		tested.onResponse(10000);
+		Assert.assertEquals(2, tested.getConcurrentRequests());
+		Assert.assertEquals(7, tested.getMaxActions());
+		for (int i = 0; i < 20; i++)
+			tested.onResponse(10000);
+		Assert.assertEquals(4, tested.getConcurrentRequests());
+		Assert.assertEquals(100, tested.getMaxActions());
+		Assert.assertEquals(1000, tested.getMaxBytes());
+	}
+
+	@Test
+	public void onResponse_targetLatency() {
+		ESBulkLoadController tested = new ESBulkLoadController(4, 100, 1000, 1000, 0, 1000, 5000);
+
+		// case - slow response lowers load
+		tested.onResponse(2000);
+		Assert.assertEquals(3, tested.getConcurrentRequests());
+		Assert.assertEquals(75, tested.getMaxActions());
+
+		// case - response near target keeps load
+		tested.onResponse(700);
+		Assert.assertEquals(3, tested.getConcurrentRequests());
+		Assert.assertEquals(75, tested.getMaxActions());
+
+		// case - fast response raises load
+		tested.onResponse(100);
+		Assert.assertEquals(4, tested.getConcurrentRequests());
+		Assert.assertEquals(93, tested.getMaxActions());
+	}
+
+	@Test
+	public void isAdaptive() {
+		Assert.assertFalse(new ESBulkLoadController(1, 100, 1000, 0, 0, 1000, 5000).isAdaptive());
+		Assert.assertTrue(new ESBulkLoadController(1, 100, 1000, 0, 1, 1000, 5000).isAdaptive());
+		Assert.assertTrue(new ESBulkLoadController(1, 100, 1000, 1000, 0, 1000, 5000).isAdaptive());
+	}
+
+	@Test
+	public void getRetryBackoff() {
+		ESBulkLoadController tested = new ESBulkLoadController(1, 100, 1000, 0, 5, 1000, 5000);
+		for (int i = 0; i < 10; i++) {
+			assertBetween(500, 1000, tested.getRetryBackoff(0));
+			assertBetween(1000, 2000, tested.getRetryBackoff(1));
+			assertBetween(2500, 5000, tested.getRetryBackoff(5));
+			assertBetween(2500, 5000, tested.getRetryBackoff(100));
+		}
+	}
+
+	private void assertBetween(long min, long max, long value) {
+		Assert.assertTrue(value + " is not between " + min + " and " + max, value >= min && value <= max);
+	}
+
+	@Test
+	public void isRetryableFailure() {
+		Assert.assertFalse(ESBulkLoadController.isRetryableFailure(prepareOK(0)));
+		Assert.assertTrue(ESBulkLoadController.isRetryableFailure(prepareRejected(0)));
+		Assert.assertFalse(ESBulkLoadController.isRetryableFailure(prepareFailed(0)));
+	}
+
+	@Test
+	public void prepareRetry() {
+		ESBulkLoadController tested = new ESBulkLoadController(1, 100, 1000, 0, 5, 1000, 5000);
+		BulkRequestBuilder esBulk = new BulkRequestBuilder(null);
+		esBulk.add(new IndexRequest("idx", "t", "ORG-1").source("summary", "s"));
+		esBulk.add(new DeleteRequest("idx", "t", "ORG-2"));
+		esBulk.add(new IndexRequest("idx", "t", "ORG-3").source("summary", "s"));
+
+		// case - only rejected items are retried
+		BulkRequestBuilder retryBulk = new BulkRequestBuilder(null);
+		Assert.assertTrue(tested.prepareRetry(esBulk, new BulkResponse(new BulkItemResponse[] { prepareOK(0),
+				prepareRejected(1), prepareRejected(2) }, 10), retryBulk));
+		Assert.assertEquals(2, retryBulk.numberOfActions());
+		Assert.assertEquals("ORG-2", ((DeleteRequest) retryBulk.request().requests().get(0)).id());
+		Assert.assertEquals("ORG-3", ((IndexRequest) retryBulk.request().requests().get(1)).id());
+
+		// case - other failure is not retried
+		retryBulk = new BulkRequestBuilder(null);
+		Assert.assertFalse(tested.prepareRetry(esBulk, new BulkResponse(new BulkItemResponse[] { prepareFailed(0),
+				prepareRejected(1), prepareOK(2) }, 10), retryBulk));
+	}
+
+	@Test
+	public void buildDocument() throws Exception {
+		ESBulkLoadController tested = new ESBulkLoadController(4, 100, 1000, 0, 2, 1000, 5000);
+		tested.onRejected();
+		XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+		tested.buildDocument(builder);
+		builder.endObject();
+		Assert.assertEquals(
+				"{\"bulk_load\":{\"concurrent_requests\":2,\"max_actions\":50,\"max_bytes\":500,\"rejections\":1}}",
+				builder.string());
+	}
+
+	private BulkItemResponse prepareOK(int itemId) {
+		return new BulkItemResponse(itemId, "index", new IndexResponse("idx", "t", "ORG-" + itemId, 1, true));
+	}
+
+	private BulkItemResponse prepareRejected(int itemId) {
+		return new BulkItemResponse(itemId, "index", new BulkItemResponse.Failure("idx", "t", "ORG-" + itemId,
+				new EsRejectedExecutionException("rejected execution of bulk")));
+	}
+
+	private BulkItemResponse prepareFailed(int itemId) {
+		return new BulkItemResponse(itemId, "index", new BulkItemResponse.Failure("idx", "t", "ORG-" + itemId,
+				new Exception("MapperParsingException")));
+	}
+
+}
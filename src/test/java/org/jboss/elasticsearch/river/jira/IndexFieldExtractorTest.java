@@ -0,0 +1,162 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link IndexFieldExtractor}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class IndexFieldExtractorTest {
+
+	@Test
+	public void extractValue() {
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("myKey", "myValue");
+		Map<String, Object> parent = new HashMap<String, Object>();
+		values.put("parent", parent);
+		parent.put("myKey2", "myValue2");
+		parent.put("dotted.key", "dottedValue");
+		List<Object> list = new ArrayList<Object>();
+		parent.put("list", list);
+		Map<String, Object> item1 = new HashMap<String, Object>();
+		item1.put("name", "n1");
+		list.add(item1);
+		Map<String, Object> item2 = new HashMap<String, Object>();
+		item2.put("name", "n2");
+		list.add(item2);
+		list.add(new HashMap<String, Object>());
+
+		// case - null values
+		Assert.assertNull(new IndexFieldExtractor("f", "myKey", null).extractValue(null));
+
+		// case - first level
+		Assert.assertEquals("myValue", new IndexFieldExtractor("f", "myKey", null).extractValue(values));
+		Assert.assertNull(new IndexFieldExtractor("f", "unknown", null).extractValue(values));
+
+		// case - nested, same results as XContentMapValues
+		String[] paths = new String[] { "parent.myKey2", "parent.dotted.key", "parent.list.name", "parent.unknown",
+				"myKey.unknown", "parent.list" };
+		for (String path : paths) {
+			Assert.assertEquals(path, XContentMapValues.extractValue(path, values),
+					new IndexFieldExtractor("f", path, null).extractValue(values));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void extractValue_filter() {
+		Map<String, String> filter = new HashMap<String, String>();
+		filter.put("name", "display_name");
+
+		Map<String, Object> values = new HashMap<String, Object>();
+		Map<String, Object> user = new HashMap<String, Object>();
+		user.put("name", "John");
+		user.put("email", "john@example.org");
+		values.put("user", user);
+		values.put("text", "some text");
+
+		Map<String, Object> ret = (Map<String, Object>) new IndexFieldExtractor("f", "user", filter).extractValue(values);
+		Assert.assertEquals(1, ret.size());
+		Assert.assertEquals("John", ret.get("display_name"));
+
+		// case - not filterable value is returned as is
+		Assert.assertEquals("some text", new IndexFieldExtractor("f", "text", filter).extractValue(values));
+
+		// case - empty filter means no filtering
+		user.put("email", "john@example.org");
+		ret = (Map<String, Object>) new IndexFieldExtractor("f", "user", new HashMap<String, String>())
+				.extractValue(values);
+		Assert.assertTrue(ret.containsKey("email"));
+	}
+
+	@Test
+	public void writeValue() throws Exception {
+		Map<String, String> filter = new LinkedHashMap<String, String>();
+		filter.put("name", "display_name");
+		filter.put("email", "email_address");
+
+		Map<String, Object> values = new HashMap<String, Object>();
+		Map<String, Object> user = new HashMap<String, Object>();
+		user.put("name", "John");
+		user.put("email", null);
+		user.put("avatar", "url");
+		values.put("user", user);
+		List<Object> users = new ArrayList<Object>();
+		users.add(new HashMap<String, Object>(user));
+		users.add("not filterable");
+		values.put("users", users);
+		values.put("text", "some text");
+
+		// case - same content as written from extracted value, data are not changed
+		String[] fields = new String[] { "user", "users", "text", "unknown" };
+		for (String field : fields) {
+			Map<String, Object> copy = new HashMap<String, Object>(values);
+			copy.put("user", new HashMap<String, Object>(user));
+			List<Object> usersCopy = new ArrayList<Object>();
+			usersCopy.add(new HashMap<String, Object>(user));
+			usersCopy.add("not filterable");
+			copy.put("users", usersCopy);
+
+			IndexFieldExtractor tested = new IndexFieldExtractor("f", field, filter);
+			XContentBuilder expected = XContentFactory.jsonBuilder().startObject();
+			Object v = tested.extractValue(copy);
+			if (v != null)
+				expected.field("f", v);
+			XContentBuilder out = XContentFactory.jsonBuilder().startObject();
+			tested.writeValue(out, values);
+			Assert.assertEquals(field, XContentHelper.convertToMap(expected.endObject().bytes(), false).v2(),
+					XContentHelper.convertToMap(out.endObject().bytes(), false).v2());
+		}
+		Assert.assertEquals(3, user.size());
+
+		// case - null values
+		XContentBuilder out = XContentFactory.jsonBuilder().startObject();
+		new IndexFieldExtractor("f", "user", filter).writeValue(out, null);
+		Assert.assertEquals("{}", out.endObject().string());
+	}
+
+	@Test
+	public void compile() {
+		Assert.assertEquals(0, IndexFieldExtractor.compile(null, null).length);
+
+		Map<String, Map<String, String>> filtersConfig = new HashMap<String, Map<String, String>>();
+		Map<String, String> filter = new HashMap<String, String>();
+		filter.put("name", "name");
+		filtersConfig.put("user", filter);
+
+		Map<String, Map<String, String>> fieldsConfig = new LinkedHashMap<String, Map<String, String>>();
+		Map<String, String> fc = new HashMap<String, String>();
+		fc.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_FIELDS_JIRAFIELD, "fields.created");
+		fieldsConfig.put("created", fc);
+		fc = new HashMap<String, String>();
+		fc.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_FIELDS_JIRAFIELD, "fields.reporter");
+		fc.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_FIELDS_VALUEFILTER, "user");
+		fieldsConfig.put("reporter", fc);
+
+		IndexFieldExtractor[] ret = IndexFieldExtractor.compile(fieldsConfig, filtersConfig);
+		Assert.assertEquals(2, ret.length);
+		Assert.assertEquals("created", ret[0].getIndexField());
+		Assert.assertEquals("fields.created", ret[0].getValuePath());
+		Assert.assertEquals("reporter", ret[1].getIndexField());
+		Assert.assertEquals("fields.reporter", ret[1].getValuePath());
+	}
+
+}
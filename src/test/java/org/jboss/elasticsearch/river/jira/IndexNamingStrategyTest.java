@@ -0,0 +1,40 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import org.elasticsearch.common.settings.SettingsException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link IndexNamingStrategy}.
+ * 
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class IndexNamingStrategyTest {
+
+	@Test
+	public void parseConfiguration() {
+		Assert.assertEquals(IndexNamingStrategy.SINGLE,
+				IndexNamingStrategy.parseConfiguration("single", IndexNamingStrategy.PROJECT));
+		Assert.assertEquals(IndexNamingStrategy.PROJECT,
+				IndexNamingStrategy.parseConfiguration("Project", IndexNamingStrategy.SINGLE));
+		Assert.assertEquals(IndexNamingStrategy.PROJECT_GROUP,
+				IndexNamingStrategy.parseConfiguration("project_group", IndexNamingStrategy.SINGLE));
+		Assert.assertEquals(IndexNamingStrategy.CREATED_YEAR,
+				IndexNamingStrategy.parseConfiguration("created_year", IndexNamingStrategy.SINGLE));
+		Assert.assertEquals(IndexNamingStrategy.SINGLE, IndexNamingStrategy.parseConfiguration(null, IndexNamingStrategy.SINGLE));
+		Assert.assertEquals(IndexNamingStrategy.SINGLE, IndexNamingStrategy.parseConfiguration("  ", IndexNamingStrategy.SINGLE));
+
+		try {
+			IndexNamingStrategy.parseConfiguration("nonsense", IndexNamingStrategy.SINGLE);
+			Assert.fail("SettingsException must be thrown");
+		} catch (SettingsException e) {
+			// OK
+		}
+	}
+
+}
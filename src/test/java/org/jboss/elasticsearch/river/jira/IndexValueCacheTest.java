@@ -0,0 +1,76 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link IndexValueCache}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class IndexValueCacheTest {
+
+	@Test
+	public void constructor() {
+		try {
+			new IndexValueCache(0);
+			Assert.fail("IllegalArgumentException must be thrown");
+		} catch (IllegalArgumentException e) {
+			// OK
+		}
+	}
+
+	@Test
+	public void getAndPut() throws IOException {
+		Object filter1 = new Object();
+		Object filter2 = new Object();
+		Map<String, Object> v1 = prepareValue("v1");
+		Map<String, Object> v2 = prepareValue("v2");
+
+		IndexValueCache tested = new IndexValueCache(2);
+		Assert.assertNull(tested.get(filter1, "self1"));
+		tested.put(filter1, "self1", v1);
+		Assert.assertSame(v1, tested.get(filter1, "self1"));
+		// other filter means other key
+		Assert.assertNull(tested.get(filter2, "self1"));
+		Map<String, Object> v1f2 = prepareValue("v1");
+		tested.put(filter2, "self1", v1f2);
+		Assert.assertSame(v1f2, tested.get(filter2, "self1"));
+		Assert.assertEquals(2, tested.getHits());
+		Assert.assertEquals(2, tested.getMisses());
+
+		// case - least recently used evicted
+		Assert.assertSame(v1, tested.get(filter1, "self1"));
+		tested.put(filter1, "self2", v2);
+		Assert.assertEquals(2, tested.size());
+		Assert.assertNull(tested.get(filter2, "self1"));
+		Assert.assertSame(v1, tested.get(filter1, "self1"));
+		Assert.assertSame(v2, tested.get(filter1, "self2"));
+
+		String doc = tested.buildDocument(XContentFactory.jsonBuilder().startObject()).endObject().string();
+		Assert.assertEquals("{\"value_cache\":{\"size\":2,\"hits\":5,\"misses\":3}}", doc);
+
+		// case - clear
+		tested.clear();
+		Assert.assertEquals(0, tested.size());
+		Assert.assertNull(tested.get(filter1, "self1"));
+	}
+
+	private static Map<String, Object> prepareValue(String name) {
+		Map<String, Object> ret = new HashMap<String, Object>();
+		ret.put("name", name);
+		return ret;
+	}
+
+}
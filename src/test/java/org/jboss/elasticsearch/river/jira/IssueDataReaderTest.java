@@ -0,0 +1,201 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link IssueDataReader}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class IssueDataReaderTest {
+
+	private static final String DATA = "{\"key\":\"ORG-1\",\"id\":\"10\",\"self\":\"http://jira/ORG-1\",\"fields\":{"
+			+ "\"summary\":\"my summary\",\"votes\":12,\"ratio\":1.5,\"flag\":true,\"empty\":null,"
+			+ "\"labels\":[\"l1\",\"l2\"],\"dotted.key\":\"dv\",\"description\":\"long text\","
+			+ "\"reporter\":{\"name\":\"john\",\"email\":\"john@example.org\",\"avatar\":{\"16x16\":\"url\"}},"
+			+ "\"fixVersions\":[{\"name\":\"1.0\",\"id\":\"1\"},{\"name\":\"2.0\",\"id\":\"2\"}],"
+			+ "\"status\":\"Open\",\"comment\":{\"total\":2,\"comments\":[{\"id\":\"c1\",\"body\":\"b1\",\"author\":{\"name\":\"a1\"}},"
+			+ "{\"id\":\"c2\",\"body\":\"b2\"}]}}}";
+
+	@Test
+	public void readIssue() throws IOException {
+		Map<String, String> filter = new HashMap<String, String>();
+		filter.put("name", "username");
+		IssueDataReader tested = new IssueDataReader();
+		tested.addPath("key", null).addPath("fields.summary", null).addPath("fields.votes", null)
+				.addPath("fields.ratio", null).addPath("fields.flag", null).addPath("fields.empty", null)
+				.addPath("fields.labels", null).addPath("fields.dotted.key", null).addPath("fields.reporter", filter)
+				.addPath("fields.fixVersions.name", null).addPath("fields.status", filter)
+				.addPath("fields.comment.comments.id", null).addPath("fields.comment.comments.author", filter)
+				.addPath("", null).addPath(null, null);
+
+		Map<String, Object> full = readWithParser(null);
+		Map<String, Object> ret = readWithParser(tested);
+
+		// same values as from whole data
+		String[] paths = new String[] { "key", "fields.summary", "fields.votes", "fields.ratio", "fields.flag",
+				"fields.labels", "fields.dotted.key", "fields.reporter.name",
+				"fields.fixVersions.name", "fields.status", "fields.comment.comments.id",
+				"fields.comment.comments.author.name" };
+		for (String path : paths) {
+			Assert.assertEquals(path, XContentMapValues.extractValue(path, full), XContentMapValues.extractValue(path, ret));
+		}
+		Assert.assertTrue(((Map<?, ?>) ret.get("fields")).containsKey("empty"));
+
+		// unused data skipped
+		Assert.assertNull(ret.get("id"));
+		Assert.assertNull(ret.get("self"));
+		Assert.assertNull(XContentMapValues.extractValue("fields.description", ret));
+		Assert.assertNull(XContentMapValues.extractValue("fields.reporter.avatar", ret));
+		Assert.assertNull(XContentMapValues.extractValue("fields.reporter.email", ret));
+		Assert.assertTrue(((List<?>) XContentMapValues.extractValue("fields.fixVersions.id", ret)).isEmpty());
+		Assert.assertNull(XContentMapValues.extractValue("fields.comment.total", ret));
+		Assert.assertTrue(((List<?>) XContentMapValues.extractValue("fields.comment.comments.body", ret)).isEmpty());
+		// list items kept even if empty, so number of comments is same
+		Assert.assertEquals(2, ((List<?>) XContentMapValues.extractValue("fields.comment.comments", ret)).size());
+		Assert.assertEquals(1, ((Map<?, ?>) ((List<?>) XContentMapValues.extractValue("fields.comment.comments", ret))
+				.get(1)).size());
+	}
+
+	@Test
+	public void readIssue_nothingRegistered() throws IOException {
+		Map<String, Object> ret = readWithParser(new IssueDataReader());
+		Assert.assertTrue(ret.isEmpty());
+	}
+
+	@Test
+	public void readIssue_wholeParentWins() throws IOException {
+		IssueDataReader tested = new IssueDataReader();
+		tested.addPath("fields.reporter.name", null).addPath("fields.reporter", null);
+		Map<String, Object> ret = readWithParser(tested);
+		Assert.assertEquals(XContentMapValues.extractValue("fields.reporter", readWithParser(null)),
+				XContentMapValues.extractValue("fields.reporter", ret));
+		Assert.assertEquals("url", XContentMapValues.extractValue("fields.reporter.avatar.16x16", ret));
+	}
+
+	@Test
+	public void readIssue_valueCache() throws IOException {
+		Map<String, String> filter = new HashMap<String, String>();
+		filter.put("name", "username");
+		filter.put("self", "self");
+		IssueDataReader tested = new IssueDataReader();
+		tested.addPath("key", null).addPath("fields.reporter", filter).addPath("fields.fixVersions", filter);
+		Assert.assertNull(tested.getValueCache());
+		IndexValueCache cache = new IndexValueCache(10);
+		tested.setValueCache(cache);
+		Assert.assertSame(cache, tested.getValueCache());
+
+		// page of issues reported by two users, all fixed in one version
+		StringBuilder page = new StringBuilder("[");
+		for (int i = 0; i < 100; i++) {
+			if (i > 0)
+				page.append(",");
+			page.append("{\"key\":\"ORG-").append(i).append("\",\"fields\":{\"reporter\":{\"self\":\"http://jira/user/")
+					.append(i % 2).append("\",\"name\":\"user").append(i % 2)
+					.append("\",\"avatar\":{\"16x16\":\"url\"}},\"fixVersions\":[{\"self\":\"http://jira/version/1\",")
+					.append("\"name\":\"1.0\"},{\"name\":\"no self\"}]}}");
+		}
+		page.append("]");
+
+		// case - filtered objects repeated in issues are read once and share one instance, objects without self are not
+		// cached
+		List<Map<String, Object>> issues = readPage(tested, page.toString());
+		List<Map<String, Object>> issuesNoCache = readPage(new IssueDataReader().addPath("key", null)
+				.addPath("fields.reporter", filter).addPath("fields.fixVersions", filter), page.toString());
+		Assert.assertEquals(issuesNoCache, issues);
+		Assert.assertEquals(103, countInstances(issues));
+		Assert.assertEquals(300, countInstances(issuesNoCache));
+		Assert.assertEquals(3, cache.size());
+		Assert.assertEquals(3, cache.getMisses());
+		Assert.assertEquals(197, cache.getHits());
+
+		// case - rest of cached object is skipped, so object changed in JIRA is read again only after cache is cleared
+		String changedPage = page.toString().replace("\"name\":\"user1\"", "\"name\":\"user1 changed\"");
+		List<Map<String, Object>> changed = readPage(tested, changedPage);
+		Assert.assertEquals("user1", XContentMapValues.extractValue("fields.reporter.name", changed.get(1)));
+		Assert.assertEquals("ORG-99", changed.get(99).get("key"));
+		cache.clear();
+		changed = readPage(tested, changedPage);
+		Assert.assertEquals("user1 changed", XContentMapValues.extractValue("fields.reporter.name", changed.get(1)));
+		Assert.assertEquals("user1 changed", XContentMapValues.extractValue("fields.reporter.name", changed.get(99)));
+		Assert.assertSame(XContentMapValues.extractValue("fields.reporter", changed.get(1)),
+				XContentMapValues.extractValue("fields.reporter", changed.get(99)));
+
+		// case - self is not necessary in filter
+		filter.remove("self");
+		cache = new IndexValueCache(10);
+		tested = new IssueDataReader().addPath("fields.reporter", filter).setValueCache(cache);
+		issues = readPage(tested, page.toString());
+		Assert.assertEquals("user1", XContentMapValues.extractValue("fields.reporter.name", issues.get(99)));
+		Assert.assertNull(XContentMapValues.extractValue("fields.reporter.self", issues.get(99)));
+		Assert.assertEquals(2, cache.getMisses());
+		Assert.assertEquals(98, cache.getHits());
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Map<String, Object>> readPage(IssueDataReader tested, String data) throws IOException {
+		XContentParser parser = XContentFactory.xContent(XContentType.JSON).createParser(data);
+		try {
+			List<Map<String, Object>> ret = new ArrayList<Map<String, Object>>();
+			parser.nextToken();
+			while (parser.nextToken() == XContentParser.Token.START_OBJECT) {
+				ret.add(tested.readIssue(parser));
+			}
+			return ret;
+		} finally {
+			parser.close();
+		}
+	}
+
+	/**
+	 * Count distinct instances of reporter and fix version objects in issues.
+	 */
+	@SuppressWarnings("unchecked")
+	private int countInstances(List<Map<String, Object>> issues) {
+		Map<Object, Object> instances = new IdentityHashMap<Object, Object>();
+		for (Map<String, Object> issue : issues) {
+			Map<String, Object> fields = (Map<String, Object>) issue.get("fields");
+			instances.put(fields.get("reporter"), null);
+			for (Object version : (List<Object>) fields.get("fixVersions"))
+				instances.put(version, null);
+		}
+		return instances.size();
+	}
+
+	/**
+	 * Read test data. Parser is checked to be positioned at the end of data after read.
+	 *
+	 * @param tested reader to use, <code>null</code> to read whole data
+	 */
+	private Map<String, Object> readWithParser(IssueDataReader tested) throws IOException {
+		XContentParser parser = XContentFactory.xContent(XContentType.JSON).createParser(DATA);
+		try {
+			parser.nextToken();
+			Map<String, Object> ret = tested != null ? tested.readIssue(parser) : parser.map();
+			Assert.assertEquals(XContentParser.Token.END_OBJECT, parser.currentToken());
+			Assert.assertNull(parser.nextToken());
+			return ret;
+		} finally {
+			parser.close();
+		}
+	}
+
+}
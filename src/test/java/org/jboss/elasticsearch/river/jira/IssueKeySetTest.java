@@ -0,0 +1,66 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link IssueKeySet}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class IssueKeySetTest {
+
+	@Test
+	public void addAndContains() {
+		IssueKeySet tested = new IssueKeySet("ORG");
+		Assert.assertEquals(0, tested.size());
+		Assert.assertFalse(tested.contains("ORG-1"));
+		Assert.assertFalse(tested.contains(null));
+
+		tested.add("ORG-1");
+		tested.add("ORG-125000");
+		tested.add("ORG-1");
+		tested.add(null);
+		// keys not in project form
+		tested.add("AAA-12");
+		tested.add("ORGA-12");
+		tested.add("ORG-01");
+		tested.add("ORG-");
+		tested.add("ORG-1a");
+
+		Assert.assertEquals(7, tested.size());
+		Assert.assertTrue(tested.contains("ORG-1"));
+		Assert.assertTrue(tested.contains("ORG-125000"));
+		Assert.assertTrue(tested.contains("AAA-12"));
+		Assert.assertTrue(tested.contains("ORGA-12"));
+		Assert.assertTrue(tested.contains("ORG-01"));
+		Assert.assertTrue(tested.contains("ORG-"));
+		Assert.assertTrue(tested.contains("ORG-1a"));
+
+		Assert.assertFalse(tested.contains("ORG-2"));
+		Assert.assertFalse(tested.contains("ORG-12"));
+		Assert.assertFalse(tested.contains("AAA-1"));
+		Assert.assertFalse(tested.contains("ORGA-1"));
+		Assert.assertFalse(tested.contains("ORG-001"));
+	}
+
+	@Test
+	public void parseIssueNumber() {
+		IssueKeySet tested = new IssueKeySet("ORG");
+		Assert.assertEquals(0, tested.parseIssueNumber("ORG-0"));
+		Assert.assertEquals(1, tested.parseIssueNumber("ORG-1"));
+		Assert.assertEquals(123456789, tested.parseIssueNumber("ORG-123456789"));
+		Assert.assertEquals(-1, tested.parseIssueNumber("ORG-1234567890"));
+		Assert.assertEquals(-1, tested.parseIssueNumber("ORG-"));
+		Assert.assertEquals(-1, tested.parseIssueNumber("ORG-01"));
+		Assert.assertEquals(-1, tested.parseIssueNumber("ORG-1-2"));
+		Assert.assertEquals(-1, tested.parseIssueNumber("AAA-1"));
+	}
+
+}
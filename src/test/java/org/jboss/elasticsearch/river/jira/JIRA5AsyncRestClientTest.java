@@ -0,0 +1,200 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import junit.framework.Assert;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link JIRA5AsyncRestClient}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class JIRA5AsyncRestClientTest {
+
+	private static final String RESPONSE_OK = "{\"startAt\": 5, \"maxResults\" : 10, \"total\" : 50, \"issues\" : [{\"key\" : \"ORG-45\"},{\"key\" : \"ORG-46\"}]}";
+
+	@Test
+	public void getJIRAChangedIssuesAsync() throws Exception {
+		final Date ua = new Date();
+
+		final int[] statusCode = new int[] { 200 };
+		JIRA5AsyncRestClient tested = new JIRA5AsyncRestClient(JIRA5RestClientTest.TEST_JIRA_URL, null, null, 5000) {
+			@Override
+			protected Future<HttpResponse> executeJIRAGetRESTCallAsync(final HttpGet method,
+					FutureCallback<HttpResponse> callback) {
+				Assert.assertTrue(method.getURI().toString()
+						.startsWith(JIRA5RestClientTest.TEST_JIRA_URL + "/rest/api/2/search?jql="));
+				BasicFuture<HttpResponse> ret = new BasicFuture<HttpResponse>(callback);
+				HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode[0], "");
+				response.setEntity(new StringEntity(RESPONSE_OK, ContentType.APPLICATION_JSON));
+				ret.completed(response);
+				return ret;
+			}
+		};
+		try {
+			// case - parsed into memory
+			Future<ChangedIssuesResults> f = tested.getJIRAChangedIssuesAsync("ORG", 10, ua, null);
+			Assert.assertTrue(f.isDone());
+			ChangedIssuesResults ret = f.get();
+			Assert.assertFalse(ret instanceof ChangedIssuesStreamedResults);
+			Assert.assertEquals(5, ret.getStartAt());
+			Assert.assertEquals(10, ret.getMaxResults());
+			Assert.assertEquals(50, ret.getTotal());
+			Assert.assertEquals(2, ret.getIssuesCount());
+
+			// case - streamed
+			tested.setStreamingResponseParsing(true);
+			ret = tested.getJIRAChangedIssuesAsync("ORG", 10, ua, null).get();
+			Assert.assertTrue(ret instanceof ChangedIssuesStreamedResults);
+			Assert.assertEquals("ORG-45", ret.nextIssue().get("key"));
+			Assert.assertEquals("ORG-46", ret.nextIssue().get("key"));
+			Assert.assertNull(ret.nextIssue());
+
+			// case - blocking call implemented over non-blocking
+			tested.setStreamingResponseParsing(false);
+			ret = tested.getJIRAChangedIssues("ORG", 10, ua, null);
+			Assert.assertEquals(2, ret.getIssuesCount());
+
+			// case - error from JIRA
+			statusCode[0] = 500;
+			try {
+				tested.getJIRAChangedIssuesAsync("ORG", 10, ua, null).get();
+				Assert.fail("ExecutionException must be thrown");
+			} catch (ExecutionException e) {
+				Assert.assertTrue(e.getCause().getMessage().startsWith("Failed JIRA REST API call. HTTP error code: 500"));
+			}
+		} finally {
+			tested.close();
+		}
+	}
+
+	@Test
+	public void executeJIRAGetRESTCallAsync_permitWaitNotBlocking() throws Exception {
+		final List<FutureCallback<HttpResponse>> sent = Collections
+				.synchronizedList(new ArrayList<FutureCallback<HttpResponse>>());
+		JIRA5AsyncRestClient tested = new JIRA5AsyncRestClient(JIRA5RestClientTest.TEST_JIRA_URL, null, null, 5000, 1) {
+			@Override
+			protected void sendJIRAGetRESTCallAsync(HttpGet method, FutureCallback<HttpResponse> callback) {
+				sent.add(callback);
+			}
+		};
+		tested.setRequestGovernance("asyncPermitTestRiver", 0, 1, 0, 0);
+		JIRARequestGovernor governor = tested.requestGovernor;
+		try {
+			// case - permit is held by other request, so call returns without waiting and is sent when permit is released
+			governor.acquire("asyncPermitTestOther");
+			Future<ChangedIssuesResults> f = tested.getJIRAChangedIssuesAsync("ORG", 0, null, null);
+			Assert.assertFalse(f.isDone());
+			waitFor(governor, 1);
+			Assert.assertEquals(0, sent.size());
+			governor.release();
+			waitForSent(sent, 1);
+			Assert.assertFalse(f.isDone());
+			HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "");
+			response.setEntity(new StringEntity(RESPONSE_OK, "UTF-8"));
+			sent.get(0).completed(response);
+			Assert.assertEquals(2, f.get().getIssuesCount());
+			// permit released when response is received, so other request gets it immediately
+			Assert.assertEquals(0, governor.acquire("asyncPermitTestOther"), 100);
+
+			// case - call cancelled while waiting for permit is never sent
+			f = tested.getJIRAChangedIssuesAsync("ORG", 0, null, null);
+			waitFor(governor, 1);
+			f.cancel(true);
+			governor.release();
+			Thread.sleep(100);
+			Assert.assertEquals(1, sent.size());
+			Assert.assertEquals(0, governor.acquire("asyncPermitTestOther"), 100);
+			governor.release();
+		} finally {
+			tested.close();
+		}
+	}
+
+	@Test
+	public void getJIRAChangedIssuesAsync_retry() throws Exception {
+		final List<Integer> statusCodes = Collections.synchronizedList(new ArrayList<Integer>());
+		final List<String> sentFrom = Collections.synchronizedList(new ArrayList<String>());
+		JIRA5AsyncRestClient tested = new JIRA5AsyncRestClient(JIRA5RestClientTest.TEST_JIRA_URL, null, null, 5000, 1) {
+			@Override
+			protected void sendJIRAGetRESTCallAsync(HttpGet method, FutureCallback<HttpResponse> callback) {
+				sentFrom.add(Thread.currentThread().getName());
+				HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCodes.remove(0), "");
+				response.setEntity(new StringEntity(RESPONSE_OK, ContentType.APPLICATION_JSON));
+				callback.completed(response);
+			}
+		};
+		tested.setRetryPolicy(1, 10, 50);
+		try {
+			// case - failed call repeated once from dispatcher thread
+			statusCodes.add(503);
+			statusCodes.add(200);
+			Future<ChangedIssuesResults> f = tested.getJIRAChangedIssuesAsync("ORG", 0, null, null);
+			Assert.assertEquals(2, f.get().getIssuesCount());
+			Assert.assertEquals(2, sentFrom.size());
+			Assert.assertEquals(Thread.currentThread().getName(), sentFrom.get(0));
+			Assert.assertTrue(sentFrom.get(1).contains("jira_river_async_dispatcher"));
+
+			// case - no more attempts than configured
+			sentFrom.clear();
+			statusCodes.add(503);
+			statusCodes.add(503);
+			statusCodes.add(200);
+			try {
+				tested.getJIRAChangedIssuesAsync("ORG", 0, null, null).get();
+				Assert.fail("ExecutionException must be thrown");
+			} catch (ExecutionException e) {
+				Assert.assertEquals(503, ((JIRARestCallException) e.getCause()).getStatusCode());
+			}
+			Assert.assertEquals(2, sentFrom.size());
+			statusCodes.clear();
+
+			// case - not retryable failure is not repeated
+			sentFrom.clear();
+			statusCodes.add(500);
+			statusCodes.add(200);
+			try {
+				tested.getJIRAChangedIssuesAsync("ORG", 0, null, null).get();
+				Assert.fail("ExecutionException must be thrown");
+			} catch (ExecutionException e) {
+				Assert.assertEquals(500, ((JIRARestCallException) e.getCause()).getStatusCode());
+			}
+			Assert.assertEquals(1, sentFrom.size());
+		} finally {
+			tested.close();
+		}
+	}
+
+	private void waitFor(JIRARequestGovernor governor, int waitingCount) throws InterruptedException {
+		for (int i = 0; i < 100 && governor.getWaitingCount() != waitingCount; i++)
+			Thread.sleep(20);
+		Assert.assertEquals(waitingCount, governor.getWaitingCount());
+	}
+
+	private void waitForSent(List<?> sent, int count) throws InterruptedException {
+		for (int i = 0; i < 100 && sent.size() < count; i++)
+			Thread.sleep(20);
+		Assert.assertEquals(count, sent.size());
+	}
+
+}
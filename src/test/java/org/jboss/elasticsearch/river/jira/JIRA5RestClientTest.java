@@ -9,15 +9,32 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.SocketTimeoutException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.zip.GZIPOutputStream;
 
 import junit.framework.Assert;
 
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
 import org.apache.http.NameValuePair;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
 import org.elasticsearch.common.settings.SettingsException;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
 import org.junit.Test;
 
 /**
@@ -140,6 +157,449 @@ public class JIRA5RestClientTest {
 		Assert.assertEquals(1, ret.getIssuesCount());
 	}
 
+	@Test
+	public void getJIRAChangedIssues_streaming() throws Exception {
+		final Date ua = new Date();
+		final Date ub = new Date();
+		final List<Boolean> streamClosed = new java.util.ArrayList<Boolean>();
+
+		JIRA5RestClient tested = new JIRA5RestClient(TEST_JIRA_URL, null, null, 5000) {
+			@Override
+			protected InputStream performJIRAChangedIssuesRESTStream(String projectKey, int startAt, Date updatedAfter,
+					Date updatedBefore) throws Exception {
+				Assert.assertEquals("ORG", projectKey);
+				Assert.assertEquals(ua, updatedAfter);
+				Assert.assertEquals(ub, updatedBefore);
+				String data = null;
+				if (startAt == 10) {
+					data = "{\"expand\": \"schema\", \"startAt\": 5, \"maxResults\" : 10, \"total\" : 50, \"issues\" : [{\"key\" : \"ORG-45\", \"fields\" : {\"comment\" : {\"comments\": [{\"id\":\"1\"}]}}},{\"key\" : \"ORG-46\"}]}";
+				} else {
+					// pagination info after issues
+					data = "{\"issues\" : [{\"key\" : \"ORG-47\"}], \"startAt\": 20, \"maxResults\" : 10, \"total\" : 21}";
+				}
+				return new ByteArrayInputStream(data.getBytes("UTF-8")) {
+					@Override
+					public void close() throws IOException {
+						streamClosed.add(Boolean.TRUE);
+						super.close();
+					}
+				};
+			};
+		};
+		tested.setStreamingResponseParsing(true);
+
+		ChangedIssuesResults ret = tested.getJIRAChangedIssues("ORG", 10, ua, ub);
+		Assert.assertTrue(ret instanceof ChangedIssuesStreamedResults);
+		Assert.assertEquals(5, ret.getStartAt());
+		Assert.assertEquals(10, ret.getMaxResults());
+		Assert.assertEquals(50, ret.getTotal());
+		Assert.assertEquals(0, ret.getIssuesCount());
+		Assert.assertEquals("ORG-45", ret.nextIssue().get("key"));
+		Assert.assertEquals("ORG-46", ret.nextIssue().get("key"));
+		Assert.assertEquals(0, streamClosed.size());
+		Assert.assertNull(ret.nextIssue());
+		Assert.assertEquals(2, ret.getIssuesCount());
+		Assert.assertEquals(1, streamClosed.size());
+		ret.close();
+		Assert.assertNull(ret.nextIssue());
+
+		streamClosed.clear();
+		ret = tested.getJIRAChangedIssues("ORG", 20, ua, ub);
+		Assert.assertFalse(ret instanceof ChangedIssuesStreamedResults);
+		Assert.assertEquals(1, streamClosed.size());
+		Assert.assertEquals(20, ret.getStartAt());
+		Assert.assertEquals(21, ret.getTotal());
+		Assert.assertEquals(1, ret.getIssuesCount());
+		Assert.assertEquals("ORG-47", ret.nextIssue().get("key"));
+		Assert.assertNull(ret.nextIssue());
+	}
+
+	@Test
+	public void getJIRAChangedIssues_streamingRecordedWhenClosed() throws Exception {
+		final String data = "{\"startAt\": 0, \"maxResults\" : 10, \"total\" : 2, \"issues\" : [{\"key\" : \"ORG-45\"},{\"key\" : \"ORG-46\"}]}";
+		final List<long[]> recorded = new java.util.ArrayList<long[]>();
+		JIRA5RestClient tested = new JIRA5RestClient(TEST_JIRA_URL, null, null, 5000) {
+			@Override
+			protected InputStream performJIRAChangedIssuesRESTStream(String projectKey, int startAt, Date updatedAfter,
+					Date updatedBefore) throws Exception {
+				return new ByteArrayInputStream(data.getBytes("UTF-8"));
+			};
+
+			@Override
+			protected void recordJIRAChangedIssuesResponse(String projectKey, ChangedIssuesResults res, long latency,
+					long bytes) {
+				Assert.assertEquals("ORG", projectKey);
+				recorded.add(new long[] { latency, bytes });
+			}
+		};
+		tested.setStreamingResponseParsing(true);
+
+		// case - response is recorded when it is read whole, with time spent reading it
+		ChangedIssuesResults ret = tested.getJIRAChangedIssues("ORG", 0, null, null);
+		Assert.assertEquals(0, recorded.size());
+		Assert.assertEquals("ORG-45", ret.nextIssue().get("key"));
+		Thread.sleep(50);
+		Assert.assertEquals("ORG-46", ret.nextIssue().get("key"));
+		Assert.assertEquals(0, recorded.size());
+		Assert.assertNull(ret.nextIssue());
+		Assert.assertEquals(1, recorded.size());
+		Assert.assertTrue(recorded.get(0)[0] >= 50);
+		Assert.assertEquals(data.length(), recorded.get(0)[1]);
+		ret.close();
+		Assert.assertEquals(1, recorded.size());
+
+		// case - response closed before it is read whole is recorded with bytes read so far
+		recorded.clear();
+		ret = tested.getJIRAChangedIssues("ORG", 0, null, null);
+		ret.close();
+		Assert.assertEquals(1, recorded.size());
+		Assert.assertTrue(recorded.get(0)[1] > 0);
+	}
+
+	@Test
+	public void getJIRAChangedIssues_streamingReadTimeoutRecorded() throws Exception {
+		final byte[] data = "{\"startAt\": 0, \"maxResults\" : 10, \"total\" : 2, \"issues\" : [{\"key\" : \"ORG-45\"},"
+				.getBytes("UTF-8");
+		final List<String> recorded = new ArrayList<String>();
+		JIRA5RestClient tested = new JIRA5RestClient(TEST_JIRA_URL, null, null, 5000) {
+			@Override
+			protected HttpResponse executeJIRAGetRESTCall(HttpGet method) throws Exception {
+				HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "");
+				// body times out after first issue
+				response.setEntity(new InputStreamEntity(new SequenceInputStream(new ByteArrayInputStream(data),
+						new InputStream() {
+							@Override
+							public int read() throws IOException {
+								throw new SocketTimeoutException("Read timed out");
+							}
+						}), -1));
+				return response;
+			}
+
+			@Override
+			protected void recordJIRARequestFailure() {
+				recorded.add("failure");
+			}
+
+			@Override
+			protected void recordJIRAChangedIssuesTimeout(String projectKey) {
+				recorded.add("timeout");
+			}
+
+			@Override
+			protected void recordJIRAChangedIssuesResponse(String projectKey, ChangedIssuesResults res, long latency,
+					long bytes) {
+				recorded.add("response");
+			}
+		};
+		tested.setStreamingResponseParsing(true);
+		tested.setRetryPolicy(2, 10, 50);
+
+		ChangedIssuesResults ret = tested.getJIRAChangedIssues("ORG", 0, null, null);
+		Assert.assertEquals("ORG-45", ret.nextIssue().get("key"));
+		try {
+			ret.nextIssue();
+			Assert.fail("Exception must be thrown");
+		} catch (Exception e) {
+			// OK
+		}
+		ret.close();
+		// case - failure is recorded into circuit breaker and statistics, but not repeated
+		Assert.assertEquals(2, recorded.size());
+		Assert.assertTrue(recorded.contains("failure"));
+		Assert.assertTrue(recorded.contains("timeout"));
+	}
+
+	@Test
+	public void compression() throws Exception {
+		final String data = "{\"startAt\": 5, \"maxResults\" : 10, \"total\" : 50, \"issues\" : [{\"key\" : \"ORG-45\"},{\"key\" : \"ORG-46\"}]}";
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		GZIPOutputStream gzos = new GZIPOutputStream(baos);
+		gzos.write(data.getBytes("UTF-8"));
+		gzos.close();
+		final byte[] dataGzipped = baos.toByteArray();
+
+		JIRA5RestClient tested = new JIRA5RestClient(TEST_JIRA_URL, null, null, 5000) {
+			@Override
+			protected HttpResponse executeJIRAGetRESTCall(HttpGet method) throws Exception {
+				HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "");
+				ByteArrayEntity entity = new ByteArrayEntity(dataGzipped);
+				if (method.getFirstHeader("Accept-Encoding") != null) {
+					Assert.assertEquals("gzip, deflate", method.getFirstHeader("Accept-Encoding").getValue());
+					entity.setContentEncoding("gzip");
+				}
+				response.setEntity(entity);
+				return response;
+			}
+		};
+
+		// case - compression not requested
+		HttpGet method = tested.prepareJIRAGetRESTCallMethod("search", null);
+		Assert.assertNull(method.getFirstHeader("Accept-Encoding"));
+
+		// case - compressed response parsed into memory
+		tested.setCompression(true);
+		method = tested.prepareJIRAGetRESTCallMethod("search", null);
+		Assert.assertEquals("gzip, deflate", method.getFirstHeader("Accept-Encoding").getValue());
+		ChangedIssuesResults ret = tested.getJIRAChangedIssues("ORG", 0, null, null);
+		Assert.assertEquals(2, ret.getIssuesCount());
+		Assert.assertEquals(1, tested.statsResponses.get());
+		Assert.assertEquals(dataGzipped.length, tested.statsBytesReceived.get());
+		Assert.assertEquals(data.getBytes("UTF-8").length, tested.statsBytesUncompressed.get());
+
+		// case - compressed response streamed
+		tested.setStreamingResponseParsing(true);
+		ret = tested.getJIRAChangedIssues("ORG", 0, null, null);
+		Assert.assertEquals("ORG-45", ret.nextIssue().get("key"));
+		Assert.assertEquals("ORG-46", ret.nextIssue().get("key"));
+		Assert.assertNull(ret.nextIssue());
+		ret.close();
+		Assert.assertEquals(2, tested.statsResponses.get());
+		Assert.assertEquals(2 * dataGzipped.length, tested.statsBytesReceived.get());
+
+		// case - statistics
+		XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+		tested.buildStatisticsDocument(builder);
+		builder.endObject();
+		Assert.assertEquals("{\"jira_client\":{\"compression\":true,\"responses\":2,\"bytes_received\":"
+				+ (2 * dataGzipped.length) + ",\"bytes_uncompressed\":" + (2 * data.getBytes("UTF-8").length) + "}}",
+				builder.string());
+	}
+
+	@Test
+	public void getJIRAChangedIssues_adaptivePageSize() throws Exception {
+		final List<String> maxResultsRequested = new java.util.ArrayList<String>();
+		final boolean[] simulateTimeout = new boolean[] { false };
+		JIRA5RestClient tested = new JIRA5RestClient(TEST_JIRA_URL, null, null, 3000) {
+			@Override
+			protected byte[] performJIRAGetRESTCall(String restOperation, List<NameValuePair> params) throws Exception {
+				if (simulateTimeout[0])
+					throw new SocketTimeoutException("Read timed out");
+				String mr = null;
+				for (NameValuePair param : params) {
+					if (param.getName().equals("maxResults")) {
+						mr = param.getValue();
+					}
+				}
+				maxResultsRequested.add(mr);
+				return ("{\"startAt\": 0, \"maxResults\" : " + mr + ", \"total\" : 1000, \"issues\" : []}")
+						.getBytes("UTF-8");
+			}
+		};
+		tested.setListJIRAIssuesMax(40);
+
+		// case - fixed page size
+		tested.setListJIRAIssuesMaxBounds(40, 40);
+		Assert.assertNull(tested.pageSizeController);
+		tested.getJIRAChangedIssues("ORG", 0, null, null);
+		tested.getJIRAChangedIssues("ORG", 0, null, null);
+		Assert.assertEquals("40", maxResultsRequested.get(0));
+		Assert.assertEquals("40", maxResultsRequested.get(1));
+
+		// case - adaptive page size, fast responses with full pages grows size
+		maxResultsRequested.clear();
+		tested.setListJIRAIssuesMaxBounds(10, 100);
+		Assert.assertEquals(1000, tested.pageSizeController.targetLatency);
+		tested.getJIRAChangedIssues("ORG", 0, null, null);
+		tested.getJIRAChangedIssues("ORG", 0, null, null);
+		Assert.assertEquals("40", maxResultsRequested.get(0));
+		Assert.assertEquals("51", maxResultsRequested.get(1));
+		Assert.assertEquals(64, tested.pageSizeController.getPageSize("ORG"));
+
+		// case - timeout shrinks size
+		simulateTimeout[0] = true;
+		try {
+			tested.getJIRAChangedIssues("ORG", 0, null, null);
+			Assert.fail("SocketTimeoutException must be thrown");
+		} catch (SocketTimeoutException e) {
+			// OK
+		}
+		Assert.assertEquals(32, tested.pageSizeController.getPageSize("ORG"));
+
+		// case - effective size in statistics
+		XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+		tested.buildStatisticsDocument(builder);
+		builder.endObject();
+		Assert.assertTrue(builder.string().contains("\"page_size\":{\"ORG\":32}"));
+	}
+
+	@Test
+	public void performJIRAGetRESTCall_retry() throws Exception {
+		final List<Integer> statusCodes = new java.util.ArrayList<Integer>();
+		final int[] calls = new int[] { 0 };
+		JIRA5RestClient tested = new JIRA5RestClient(TEST_JIRA_URL, null, null, 5000) {
+			@Override
+			protected HttpResponse executeJIRAGetRESTCall(HttpGet method) throws Exception {
+				int statusCode = statusCodes.get(calls[0]++);
+				if (statusCode == 0)
+					throw new SocketTimeoutException("Read timed out");
+				HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, "");
+				if (statusCode == 429)
+					response.addHeader("Retry-After", "0");
+				response.setEntity(new StringEntity("[]", "UTF-8"));
+				return response;
+			}
+		};
+		tested.setRequestGovernance("river_retry", 0, 0, 2, 10000);
+		JIRARequestGovernor governor = tested.requestGovernor;
+
+		// case - no retry configured
+		statusCodes.add(503);
+		try {
+			tested.performJIRAGetRESTCall("project", null);
+			Assert.fail("JIRARestCallException must be thrown");
+		} catch (JIRARestCallException e) {
+			Assert.assertEquals(503, e.getStatusCode());
+			Assert.assertEquals(1, calls[0]);
+		}
+		governor.recordSuccess();
+
+		// case - retryable failures repeated until success
+		tested.setRetryPolicy(3, 10, 50);
+		statusCodes.clear();
+		calls[0] = 0;
+		statusCodes.add(429);
+		statusCodes.add(0);
+		statusCodes.add(200);
+		Assert.assertEquals("[]", new String(tested.performJIRAGetRESTCall("project", null), "UTF-8"));
+		Assert.assertEquals(3, calls[0]);
+		Assert.assertFalse(governor.isCircuitOpen());
+
+		// case - not retryable failure
+		statusCodes.clear();
+		calls[0] = 0;
+		statusCodes.add(500);
+		try {
+			tested.performJIRAGetRESTCall("project", null);
+			Assert.fail("JIRARestCallException must be thrown");
+		} catch (JIRARestCallException e) {
+			Assert.assertEquals(500, e.getStatusCode());
+			Assert.assertEquals(1, calls[0]);
+		}
+
+		// case - retries exhausted, circuit breaker opened
+		statusCodes.clear();
+		calls[0] = 0;
+		for (int i = 0; i < 4; i++)
+			statusCodes.add(504);
+		try {
+			tested.performJIRAGetRESTCall("project", null);
+			Assert.fail("JIRARestCallException must be thrown");
+		} catch (JIRARestCallException e) {
+			Assert.assertEquals(504, e.getStatusCode());
+			Assert.assertEquals(4, calls[0]);
+		}
+		Assert.assertTrue(governor.isCircuitOpen());
+		governor.recordSuccess();
+
+		// case - streamed call is retried too
+		statusCodes.clear();
+		calls[0] = 0;
+		statusCodes.add(502);
+		statusCodes.add(200);
+		InputStream is = tested.performJIRAGetRESTCallStream("project", null);
+		Assert.assertEquals("[]", new String(org.elasticsearch.common.io.Streams.copyToByteArray(is), "UTF-8"));
+		Assert.assertEquals(2, calls[0]);
+		tested.close();
+	}
+
+	@Test
+	public void executeJIRAGetRESTCall_permitHeldUntilResponseRead() throws Exception {
+		final String data = "{\"startAt\": 0, \"maxResults\" : 10, \"total\" : 1, \"issues\" : [{\"key\" : \"ORG-45\"}]}";
+		final List<Integer> inFlightDuringRead = new java.util.ArrayList<Integer>();
+		JIRA5RestClient tested = new JIRA5RestClient(TEST_JIRA_URL, null, null, 5000) {
+			@Override
+			protected HttpResponse sendJIRAGetRESTCall(HttpGet method) throws Exception {
+				HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "");
+				response.setEntity(new InputStreamEntity(new ByteArrayInputStream(data.getBytes("UTF-8")) {
+					@Override
+					public synchronized int read(byte[] b, int off, int len) {
+						inFlightDuringRead.add(requestGovernor.getInFlightCount());
+						return super.read(b, off, len);
+					}
+				}, data.length()));
+				return response;
+			}
+		};
+		tested.setRequestGovernance("river_permit_held", 0, 0, 0, 0);
+		JIRARequestGovernor governor = tested.requestGovernor;
+		int inFlightBefore = governor.getInFlightCount();
+
+		// case - response read into memory
+		tested.getJIRAChangedIssues("ORG", 0, null, null);
+		Assert.assertFalse(inFlightDuringRead.isEmpty());
+		for (Integer inFlight : inFlightDuringRead)
+			Assert.assertEquals(inFlightBefore + 1, inFlight.intValue());
+		Assert.assertEquals(inFlightBefore, governor.getInFlightCount());
+
+		// case - streamed response, permit held until stream is closed
+		inFlightDuringRead.clear();
+		tested.setStreamingResponseParsing(true);
+		ChangedIssuesResults ret = tested.getJIRAChangedIssues("ORG", 0, null, null);
+		Assert.assertEquals(inFlightBefore + 1, governor.getInFlightCount());
+		XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+		tested.buildStatisticsDocument(builder);
+		builder.endObject();
+		Assert.assertTrue(builder.string().contains("\"in_flight\":" + (inFlightBefore + 1)));
+		Assert.assertEquals("ORG-45", ret.nextIssue().get("key"));
+		Assert.assertNull(ret.nextIssue());
+		for (Integer inFlight : inFlightDuringRead)
+			Assert.assertEquals(inFlightBefore + 1, inFlight.intValue());
+		Assert.assertEquals(inFlightBefore, governor.getInFlightCount());
+		ret.close();
+		Assert.assertEquals(inFlightBefore, governor.getInFlightCount());
+
+		// case - permit released when streamed response is closed before it is read whole
+		ret = tested.getJIRAChangedIssues("ORG", 0, null, null);
+		Assert.assertEquals(inFlightBefore + 1, governor.getInFlightCount());
+		ret.close();
+		Assert.assertEquals(inFlightBefore, governor.getInFlightCount());
+		tested.close();
+	}
+
+	@Test
+	public void isRetryableJIRARequestFailure() {
+		Assert.assertTrue(JIRA5RestClient.isRetryableJIRARequestFailure(new JIRARestCallException("", 429, null)));
+		Assert.assertTrue(JIRA5RestClient.isRetryableJIRARequestFailure(new JIRARestCallException("", 502, null)));
+		Assert.assertTrue(JIRA5RestClient.isRetryableJIRARequestFailure(new JIRARestCallException("", 503, null)));
+		Assert.assertTrue(JIRA5RestClient.isRetryableJIRARequestFailure(new JIRARestCallException("", 504, null)));
+		Assert.assertTrue(JIRA5RestClient.isRetryableJIRARequestFailure(new SocketTimeoutException()));
+		Assert.assertTrue(JIRA5RestClient.isRetryableJIRARequestFailure(new java.net.ConnectException()));
+		Assert.assertFalse(JIRA5RestClient.isRetryableJIRARequestFailure(new JIRARestCallException("", 500, null)));
+		Assert.assertFalse(JIRA5RestClient.isRetryableJIRARequestFailure(new JIRARestCallException("", 404, null)));
+		Assert.assertFalse(JIRA5RestClient.isRetryableJIRARequestFailure(new IOException()));
+		Assert.assertFalse(JIRA5RestClient.isRetryableJIRARequestFailure(new Exception()));
+	}
+
+	@Test
+	public void getRetryBackoff() {
+		JIRA5RestClient tested = new JIRA5RestClient(TEST_JIRA_URL, null, null, 5000);
+		tested.setRetryPolicy(5, 1000, 5000);
+		for (int i = 0; i < 20; i++) {
+			long b = tested.getRetryBackoff(new SocketTimeoutException(), 0);
+			Assert.assertTrue(b >= 500 && b <= 1000);
+			b = tested.getRetryBackoff(new SocketTimeoutException(), 1);
+			Assert.assertTrue(b >= 1000 && b <= 2000);
+			b = tested.getRetryBackoff(new SocketTimeoutException(), 10);
+			Assert.assertTrue(b >= 2500 && b <= 5000);
+		}
+		// Retry-After used up to max backoff
+		Assert.assertEquals(3000, tested.getRetryBackoff(new JIRARestCallException("", 503, "3"), 0));
+		Assert.assertEquals(5000, tested.getRetryBackoff(new JIRARestCallException("", 503, "120"), 0));
+	}
+
+	@Test
+	public void parseRetryAfter() {
+		Assert.assertEquals(-1, JIRA5RestClient.parseRetryAfter(null, 0));
+		Assert.assertEquals(-1, JIRA5RestClient.parseRetryAfter(" ", 0));
+		Assert.assertEquals(-1, JIRA5RestClient.parseRetryAfter("bad value", 0));
+		Assert.assertEquals(0, JIRA5RestClient.parseRetryAfter("0", 0));
+		Assert.assertEquals(120000, JIRA5RestClient.parseRetryAfter(" 120 ", 0));
+		long now = DateTimeUtils.parseISODateTime("2012-09-06T12:00:00.000Z").getTime();
+		Assert.assertEquals(30000, JIRA5RestClient.parseRetryAfter("Thu, 06 Sep 2012 12:00:30 GMT", now));
+		Assert.assertEquals(0, JIRA5RestClient.parseRetryAfter("Thu, 06 Sep 2012 11:00:30 GMT", now));
+	}
+
 	@Test
 	public void performJIRAChangedIssuesREST() throws Exception {
 		final Date ua = new Date();
@@ -281,4 +741,68 @@ public class JIRA5RestClientTest {
 								JQL_TEST_DATE_FORMAT.parse("2012-08-10 22:55")));
 
 	}
+
+	@Test
+	public void prepareJIRAChangedIssuesInProjectsJQL() throws Exception {
+		JIRA5RestClient tested = new JIRA5RestClient(TEST_JIRA_URL, null, null, 5000);
+		tested.setJQLDateFormatTimezone(JQL_TEST_TIMEZONE);
+		Date date = JQL_TEST_DATE_FORMAT.parse("2012-08-10 22:52");
+		try {
+			tested.prepareJIRAChangedIssuesInProjectsJQL(new ArrayList<String>(), date);
+			Assert.fail("IllegalArgumentException not thrown if project keys are missing");
+		} catch (IllegalArgumentException e) {
+			// OK
+		}
+		try {
+			tested.prepareJIRAChangedIssuesInProjectsJQL(Utils.parseCsvString("ORG"), null);
+			Assert.fail("IllegalArgumentException not thrown if date is missing");
+		} catch (IllegalArgumentException e) {
+			// OK
+		}
+		Assert.assertEquals("project in ('ORG') and updatedDate >= \"2012-08-10 22:52\" ORDER BY updated ASC",
+				tested.prepareJIRAChangedIssuesInProjectsJQL(Utils.parseCsvString("ORG"), date));
+		Assert.assertEquals(
+				"project in ('ORG','AAA','BBB') and updatedDate >= \"2012-08-10 22:52\" ORDER BY updated ASC",
+				tested.prepareJIRAChangedIssuesInProjectsJQL(Utils.parseCsvString("ORG,AAA,BBB"), date));
+	}
+
+	@Test
+	public void prepareJIRAIssueKeysJQL() throws Exception {
+		JIRA5RestClient tested = new JIRA5RestClient(TEST_JIRA_URL, null, null, 5000);
+		try {
+			tested.prepareJIRAIssueKeysJQL(" ", null);
+			Assert.fail("IllegalArgumentException not thrown if project key is missing");
+		} catch (IllegalArgumentException e) {
+			// OK
+		}
+		Assert.assertEquals("project='ORG' ORDER BY key ASC", tested.prepareJIRAIssueKeysJQL("ORG", null));
+		Assert.assertEquals("project='ORG' and key > \"ORG-123\" ORDER BY key ASC",
+				tested.prepareJIRAIssueKeysJQL("ORG", "ORG-123"));
+	}
+
+	@Test
+	public void prepareJIRAChangedIssuesAfterKeyJQL() throws Exception {
+		JIRA5RestClient tested = new JIRA5RestClient(TEST_JIRA_URL, null, null, 5000);
+		tested.setJQLDateFormatTimezone(JQL_TEST_TIMEZONE);
+		Date date = JQL_TEST_DATE_FORMAT.parse("2012-08-10 22:52");
+		try {
+			tested.prepareJIRAChangedIssuesAfterKeyJQL(" ", date, null);
+			Assert.fail("IllegalArgumentException not thrown if project key is missing");
+		} catch (IllegalArgumentException e) {
+			// OK
+		}
+		try {
+			tested.prepareJIRAChangedIssuesAfterKeyJQL("ORG", null, null);
+			Assert.fail("IllegalArgumentException not thrown if date is missing");
+		} catch (IllegalArgumentException e) {
+			// OK
+		}
+		Assert.assertEquals(
+				"project='ORG' and updatedDate >= \"2012-08-10 22:52\" and updatedDate < \"2012-08-10 22:53\" ORDER BY key ASC",
+				tested.prepareJIRAChangedIssuesAfterKeyJQL("ORG", new Date(date.getTime() + 20000), null));
+		Assert
+				.assertEquals(
+						"project='ORG' and updatedDate >= \"2012-08-10 22:52\" and updatedDate < \"2012-08-10 22:53\" and key > \"ORG-45\" ORDER BY key ASC",
+						tested.prepareJIRAChangedIssuesAfterKeyJQL("ORG", date, "ORG-45"));
+	}
 }
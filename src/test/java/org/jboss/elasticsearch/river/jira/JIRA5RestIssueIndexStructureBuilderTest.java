@@ -8,6 +8,8 @@ package org.jboss.elasticsearch.river.jira;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -15,12 +17,26 @@ import java.util.Map;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.settings.SettingsException;
+import org.elasticsearch.common.text.StringText;
 import org.elasticsearch.common.xcontent.XContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentGenerator;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
+import org.elasticsearch.search.SearchHitField;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHitField;
 import org.jboss.elasticsearch.river.jira.testtools.TestUtils;
 import org.jboss.elasticsearch.tools.content.StructuredContentPreprocessor;
 import org.junit.Assert;
@@ -578,6 +594,105 @@ public class JIRA5RestIssueIndexStructureBuilderTest {
 
 	}
 
+	@Test
+	public void prepareIssueIndexedDocument_prunedIssueData() throws Exception {
+		Map<String, Object> settings = new HashMap<String, Object>();
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_PRUNEISSUEDATA, true);
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_CHANGELOGMODE, "embedded");
+		JIRA5RestIssueIndexStructureBuilder tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index",
+				"issue_type", "http://issues-stg.jboss.org/", settings);
+		Assert.assertNotNull(tested.getIssueDataReader());
+
+		// case - same document from pruned data
+		XContentParser parser = XContentFactory.xContent(XContentType.JSON).createParser(
+				TestUtils.readStringFromClasspathFile("/jira_issue_json/ORG-1501.json"));
+		parser.nextToken();
+		Map<String, Object> issue = tested.getIssueDataReader().readIssue(parser);
+		parser.close();
+		Assert.assertNull(issue.get("self"));
+		Assert.assertEquals(
+				toJsonNode(tested.prepareIssueIndexedDocument("ORG",
+						TestUtils.readJiraJsonIssueDataFromClasspathFile("ORG-1501")).string()),
+				toJsonNode(tested.prepareIssueIndexedDocument("ORG", issue).string()));
+
+		// case - whole data read for preprocessors
+		tested.addIssueDataPreprocessor(mock(StructuredContentPreprocessor.class));
+		Assert.assertNull(tested.getIssueDataReader());
+
+		// case - disabled by default
+		tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index", "issue_type",
+				"http://issues-stg.jboss.org/", null);
+		Assert.assertNull(tested.getIssueDataReader());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void prepareIssueIndexedDocument_contentHash() throws Exception {
+		Map<String, Object> settings = new HashMap<String, Object>();
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_FIELDCONTENTHASH, "content_hash");
+		JIRA5RestIssueIndexStructureBuilder tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index",
+				"issue_type", "http://issues-stg.jboss.org/", settings);
+		Assert.assertEquals("content_hash", tested.getIndexFieldForContentHash());
+
+		Map<String, Object> issue = TestUtils.readJiraJsonIssueDataFromClasspathFile("ORG-1501");
+		JsonNode doc1 = toJsonNode(tested.prepareIssueIndexedDocument("ORG", issue).string());
+		JsonNode doc2 = toJsonNode(tested.prepareIssueIndexedDocument("ORG", issue).string());
+		Assert.assertNotNull(doc1.get("content_hash"));
+		Assert.assertEquals(doc1, doc2);
+
+		// case - changed content means changed hash
+		((Map<String, Object>) issue.get("fields")).put("summary", "changed summary");
+		JsonNode doc3 = toJsonNode(tested.prepareIssueIndexedDocument("ORG", issue).string());
+		Assert.assertFalse(doc1.get("content_hash").equals(doc3.get("content_hash")));
+
+		// case - comment document has hash too
+		List<Map<String, Object>> comments = tested.extractIssueComments(issue);
+		Assert.assertNotNull(toJsonNode(tested.prepareCommentIndexedDocument("ORG", "ORG-1501", comments.get(0)).string())
+				.get("content_hash"));
+
+		// case - disabled by default
+		tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index", "issue_type",
+				"http://issues-stg.jboss.org/", null);
+		Assert.assertNull(tested.getIndexFieldForContentHash());
+		Assert.assertNull(toJsonNode(tested.prepareIssueIndexedDocument("ORG", issue).string()).get("content_hash"));
+	}
+
+	@Test
+	public void prepareIssueIndexedDocument_valueCache() throws Exception {
+		Map<String, Object> settings = new HashMap<String, Object>();
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_VALUECACHESIZE, 50);
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_PRUNEISSUEDATA, true);
+		JIRA5RestIssueIndexStructureBuilder tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index",
+				"issue_type", "http://issues-stg.jboss.org/", settings);
+		IndexValueCache cache = tested.getIssueDataReader().getValueCache();
+		Assert.assertNotNull(cache);
+
+		// same document from issue read with cache, JIRA object identifiers are read from pruned data
+		Map<String, Object> issue = null;
+		for (int i = 0; i < 2; i++) {
+			XContentParser parser = XContentFactory.xContent(XContentType.JSON).createParser(
+					TestUtils.readStringFromClasspathFile("/jira_issue_json/ORG-1501.json"));
+			parser.nextToken();
+			Map<String, Object> read = tested.getIssueDataReader().readIssue(parser);
+			parser.close();
+			if (issue != null)
+				Assert.assertSame(XContentMapValues.extractValue("fields.reporter", issue),
+						XContentMapValues.extractValue("fields.reporter", read));
+			issue = read;
+		}
+		Assert.assertTrue(cache.getHits() > 0);
+		Assert.assertEquals(
+				toJsonNode(tested.prepareIssueIndexedDocument("ORG",
+						TestUtils.readJiraJsonIssueDataFromClasspathFile("ORG-1501")).string()),
+				toJsonNode(tested.prepareIssueIndexedDocument("ORG", issue).string()));
+
+		// case - disabled by default
+		settings.remove(JIRA5RestIssueIndexStructureBuilder.CONFIG_VALUECACHESIZE);
+		tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index", "issue_type",
+				"http://issues-stg.jboss.org/", settings);
+		Assert.assertNull(tested.getIssueDataReader().getValueCache());
+	}
+
 	@Test
 	public void prepareCommentIndexedDocument() throws Exception {
 		JIRA5RestIssueIndexStructureBuilder tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index",
@@ -640,6 +755,310 @@ public class JIRA5RestIssueIndexStructureBuilderTest {
 	}
 
 	@SuppressWarnings("unchecked")
+	@Test
+	public void indexIssue_documentArena() throws Exception {
+		Map<String, Object> settings = new HashMap<String, Object>();
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_COMMENTMODE, "child");
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_FIELDCONTENTHASH, "content_hash");
+		JIRA5RestIssueIndexStructureBuilder tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index",
+				"issue_type", "http://issues-stg.jboss.org/", settings);
+
+		BulkRequestBuilder esBulk = new BulkRequestBuilder(null);
+		tested.indexIssue(esBulk, "ORG", TestUtils.readJiraJsonIssueDataFromClasspathFile("ORG-1501"));
+		tested.indexIssue(esBulk, "ORG", TestUtils.readJiraJsonIssueDataFromClasspathFile("ORG-1501"));
+		Assert.assertEquals(6, esBulk.request().numberOfActions());
+		Assert.assertSame(tested.getDocumentArena(esBulk), tested.getDocumentArena(esBulk));
+		Assert.assertNotSame(tested.getDocumentArena(esBulk), tested.getDocumentArena(new BulkRequestBuilder(null)));
+
+		// documents and their hashes are same as if written into own buffer
+		Map<String, Object> issue = TestUtils.readJiraJsonIssueDataFromClasspathFile("ORG-1501");
+		String issueDoc = tested.prepareIssueIndexedDocument("ORG", issue).string();
+		String commentDoc = tested.prepareCommentIndexedDocument("ORG", "ORG-1501", tested.extractIssueComments(issue)
+				.get(1)).string();
+		for (int i : new int[] { 0, 3 }) {
+			Assert.assertEquals(issueDoc, ((IndexRequest) esBulk.request().requests().get(i)).source().toUtf8());
+			Assert.assertEquals(commentDoc, ((IndexRequest) esBulk.request().requests().get(i + 2)).source().toUtf8());
+		}
+	}
+
+	@Test
+	public void indexIssue_sourceFormat() throws Exception {
+		Assert.assertEquals(XContentType.JSON, JIRA5RestIssueIndexStructureBuilder.parseSourceFormat(null));
+		Assert.assertEquals(XContentType.JSON, JIRA5RestIssueIndexStructureBuilder.parseSourceFormat("json"));
+		Assert.assertEquals(XContentType.SMILE, JIRA5RestIssueIndexStructureBuilder.parseSourceFormat("SMILE"));
+		try {
+			JIRA5RestIssueIndexStructureBuilder.parseSourceFormat("yaml");
+			fail("SettingsException must be thrown");
+		} catch (SettingsException e) {
+			// OK
+		}
+
+		Map<String, Object> settings = new HashMap<String, Object>();
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_COMMENTMODE, "child");
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_SOURCEFORMAT, "smile");
+		JIRA5RestIssueIndexStructureBuilder tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index",
+				"issue_type", "http://issues-stg.jboss.org/", settings);
+		BulkRequestBuilder esBulk = new BulkRequestBuilder(null);
+		tested.indexIssue(esBulk, "ORG", TestUtils.readJiraJsonIssueDataFromClasspathFile("ORG-1501"));
+		Assert.assertEquals(3, esBulk.request().numberOfActions());
+
+		// same content as JSON sources
+		settings.remove(JIRA5RestIssueIndexStructureBuilder.CONFIG_SOURCEFORMAT);
+		JIRA5RestIssueIndexStructureBuilder testedJson = new JIRA5RestIssueIndexStructureBuilder("river_jira",
+				"search_index", "issue_type", "http://issues-stg.jboss.org/", settings);
+		BulkRequestBuilder esBulkJson = new BulkRequestBuilder(null);
+		testedJson.indexIssue(esBulkJson, "ORG", TestUtils.readJiraJsonIssueDataFromClasspathFile("ORG-1501"));
+		for (int i = 0; i < 3; i++) {
+			BytesReference source = ((IndexRequest) esBulk.request().requests().get(i)).source();
+			Assert.assertEquals(XContentType.SMILE, XContentFactory.xContentType(source));
+			Assert.assertEquals(
+					XContentHelper.convertToMap(((IndexRequest) esBulkJson.request().requests().get(i)).source(), false).v2(),
+					XContentHelper.convertToMap(source, false).v2());
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void indexNamingStrategy() throws Exception {
+		// case - single index by default
+		JIRA5RestIssueIndexStructureBuilder tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index",
+				"issue_type", "http://issues-stg.jboss.org/", null);
+		Assert.assertEquals("search_index", tested.getIssuesSearchIndexName("ORG"));
+		Assert.assertNull(tested.getIssuesSearchAliasName());
+
+		// case - index per project
+		Map<String, Object> settings = new HashMap<String, Object>();
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_INDEXSTRATEGY, "project");
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_COMMENTMODE, "child");
+		tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index", "issue_type",
+				"http://issues-stg.jboss.org/", settings);
+		Assert.assertEquals("search_index_org", tested.getIssuesSearchIndexName("ORG"));
+		Assert.assertEquals("search_index", tested.getIssuesSearchAliasName());
+		BulkRequestBuilder esBulk = new BulkRequestBuilder(null);
+		tested.indexIssue(esBulk, "ORG", TestUtils.readJiraJsonIssueDataFromClasspathFile("ORG-1501"));
+		Assert.assertEquals(3, esBulk.request().numberOfActions());
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals("search_index_org", ((IndexRequest) esBulk.request().requests().get(i)).index());
+		}
+
+		// case - document deleted from index it was found in
+		esBulk = new BulkRequestBuilder(null);
+		InternalSearchHit hit = new InternalSearchHit(1, "ORG-1", new StringText("issue_type"), null);
+		hit.shard(new SearchShardTarget("node", "search_index_org", 0));
+		Assert.assertTrue(tested.deleteIssueDocument(esBulk, hit));
+		Assert.assertEquals("search_index_org", ((DeleteRequest) esBulk.request().requests().get(0)).index());
+
+		// case - index per group of projects
+		Map<String, Object> groups = new HashMap<String, Object>();
+		groups.put("jboss", "ORG, AS7");
+		List<String> keys = new ArrayList<String>();
+		keys.add("FORGE");
+		groups.put("forge", keys);
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_INDEXSTRATEGY, "project_group");
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_PROJECTGROUPS, groups);
+		tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index", "issue_type",
+				"http://issues-stg.jboss.org/", settings);
+		Assert.assertEquals("search_index_jboss", tested.getIssuesSearchIndexName("ORG"));
+		Assert.assertEquals("search_index_jboss", tested.getIssuesSearchIndexName("AS7"));
+		Assert.assertEquals("search_index_forge", tested.getIssuesSearchIndexName("FORGE"));
+		Assert.assertEquals("search_index_other", tested.getIssuesSearchIndexName("OTHER"));
+		Assert.assertEquals("search_index", tested.getIssuesSearchAliasName());
+
+		settings.remove(JIRA5RestIssueIndexStructureBuilder.CONFIG_PROJECTGROUPS);
+		try {
+			new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index", "issue_type",
+					"http://issues-stg.jboss.org/", settings);
+			fail("SettingsException must be thrown");
+		} catch (SettingsException e) {
+			// OK
+		}
+
+		// case - index per issue created year
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_INDEXSTRATEGY, "created_year");
+		tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index", "issue_type",
+				"http://issues-stg.jboss.org/", settings);
+		Assert.assertEquals("search_index", tested.getIssuesSearchIndexName("ORG"));
+		Assert.assertEquals("search_index", tested.getIssuesSearchAliasName());
+		Assert.assertTrue(tested.getRequiredJIRACallIssueFields().contains("created"));
+		Map<String, Object> issue = TestUtils.readJiraJsonIssueDataFromClasspathFile("ORG-1501");
+		Assert.assertEquals("search_index_2012", tested.prepareIssueIndexName("ORG", issue));
+		((Map<String, Object>) issue.get("fields")).remove("created");
+		try {
+			tested.prepareIssueIndexName("ORG", issue);
+			fail("IllegalArgumentException must be thrown");
+		} catch (IllegalArgumentException e) {
+			// OK
+		}
+	}
+
+	@Test
+	public void buildSearchForIndexedDocuments() throws IOException {
+		JIRA5RestIssueIndexStructureBuilder tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index",
+				"issue_type", "http://issues-stg.jboss.org/", null);
+		tested.commentTypeName = "comment_type";
+		tested.changelogTypeName = "changelog_type";
+		tested.commentIndexingMode = IssueCommentIndexingMode.CHILD;
+		tested.changelogIndexingMode = IssueCommentIndexingMode.STANDALONE;
+
+		SearchRequestBuilder srb = new SearchRequestBuilder(null);
+		tested.buildSearchForIndexedDocuments(srb, "ORG");
+		Assert.assertArrayEquals(new String[] { "issue_type", "comment_type", "changelog_type" }, srb.request().types());
+		assertTrue(
+				"Should equals: " + srb.toString(),
+				toJsonNode(srb.toString()).equals(
+						toJsonNode(TestUtils.readStringFromClasspathFile("/asserts/buildSearchForIndexedDocuments.json"))));
+	}
+
+	@Test
+	public void extractIssueKeyFromIndexedDocument() throws IOException {
+		JIRA5RestIssueIndexStructureBuilder tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index",
+				"issue_type", "http://issues-stg.jboss.org/", null);
+
+		Assert.assertNull(tested.extractIssueKeyFromIndexedDocument(new InternalSearchHit(1, "ORG-1", new StringText(
+				"issue_type"), null)));
+
+		Map<String, SearchHitField> fields = new HashMap<String, SearchHitField>();
+		fields.put(tested.indexFieldForIssueKey, new InternalSearchHitField(tested.indexFieldForIssueKey,
+				Collections.<Object> singletonList("ORG-1")));
+		Assert.assertEquals("ORG-1", tested.extractIssueKeyFromIndexedDocument(new InternalSearchHit(1, "10",
+				new StringText("comment_type"), fields)));
+	}
+
+	@Test
+	public void routingByProject() throws Exception {
+		Map<String, Object> settings = new HashMap<String, Object>();
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_COMMENTMODE, "child");
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_CHANGELOGMODE, "standalone");
+
+		// case - default routing
+		JIRA5RestIssueIndexStructureBuilder tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index",
+				"issue_type", "http://issues-stg.jboss.org/", settings);
+		Assert.assertFalse(tested.routingByProject);
+		Assert.assertNull(tested.prepareRouting("ORG"));
+		BulkRequestBuilder esBulk = new BulkRequestBuilder(null);
+		tested.indexIssue(esBulk, "ORG", TestUtils.readJiraJsonIssueDataFromClasspathFile("ORG-1501"));
+		Assert.assertNull(((IndexRequest) esBulk.request().requests().get(0)).routing());
+		// child comment routed by parent
+		Assert.assertEquals("ORG-1501", ((IndexRequest) esBulk.request().requests().get(1)).routing());
+		SearchRequestBuilder srb = new SearchRequestBuilder(null);
+		tested.buildSearchForIndexedDocumentsNotUpdatedAfter(srb, "ORG", new Date());
+		Assert.assertNull(srb.request().routing());
+
+		// case - routing by project key
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_ROUTINGBYPROJECT, true);
+		tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index", "issue_type",
+				"http://issues-stg.jboss.org/", settings);
+		esBulk = new BulkRequestBuilder(null);
+		tested.indexIssue(esBulk, "ORG", TestUtils.readJiraJsonIssueDataFromClasspathFile("ORG-1501"));
+		Assert.assertTrue(esBulk.request().numberOfActions() > 2);
+		for (ActionRequest<?> rq : esBulk.request().requests()) {
+			Assert.assertEquals("ORG", ((IndexRequest) rq).routing());
+		}
+		Assert.assertEquals("ORG-1501", ((IndexRequest) esBulk.request().requests().get(1)).parent());
+
+		srb = new SearchRequestBuilder(null);
+		tested.buildSearchForIndexedDocumentsNotUpdatedAfter(srb, "ORG", new Date());
+		Assert.assertEquals("ORG", srb.request().routing());
+		Assert.assertTrue(srb.toString().contains(JIRA5RestIssueIndexStructureBuilder.FIELD_ROUTING));
+
+		// case - delete uses routing of found document
+		Map<String, SearchHitField> fields = new HashMap<String, SearchHitField>();
+		fields.put(JIRA5RestIssueIndexStructureBuilder.FIELD_ROUTING, new InternalSearchHitField(
+				JIRA5RestIssueIndexStructureBuilder.FIELD_ROUTING, Collections.<Object> singletonList("ORG")));
+		esBulk = new BulkRequestBuilder(null);
+		tested.deleteIssueDocument(esBulk, new InternalSearchHit(1, "ORG-1", new StringText("comment"), fields));
+		tested.deleteIssueDocument(esBulk, new InternalSearchHit(1, "ORG-2", new StringText("issue_type"), null));
+		Assert.assertEquals("ORG", ((DeleteRequest) esBulk.request().requests().get(0)).routing());
+		Assert.assertNull(((DeleteRequest) esBulk.request().requests().get(1)).routing());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void extraDocumentsState() throws Exception {
+		Map<String, Object> settings = new HashMap<String, Object>();
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_FIELDEXTRADOCUMENTSSTATE, "extra_state");
+
+		// case - no extra documents indexed so no state
+		JIRA5RestIssueIndexStructureBuilder tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index",
+				"issue_type", "http://issues-stg.jboss.org/", settings);
+		Assert.assertNull(tested.getIndexFieldForExtraDocumentsState());
+		String res = tested.prepareIssueIndexedDocument("ORG", TestUtils.readJiraJsonIssueDataFromClasspathFile("ORG-1501"))
+				.string();
+		Assert.assertFalse(res.contains("extra_state"));
+
+		// case - state of comments and changelog items stored
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_COMMENTMODE, "child");
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_CHANGELOGMODE, "standalone");
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_PRUNEISSUEDATA, true);
+		tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index", "issue_type",
+				"http://issues-stg.jboss.org/", settings);
+		Assert.assertEquals("extra_state", tested.getIndexFieldForExtraDocumentsState());
+		Map<String, Object> issue = TestUtils.readJiraJsonIssueDataFromClasspathFile("ORG-1501");
+		res = tested.prepareIssueIndexedDocument("ORG", issue).string();
+		Map<String, Object> doc = XContentHelper.convertToMap(res.getBytes("UTF-8"), false).v2();
+		List<?> state = (List<?>) doc.get("extra_state");
+		Assert.assertEquals(4, state.size());
+		Assert.assertEquals("jira_issue_comment/12714153@2012-08-28T02:46:13.000-0400", state.get(0));
+		Assert.assertEquals("jira_issue_comment/12714252@2012-08-28T09:26:03.000-0400", state.get(1));
+		Assert.assertEquals("jira_issue_change/10600@2011-09-23T16:10:34.911-0500", state.get(2));
+
+		// dates necessary for state are read from JIRA response
+		Assert.assertNotNull(tested.getIssueDataReader());
+		XContentParser parser = XContentFactory.xContent(XContentType.JSON).createParser(
+				TestUtils.readStringFromClasspathFile("/jira_issue_json/ORG-1501.json"));
+		parser.nextToken();
+		Assert.assertEquals(res, tested.prepareIssueIndexedDocument("ORG", tested.getIssueDataReader().readIssue(parser))
+				.string());
+
+		// case - all comments removed from issue
+		((Map<String, Object>) issue.get("fields")).remove("comment");
+		((Map<String, Object>) issue.get("changelog")).remove("histories");
+		res = tested.prepareIssueIndexedDocument("ORG", issue).string();
+		doc = XContentHelper.convertToMap(res.getBytes("UTF-8"), false).v2();
+		Assert.assertTrue(((List<?>) doc.get("extra_state")).isEmpty());
+	}
+
+	@Test
+	public void deleteIssueExtraDocument() throws Exception {
+		Map<String, Object> settings = new HashMap<String, Object>();
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_COMMENTMODE, "child");
+		settings.put(JIRA5RestIssueIndexStructureBuilder.CONFIG_CHANGELOGMODE, "standalone");
+		JIRA5RestIssueIndexStructureBuilder tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index",
+				"issue_type", "http://issues-stg.jboss.org/", settings);
+
+		BulkRequestBuilder esBulk = new BulkRequestBuilder(null);
+		IndexRequest issueRequest = new IndexRequest("search_index_org", "issue_type", "ORG-1");
+		tested.deleteIssueExtraDocument(esBulk, issueRequest, "ORG-1", "jira_issue_comment", "10");
+		tested.deleteIssueExtraDocument(esBulk, issueRequest, "ORG-1", "jira_issue_change", "20");
+		issueRequest.routing("ORG");
+		tested.deleteIssueExtraDocument(esBulk, issueRequest, "ORG-1", "jira_issue_change", "21");
+
+		DeleteRequest drq = (DeleteRequest) esBulk.request().requests().get(0);
+		Assert.assertEquals("search_index_org", drq.index());
+		Assert.assertEquals("jira_issue_comment", drq.type());
+		Assert.assertEquals("10", drq.id());
+		// child document is routed by parent
+		Assert.assertEquals("ORG-1", drq.routing());
+		Assert.assertNull(((DeleteRequest) esBulk.request().requests().get(1)).routing());
+		Assert.assertEquals("ORG", ((DeleteRequest) esBulk.request().requests().get(2)).routing());
+	}
+
+	@Test
+	public void parseProjectGroups() {
+		Assert.assertTrue(JIRA5RestIssueIndexStructureBuilder.parseProjectGroups(null).isEmpty());
+		try {
+			JIRA5RestIssueIndexStructureBuilder.parseProjectGroups("bad");
+			fail("SettingsException must be thrown");
+		} catch (SettingsException e) {
+			// OK
+		}
+		Map<String, Object> groups = new HashMap<String, Object>();
+		groups.put("g1", "A, B,,C");
+		Map<String, String> ret = JIRA5RestIssueIndexStructureBuilder.parseProjectGroups(groups);
+		Assert.assertEquals(3, ret.size());
+		Assert.assertEquals("g1", ret.get("C"));
+	}
+
 	@Test
 	public void indexIssue() throws Exception {
 		JIRA5RestIssueIndexStructureBuilder tested = new JIRA5RestIssueIndexStructureBuilder("river_jira", "search_index",
@@ -0,0 +1,95 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import junit.framework.Assert;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link JIRAPageSizeController}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class JIRAPageSizeControllerTest {
+
+	@Test
+	public void constructor() {
+		try {
+			new JIRAPageSizeController(0, 10, 5, 1000);
+			Assert.fail("IllegalArgumentException must be thrown");
+		} catch (IllegalArgumentException e) {
+			// OK
+		}
+		try {
+			new JIRAPageSizeController(20, 10, 5, 1000);
+			Assert.fail("IllegalArgumentException must be thrown");
+		} catch (IllegalArgumentException e) {
+			// OK
+		}
+
+		// initial value trimmed into bounds
+		Assert.assertEquals(10, new JIRAPageSizeController(10, 100, 5, 1000).getPageSize("ORG"));
+		Assert.assertEquals(100, new JIRAPageSizeController(10, 100, 500, 1000).getPageSize("ORG"));
+		Assert.assertEquals(50, new JIRAPageSizeController(10, 100, 50, 1000).getPageSize("ORG"));
+	}
+
+	@Test
+	public void adaptation() {
+		JIRAPageSizeController tested = new JIRAPageSizeController(10, 100, 40, 1000);
+
+		// case - fast full page grows
+		tested.onResponse("ORG", 40, 40, 100, 0);
+		Assert.assertEquals(51, tested.getPageSize("ORG"));
+		Assert.assertEquals(40, tested.getPageSize("AAA"));
+
+		// case - fast but not full page keeps size
+		tested.onResponse("ORG", 51, 20, 100, 0);
+		Assert.assertEquals(51, tested.getPageSize("ORG"));
+
+		// case - middle latency keeps size
+		tested.onResponse("ORG", 51, 51, 700, 0);
+		Assert.assertEquals(51, tested.getPageSize("ORG"));
+
+		// case - slow response shrinks
+		tested.onResponse("ORG", 51, 51, 1500, 0);
+		Assert.assertEquals(38, tested.getPageSize("ORG"));
+
+		// case - growth limited by max
+		tested.onResponse("ORG", 90, 90, 10, 0);
+		Assert.assertEquals(100, tested.getPageSize("ORG"));
+
+		// case - too large response shrinks
+		tested.onResponse("ORG", 100, 100, 10, 100 * JIRAPageSizeController.TARGET_RESPONSE_BYTES / 30);
+		Assert.assertEquals(30, tested.getPageSize("ORG"));
+
+		// case - timeout halves, limited by min
+		tested.onTimeout("ORG");
+		Assert.assertEquals(15, tested.getPageSize("ORG"));
+		tested.onTimeout("ORG");
+		Assert.assertEquals(10, tested.getPageSize("ORG"));
+		tested.onResponse("ORG", 10, 10, 5000, 0);
+		Assert.assertEquals(10, tested.getPageSize("ORG"));
+
+		// case - unknown page size from JIRA uses current one
+		tested.onResponse("AAA", 0, 0, 5000, 0);
+		Assert.assertEquals(30, tested.getPageSize("AAA"));
+	}
+
+	@Test
+	public void buildDocument() throws Exception {
+		JIRAPageSizeController tested = new JIRAPageSizeController(10, 100, 40, 1000);
+		tested.onResponse("ORG", 40, 40, 100, 0);
+		tested.onTimeout("AAA");
+		XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+		tested.buildDocument(builder);
+		builder.endObject();
+		Assert.assertEquals("{\"page_size\":{\"AAA\":20,\"ORG\":51}}", builder.string());
+	}
+
+}
@@ -13,7 +13,10 @@ import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.jboss.elasticsearch.river.jira.testtools.MockThread;
@@ -63,6 +66,21 @@ public class JIRAProjectIndexerCoordinatorTest {
           new Date(System.currentTimeMillis() - indexUpdatePeriod + 1000));
       Assert.assertFalse(tested.projectIndexUpdateNecessary("ORG"));
     }
+
+    // case - no update necessary - stored date is older than index update period, but project was checked for changes
+    // later
+    {
+      reset(esIntegrationMock);
+      when(
+          esIntegrationMock.readDatetimeValue("ORG",
+              JIRAProjectIndexerCoordinator.STORE_PROPERTYNAME_LAST_INDEX_UPDATE_START_DATE)).thenReturn(
+          new Date(System.currentTimeMillis() - indexUpdatePeriod - 100));
+      tested.projectIndexedUntil.put("ORG", new Date(System.currentTimeMillis() - indexUpdatePeriod + 1000));
+      Assert.assertFalse(tested.projectIndexUpdateNecessary("ORG"));
+      // older date of check is ignored
+      tested.projectIndexedUntil.put("ORG", new Date(System.currentTimeMillis() - 2 * indexUpdatePeriod));
+      Assert.assertTrue(tested.projectIndexUpdateNecessary("ORG"));
+    }
   }
 
   @Test
@@ -335,6 +353,236 @@ public class JIRAProjectIndexerCoordinatorTest {
     }
   }
 
+  @Test
+  public void fillProjectKeysToIndexQueue_incrementalBatch() throws Exception {
+    int indexUpdatePeriod = 60 * 1000;
+    IESIntegration esIntegrationMock = mock(IESIntegration.class);
+    IJIRAClient jiraClientMock = mock(IJIRAClient.class);
+    IJIRAIssueIndexStructureBuilder structureBuilderMock = mock(IJIRAIssueIndexStructureBuilder.class);
+    JIRAProjectIndexerCoordinator tested = new JIRAProjectIndexerCoordinator(jiraClientMock, esIntegrationMock,
+        structureBuilderMock, indexUpdatePeriod, 2, -1);
+    tested.setIncrementalBatchSize(2);
+
+    long now = System.currentTimeMillis();
+    // ORG was never indexed by this river run, so it is not checked and indexer is started
+    tested.projectIndexedUntil.put("AAA", new Date(now - 10 * 60 * 1000));
+    tested.projectIndexedUntil.put("BBB", new Date(now - 5 * 60 * 1000));
+    tested.projectIndexedUntil.put("CCC", new Date(now - 2 * 60 * 1000));
+
+    when(esIntegrationMock.getAllIndexedProjectsKeys()).thenReturn(Utils.parseCsvString("ORG,AAA,BBB,CCC"));
+    when(
+        esIntegrationMock.readDatetimeValue(Mockito.anyString(),
+            Mockito.eq(JIRAProjectIndexerCoordinator.STORE_PROPERTYNAME_LAST_INDEX_UPDATE_START_DATE))).thenReturn(
+        new Date(now - indexUpdatePeriod - 100));
+
+    // batch AAA,BBB - only issue from BBB changed after BBB was indexed
+    List<Map<String, Object>> issues1 = new ArrayList<Map<String, Object>>();
+    issues1.add(mockIssue(structureBuilderMock, "AAA-1", new Date(now - 20 * 60 * 1000)));
+    issues1.add(mockIssue(structureBuilderMock, "BBB-10", new Date(now - 60 * 1000)));
+    when(
+        jiraClientMock.getJIRAChangedIssuesInProjects(Mockito.eq(Utils.parseCsvString("AAA,BBB")), Mockito.eq(0),
+            (Date) Mockito.any())).thenReturn(new ChangedIssuesResults(issues1, 0, 1000, 2));
+    // batch CCC - JIRA call fails, so project is indexed
+    when(
+        jiraClientMock.getJIRAChangedIssuesInProjects(Mockito.eq(Utils.parseCsvString("CCC")), Mockito.eq(0),
+            (Date) Mockito.any())).thenThrow(new RuntimeException("JIRA down"));
+
+    tested.fillProjectKeysToIndexQueue();
+    Assert.assertEquals(3, tested.projectKeysToIndexQueue.size());
+    Assert.assertTrue(tested.projectKeysToIndexQueue.contains("ORG"));
+    Assert.assertFalse(tested.projectKeysToIndexQueue.contains("AAA"));
+    Assert.assertTrue(tested.projectKeysToIndexQueue.contains("BBB"));
+    Assert.assertTrue(tested.projectKeysToIndexQueue.contains("CCC"));
+
+    // AAA is marked as indexed now in memory only, nothing is written into persistent store
+    Assert.assertTrue(tested.projectIndexedUntil.get("AAA").getTime() >= now);
+    verify(esIntegrationMock, times(0)).storeDatetimeValue(Mockito.anyString(), Mockito.anyString(),
+        (Date) Mockito.any(), (BulkRequestBuilder) Mockito.any());
+    // changes are requested from oldest indexed project of batch with clock margin
+    verify(jiraClientMock).getJIRAChangedIssuesInProjects(Utils.parseCsvString("AAA,BBB"), 0,
+        new Date(now - 10 * 60 * 1000 - JIRAProjectIndexerCoordinator.CHANGES_CHECK_CLOCK_MARGIN));
+
+    // case - AAA is not checked again until index update period elapses from check, even if stored date is older
+    tested.projectKeysToIndexQueue.clear();
+    Assert.assertFalse(tested.projectIndexUpdateNecessary("AAA"));
+    tested.fillProjectKeysToIndexQueue();
+    Assert.assertFalse(tested.projectKeysToIndexQueue.contains("AAA"));
+    verify(jiraClientMock, times(1)).getJIRAChangedIssuesInProjects(Mockito.eq(Utils.parseCsvString("AAA,BBB")),
+        Mockito.eq(0), (Date) Mockito.any());
+    verify(esIntegrationMock, times(0)).storeDatetimeValue(Mockito.anyString(), Mockito.anyString(),
+        (Date) Mockito.any(), (BulkRequestBuilder) Mockito.any());
+  }
+
+  @Test
+  public void projectIndexDeleteSyncNecessary() throws Exception {
+    IESIntegration esIntegrationMock = mock(IESIntegration.class);
+    JIRAProjectIndexerCoordinator tested = new JIRAProjectIndexerCoordinator(null, esIntegrationMock, null, 1000, 2, -1);
+
+    // case - delete sync disabled
+    Assert.assertFalse(tested.projectIndexDeleteSyncNecessary("ORG"));
+    Mockito.verifyZeroInteractions(esIntegrationMock);
+
+    tested.setIndexDeleteSyncPeriod(60 * 1000);
+    // case - no date of last delete sync stored
+    when(
+        esIntegrationMock.readDatetimeValue("ORG",
+            JIRAProjectIndexerCoordinator.STORE_PROPERTYNAME_LAST_INDEX_DELETE_SYNC_DATE)).thenReturn(null);
+    Assert.assertTrue(tested.projectIndexDeleteSyncNecessary("ORG"));
+
+    // case - last delete sync older than period
+    when(
+        esIntegrationMock.readDatetimeValue("ORG",
+            JIRAProjectIndexerCoordinator.STORE_PROPERTYNAME_LAST_INDEX_DELETE_SYNC_DATE)).thenReturn(
+        new Date(System.currentTimeMillis() - 60 * 1000 - 100));
+    Assert.assertTrue(tested.projectIndexDeleteSyncNecessary("ORG"));
+
+    // case - last delete sync newer than period
+    when(
+        esIntegrationMock.readDatetimeValue("ORG",
+            JIRAProjectIndexerCoordinator.STORE_PROPERTYNAME_LAST_INDEX_DELETE_SYNC_DATE)).thenReturn(
+        new Date(System.currentTimeMillis() - 60 * 1000 + 1000));
+    Assert.assertFalse(tested.projectIndexDeleteSyncNecessary("ORG"));
+  }
+
+  @Test
+  public void fillProjectKeysToIndexQueue_incrementalBatchDeleteSync() throws Exception {
+    int indexUpdatePeriod = 60 * 1000;
+    IESIntegration esIntegrationMock = mock(IESIntegration.class);
+    IJIRAClient jiraClientMock = mock(IJIRAClient.class);
+    JIRAProjectIndexerCoordinator tested = new JIRAProjectIndexerCoordinator(jiraClientMock, esIntegrationMock, null,
+        indexUpdatePeriod, 2, -1);
+    tested.setIncrementalBatchSize(2);
+    tested.setIndexDeleteSyncPeriod(60 * 60 * 1000);
+
+    long now = System.currentTimeMillis();
+    tested.projectIndexedUntil.put("AAA", new Date(now - 10 * 60 * 1000));
+    when(esIntegrationMock.getAllIndexedProjectsKeys()).thenReturn(Utils.parseCsvString("AAA"));
+    when(
+        esIntegrationMock.readDatetimeValue(Mockito.anyString(),
+            Mockito.eq(JIRAProjectIndexerCoordinator.STORE_PROPERTYNAME_LAST_INDEX_UPDATE_START_DATE))).thenReturn(
+        new Date(now - indexUpdatePeriod - 100));
+    when(
+        esIntegrationMock.readDatetimeValue(Mockito.anyString(),
+            Mockito.eq(JIRAProjectIndexerCoordinator.STORE_PROPERTYNAME_LAST_INDEX_DELETE_SYNC_DATE))).thenReturn(null);
+
+    // project is indexed without check for changes because delete sync is necessary
+    tested.fillProjectKeysToIndexQueue();
+    Assert.assertTrue(tested.projectKeysToIndexQueue.contains("AAA"));
+    Mockito.verifyZeroInteractions(jiraClientMock);
+  }
+
+  @Test
+  public void getChangedProjects_paging() throws Exception {
+    IJIRAClient jiraClientMock = mock(IJIRAClient.class);
+    IJIRAIssueIndexStructureBuilder structureBuilderMock = mock(IJIRAIssueIndexStructureBuilder.class);
+    JIRAProjectIndexerCoordinator tested = new JIRAProjectIndexerCoordinator(jiraClientMock, null,
+        structureBuilderMock, 10, 2, -1);
+    tested.setIncrementalBatchSize(3);
+    long now = System.currentTimeMillis();
+    tested.projectIndexedUntil.put("AAA", new Date(now - 10 * 60 * 1000));
+    tested.projectIndexedUntil.put("BBB", new Date(now - 10 * 60 * 1000));
+    tested.projectIndexedUntil.put("CCC", new Date(now - 10 * 60 * 1000));
+    List<String> batch = Utils.parseCsvString("AAA,BBB,CCC");
+
+    List<Map<String, Object>> issues1 = new ArrayList<Map<String, Object>>();
+    issues1.add(mockIssue(structureBuilderMock, "AAA-1", new Date(now)));
+    issues1.add(mockIssue(structureBuilderMock, "XXX-1", new Date(now)));
+    List<Map<String, Object>> issues2 = new ArrayList<Map<String, Object>>();
+    issues2.add(mockIssue(structureBuilderMock, "CCC-1", new Date(now)));
+    ChangedIssuesResults res1 = Mockito.spy(new ChangedIssuesResults(issues1, 0, 2, 3));
+    ChangedIssuesResults res2 = Mockito.spy(new ChangedIssuesResults(issues2, 0, 2, 1));
+    when(jiraClientMock.getJIRAChangedIssuesInProjects(Mockito.eq(batch), Mockito.eq(0), (Date) Mockito.any()))
+        .thenReturn(res1);
+    // changed project is not requested again, and no offset is used
+    when(
+        jiraClientMock.getJIRAChangedIssuesInProjects(Mockito.eq(Utils.parseCsvString("BBB,CCC")), Mockito.eq(0),
+            (Date) Mockito.any())).thenReturn(res2);
+
+    Set<String> changed = tested.getChangedProjects(batch);
+    Assert.assertEquals(2, changed.size());
+    Assert.assertTrue(changed.contains("AAA"));
+    Assert.assertTrue(changed.contains("CCC"));
+    verify(jiraClientMock, times(2)).getJIRAChangedIssuesInProjects(Mockito.anyListOf(String.class), Mockito.eq(0),
+        (Date) Mockito.any());
+    Mockito.verifyNoMoreInteractions(jiraClientMock);
+    verify(res1).close();
+    verify(res2).close();
+  }
+
+  @Test
+  public void getChangedProjects_busyProject() throws Exception {
+    IJIRAClient jiraClientMock = mock(IJIRAClient.class);
+    IJIRAIssueIndexStructureBuilder structureBuilderMock = mock(IJIRAIssueIndexStructureBuilder.class);
+    JIRAProjectIndexerCoordinator tested = new JIRAProjectIndexerCoordinator(jiraClientMock, null,
+        structureBuilderMock, 10, 2, -1);
+    tested.setIncrementalBatchSize(2);
+    long now = System.currentTimeMillis();
+    tested.projectIndexedUntil.put("QUIET", new Date(now - 30 * 60 * 1000));
+    tested.projectIndexedUntil.put("BUSY", new Date(now - 30 * 60 * 1000));
+    List<String> batch = Utils.parseCsvString("QUIET,BUSY");
+
+    // case - busy project has many more changes than one JIRA call returns, but is not requested again
+    List<Map<String, Object>> issues1 = new ArrayList<Map<String, Object>>();
+    for (int i = 0; i < 100; i++) {
+      issues1.add(mockIssue(structureBuilderMock, "BUSY-" + i, new Date(now - 20 * 60 * 1000)));
+    }
+    when(jiraClientMock.getJIRAChangedIssuesInProjects(Mockito.eq(batch), Mockito.eq(0), (Date) Mockito.any()))
+        .thenReturn(new ChangedIssuesResults(issues1, 0, 100, 5000));
+    when(
+        jiraClientMock.getJIRAChangedIssuesInProjects(Mockito.eq(Utils.parseCsvString("QUIET")), Mockito.eq(0),
+            (Date) Mockito.any())).thenReturn(
+        new ChangedIssuesResults(new ArrayList<Map<String, Object>>(), 0, 100, 0));
+
+    Set<String> changed = tested.getChangedProjects(batch);
+    Assert.assertEquals(1, changed.size());
+    Assert.assertTrue(changed.contains("BUSY"));
+    verify(jiraClientMock, times(2)).getJIRAChangedIssuesInProjects(Mockito.anyListOf(String.class), Mockito.eq(0),
+        (Date) Mockito.any());
+
+    // case - issues of busy project updated before it was indexed are skipped by update date, not by offset
+    reset(jiraClientMock);
+    tested.projectIndexedUntil.put("BUSY", new Date(now - 5 * 60 * 1000));
+    Date lastNotChanged = DateTimeUtils.roundDateTimeToMinutePrecise(new Date(now - 15 * 60 * 1000));
+    List<Map<String, Object>> issues2 = new ArrayList<Map<String, Object>>();
+    issues2.add(mockIssue(structureBuilderMock, "BUSY-1", new Date(now - 20 * 60 * 1000)));
+    issues2.add(mockIssue(structureBuilderMock, "BUSY-2", new Date(lastNotChanged.getTime() + 1000)));
+    List<Map<String, Object>> issues3 = new ArrayList<Map<String, Object>>();
+    issues3.add(mockIssue(structureBuilderMock, "BUSY-2", new Date(lastNotChanged.getTime() + 1000)));
+    issues3.add(mockIssue(structureBuilderMock, "BUSY-3", new Date(now)));
+    when(
+        jiraClientMock.getJIRAChangedIssuesInProjects(batch, 0, new Date(now - 30 * 60 * 1000
+            - JIRAProjectIndexerCoordinator.CHANGES_CHECK_CLOCK_MARGIN))).thenReturn(
+        new ChangedIssuesResults(issues2, 0, 2, 500));
+    when(jiraClientMock.getJIRAChangedIssuesInProjects(batch, 0, lastNotChanged)).thenReturn(
+        new ChangedIssuesResults(issues3, 0, 2, 2));
+
+    changed = tested.getChangedProjects(batch);
+    Assert.assertEquals(1, changed.size());
+    Assert.assertTrue(changed.contains("BUSY"));
+    verify(jiraClientMock, times(2)).getJIRAChangedIssuesInProjects(Mockito.anyListOf(String.class), Mockito.eq(0),
+        (Date) Mockito.any());
+
+    // case - too many issues updated in one minute, so remaining projects can't be checked
+    reset(jiraClientMock);
+    List<Map<String, Object>> issues4 = new ArrayList<Map<String, Object>>();
+    issues4.add(mockIssue(structureBuilderMock, "BUSY-1", new Date(now - 31 * 60 * 1000)));
+    issues4.add(mockIssue(structureBuilderMock, "BUSY-2", new Date(now - 31 * 60 * 1000)));
+    when(jiraClientMock.getJIRAChangedIssuesInProjects(Mockito.eq(batch), Mockito.eq(0), (Date) Mockito.any()))
+        .thenReturn(new ChangedIssuesResults(issues4, 0, 2, 500));
+    changed = tested.getChangedProjects(batch);
+    Assert.assertEquals(2, changed.size());
+    verify(jiraClientMock, times(1)).getJIRAChangedIssuesInProjects(Mockito.anyListOf(String.class), Mockito.eq(0),
+        (Date) Mockito.any());
+  }
+
+  private Map<String, Object> mockIssue(IJIRAIssueIndexStructureBuilder structureBuilderMock, String key, Date updated) {
+    Map<String, Object> issue = new HashMap<String, Object>();
+    issue.put("key", key);
+    when(structureBuilderMock.extractIssueKey(issue)).thenReturn(key);
+    when(structureBuilderMock.extractIssueUpdated(issue)).thenReturn(updated);
+    return issue;
+  }
+
   @Test
   public void startIndexers() throws Exception {
 
@@ -781,6 +1029,61 @@ public class JIRAProjectIndexerCoordinatorTest {
     }
   }
 
+  @Test
+  public void reportIndexingFinished_deleteSync() throws Exception {
+    IESIntegration esIntegrationMock = mock(IESIntegration.class);
+    JIRAProjectIndexerCoordinator tested = new JIRAProjectIndexerCoordinator(null, esIntegrationMock, null, 10, 2, -1);
+    tested.setIndexDeleteSyncPeriod(60 * 1000);
+
+    // case - incremental indexing without delete sync
+    tested.projectIndexers.put("ORG", new JIRAProjectIndexer("ORG", false, null, esIntegrationMock, null));
+    tested.reportIndexingFinished("ORG", true, false);
+    Mockito.verifyZeroInteractions(esIntegrationMock);
+
+    // case - incremental indexing with failed delete sync
+    JIRAProjectIndexer indexer = new JIRAProjectIndexer("ORG", false, null, esIntegrationMock, null);
+    indexer.setDeleteSync(true);
+    tested.projectIndexers.put("ORG", indexer);
+    tested.reportIndexingFinished("ORG", false, false);
+    Mockito.verifyZeroInteractions(esIntegrationMock);
+
+    // case - incremental indexing with delete sync
+    tested.projectIndexers.put("ORG", indexer);
+    tested.reportIndexingFinished("ORG", true, false);
+    verify(esIntegrationMock).storeDatetimeValue(Mockito.eq("ORG"),
+        Mockito.eq(JIRAProjectIndexerCoordinator.STORE_PROPERTYNAME_LAST_INDEX_DELETE_SYNC_DATE), (Date) Mockito.any(),
+        (BulkRequestBuilder) Mockito.isNull());
+    Mockito.verifyNoMoreInteractions(esIntegrationMock);
+
+    // case - full indexing removes deleted issues too
+    reset(esIntegrationMock);
+    tested.reportIndexingFinished("AAA", true, true);
+    verify(esIntegrationMock).storeDatetimeValue(Mockito.eq("AAA"),
+        Mockito.eq(JIRAProjectIndexerCoordinator.STORE_PROPERTYNAME_LAST_INDEX_DELETE_SYNC_DATE), (Date) Mockito.any(),
+        (BulkRequestBuilder) Mockito.isNull());
+  }
+
+  @Test
+  public void reportIndexingFinished_incrementalBatch() throws Exception {
+    IESIntegration esIntegrationMock = mock(IESIntegration.class);
+    JIRAProjectIndexerCoordinator tested = new JIRAProjectIndexerCoordinator(null, esIntegrationMock, null, 10, 2, -1);
+    tested.setIncrementalBatchSize(10);
+    Date startDate = new Date(System.currentTimeMillis() - 1000);
+
+    // case - success stores start date of indexer
+    tested.projectIndexerThreads.put("ORG", new Thread());
+    tested.projectIndexerStartDates.put("ORG", startDate);
+    tested.reportIndexingFinished("ORG", true, false);
+    Assert.assertEquals(startDate, tested.projectIndexedUntil.get("ORG"));
+    Assert.assertTrue(tested.projectIndexerStartDates.isEmpty());
+
+    // case - failure removes date so project is not checked for changes but indexed next time
+    tested.projectIndexerThreads.put("ORG", new Thread());
+    tested.projectIndexerStartDates.put("ORG", startDate);
+    tested.reportIndexingFinished("ORG", false, false);
+    Assert.assertFalse(tested.projectIndexedUntil.containsKey("ORG"));
+  }
+
   @Test
   public void getCurrentProjectIndexingInfo() {
 
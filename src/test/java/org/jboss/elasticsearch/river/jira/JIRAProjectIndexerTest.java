@@ -15,22 +15,42 @@ import static org.mockito.Mockito.when;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import junit.framework.Assert;
 
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.common.joda.time.format.ISODateTimeFormat;
 import org.elasticsearch.common.text.StringText;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.get.GetField;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.internal.InternalSearchHit;
 import org.elasticsearch.search.internal.InternalSearchHits;
 import org.elasticsearch.search.internal.InternalSearchResponse;
 import org.jboss.elasticsearch.river.jira.testtools.ProjectInfoMatcher;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -195,6 +215,25 @@ public class JIRAProjectIndexerTest {
 
 	}
 
+	@Test
+	public void clearValueCache() throws Exception {
+		IJIRAIssueIndexStructureBuilder jiraIssueIndexStructureBuilderMock = mock(IJIRAIssueIndexStructureBuilder.class);
+		JIRAProjectIndexer tested = new JIRAProjectIndexer("ORG", true, null, null, jiraIssueIndexStructureBuilderMock);
+
+		// case - no reader or cache
+		tested.clearValueCache();
+		IssueDataReader reader = new IssueDataReader();
+		when(jiraIssueIndexStructureBuilderMock.getIssueDataReader()).thenReturn(reader);
+		tested.clearValueCache();
+
+		// case - cached objects removed so changes of them are read from JIRA by full update
+		IndexValueCache cache = new IndexValueCache(10);
+		cache.put(reader, "http://jira/user/1", new HashMap<String, Object>());
+		reader.setValueCache(cache);
+		tested.clearValueCache();
+		Assert.assertEquals(0, cache.size());
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test
 	public void processUpdate_PagedByDate() throws Exception {
@@ -321,6 +360,414 @@ public class JIRAProjectIndexerTest {
 
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void processUpdate_PagedByKey() throws Exception {
+
+		// test case with more than one "page" of results from JIRA search method with same updated dates and keyset
+		// pagination enabled, so issues updated in the same minute are paged over by issue key
+		IJIRAClient jiraClientMock = mock(IJIRAClient.class);
+		IESIntegration esIntegrationMock = mock(IESIntegration.class);
+		IJIRAIssueIndexStructureBuilder jiraIssueIndexStructureBuilderMock = mock(IJIRAIssueIndexStructureBuilder.class);
+		JIRAProjectIndexer tested = new JIRAProjectIndexer("ORG", false, jiraClientMock, esIntegrationMock,
+				jiraIssueIndexStructureBuilderMock);
+		tested.setKeysetPagination(true);
+
+		Date minute = DateTimeUtils.parseISODateTime("2012-08-14T08:00:00.000-0400");
+		Date nextMinute = DateTimeUtils.parseISODateTime("2012-08-14T08:01:00.000-0400");
+		List<Map<String, Object>> issues = new ArrayList<Map<String, Object>>();
+		addIssueMock(issues, "ORG-46", "2012-08-14T08:00:00.000-0400");
+		addIssueMock(issues, "ORG-45", "2012-08-14T08:00:10.000-0400");
+		addIssueMock(issues, "ORG-49", "2012-08-14T08:00:20.000-0400");
+		List<Map<String, Object>> issuesKey1 = new ArrayList<Map<String, Object>>();
+		addIssueMock(issuesKey1, "ORG-45", "2012-08-14T08:00:10.000-0400");
+		addIssueMock(issuesKey1, "ORG-46", "2012-08-14T08:00:00.000-0400");
+		addIssueMock(issuesKey1, "ORG-47", "2012-08-14T08:00:30.000-0400");
+		List<Map<String, Object>> issuesKey2 = new ArrayList<Map<String, Object>>();
+		addIssueMock(issuesKey2, "ORG-48", "2012-08-14T08:00:40.000-0400");
+		addIssueMock(issuesKey2, "ORG-49", "2012-08-14T08:00:20.000-0400");
+		List<Map<String, Object>> issues2 = new ArrayList<Map<String, Object>>();
+		addIssueMock(issues2, "ORG-4", "2012-08-14T08:01:10.000-0400");
+		addIssueMock(issues2, "ORG-91", "2012-08-14T08:02:20.000-0400");
+		when(
+				esIntegrationMock
+						.readDatetimeValue("ORG", JIRAProjectIndexer.STORE_PROPERTYNAME_LAST_INDEXED_ISSUE_UPDATE_DATE))
+				.thenReturn(null);
+		when(jiraClientMock.getJIRAChangedIssues("ORG", 0, null, null)).thenReturn(
+				new ChangedIssuesResults(issues, 0, 3, 7));
+		when(jiraClientMock.getJIRAChangedIssuesAfterKey("ORG", minute, null)).thenReturn(
+				new ChangedIssuesResults(issuesKey1, 0, 3, 5));
+		when(jiraClientMock.getJIRAChangedIssuesAfterKey("ORG", minute, "ORG-47")).thenReturn(
+				new ChangedIssuesResults(issuesKey2, 0, 3, 2));
+		when(jiraClientMock.getJIRAChangedIssues("ORG", 0, nextMinute, null)).thenReturn(
+				new ChangedIssuesResults(issues2, 0, 3, 2));
+		when(esIntegrationMock.prepareESBulkRequestBuilder()).thenReturn(new BulkRequestBuilder(null));
+		configureStructureBuilderMockDefaults(jiraIssueIndexStructureBuilderMock);
+
+		tested.processUpdate();
+		Assert.assertEquals(10, tested.indexingInfo.issuesUpdated);
+		verify(esIntegrationMock, times(1)).readDatetimeValue(Mockito.any(String.class), Mockito.any(String.class));
+		verify(esIntegrationMock, times(4)).prepareESBulkRequestBuilder();
+		verify(jiraClientMock, times(1)).getJIRAChangedIssues("ORG", 0, null, null);
+		verify(jiraClientMock, times(1)).getJIRAChangedIssuesAfterKey("ORG", minute, null);
+		verify(jiraClientMock, times(1)).getJIRAChangedIssuesAfterKey("ORG", minute, "ORG-47");
+		verify(jiraClientMock, times(1)).getJIRAChangedIssues("ORG", 0, nextMinute, null);
+		verify(jiraIssueIndexStructureBuilderMock, times(10)).indexIssue(Mockito.any(BulkRequestBuilder.class),
+				Mockito.eq("ORG"), Mockito.any(Map.class));
+		verify(esIntegrationMock, times(3)).storeDatetimeValue(Mockito.eq("ORG"),
+				Mockito.eq(JIRAProjectIndexer.STORE_PROPERTYNAME_LAST_INDEXED_ISSUE_UPDATE_DATE), Mockito.eq(minute),
+				Mockito.any(BulkRequestBuilder.class));
+		verify(esIntegrationMock, times(1)).storeDatetimeValue(Mockito.eq("ORG"),
+				Mockito.eq(JIRAProjectIndexer.STORE_PROPERTYNAME_LAST_INDEXED_ISSUE_UPDATE_DATE),
+				Mockito.eq(DateTimeUtils.parseISODateTime("2012-08-14T08:02:00.000-0400")),
+				Mockito.any(BulkRequestBuilder.class));
+		verify(esIntegrationMock, times(4)).executeESBulkRequest(Mockito.any(BulkRequestBuilder.class));
+		verify(esIntegrationMock, Mockito.atLeastOnce()).isClosed();
+		Mockito.verifyNoMoreInteractions(jiraClientMock);
+		Mockito.verifyNoMoreInteractions(esIntegrationMock);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void processUpdate_Prefetched() throws Exception {
+
+		// test case with more "pages" of results prefetched from JIRA search method by another thread, pages paged both by
+		// date and startAt
+		IJIRAClient jiraClientMock = mock(IJIRAClient.class);
+		IESIntegration esIntegrationMock = mock(IESIntegration.class);
+		IJIRAIssueIndexStructureBuilder jiraIssueIndexStructureBuilderMock = mock(IJIRAIssueIndexStructureBuilder.class);
+		JIRAProjectIndexer tested = new JIRAProjectIndexer("ORG", false, jiraClientMock, esIntegrationMock,
+				jiraIssueIndexStructureBuilderMock);
+		tested.setPrefetchDepth(2);
+
+		List<Map<String, Object>> issues = new ArrayList<Map<String, Object>>();
+		addIssueMock(issues, "ORG-45", "2012-08-14T08:00:10.000-0400");
+		addIssueMock(issues, "ORG-46", "2012-08-14T08:01:10.000-0400");
+		addIssueMock(issues, "ORG-47", "2012-08-14T08:02:20.000-0400");
+		Date after2 = DateTimeUtils.parseISODateTime("2012-08-14T08:02:00.000-0400");
+		List<Map<String, Object>> issues2 = new ArrayList<Map<String, Object>>();
+		addIssueMock(issues2, "ORG-481", "2012-08-14T08:02:10.000-0400");
+		addIssueMock(issues2, "ORG-49", "2012-08-14T08:02:10.000-0400");
+		addIssueMock(issues2, "ORG-154", "2012-08-14T08:02:20.000-0400");
+		List<Map<String, Object>> issues3 = new ArrayList<Map<String, Object>>();
+		addIssueMock(issues3, "ORG-4", "2012-08-14T08:06:10.000-0400");
+		addIssueMock(issues3, "ORG-91", "2012-08-14T08:07:20.000-0400");
+		when(
+				esIntegrationMock
+						.readDatetimeValue("ORG", JIRAProjectIndexer.STORE_PROPERTYNAME_LAST_INDEXED_ISSUE_UPDATE_DATE))
+				.thenReturn(null);
+		when(jiraClientMock.getJIRAChangedIssues("ORG", 0, null, null)).thenReturn(
+				new ChangedIssuesResults(issues, 0, 3, 8));
+		when(jiraClientMock.getJIRAChangedIssues("ORG", 0, after2, null)).thenReturn(
+				new ChangedIssuesResults(issues2, 0, 3, 5));
+		when(jiraClientMock.getJIRAChangedIssues("ORG", 3, after2, null)).thenReturn(
+				new ChangedIssuesResults(issues3, 3, 3, 5));
+		when(esIntegrationMock.prepareESBulkRequestBuilder()).thenReturn(new BulkRequestBuilder(null));
+		when(esIntegrationMock.acquireIndexingThread(Mockito.eq("jira_river_prefetcher_ORG"), Mockito.any(Runnable.class)))
+				.thenAnswer(new Answer<Thread>() {
+					@Override
+					public Thread answer(InvocationOnMock invocation) throws Throwable {
+						return new Thread((Runnable) invocation.getArguments()[1]);
+					}
+				});
+		configureStructureBuilderMockDefaults(jiraIssueIndexStructureBuilderMock);
+
+		tested.processUpdate();
+		Assert.assertEquals(8, tested.indexingInfo.issuesUpdated);
+		Assert.assertTrue(tested.indexingInfo.fullUpdate);
+		verify(esIntegrationMock, times(1)).readDatetimeValue(Mockito.any(String.class), Mockito.any(String.class));
+		verify(esIntegrationMock, times(1)).acquireIndexingThread(Mockito.eq("jira_river_prefetcher_ORG"),
+				Mockito.any(Runnable.class));
+		verify(esIntegrationMock, times(3)).prepareESBulkRequestBuilder();
+		verify(jiraClientMock, times(1)).getJIRAChangedIssues("ORG", 0, null, null);
+		verify(jiraClientMock, times(1)).getJIRAChangedIssues("ORG", 0, after2, null);
+		verify(jiraClientMock, times(1)).getJIRAChangedIssues("ORG", 3, after2, null);
+		verify(jiraIssueIndexStructureBuilderMock, times(8)).indexIssue(Mockito.any(BulkRequestBuilder.class),
+				Mockito.eq("ORG"), Mockito.any(Map.class));
+		// checkpoints stored in the same order as pages are requested from JIRA
+		InOrder inOrder = Mockito.inOrder(esIntegrationMock);
+		inOrder.verify(esIntegrationMock, times(2)).storeDatetimeValue(Mockito.eq("ORG"),
+				Mockito.eq(JIRAProjectIndexer.STORE_PROPERTYNAME_LAST_INDEXED_ISSUE_UPDATE_DATE), Mockito.eq(after2),
+				Mockito.any(BulkRequestBuilder.class));
+		inOrder.verify(esIntegrationMock, times(1)).storeDatetimeValue(Mockito.eq("ORG"),
+				Mockito.eq(JIRAProjectIndexer.STORE_PROPERTYNAME_LAST_INDEXED_ISSUE_UPDATE_DATE),
+				Mockito.eq(DateTimeUtils.parseISODateTime("2012-08-14T08:07:00.000-0400")),
+				Mockito.any(BulkRequestBuilder.class));
+		verify(esIntegrationMock, times(3)).storeDatetimeValue(Mockito.any(String.class), Mockito.any(String.class),
+				Mockito.any(Date.class), Mockito.any(BulkRequestBuilder.class));
+		verify(esIntegrationMock, times(3)).executeESBulkRequest(Mockito.any(BulkRequestBuilder.class));
+		verify(esIntegrationMock, Mockito.atLeastOnce()).isClosed();
+		Mockito.verifyNoMoreInteractions(jiraClientMock);
+		Mockito.verifyNoMoreInteractions(esIntegrationMock);
+
+		// test case with JIRA failure during second page prefetch, first page must be indexed
+		reset(esIntegrationMock);
+		reset(jiraClientMock);
+		tested = new JIRAProjectIndexer("ORG", true, jiraClientMock, esIntegrationMock, jiraIssueIndexStructureBuilderMock);
+		tested.setPrefetchDepth(1);
+		when(jiraClientMock.getJIRAChangedIssues("ORG", 0, null, null)).thenReturn(
+				new ChangedIssuesResults(issues, 0, 3, 8));
+		when(jiraClientMock.getJIRAChangedIssues("ORG", 0, after2, null)).thenThrow(new Exception("JIRA call error"));
+		when(esIntegrationMock.prepareESBulkRequestBuilder()).thenReturn(new BulkRequestBuilder(null));
+		when(esIntegrationMock.acquireIndexingThread(Mockito.eq("jira_river_prefetcher_ORG"), Mockito.any(Runnable.class)))
+				.thenAnswer(new Answer<Thread>() {
+					@Override
+					public Thread answer(InvocationOnMock invocation) throws Throwable {
+						return new Thread((Runnable) invocation.getArguments()[1]);
+					}
+				});
+		try {
+			tested.processUpdate();
+			Assert.fail("Exception must be thrown");
+		} catch (Exception e) {
+			Assert.assertEquals("JIRA call error", e.getMessage());
+		}
+		Assert.assertEquals(3, tested.indexingInfo.issuesUpdated);
+		verify(esIntegrationMock, times(1)).storeDatetimeValue(Mockito.eq("ORG"),
+				Mockito.eq(JIRAProjectIndexer.STORE_PROPERTYNAME_LAST_INDEXED_ISSUE_UPDATE_DATE), Mockito.eq(after2),
+				Mockito.any(BulkRequestBuilder.class));
+		verify(esIntegrationMock, times(1)).executeESBulkRequest(Mockito.any(BulkRequestBuilder.class));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void processUpdate_PrefetchedAsync() throws Exception {
+
+		// test case with more "pages" of results prefetched from JIRA over non-blocking client
+		IJIRAAsyncClient jiraClientMock = mock(IJIRAAsyncClient.class);
+		IESIntegration esIntegrationMock = mock(IESIntegration.class);
+		IJIRAIssueIndexStructureBuilder jiraIssueIndexStructureBuilderMock = mock(IJIRAIssueIndexStructureBuilder.class);
+		JIRAProjectIndexer tested = new JIRAProjectIndexer("ORG", false, jiraClientMock, esIntegrationMock,
+				jiraIssueIndexStructureBuilderMock);
+		tested.setPrefetchDepth(2);
+
+		List<Map<String, Object>> issues = new ArrayList<Map<String, Object>>();
+		addIssueMock(issues, "ORG-45", "2012-08-14T08:00:10.000-0400");
+		addIssueMock(issues, "ORG-46", "2012-08-14T08:01:10.000-0400");
+		addIssueMock(issues, "ORG-47", "2012-08-14T08:02:20.000-0400");
+		Date after2 = DateTimeUtils.parseISODateTime("2012-08-14T08:02:00.000-0400");
+		List<Map<String, Object>> issues2 = new ArrayList<Map<String, Object>>();
+		addIssueMock(issues2, "ORG-481", "2012-08-14T08:02:10.000-0400");
+		addIssueMock(issues2, "ORG-49", "2012-08-14T08:02:10.000-0400");
+		addIssueMock(issues2, "ORG-154", "2012-08-14T08:02:20.000-0400");
+		List<Map<String, Object>> issues3 = new ArrayList<Map<String, Object>>();
+		addIssueMock(issues3, "ORG-4", "2012-08-14T08:06:10.000-0400");
+		addIssueMock(issues3, "ORG-91", "2012-08-14T08:07:20.000-0400");
+		when(
+				esIntegrationMock
+						.readDatetimeValue("ORG", JIRAProjectIndexer.STORE_PROPERTYNAME_LAST_INDEXED_ISSUE_UPDATE_DATE))
+				.thenReturn(null);
+		when(jiraClientMock.getJIRAChangedIssuesAsync("ORG", 0, null, null)).thenReturn(
+				prepareFuture(new ChangedIssuesResults(issues, 0, 3, 8)));
+		when(jiraClientMock.getJIRAChangedIssuesAsync("ORG", 0, after2, null)).thenReturn(
+				prepareFuture(new ChangedIssuesResults(issues2, 0, 3, 5)));
+		when(jiraClientMock.getJIRAChangedIssuesAsync("ORG", 3, after2, null)).thenReturn(
+				prepareFuture(new ChangedIssuesResults(issues3, 3, 3, 5)));
+		when(esIntegrationMock.prepareESBulkRequestBuilder()).thenReturn(new BulkRequestBuilder(null));
+		configureStructureBuilderMockDefaults(jiraIssueIndexStructureBuilderMock);
+
+		tested.processUpdate();
+		Assert.assertEquals(8, tested.indexingInfo.issuesUpdated);
+		verify(esIntegrationMock, times(1)).readDatetimeValue(Mockito.any(String.class), Mockito.any(String.class));
+		verify(esIntegrationMock, times(3)).prepareESBulkRequestBuilder();
+		verify(jiraClientMock, times(1)).getJIRAChangedIssuesAsync("ORG", 0, null, null);
+		verify(jiraClientMock, times(1)).getJIRAChangedIssuesAsync("ORG", 0, after2, null);
+		verify(jiraClientMock, times(1)).getJIRAChangedIssuesAsync("ORG", 3, after2, null);
+		verify(jiraIssueIndexStructureBuilderMock, times(8)).indexIssue(Mockito.any(BulkRequestBuilder.class),
+				Mockito.eq("ORG"), Mockito.any(Map.class));
+		InOrder inOrder = Mockito.inOrder(esIntegrationMock);
+		inOrder.verify(esIntegrationMock, times(2)).storeDatetimeValue(Mockito.eq("ORG"),
+				Mockito.eq(JIRAProjectIndexer.STORE_PROPERTYNAME_LAST_INDEXED_ISSUE_UPDATE_DATE), Mockito.eq(after2),
+				Mockito.any(BulkRequestBuilder.class));
+		inOrder.verify(esIntegrationMock, times(1)).storeDatetimeValue(Mockito.eq("ORG"),
+				Mockito.eq(JIRAProjectIndexer.STORE_PROPERTYNAME_LAST_INDEXED_ISSUE_UPDATE_DATE),
+				Mockito.eq(DateTimeUtils.parseISODateTime("2012-08-14T08:07:00.000-0400")),
+				Mockito.any(BulkRequestBuilder.class));
+		verify(esIntegrationMock, times(3)).executeESBulkRequest(Mockito.any(BulkRequestBuilder.class));
+		verify(esIntegrationMock, Mockito.atLeastOnce()).isClosed();
+		Mockito.verifyNoMoreInteractions(jiraClientMock);
+		Mockito.verifyNoMoreInteractions(esIntegrationMock);
+
+		// test case with JIRA failure during second page download, first page must be indexed
+		reset(esIntegrationMock);
+		reset(jiraClientMock);
+		tested = new JIRAProjectIndexer("ORG", true, jiraClientMock, esIntegrationMock, jiraIssueIndexStructureBuilderMock);
+		tested.setPrefetchDepth(1);
+		when(jiraClientMock.getJIRAChangedIssuesAsync("ORG", 0, null, null)).thenReturn(
+				prepareFuture(new ChangedIssuesResults(issues, 0, 3, 8)));
+		FutureTask<ChangedIssuesResults> failed = new FutureTask<ChangedIssuesResults>(
+				new Callable<ChangedIssuesResults>() {
+					@Override
+					public ChangedIssuesResults call() throws Exception {
+						throw new Exception("JIRA call error");
+					}
+				});
+		failed.run();
+		when(jiraClientMock.getJIRAChangedIssuesAsync("ORG", 0, after2, null)).thenReturn(failed);
+		when(esIntegrationMock.prepareESBulkRequestBuilder()).thenReturn(new BulkRequestBuilder(null));
+		try {
+			tested.processUpdate();
+			Assert.fail("Exception must be thrown");
+		} catch (Exception e) {
+			Assert.assertEquals("JIRA call error", e.getMessage());
+		}
+		Assert.assertEquals(3, tested.indexingInfo.issuesUpdated);
+		verify(esIntegrationMock, times(1)).executeESBulkRequest(Mockito.any(BulkRequestBuilder.class));
+	}
+
+	private Future<ChangedIssuesResults> prepareFuture(final ChangedIssuesResults res) {
+		FutureTask<ChangedIssuesResults> ret = new FutureTask<ChangedIssuesResults>(new Callable<ChangedIssuesResults>() {
+			@Override
+			public ChangedIssuesResults call() throws Exception {
+				return res;
+			}
+		});
+		ret.run();
+		return ret;
+	}
+
+	@Test
+	public void prepareUpdateSlices() throws Exception {
+		Date start = DateTimeUtils.parseISODateTime("2012-08-14T08:00:00.000-0400");
+
+		// case - history split into windows of same length
+		List<JIRAProjectIndexer.JIRAPagePosition> ret = JIRAProjectIndexer.prepareUpdateSlices(start,
+				DateTimeUtils.parseISODateTime("2012-08-14T09:00:00.000-0400"), 3);
+		Assert.assertEquals(3, ret.size());
+		Assert.assertEquals(start, ret.get(0).updatedAfter);
+		Assert.assertEquals(DateTimeUtils.parseISODateTime("2012-08-14T08:20:00.000-0400"), ret.get(0).updatedBefore);
+		Assert.assertEquals(DateTimeUtils.parseISODateTime("2012-08-14T08:20:00.000-0400"), ret.get(1).updatedAfter);
+		Assert.assertEquals(DateTimeUtils.parseISODateTime("2012-08-14T08:40:00.000-0400"), ret.get(1).updatedBefore);
+		Assert.assertEquals(DateTimeUtils.parseISODateTime("2012-08-14T08:40:00.000-0400"), ret.get(2).updatedAfter);
+		Assert.assertEquals(DateTimeUtils.parseISODateTime("2012-08-14T09:00:00.000-0400"), ret.get(2).updatedBefore);
+		Assert.assertEquals(0, ret.get(2).startAt);
+		Assert.assertTrue(ret.get(2).cont);
+
+		// case - last window shorter
+		ret = JIRAProjectIndexer.prepareUpdateSlices(start, DateTimeUtils.parseISODateTime("2012-08-14T08:10:00.000-0400"),
+				4);
+		Assert.assertEquals(4, ret.size());
+		Assert.assertEquals(DateTimeUtils.parseISODateTime("2012-08-14T08:03:00.000-0400"), ret.get(0).updatedBefore);
+		Assert.assertEquals(DateTimeUtils.parseISODateTime("2012-08-14T08:09:00.000-0400"), ret.get(3).updatedAfter);
+		Assert.assertEquals(DateTimeUtils.parseISODateTime("2012-08-14T08:10:00.000-0400"), ret.get(3).updatedBefore);
+
+		// case - history too short for requested number of windows
+		ret = JIRAProjectIndexer.prepareUpdateSlices(start, DateTimeUtils.parseISODateTime("2012-08-14T08:02:00.000-0400"),
+				5);
+		Assert.assertEquals(2, ret.size());
+
+		// case - end same or before start gives one window
+		ret = JIRAProjectIndexer.prepareUpdateSlices(start, start, 5);
+		Assert.assertEquals(1, ret.size());
+		Assert.assertEquals(start, ret.get(0).updatedAfter);
+		Assert.assertEquals(DateTimeUtils.parseISODateTime("2012-08-14T08:01:00.000-0400"), ret.get(0).updatedBefore);
+		ret = JIRAProjectIndexer.prepareUpdateSlices(start,
+				DateTimeUtils.parseISODateTime("2012-08-14T07:00:00.000-0400"), 5);
+		Assert.assertEquals(1, ret.size());
+		Assert.assertEquals(DateTimeUtils.parseISODateTime("2012-08-14T08:01:00.000-0400"), ret.get(0).updatedBefore);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void processUpdate_Sliced() throws Exception {
+		IJIRAClient jiraClientMock = mock(IJIRAClient.class);
+		IESIntegration esIntegrationMock = mock(IESIntegration.class);
+		IJIRAIssueIndexStructureBuilder jiraIssueIndexStructureBuilderMock = mock(IJIRAIssueIndexStructureBuilder.class);
+		// fixed current date so time windows are deterministic
+		JIRAProjectIndexer tested = new JIRAProjectIndexer("ORG", true, jiraClientMock, esIntegrationMock,
+				jiraIssueIndexStructureBuilderMock) {
+			@Override
+			protected Date getCurrentDate() {
+				return DateTimeUtils.parseISODateTime("2014-08-14T08:10:00.000-0400");
+			}
+		};
+		tested.setFullUpdateSlices(4, 2);
+
+		// simulate JIRA search over issues updated in long history
+		final List<Map<String, Object>> issues = new ArrayList<Map<String, Object>>();
+		addIssueMock(issues, "ORG-1", "2009-08-14T08:00:10.000-0400");
+		addIssueMock(issues, "ORG-2", "2009-08-14T08:00:20.000-0400");
+		addIssueMock(issues, "ORG-3", "2010-02-14T08:00:20.000-0400");
+		addIssueMock(issues, "ORG-4", "2011-08-14T08:00:20.000-0400");
+		addIssueMock(issues, "ORG-5", "2012-08-14T08:00:20.000-0400");
+		addIssueMock(issues, "ORG-6", "2012-08-14T08:01:20.000-0400");
+		addIssueMock(issues, "ORG-7", "2013-08-14T08:01:20.000-0400");
+		addIssueMock(issues, "ORG-8", "2014-08-14T08:01:20.000-0400");
+		when(
+				jiraClientMock.getJIRAChangedIssues(Mockito.eq("ORG"), Mockito.anyInt(), Mockito.any(Date.class),
+						Mockito.any(Date.class))).thenAnswer(new Answer<ChangedIssuesResults>() {
+			@Override
+			public ChangedIssuesResults answer(InvocationOnMock invocation) throws Throwable {
+				int startAt = (Integer) invocation.getArguments()[1];
+				Date after = (Date) invocation.getArguments()[2];
+				Date before = (Date) invocation.getArguments()[3];
+				List<Map<String, Object>> matching = new ArrayList<Map<String, Object>>();
+				for (Map<String, Object> issue : issues) {
+					Date updated = DateTimeUtils.parseISODateTime((String) issue.get("updated"));
+					if ((after == null || !updated.before(after)) && (before == null || !updated.after(before)))
+						matching.add(issue);
+				}
+				List<Map<String, Object>> page = new ArrayList<Map<String, Object>>();
+				for (int i = startAt; i < matching.size() && i < startAt + 2; i++) {
+					page.add(matching.get(i));
+				}
+				return new ChangedIssuesResults(page, startAt, 2, matching.size());
+			}
+		});
+		when(esIntegrationMock.prepareESBulkRequestBuilder()).thenAnswer(new Answer<BulkRequestBuilder>() {
+			@Override
+			public BulkRequestBuilder answer(InvocationOnMock invocation) throws Throwable {
+				return new BulkRequestBuilder(null);
+			}
+		});
+		when(
+				esIntegrationMock.acquireIndexingThread(Mockito.startsWith("jira_river_indexer_ORG_slice_"),
+						Mockito.any(Runnable.class))).thenAnswer(new Answer<Thread>() {
+			@Override
+			public Thread answer(InvocationOnMock invocation) throws Throwable {
+				return new Thread((Runnable) invocation.getArguments()[1]);
+			}
+		});
+		configureStructureBuilderMockDefaults(jiraIssueIndexStructureBuilderMock);
+
+		tested.processUpdate();
+		Assert.assertEquals(8, tested.indexingInfo.issuesUpdated);
+		verify(esIntegrationMock, times(2)).acquireIndexingThread(Mockito.startsWith("jira_river_indexer_ORG_slice_"),
+				Mockito.any(Runnable.class));
+		// each issue is indexed exactly once, no issue is on boundary of windows
+		for (Map<String, Object> issue : issues) {
+			verify(jiraIssueIndexStructureBuilderMock, times(1)).indexIssue(Mockito.any(BulkRequestBuilder.class),
+					Mockito.eq("ORG"), Mockito.eq(issue));
+		}
+		verify(jiraIssueIndexStructureBuilderMock, times(8)).indexIssue(Mockito.any(BulkRequestBuilder.class),
+				Mockito.eq("ORG"), Mockito.anyMap());
+		// only merged checkpoint is stored, windows do not store it
+		verify(esIntegrationMock, times(1)).storeDatetimeValue(Mockito.any(String.class), Mockito.any(String.class),
+				Mockito.any(Date.class), Mockito.any(BulkRequestBuilder.class));
+		verify(esIntegrationMock, times(1)).storeDatetimeValue(Mockito.eq("ORG"),
+				Mockito.eq(JIRAProjectIndexer.STORE_PROPERTYNAME_LAST_INDEXED_ISSUE_UPDATE_DATE),
+				Mockito.eq(DateTimeUtils.parseISODateTime("2014-08-14T08:01:00.000-0400")),
+				(BulkRequestBuilder) Mockito.isNull());
+		// first issue request, two pages of first window, one page of each next window and catch up request after
+		// windows
+		verify(jiraClientMock, times(1)).getJIRAChangedIssues("ORG", 0, null, null);
+		verify(jiraClientMock, times(7)).getJIRAChangedIssues(Mockito.eq("ORG"), Mockito.anyInt(),
+				Mockito.any(Date.class), Mockito.any(Date.class));
+
+		// case - no any issue in JIRA
+		reset(jiraClientMock);
+		reset(esIntegrationMock);
+		tested = new JIRAProjectIndexer("ORG", true, jiraClientMock, esIntegrationMock, jiraIssueIndexStructureBuilderMock);
+		tested.setFullUpdateSlices(4, 2);
+		when(jiraClientMock.getJIRAChangedIssues("ORG", 0, null, null)).thenReturn(
+				new ChangedIssuesResults(new ArrayList<Map<String, Object>>(), 0, 2, 0));
+		tested.processUpdate();
+		Assert.assertEquals(0, tested.indexingInfo.issuesUpdated);
+		verify(jiraClientMock, times(1)).getJIRAChangedIssues("ORG", 0, null, null);
+		Mockito.verifyNoMoreInteractions(jiraClientMock);
+		Mockito.verifyNoMoreInteractions(esIntegrationMock);
+	}
+
 	@Test
 	public void run() throws Exception {
 		IJIRAClient jiraClientMock = mock(IJIRAClient.class);
@@ -547,6 +994,635 @@ public class JIRAProjectIndexerTest {
 		}
 	}
 
+	@Test
+	public void removeUnchangedDocuments() throws Exception {
+		IJIRAClient jiraClientMock = mock(IJIRAClient.class);
+		IESIntegration esIntegrationMock = mock(IESIntegration.class);
+		IJIRAIssueIndexStructureBuilder jiraIssueIndexStructureBuilderMock = mock(IJIRAIssueIndexStructureBuilder.class);
+		JIRAProjectIndexer tested = new JIRAProjectIndexer("ORG", true, jiraClientMock, esIntegrationMock,
+				jiraIssueIndexStructureBuilderMock);
+		tested.indexedDocumentIds = new DocumentIdSet("ORG");
+
+		// case - no index request in bulk
+		BulkRequestBuilder esBulk = new BulkRequestBuilder(null);
+		esBulk.add(new DeleteRequest("idx", "t", "ORG-0"));
+		Assert.assertSame(esBulk, tested.removeUnchangedDocuments(esBulk, "hash"));
+		Mockito.verifyZeroInteractions(esIntegrationMock);
+
+		// case - unchanged document removed, changed and new ones kept
+		esBulk = new BulkRequestBuilder(null);
+		esBulk.add(new IndexRequest("idx", "t", "ORG-1").source("summary", "s1", "hash", "h1"));
+		esBulk.add(new IndexRequest("idx", "t", "ORG-2").source("summary", "s2", "hash", "h2"));
+		esBulk.add(new IndexRequest("idx", "c", "123").parent("ORG-2").source("hash", "h3"));
+		esBulk.add(new DeleteRequest("idx", "t", "ORG-0"));
+		MultiGetRequestBuilder esMultiGet = mock(MultiGetRequestBuilder.class);
+		when(esIntegrationMock.prepareESMultiGetRequestBuilder()).thenReturn(esMultiGet);
+		when(esIntegrationMock.prepareESBulkRequestBuilder()).thenReturn(new BulkRequestBuilder(null));
+		MultiGetResponse mgr = new MultiGetResponse(new MultiGetItemResponse[] { mockMultiGetItem("t", "ORG-1", "h1"),
+				mockMultiGetItem("t", "ORG-2", "h2old"), mockMultiGetItem("c", "123", null) });
+		when(esIntegrationMock.executeESMultiGetRequest(esMultiGet)).thenReturn(mgr);
+
+		BulkRequestBuilder ret = tested.removeUnchangedDocuments(esBulk, "hash");
+		Assert.assertEquals(3, ret.numberOfActions());
+		Assert.assertEquals("ORG-2", ((IndexRequest) ret.request().requests().get(0)).id());
+		Assert.assertEquals("123", ((IndexRequest) ret.request().requests().get(1)).id());
+		Assert.assertTrue(ret.request().requests().get(2) instanceof DeleteRequest);
+		Assert.assertEquals(3, tested.indexedDocumentIds.size());
+		Assert.assertTrue(tested.indexedDocumentIds.contains("t", "ORG-1"));
+		Assert.assertTrue(tested.indexedDocumentIds.contains("c", "123"));
+		// only content hash is read, child documents are read with routing of parent
+		ArgumentCaptor<MultiGetRequest.Item> items = ArgumentCaptor.forClass(MultiGetRequest.Item.class);
+		verify(esMultiGet, times(3)).add(items.capture());
+		Assert.assertEquals("ORG-1", items.getAllValues().get(0).id());
+		Assert.assertEquals("t", items.getAllValues().get(0).type());
+		Assert.assertEquals("idx", items.getAllValues().get(0).index());
+		Assert.assertNull(items.getAllValues().get(0).routing());
+		Assert.assertEquals("123", items.getAllValues().get(2).id());
+		Assert.assertEquals("ORG-2", items.getAllValues().get(2).routing());
+		for (MultiGetRequest.Item item : items.getAllValues()) {
+			Assert.assertEquals(1, item.fields().length);
+			Assert.assertEquals("hash", item.fields()[0]);
+		}
+	}
+
+	private MultiGetItemResponse mockMultiGetItem(String type, String id, String hash) {
+		MultiGetItemResponse ret = mock(MultiGetItemResponse.class);
+		when(ret.getType()).thenReturn(type);
+		when(ret.getId()).thenReturn(id);
+		GetResponse gr = mock(GetResponse.class);
+		when(ret.getResponse()).thenReturn(gr);
+		when(gr.isExists()).thenReturn(hash != null);
+		if (hash != null) {
+			List<Object> values = new ArrayList<Object>();
+			values.add(hash);
+			when(gr.getField("hash")).thenReturn(new GetField("hash", values));
+		}
+		return ret;
+	}
+
+	@Test
+	public void removeUnchangedExtraDocuments() throws Exception {
+		IJIRAClient jiraClientMock = mock(IJIRAClient.class);
+		IESIntegration esIntegrationMock = mock(IESIntegration.class);
+		IJIRAIssueIndexStructureBuilder jiraIssueIndexStructureBuilderMock = mock(IJIRAIssueIndexStructureBuilder.class);
+		JIRAProjectIndexer tested = new JIRAProjectIndexer("ORG", false, jiraClientMock, esIntegrationMock,
+				jiraIssueIndexStructureBuilderMock);
+
+		// case - no issue in bulk
+		BulkRequestBuilder esBulk = new BulkRequestBuilder(null);
+		Map<Integer, String> issueRequests = new LinkedHashMap<Integer, String>();
+		Assert.assertSame(esBulk, tested.removeUnchangedExtraDocuments(esBulk, issueRequests, "state"));
+		Mockito.verifyZeroInteractions(esIntegrationMock);
+
+		// case - unchanged comments removed, changed and new ones kept, removed ones deleted
+		IndexRequest issue1 = new IndexRequest("idx", "t", "ORG-1").source(
+				XContentFactory.jsonBuilder().startObject().field("summary", "s1")
+						.array("state", "c/1@u1", "c/2@u2new", "c/4@u4").endObject());
+		esBulk.add(issue1);
+		esBulk.add(new IndexRequest("idx", "c", "1").source("body", "b1"));
+		esBulk.add(new IndexRequest("idx", "c", "2").source("body", "b2"));
+		esBulk.add(new IndexRequest("idx", "c", "4").source("body", "b4"));
+		issueRequests.put(0, "ORG-1");
+		esBulk.add(new IndexRequest("idx", "t", "ORG-2").source(
+				XContentFactory.jsonBuilder().startObject().array("state", "c/5@u5").endObject()));
+		esBulk.add(new IndexRequest("idx", "c", "5").source("body", "b5"));
+		issueRequests.put(4, "ORG-2");
+
+		MultiGetRequestBuilder esMultiGet = new MultiGetRequestBuilder(null);
+		when(esIntegrationMock.prepareESMultiGetRequestBuilder()).thenReturn(esMultiGet);
+		BulkRequestBuilder retBulk = new BulkRequestBuilder(null);
+		when(esIntegrationMock.prepareESBulkRequestBuilder()).thenReturn(retBulk);
+		MultiGetItemResponse item1 = mockMultiGetItem("t", "ORG-1", null);
+		List<Object> values = new ArrayList<Object>();
+		values.add("c/1@u1");
+		values.add("c/2@u2");
+		values.add("c/3@u3");
+		when(item1.getResponse().isExists()).thenReturn(true);
+		when(item1.getResponse().getField("state")).thenReturn(new GetField("state", values));
+		MultiGetResponse mgr = new MultiGetResponse(new MultiGetItemResponse[] { item1,
+				mockMultiGetItem("t", "ORG-2", null) });
+		when(esIntegrationMock.executeESMultiGetRequest(esMultiGet)).thenReturn(mgr);
+
+		BulkRequestBuilder ret = tested.removeUnchangedExtraDocuments(esBulk, issueRequests, "state");
+		Assert.assertSame(retBulk, ret);
+		Assert.assertEquals(5, ret.numberOfActions());
+		Assert.assertEquals("ORG-1", ((IndexRequest) ret.request().requests().get(0)).id());
+		Assert.assertEquals("2", ((IndexRequest) ret.request().requests().get(1)).id());
+		Assert.assertEquals("4", ((IndexRequest) ret.request().requests().get(2)).id());
+		Assert.assertEquals("ORG-2", ((IndexRequest) ret.request().requests().get(3)).id());
+		Assert.assertEquals("5", ((IndexRequest) ret.request().requests().get(4)).id());
+		verify(jiraIssueIndexStructureBuilderMock).deleteIssueExtraDocument(retBulk, issue1, "ORG-1", "c", "3");
+		Mockito.verifyNoMoreInteractions(jiraIssueIndexStructureBuilderMock);
+		Assert.assertEquals(1, tested.indexingInfo.commentsDeleted);
+	}
+
+	@Test
+	public void extractExtraDocumentsState() throws Exception {
+		Assert.assertTrue(JIRAProjectIndexer.extractExtraDocumentsState(
+				new IndexRequest("idx", "t", "ORG-1").source("summary", "s1"), "state").isEmpty());
+		List<String> ret = JIRAProjectIndexer.extractExtraDocumentsState(
+				new IndexRequest("idx", "t", "ORG-1").source(XContentFactory.jsonBuilder().startObject()
+						.startObject("state").field("state", "x").endObject().array("state", "c/1@u1", "c/2@").endObject()),
+				"state");
+		Assert.assertEquals(2, ret.size());
+		Assert.assertEquals("c/2@", ret.get(1));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void bulkPipeline() throws Exception {
+		IJIRAClient jiraClientMock = mock(IJIRAClient.class);
+		IESIntegration esIntegrationMock = mock(IESIntegration.class);
+		IJIRAIssueIndexStructureBuilder jiraIssueIndexStructureBuilderMock = mock(IJIRAIssueIndexStructureBuilder.class);
+		JIRAProjectIndexer tested = new JIRAProjectIndexer("ORG", false, jiraClientMock, esIntegrationMock,
+				jiraIssueIndexStructureBuilderMock);
+
+		final List<BulkRequestBuilder> bulks = new ArrayList<BulkRequestBuilder>();
+		final List<ActionListener<BulkResponse>> listeners = new ArrayList<ActionListener<BulkResponse>>();
+		final boolean[] autoAcknowledge = new boolean[] { false };
+		when(esIntegrationMock.prepareESBulkRequestBuilder()).thenAnswer(new Answer<BulkRequestBuilder>() {
+			@Override
+			public BulkRequestBuilder answer(InvocationOnMock invocation) throws Throwable {
+				return new BulkRequestBuilder(null);
+			}
+		});
+		Mockito.doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				bulks.add((BulkRequestBuilder) invocation.getArguments()[0]);
+				ActionListener<BulkResponse> listener = (ActionListener<BulkResponse>) invocation.getArguments()[1];
+				if (autoAcknowledge[0])
+					listener.onResponse(new BulkResponse(new BulkItemResponse[0], 1));
+				else
+					listeners.add(listener);
+				return null;
+			}
+		}).when(esIntegrationMock).executeESBulkRequestAsync(Mockito.any(BulkRequestBuilder.class),
+				Mockito.any(ActionListener.class));
+
+		JIRAProjectIndexer.BulkPipeline pipeline = tested.new BulkPipeline(2, 2, 1024 * 1024, 60 * 1000);
+		Date d1 = DateTimeUtils.parseISODateTime("2012-08-14T08:00:00.000-0400");
+		Date d2 = DateTimeUtils.parseISODateTime("2012-08-14T08:01:00.000-0400");
+
+		// case - page split into more bulks by number of actions, last actions wait for next page
+		pipeline.add(prepareBulk("ORG-1", "ORG-2", "ORG-3"), d1);
+		Assert.assertEquals(1, bulks.size());
+		Assert.assertEquals(2, bulks.get(0).numberOfActions());
+
+		pipeline.add(prepareBulk("ORG-4"), d2);
+		Assert.assertEquals(2, bulks.size());
+		Assert.assertEquals("ORG-3", ((IndexRequest) bulks.get(1).request().requests().get(0)).id());
+
+		// case - checkpoint is not stored until all previous bulks are acknowledged
+		listeners.get(1).onResponse(new BulkResponse(new BulkItemResponse[0], 1));
+		pipeline.add(prepareBulk("ORG-5"), null);
+		verify(esIntegrationMock, times(0)).storeDatetimeValue(Mockito.anyString(), Mockito.anyString(),
+				Mockito.any(Date.class), Mockito.any(BulkRequestBuilder.class));
+		listeners.get(0).onResponse(new BulkResponse(new BulkItemResponse[0], 1));
+
+		// case - the latest checkpoint stored with next bulk
+		autoAcknowledge[0] = true;
+		pipeline.close();
+		Assert.assertEquals(3, bulks.size());
+		verify(esIntegrationMock).storeDatetimeValue("ORG", JIRAProjectIndexer.STORE_PROPERTYNAME_LAST_INDEXED_ISSUE_UPDATE_DATE,
+				d2, bulks.get(2));
+		verify(esIntegrationMock, times(1)).storeDatetimeValue(Mockito.anyString(), Mockito.anyString(),
+				Mockito.any(Date.class), Mockito.any(BulkRequestBuilder.class));
+
+		// case - checkpoint stored directly when pipeline is closed
+		pipeline = tested.new BulkPipeline(2, 10, 1024 * 1024, 60 * 1000);
+		pipeline.add(prepareBulk("ORG-6"), d1);
+		Assert.assertEquals(3, bulks.size());
+		pipeline.close();
+		Assert.assertEquals(4, bulks.size());
+		verify(esIntegrationMock).storeDatetimeValue("ORG", JIRAProjectIndexer.STORE_PROPERTYNAME_LAST_INDEXED_ISSUE_UPDATE_DATE,
+				d1, null);
+
+		// case - bulk split by size
+		pipeline = tested.new BulkPipeline(2, 10, 1, 60 * 1000);
+		pipeline.add(prepareBulk("ORG-7", "ORG-8"), null);
+		Assert.assertEquals(6, bulks.size());
+
+		// case - failed bulk stops pipeline and checkpoint after it is never stored
+		autoAcknowledge[0] = false;
+		listeners.clear();
+		reset(esIntegrationMock);
+		when(esIntegrationMock.prepareESBulkRequestBuilder()).thenReturn(new BulkRequestBuilder(null));
+		Mockito.doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				listeners.add((ActionListener<BulkResponse>) invocation.getArguments()[1]);
+				return null;
+			}
+		}).when(esIntegrationMock).executeESBulkRequestAsync(Mockito.any(BulkRequestBuilder.class),
+				Mockito.any(ActionListener.class));
+		pipeline = tested.new BulkPipeline(2, 1, 1024 * 1024, 60 * 1000);
+		pipeline.add(prepareBulk("ORG-9"), d1);
+		listeners.get(0).onResponse(new BulkResponse(new BulkItemResponse[] { new BulkItemResponse(0, "index",
+				new BulkItemResponse.Failure("idx", "t", "ORG-9", new Exception("failed"))) }, 1));
+		try {
+			pipeline.add(prepareBulk("ORG-10"), d2);
+			Assert.fail("Exception must be thrown");
+		} catch (ElasticsearchException e) {
+			// OK
+		}
+		try {
+			pipeline.close();
+			Assert.fail("Exception must be thrown");
+		} catch (ElasticsearchException e) {
+			// OK
+		}
+		verify(esIntegrationMock, times(0)).storeDatetimeValue(Mockito.anyString(), Mockito.anyString(),
+				Mockito.any(Date.class), Mockito.any(BulkRequestBuilder.class));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void bulkPipeline_rejectedRetried() throws Exception {
+		IJIRAClient jiraClientMock = mock(IJIRAClient.class);
+		IESIntegration esIntegrationMock = mock(IESIntegration.class);
+		IJIRAIssueIndexStructureBuilder jiraIssueIndexStructureBuilderMock = mock(IJIRAIssueIndexStructureBuilder.class);
+		JIRAProjectIndexer tested = new JIRAProjectIndexer("ORG", false, jiraClientMock, esIntegrationMock,
+				jiraIssueIndexStructureBuilderMock);
+		ESBulkLoadController controller = new ESBulkLoadController(2, 2, 1024 * 1024, 0, 1, 1, 1);
+		tested.setBulkLoadController(controller);
+
+		final List<BulkRequestBuilder> bulks = new ArrayList<BulkRequestBuilder>();
+		final int[] rejectCount = new int[] { 1 };
+		when(esIntegrationMock.prepareESBulkRequestBuilder()).thenAnswer(new Answer<BulkRequestBuilder>() {
+			@Override
+			public BulkRequestBuilder answer(InvocationOnMock invocation) throws Throwable {
+				return new BulkRequestBuilder(null);
+			}
+		});
+		Mockito.doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				BulkRequestBuilder esBulk = (BulkRequestBuilder) invocation.getArguments()[0];
+				bulks.add(esBulk);
+				ActionListener<BulkResponse> listener = (ActionListener<BulkResponse>) invocation.getArguments()[1];
+				if (rejectCount[0] > 0) {
+					rejectCount[0]--;
+					// the last item rejected
+					int itemId = esBulk.numberOfActions() - 1;
+					listener.onResponse(new BulkResponse(new BulkItemResponse[] { new BulkItemResponse(itemId, "index",
+							new BulkItemResponse.Failure("idx", "t", "ORG", new EsRejectedExecutionException("rejected"))) }, 1));
+				} else {
+					listener.onResponse(new BulkResponse(new BulkItemResponse[0], 1));
+				}
+				return null;
+			}
+		}).when(esIntegrationMock).executeESBulkRequestAsync(Mockito.any(BulkRequestBuilder.class),
+				Mockito.any(ActionListener.class));
+
+		Date d1 = DateTimeUtils.parseISODateTime("2012-08-14T08:00:00.000-0400");
+
+		// case - only rejected item is retried and load is lowered
+		JIRAProjectIndexer.BulkPipeline pipeline = tested.new BulkPipeline(2, 2, 1024 * 1024, 60 * 1000);
+		pipeline.add(prepareBulk("ORG-1", "ORG-2"), d1);
+		Assert.assertEquals(1, bulks.size());
+		Assert.assertEquals(1, controller.getConcurrentRequests());
+		Assert.assertEquals(1, controller.getMaxActions());
+		pipeline.close();
+		Assert.assertEquals(2, bulks.size());
+		Assert.assertEquals(1, bulks.get(1).numberOfActions());
+		Assert.assertEquals("ORG-2", ((IndexRequest) bulks.get(1).request().requests().get(0)).id());
+		verify(esIntegrationMock).storeDatetimeValue("ORG", JIRAProjectIndexer.STORE_PROPERTYNAME_LAST_INDEXED_ISSUE_UPDATE_DATE,
+				d1, null);
+		// load raised after successful retry
+		Assert.assertEquals(2, controller.getConcurrentRequests());
+
+		// case - smaller bulks used while load is lowered
+		controller.onRejected();
+		pipeline = tested.new BulkPipeline(2, 2, 1024 * 1024, 60 * 1000);
+		pipeline.add(prepareBulk("ORG-3", "ORG-4"), null);
+		Assert.assertEquals(4, bulks.size());
+		Assert.assertEquals(1, bulks.get(2).numberOfActions());
+		Assert.assertEquals(1, bulks.get(3).numberOfActions());
+		pipeline.close();
+		Assert.assertEquals(4, bulks.size());
+
+		// case - retries exhausted so pipeline fails
+		rejectCount[0] = 2;
+		pipeline = tested.new BulkPipeline(2, 2, 1024 * 1024, 60 * 1000);
+		pipeline.add(prepareBulk("ORG-5"), null);
+		try {
+			pipeline.close();
+			Assert.fail("Exception must be thrown");
+		} catch (ElasticsearchException e) {
+			// OK
+		}
+		Assert.assertEquals(6, bulks.size());
+	}
+
+	private BulkRequestBuilder prepareBulk(String... ids) {
+		BulkRequestBuilder ret = new BulkRequestBuilder(null);
+		for (String id : ids) {
+			ret.add(new IndexRequest("idx", "t", id).source("summary", "s"));
+		}
+		return ret;
+	}
+
+	@Test
+	public void processUpdate_BulkPipeline() throws Exception {
+		IJIRAClient jiraClientMock = mock(IJIRAClient.class);
+		IESIntegration esIntegrationMock = mock(IESIntegration.class);
+		IJIRAIssueIndexStructureBuilder jiraIssueIndexStructureBuilderMock = mock(IJIRAIssueIndexStructureBuilder.class);
+		JIRAProjectIndexer tested = new JIRAProjectIndexer("ORG", true, jiraClientMock, esIntegrationMock,
+				jiraIssueIndexStructureBuilderMock);
+		tested.setBulkPipeline(2, 100, 1024 * 1024, 60 * 1000);
+
+		List<Map<String, Object>> issues = new ArrayList<Map<String, Object>>();
+		addIssueMock(issues, "ORG-45", "2012-08-14T08:00:00.000-0400");
+		configureStructureBuilderMockDefaults(jiraIssueIndexStructureBuilderMock);
+		when(jiraClientMock.getJIRAChangedIssues("ORG", 0, null, null)).thenReturn(
+				new ChangedIssuesResults(issues, 0, 50, 1));
+		final BulkRequestBuilder brb = new BulkRequestBuilder(null);
+		brb.add(new IndexRequest("idx", "t", "ORG-45").source("summary", "s"));
+		final BulkRequestBuilder brbPipeline = new BulkRequestBuilder(null);
+		when(esIntegrationMock.prepareESBulkRequestBuilder()).thenReturn(brb, brbPipeline);
+		Mockito.doAnswer(new Answer<Object>() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				((ActionListener<BulkResponse>) invocation.getArguments()[1]).onResponse(new BulkResponse(
+						new BulkItemResponse[0], 1));
+				return null;
+			}
+		}).when(esIntegrationMock).executeESBulkRequestAsync(Mockito.eq(brbPipeline), Mockito.any(ActionListener.class));
+
+		tested.processUpdate();
+		Assert.assertEquals(1, tested.indexingInfo.issuesUpdated);
+		Assert.assertNull(tested.bulkPipeline);
+		verify(esIntegrationMock, times(0)).executeESBulkRequest(Mockito.any(BulkRequestBuilder.class));
+		verify(esIntegrationMock).executeESBulkRequestAsync(Mockito.eq(brbPipeline), Mockito.any(ActionListener.class));
+		Assert.assertEquals(1, brbPipeline.numberOfActions());
+		verify(esIntegrationMock).storeDatetimeValue("ORG", JIRAProjectIndexer.STORE_PROPERTYNAME_LAST_INDEXED_ISSUE_UPDATE_DATE,
+				DateTimeUtils.parseISODateTime("2012-08-14T08:00:00.000-0400"), null);
+	}
+
+	@Test
+	public void addIndicesToAlias() throws Exception {
+		IJIRAClient jiraClientMock = mock(IJIRAClient.class);
+		IESIntegration esIntegrationMock = mock(IESIntegration.class);
+		IJIRAIssueIndexStructureBuilder jiraIssueIndexStructureBuilderMock = mock(IJIRAIssueIndexStructureBuilder.class);
+		JIRAProjectIndexer tested = new JIRAProjectIndexer("ORG", true, jiraClientMock, esIntegrationMock,
+				jiraIssueIndexStructureBuilderMock);
+
+		BulkRequestBuilder esBulk = new BulkRequestBuilder(null);
+		esBulk.add(new IndexRequest("idx_2011", "t", "ORG-1").source("summary", "s1"));
+		esBulk.add(new IndexRequest("idx_2012", "t", "ORG-2").source("summary", "s2"));
+		esBulk.add(new IndexRequest("idx_2012", "t", "ORG-3").source("summary", "s3"));
+		esBulk.add(new IndexRequest("_river", "t", "ORG").source("date", "d"));
+
+		// case - one index used
+		tested.addIndicesToAlias(esBulk);
+		Mockito.verifyZeroInteractions(esIntegrationMock);
+
+		// case - indices added into alias only once
+		when(jiraIssueIndexStructureBuilderMock.getIssuesSearchAliasName()).thenReturn("idx");
+		tested.addIndicesToAlias(esBulk);
+		verify(esIntegrationMock).addIndicesToAlias(new String[] { "idx_2011", "idx_2012" }, "idx");
+		tested.addIndicesToAlias(esBulk);
+		Mockito.verifyNoMoreInteractions(esIntegrationMock);
+	}
+
+	@Test
+	public void extractContentHash() throws Exception {
+		Assert.assertEquals("h1", JIRAProjectIndexer.extractContentHash(
+				new IndexRequest("idx", "t", "ORG-1").source("{\"o\":{\"hash\":\"x\"},\"a\":[1],\"hash\":\"h1\"}"), "hash"));
+		Assert.assertNull(JIRAProjectIndexer.extractContentHash(new IndexRequest("idx", "t", "ORG-1").source("summary", "s"),
+				"hash"));
+	}
+
+	@Test
+	public void processDelete_unchangedDocumentsSkipped() throws Exception {
+		IJIRAClient jiraClientMock = mock(IJIRAClient.class);
+		IESIntegration esIntegrationMock = mock(IESIntegration.class);
+		IJIRAIssueIndexStructureBuilder jiraIssueIndexStructureBuilderMock = mock(IJIRAIssueIndexStructureBuilder.class);
+		JIRAProjectIndexer tested = new JIRAProjectIndexer("ORG", true, jiraClientMock, esIntegrationMock,
+				jiraIssueIndexStructureBuilderMock);
+		tested.indexedDocumentIds = new DocumentIdSet("ORG");
+		tested.indexedDocumentIds.add("t", "ORG-12");
+
+		Date boundDate = DateTimeUtils.parseISODateTime("2012-08-14T07:00:00.000-0400");
+		when(jiraIssueIndexStructureBuilderMock.getIssuesSearchIndexName("ORG")).thenReturn("jira_index");
+		SearchRequestBuilder srbmock = new SearchRequestBuilder(null);
+		when(esIntegrationMock.prepareESScrollSearchRequestBuilder("jira_index")).thenReturn(srbmock);
+		SearchResponse sr = prepareSearchResponse("scrlid0", new InternalSearchHit(1, "ORG-12", new StringText("t"), null));
+		when(esIntegrationMock.executeESSearchRequest(srbmock)).thenReturn(sr);
+		BulkRequestBuilder brbmock = new BulkRequestBuilder(null);
+		when(esIntegrationMock.prepareESBulkRequestBuilder()).thenReturn(brbmock);
+		InternalSearchHit hit1 = new InternalSearchHit(1, "ORG-12", new StringText("t"), null);
+		InternalSearchHit hit2 = new InternalSearchHit(2, "ORG-13", new StringText("t"), null);
+		SearchResponse sr1 = prepareSearchResponse("scrlid1", hit1, hit2);
+		when(esIntegrationMock.executeESScrollSearchNextRequest(sr)).thenReturn(sr1);
+		when(esIntegrationMock.executeESScrollSearchNextRequest(sr1)).thenReturn(prepareSearchResponse("scrlid2"));
+		when(jiraIssueIndexStructureBuilderMock.deleteIssueDocument(Mockito.eq(brbmock), Mockito.any(SearchHit.class)))
+				.thenReturn(true);
+
+		tested.processDelete(boundDate);
+
+		// all documents are checked, not only ones not updated after bound date
+		ArgumentCaptor<Date> date = ArgumentCaptor.forClass(Date.class);
+		verify(jiraIssueIndexStructureBuilderMock).buildSearchForIndexedDocumentsNotUpdatedAfter(Mockito.eq(srbmock),
+				Mockito.eq("ORG"), date.capture());
+		Assert.assertTrue(date.getValue().after(boundDate));
+		Assert.assertEquals(1, tested.indexingInfo.issuesDeleted);
+		verify(jiraIssueIndexStructureBuilderMock, times(0)).deleteIssueDocument(brbmock, hit1);
+		verify(jiraIssueIndexStructureBuilderMock).deleteIssueDocument(brbmock, hit2);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void processDelete_bulksStreamed() throws Exception {
+		IJIRAClient jiraClientMock = mock(IJIRAClient.class);
+		IESIntegration esIntegrationMock = mock(IESIntegration.class);
+		IJIRAIssueIndexStructureBuilder jiraIssueIndexStructureBuilderMock = mock(IJIRAIssueIndexStructureBuilder.class);
+		JIRAProjectIndexer tested = new JIRAProjectIndexer("ORG", true, jiraClientMock, esIntegrationMock,
+				jiraIssueIndexStructureBuilderMock);
+		tested.setBulkPipeline(0, 2, 1024 * 1024, 60 * 1000);
+
+		Date boundDate = DateTimeUtils.parseISODateTime("2012-08-14T07:00:00.000-0400");
+		when(jiraIssueIndexStructureBuilderMock.getIssuesSearchIndexName("ORG")).thenReturn("jira_index");
+		SearchRequestBuilder srbmock = new SearchRequestBuilder(null);
+		when(esIntegrationMock.prepareESScrollSearchRequestBuilder("jira_index")).thenReturn(srbmock);
+		SearchResponse sr = prepareSearchResponse("scrlid0", new InternalSearchHit(1, "ORG-12", new StringText("t"), null));
+		when(esIntegrationMock.executeESSearchRequest(srbmock)).thenReturn(sr);
+		SearchResponse sr1 = prepareSearchResponse("scrlid1", new InternalSearchHit(1, "ORG-1", new StringText("t"), null),
+				new InternalSearchHit(2, "ORG-2", new StringText("t"), null), new InternalSearchHit(3, "ORG-3",
+						new StringText("t"), null));
+		when(esIntegrationMock.executeESScrollSearchNextRequest(sr)).thenReturn(sr1);
+		SearchResponse sr2 = prepareSearchResponse("scrlid2", new InternalSearchHit(1, "ORG-4", new StringText("t"), null),
+				new InternalSearchHit(2, "ORG-5", new StringText("t"), null));
+		when(esIntegrationMock.executeESScrollSearchNextRequest(sr1)).thenReturn(sr2);
+		when(esIntegrationMock.executeESScrollSearchNextRequest(sr2)).thenReturn(prepareSearchResponse("scrlid3"));
+		when(esIntegrationMock.prepareESBulkRequestBuilder()).thenAnswer(new Answer<BulkRequestBuilder>() {
+			@Override
+			public BulkRequestBuilder answer(InvocationOnMock invocation) throws Throwable {
+				return new BulkRequestBuilder(null);
+			}
+		});
+		when(jiraIssueIndexStructureBuilderMock.deleteIssueDocument(Mockito.any(BulkRequestBuilder.class),
+				Mockito.any(SearchHit.class))).thenAnswer(new Answer<Boolean>() {
+			@Override
+			public Boolean answer(InvocationOnMock invocation) throws Throwable {
+				SearchHit hit = (SearchHit) invocation.getArguments()[1];
+				((BulkRequestBuilder) invocation.getArguments()[0]).add(new DeleteRequest("jira_index", hit.getType(), hit
+						.getId()));
+				return true;
+			}
+		});
+		final List<BulkRequestBuilder> asyncBulks = new ArrayList<BulkRequestBuilder>();
+		final List<ActionListener<BulkResponse>> listeners = new ArrayList<ActionListener<BulkResponse>>();
+		Mockito.doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				asyncBulks.add((BulkRequestBuilder) invocation.getArguments()[0]);
+				ActionListener<BulkResponse> listener = (ActionListener<BulkResponse>) invocation.getArguments()[1];
+				// previous bulk must be finished before next one is sent
+				Assert.assertEquals(asyncBulks.size() - 1, listeners.size());
+				listeners.add(listener);
+				listener.onResponse(new BulkResponse(new BulkItemResponse[0], 1));
+				return null;
+			}
+		}).when(esIntegrationMock).executeESBulkRequestAsync(Mockito.any(BulkRequestBuilder.class),
+				Mockito.any(ActionListener.class));
+
+		// case - bounded bulks executed while scrolling, last one synchronously
+		tested.processDelete(boundDate);
+		Assert.assertEquals(5, tested.indexingInfo.issuesDeleted);
+		Assert.assertEquals(5, tested.indexingInfo.deletesExecuted);
+		Assert.assertEquals(2, asyncBulks.size());
+		Assert.assertEquals(2, asyncBulks.get(0).numberOfActions());
+		Assert.assertEquals(2, asyncBulks.get(1).numberOfActions());
+		ArgumentCaptor<BulkRequestBuilder> lastBulk = ArgumentCaptor.forClass(BulkRequestBuilder.class);
+		verify(esIntegrationMock).executeESBulkRequest(lastBulk.capture());
+		Assert.assertEquals(1, lastBulk.getValue().numberOfActions());
+
+		// case - failed bulk stops delete
+		Mockito.doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				((ActionListener<BulkResponse>) invocation.getArguments()[1]).onResponse(new BulkResponse(
+						new BulkItemResponse[] { new BulkItemResponse(0, "delete", new BulkItemResponse.Failure("jira_index",
+								"t", "ORG-1", new Exception("failed"))) }, 1));
+				return null;
+			}
+		}).when(esIntegrationMock).executeESBulkRequestAsync(Mockito.any(BulkRequestBuilder.class),
+				Mockito.any(ActionListener.class));
+		try {
+			tested.processDelete(boundDate);
+			Assert.fail("Exception must be thrown");
+		} catch (ElasticsearchException e) {
+			// OK
+		}
+		Assert.assertEquals(0, tested.indexingInfo.deletesExecuted);
+		verify(esIntegrationMock, times(1)).executeESBulkRequest(Mockito.any(BulkRequestBuilder.class));
+	}
+
+	@Test
+	public void processDeleteSync() throws Exception {
+		IJIRAClient jiraClientMock = mock(IJIRAClient.class);
+		IESIntegration esIntegrationMock = mock(IESIntegration.class);
+		IJIRAIssueIndexStructureBuilder jiraIssueIndexStructureBuilderMock = mock(IJIRAIssueIndexStructureBuilder.class);
+		JIRAProjectIndexer tested = new JIRAProjectIndexer("ORG", false, jiraClientMock, esIntegrationMock,
+				jiraIssueIndexStructureBuilderMock);
+
+		// case - delete sync not requested
+		tested.processDeleteSync();
+		Mockito.verifyZeroInteractions(jiraClientMock, esIntegrationMock, jiraIssueIndexStructureBuilderMock);
+
+		// case - full update deletes issues itself
+		tested.setDeleteSync(true);
+		tested.indexingInfo.fullUpdate = true;
+		tested.processDeleteSync();
+		Mockito.verifyZeroInteractions(jiraClientMock, esIntegrationMock, jiraIssueIndexStructureBuilderMock);
+
+		// case - delete sync performed
+		tested.indexingInfo.fullUpdate = false;
+		configureStructureBuilderMockDefaults(jiraIssueIndexStructureBuilderMock);
+		List<Map<String, Object>> keys1 = new ArrayList<Map<String, Object>>();
+		addIssueMock(keys1, "ORG-1", "2012-08-14T08:00:00.000-0400");
+		addIssueMock(keys1, "ORG-2", "2012-08-14T08:00:00.000-0400");
+		when(jiraClientMock.getJIRAIssueKeys("ORG", null)).thenReturn(new ChangedIssuesResults(keys1, 0, 2, 3));
+		List<Map<String, Object>> keys2 = new ArrayList<Map<String, Object>>();
+		addIssueMock(keys2, "ORG-4", "2012-08-14T08:00:00.000-0400");
+		when(jiraClientMock.getJIRAIssueKeys("ORG", "ORG-2")).thenReturn(new ChangedIssuesResults(keys2, 0, 2, 1));
+
+		when(jiraIssueIndexStructureBuilderMock.getIssuesSearchIndexName("ORG")).thenReturn("jira_index");
+		SearchRequestBuilder srbmock = new SearchRequestBuilder(null);
+		when(esIntegrationMock.prepareESScrollSearchRequestBuilder("jira_index")).thenReturn(srbmock);
+		SearchResponse sr = prepareSearchResponse("scrlid0", new InternalSearchHit(1, "ORG-1", new StringText("t"), null));
+		when(esIntegrationMock.executeESSearchRequest(srbmock)).thenReturn(sr);
+		final InternalSearchHit hit1 = new InternalSearchHit(1, "ORG-1", new StringText("t"), null);
+		final InternalSearchHit hit3 = new InternalSearchHit(2, "ORG-3", new StringText("t"), null);
+		final InternalSearchHit hit3c = new InternalSearchHit(3, "10", new StringText("c"), null);
+		final InternalSearchHit hit2c = new InternalSearchHit(4, "11", new StringText("c"), null);
+		final InternalSearchHit hitNoKey = new InternalSearchHit(5, "12", new StringText("c"), null);
+		SearchResponse sr1 = prepareSearchResponse("scrlid1", hit1, hit3, hit3c, hit2c, hitNoKey);
+		when(esIntegrationMock.executeESScrollSearchNextRequest(sr)).thenReturn(sr1);
+		when(esIntegrationMock.executeESScrollSearchNextRequest(sr1)).thenReturn(prepareSearchResponse("scrlid2"));
+		when(jiraIssueIndexStructureBuilderMock.extractIssueKeyFromIndexedDocument(Mockito.any(SearchHit.class)))
+				.thenAnswer(new Answer<String>() {
+					@Override
+					public String answer(InvocationOnMock invocation) throws Throwable {
+						Object hit = invocation.getArguments()[0];
+						if (hit == hit1)
+							return "ORG-1";
+						if (hit == hit3 || hit == hit3c)
+							return "ORG-3";
+						if (hit == hit2c)
+							return "ORG-2";
+						return null;
+					}
+				});
+		BulkRequestBuilder brb = new BulkRequestBuilder(null);
+		when(esIntegrationMock.prepareESBulkRequestBuilder()).thenReturn(brb);
+		when(jiraIssueIndexStructureBuilderMock.deleteIssueDocument(brb, hit3)).thenReturn(true);
+		when(jiraIssueIndexStructureBuilderMock.deleteIssueDocument(brb, hit3c)).thenReturn(false);
+
+		tested.processDeleteSync();
+		Assert.assertEquals(1, tested.indexingInfo.issuesDeleted);
+		Assert.assertEquals(1, tested.indexingInfo.commentsDeleted);
+		verify(jiraClientMock, times(2)).getJIRAIssueKeys(Mockito.eq("ORG"), Mockito.anyString());
+		verify(esIntegrationMock).refreshSearchIndex("jira_index");
+		verify(jiraIssueIndexStructureBuilderMock).buildSearchForIndexedDocuments(srbmock, "ORG");
+		verify(jiraIssueIndexStructureBuilderMock).deleteIssueDocument(brb, hit3);
+		verify(jiraIssueIndexStructureBuilderMock).deleteIssueDocument(brb, hit3c);
+		verify(jiraIssueIndexStructureBuilderMock, times(2)).deleteIssueDocument(Mockito.any(BulkRequestBuilder.class),
+				Mockito.any(SearchHit.class));
+		verify(esIntegrationMock).executeESBulkRequest(brb);
+	}
+
+	@Test
+	public void readJIRAIssueKeys() throws Exception {
+		IJIRAClient jiraClientMock = mock(IJIRAClient.class);
+		IJIRAIssueIndexStructureBuilder jiraIssueIndexStructureBuilderMock = mock(IJIRAIssueIndexStructureBuilder.class);
+		JIRAProjectIndexer tested = new JIRAProjectIndexer("ORG", false, jiraClientMock, null,
+				jiraIssueIndexStructureBuilderMock);
+		configureStructureBuilderMockDefaults(jiraIssueIndexStructureBuilderMock);
+
+		// case - empty project
+		when(jiraClientMock.getJIRAIssueKeys("ORG", null)).thenReturn(
+				new ChangedIssuesResults(new ArrayList<Map<String, Object>>(), 0, 1000, 0));
+		Assert.assertEquals(0, tested.readJIRAIssueKeys().size());
+
+		// case - more pages, JIRA returns less issues than requested
+		List<Map<String, Object>> keys1 = new ArrayList<Map<String, Object>>();
+		addIssueMock(keys1, "ORG-1", "2012-08-14T08:00:00.000-0400");
+		addIssueMock(keys1, "ORG-2", "2012-08-14T08:00:00.000-0400");
+		when(jiraClientMock.getJIRAIssueKeys("ORG", null)).thenReturn(new ChangedIssuesResults(keys1, 0, 2, 4));
+		List<Map<String, Object>> keys2 = new ArrayList<Map<String, Object>>();
+		addIssueMock(keys2, "ORG-10", "2012-08-14T08:00:00.000-0400");
+		addIssueMock(keys2, "ORG-20", "2012-08-14T08:00:00.000-0400");
+		when(jiraClientMock.getJIRAIssueKeys("ORG", "ORG-2")).thenReturn(new ChangedIssuesResults(keys2, 0, 2, 2));
+		IssueKeySet ret = tested.readJIRAIssueKeys();
+		Assert.assertEquals(4, ret.size());
+		Assert.assertTrue(ret.contains("ORG-20"));
+		verify(jiraClientMock, times(0)).getJIRAIssueKeys("ORG", "ORG-20");
+	}
+
 	private SearchResponse prepareSearchResponse(String scrollId, InternalSearchHit... hits) {
 		InternalSearchHits hitsi = new InternalSearchHits(hits, hits.length, 10f);
 		InternalSearchResponse sr1i = new InternalSearchResponse(hitsi, null, null, null, false);
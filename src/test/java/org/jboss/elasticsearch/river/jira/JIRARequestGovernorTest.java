@@ -0,0 +1,197 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.jboss.elasticsearch.river.jira;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link JIRARequestGovernor}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class JIRARequestGovernorTest {
+
+	@Test
+	public void getInstance() {
+		JIRARequestGovernor g1 = JIRARequestGovernor.getInstance("issues.jboss.org:443");
+		Assert.assertNotNull(g1);
+		Assert.assertEquals("issues.jboss.org:443", g1.jiraHost);
+		Assert.assertSame(g1, JIRARequestGovernor.getInstance("issues.jboss.org:443"));
+		Assert.assertNotSame(g1, JIRARequestGovernor.getInstance("issues.jboss.org:80"));
+	}
+
+	@Test
+	public void register() {
+		JIRARequestGovernor tested = new JIRARequestGovernor("host:80");
+		Assert.assertEquals(0d, tested.maxRequestsPerSecond);
+		Assert.assertEquals(0, tested.maxConcurrentRequests);
+
+		tested.register("river1", 0, 5, 0, 0);
+		Assert.assertEquals(0d, tested.maxRequestsPerSecond);
+		Assert.assertEquals(5, tested.maxConcurrentRequests);
+
+		tested.register("river2", 10, 8, 5, 1000);
+		Assert.assertEquals(10d, tested.maxRequestsPerSecond);
+		Assert.assertEquals(5, tested.maxConcurrentRequests);
+		Assert.assertEquals(5, tested.circuitBreakerThreshold);
+		Assert.assertEquals(1000, tested.circuitBreakerPause);
+
+		tested.register("river3", 2.5, 0, 3, 500);
+		Assert.assertEquals(2.5d, tested.maxRequestsPerSecond);
+		Assert.assertEquals(5, tested.maxConcurrentRequests);
+		Assert.assertEquals(3, tested.circuitBreakerThreshold);
+		Assert.assertEquals(1000, tested.circuitBreakerPause);
+
+		tested.unregister("river1");
+		tested.unregister("river3");
+		Assert.assertEquals(10d, tested.maxRequestsPerSecond);
+		Assert.assertEquals(8, tested.maxConcurrentRequests);
+
+		tested.unregister("river2");
+		Assert.assertEquals(0d, tested.maxRequestsPerSecond);
+		Assert.assertEquals(0, tested.maxConcurrentRequests);
+		Assert.assertEquals(0, tested.circuitBreakerThreshold);
+		Assert.assertEquals(0, tested.circuitBreakerPause);
+	}
+
+	@Test
+	public void circuitBreaker() throws Exception {
+		JIRARequestGovernor tested = new JIRARequestGovernor("host:80");
+
+		// case - disabled circuit breaker
+		for (int i = 0; i < 10; i++) {
+			tested.recordFailure();
+		}
+		Assert.assertFalse(tested.isCircuitOpen());
+		tested.recordSuccess();
+
+		// case - threshold not reached
+		tested.register("river1", 0, 0, 3, 300);
+		tested.recordFailure();
+		tested.recordFailure();
+		Assert.assertFalse(tested.isCircuitOpen());
+		tested.recordSuccess();
+		tested.recordFailure();
+		tested.recordFailure();
+		Assert.assertFalse(tested.isCircuitOpen());
+
+		// case - threshold reached so requests are paused
+		tested.recordFailure();
+		Assert.assertTrue(tested.isCircuitOpen());
+		long start = System.currentTimeMillis();
+		tested.acquire("river1");
+		tested.release();
+		Assert.assertTrue(System.currentTimeMillis() - start >= 250);
+		Assert.assertFalse(tested.isCircuitOpen());
+
+		// case - failure after pause opens circuit breaker again, success closes it
+		tested.recordFailure();
+		Assert.assertTrue(tested.isCircuitOpen());
+		tested.recordSuccess();
+		Assert.assertFalse(tested.isCircuitOpen());
+		start = System.currentTimeMillis();
+		tested.acquire("river1");
+		tested.release();
+		Assert.assertTrue(System.currentTimeMillis() - start < 250);
+	}
+
+	@Test
+	public void acquire_unlimited() throws Exception {
+		JIRARequestGovernor tested = new JIRARequestGovernor("host:80");
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals(0, tested.acquire("river1"), 10);
+		}
+		for (int i = 0; i < 100; i++) {
+			tested.release();
+		}
+	}
+
+	@Test
+	public void acquire_rateLimit() throws Exception {
+		JIRARequestGovernor tested = new JIRARequestGovernor("host:80");
+		tested.register("river1", 10, 0, 0, 0);
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 5; i++) {
+			tested.acquire("river1");
+			tested.release();
+		}
+		// first request passes immediately, next ones wait for 100ms each
+		Assert.assertTrue(System.currentTimeMillis() - start >= 350);
+	}
+
+	@Test
+	public void acquire_concurrencyLimitAndFairness() throws Exception {
+		final JIRARequestGovernor tested = new JIRARequestGovernor("host:80");
+		tested.register("river1", 0, 1, 0, 0);
+
+		// occupy the only permit so all threads below have to wait
+		tested.acquire("river0");
+
+		final List<String> granted = Collections.synchronizedList(new ArrayList<String>());
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 3; i++) {
+			threads.add(startAcquiringThread(tested, "riverA", granted));
+			waitForWaitingCount(tested, i + 1);
+		}
+		threads.add(startAcquiringThread(tested, "riverB", granted));
+		waitForWaitingCount(tested, 4);
+		Assert.assertEquals(0, granted.size());
+
+		tested.release();
+		for (Thread t : threads) {
+			t.join(5000);
+		}
+
+		// riverB is not starved by more threads of riverA
+		Assert.assertEquals(4, granted.size());
+		Assert.assertEquals("riverA", granted.get(0));
+		Assert.assertEquals("riverB", granted.get(1));
+		Assert.assertEquals("riverA", granted.get(2));
+		Assert.assertEquals("riverA", granted.get(3));
+		Assert.assertEquals(0, tested.getWaitingCount());
+
+		XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+		tested.buildDocument(builder);
+		builder.endObject();
+		String doc = builder.string();
+		Assert.assertTrue(doc, doc.startsWith("{\"request_governor\":{\"jira_host\":\"host:80\",\"max_requests_per_second\":0.0,"
+				+ "\"max_concurrent_requests\":1,\"requests\":5,\"in_flight\":0,\"waiting\":0,\"wait_time_total\":"));
+	}
+
+	private Thread startAcquiringThread(final JIRARequestGovernor tested, final String riverName,
+			final List<String> granted) {
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					tested.acquire(riverName);
+					granted.add(riverName);
+					tested.release();
+				} catch (InterruptedException e) {
+					// end thread
+				}
+			}
+		});
+		t.start();
+		return t;
+	}
+
+	private void waitForWaitingCount(JIRARequestGovernor tested, int count) throws InterruptedException {
+		for (int i = 0; i < 500 && tested.getWaitingCount() < count; i++) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(count, tested.getWaitingCount());
+	}
+
+}
@@ -15,11 +15,22 @@ import java.util.TimeZone;
 import junit.framework.Assert;
 
 import org.elasticsearch.Version;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetRequestBuilder;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.client.internal.InternalClient;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.settings.SettingsException;
@@ -33,6 +44,8 @@ import org.jboss.elasticsearch.river.jira.testtools.TestUtils;
 import org.jboss.elasticsearch.tools.content.StructuredContentPreprocessor;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
@@ -71,8 +84,23 @@ public class JiraRiverTest extends ESRealClientTestBase {
 		JiraRiver tested = prepareJiraRiverInstanceForTest("https://issues.jboss.org", jiraSettings, toplevelSettingsAdd,
 				false);
 		Assert.assertEquals(1, tested.maxIndexingThreads);
+		Assert.assertEquals(0, tested.prefetchDepth);
+		Assert.assertEquals(0, tested.fullUpdateSlices);
+		Assert.assertEquals(0, tested.incrementalBatchSize);
+		Assert.assertEquals(0, tested.bulkConcurrentRequests);
+		Assert.assertEquals(1000, tested.bulkMaxActions);
+		Assert.assertEquals(5 * 1024 * 1024, tested.bulkMaxBytes);
+		Assert.assertEquals(5 * 1000, tested.bulkFlushInterval);
+		Assert.assertEquals(1, tested.bulkLoadController.maxConcurrentRequests);
+		Assert.assertEquals(0, tested.bulkLoadController.getMaxRetries());
+		Assert.assertEquals(0, tested.bulkLoadController.targetLatency);
+		Assert.assertEquals(1000, tested.bulkLoadController.retryBackoffInitial);
+		Assert.assertEquals(60 * 1000, tested.bulkLoadController.retryBackoffMax);
+		Assert.assertFalse(tested.keysetPagination);
+		Assert.assertEquals(1, tested.fullUpdateSliceThreads);
 		Assert.assertEquals(5 * 60 * 1000, tested.indexUpdatePeriod);
 		Assert.assertEquals(12 * 60 * 60 * 1000, tested.indexFullUpdatePeriod);
+		Assert.assertEquals(0, tested.indexDeleteSyncPeriod);
 		Assert.assertEquals("my_jira_river", tested.indexName);
 		Assert.assertEquals(JiraRiver.INDEX_ISSUE_TYPE_NAME_DEFAULT, tested.typeName);
 		Assert.assertEquals(50, tested.jiraClient.getListJIRAIssuesMax());
@@ -86,23 +114,56 @@ public class JiraRiverTest extends ESRealClientTestBase {
 
 		// case - test river configuration reading
 		jiraSettings.put("maxIndexingThreads", "5");
+		jiraSettings.put("prefetchDepth", "3");
+		jiraSettings.put("fullUpdateSlices", "8");
+		jiraSettings.put("incrementalBatchSize", "50");
+		jiraSettings.put("bulkConcurrentRequests", "2");
+		jiraSettings.put("bulkMaxActions", "200");
+		jiraSettings.put("bulkMaxSize", "1mb");
+		jiraSettings.put("bulkFlushInterval", "10s");
+		jiraSettings.put("bulkMaxRetries", "5");
+		jiraSettings.put("bulkTargetLatency", "2s");
+		jiraSettings.put("bulkRetryBackoffInitial", "500ms");
+		jiraSettings.put("bulkRetryBackoffMax", "30s");
+		jiraSettings.put("keysetPagination", "true");
+		jiraSettings.put("fullUpdateSliceThreads", "4");
 		jiraSettings.put("indexUpdatePeriod", "20m");
 		jiraSettings.put("indexFullUpdatePeriod", "5h");
+		jiraSettings.put("indexDeleteSyncPeriod", "30m");
 		jiraSettings.put("maxIssuesPerRequest", 20);
 		jiraSettings.put("timeout", "5s");
 		jiraSettings.put("jqlTimeZone", "Europe/Prague");
+		jiraSettings.put("compression", true);
 		indexSettings.put("index", "my_index_name");
 		indexSettings.put("type", "type_test");
 		tested = prepareJiraRiverInstanceForTest("https://issues.jboss.org", jiraSettings, toplevelSettingsAdd, false);
 
 		Assert.assertEquals(5, tested.maxIndexingThreads);
+		Assert.assertEquals(3, tested.prefetchDepth);
+		Assert.assertEquals(8, tested.fullUpdateSlices);
+		Assert.assertEquals(50, tested.incrementalBatchSize);
+		Assert.assertEquals(2, tested.bulkConcurrentRequests);
+		Assert.assertEquals(200, tested.bulkMaxActions);
+		Assert.assertEquals(1024 * 1024, tested.bulkMaxBytes);
+		Assert.assertEquals(10 * 1000, tested.bulkFlushInterval);
+		Assert.assertEquals(2, tested.bulkLoadController.maxConcurrentRequests);
+		Assert.assertEquals(200, tested.bulkLoadController.getMaxActions());
+		Assert.assertEquals(1024 * 1024, tested.bulkLoadController.getMaxBytes());
+		Assert.assertEquals(5, tested.bulkLoadController.getMaxRetries());
+		Assert.assertEquals(2 * 1000, tested.bulkLoadController.targetLatency);
+		Assert.assertEquals(500, tested.bulkLoadController.retryBackoffInitial);
+		Assert.assertEquals(30 * 1000, tested.bulkLoadController.retryBackoffMax);
+		Assert.assertTrue(tested.keysetPagination);
+		Assert.assertEquals(4, tested.fullUpdateSliceThreads);
 		Assert.assertEquals(20 * 60 * 1000, tested.indexUpdatePeriod);
 		Assert.assertEquals(5 * 60 * 60 * 1000, tested.indexFullUpdatePeriod);
+		Assert.assertEquals(30 * 60 * 1000, tested.indexDeleteSyncPeriod);
 		Assert.assertEquals("my_index_name", tested.indexName);
 		Assert.assertEquals("type_test", tested.typeName);
 		Assert.assertEquals(20, tested.jiraClient.getListJIRAIssuesMax());
 		Assert.assertEquals(TimeZone.getTimeZone("Europe/Prague"),
 				((JIRA5RestClient) tested.jiraClient).jqlDateFormat.getTimeZone());
+		Assert.assertTrue(((JIRA5RestClient) tested.jiraClient).compression);
 		// assert index structure builder initialization
 		Assert.assertEquals(tested.jiraIssueIndexStructureBuilder, tested.jiraClient.getIndexStructureBuilder());
 		Assert.assertEquals(tested.indexName,
@@ -114,6 +175,114 @@ public class JiraRiverTest extends ESRealClientTestBase {
 
 	}
 
+	@Test
+	public void constructor_config_transport() throws Exception {
+		Map<String, Object> jiraSettings = new HashMap<String, Object>();
+
+		// case - default blocking client
+		JiraRiver tested = prepareJiraRiverInstanceForTest("https://issues.jboss.org", jiraSettings, null, false);
+		Assert.assertEquals(JIRA5RestClient.class, tested.jiraClient.getClass());
+
+		jiraSettings.put("transport", "sync");
+		tested = prepareJiraRiverInstanceForTest("https://issues.jboss.org", jiraSettings, null, false);
+		Assert.assertEquals(JIRA5RestClient.class, tested.jiraClient.getClass());
+
+		// case - non-blocking client
+		jiraSettings.put("transport", "async");
+		jiraSettings.put("maxIssuesPerRequest", 20);
+		tested = prepareJiraRiverInstanceForTest("https://issues.jboss.org", jiraSettings, null, false);
+		try {
+			Assert.assertEquals(JIRA5AsyncRestClient.class, tested.jiraClient.getClass());
+			Assert.assertEquals(20, tested.jiraClient.getListJIRAIssuesMax());
+			Assert.assertEquals(tested.jiraIssueIndexStructureBuilder, tested.jiraClient.getIndexStructureBuilder());
+			Assert.assertEquals(JIRA5AsyncRestClient.DEFAULT_IO_THREAD_COUNT,
+					((JIRA5AsyncRestClient) tested.jiraClient).ioThreadCount);
+		} finally {
+			tested.closeJiraClient();
+		}
+
+		jiraSettings.put("asyncIoThreads", 4);
+		tested = prepareJiraRiverInstanceForTest("https://issues.jboss.org", jiraSettings, null, false);
+		try {
+			Assert.assertEquals(4, ((JIRA5AsyncRestClient) tested.jiraClient).ioThreadCount);
+		} finally {
+			tested.closeJiraClient();
+		}
+
+		// case - unsupported value
+		jiraSettings.put("transport", "unknown");
+		try {
+			prepareJiraRiverInstanceForTest("https://issues.jboss.org", jiraSettings, null, false);
+			Assert.fail("No SettingsException thrown");
+		} catch (SettingsException e) {
+			// OK
+		}
+	}
+
+	@Test
+	public void constructor_config_adaptivePageSize() throws Exception {
+		Map<String, Object> jiraSettings = new HashMap<String, Object>();
+
+		// case - fixed page size by default
+		jiraSettings.put("maxIssuesPerRequest", 20);
+		JiraRiver tested = prepareJiraRiverInstanceForTest("https://issues.jboss.org", jiraSettings, null, false);
+		Assert.assertNull(((JIRA5RestClient) tested.jiraClient).pageSizeController);
+
+		// case - adaptive page size
+		jiraSettings.put("maxIssuesPerRequestMin", 10);
+		jiraSettings.put("maxIssuesPerRequestMax", 200);
+		tested = prepareJiraRiverInstanceForTest("https://issues.jboss.org", jiraSettings, null, false);
+		JIRAPageSizeController psc = ((JIRA5RestClient) tested.jiraClient).pageSizeController;
+		Assert.assertNotNull(psc);
+		Assert.assertEquals(10, psc.min);
+		Assert.assertEquals(200, psc.max);
+		Assert.assertEquals(20, psc.getPageSize("ORG"));
+
+		// case - bad bounds
+		jiraSettings.put("maxIssuesPerRequestMin", 300);
+		try {
+			prepareJiraRiverInstanceForTest("https://issues.jboss.org", jiraSettings, null, false);
+			Assert.fail("No SettingsException thrown");
+		} catch (SettingsException e) {
+			// OK
+		}
+	}
+
+	@Test
+	public void constructor_config_requestGovernance() throws Exception {
+		Map<String, Object> jiraSettings = new HashMap<String, Object>();
+		jiraSettings.put("maxRequestsPerSecond", "2.5");
+		jiraSettings.put("maxConcurrentRequests", 3);
+		jiraSettings.put("circuitBreakerThreshold", 5);
+		jiraSettings.put("circuitBreakerPause", "30s");
+		jiraSettings.put("maxRetries", 4);
+		jiraSettings.put("retryBackoffInitial", "2s");
+		JiraRiver tested = prepareJiraRiverInstanceForTest("https://issues.jboss.org", jiraSettings, null, false);
+		try {
+			JIRA5RestClient client = (JIRA5RestClient) tested.jiraClient;
+			Assert.assertSame(JIRARequestGovernor.getInstance("issues.jboss.org:443"), client.requestGovernor);
+			Assert.assertEquals(tested.riverName().getName(), client.requestGovernorRiverName);
+			Assert.assertEquals(2.5d, client.requestGovernor.riverLimits.get(tested.riverName().getName())[0]);
+			Assert.assertEquals(3d, client.requestGovernor.riverLimits.get(tested.riverName().getName())[1]);
+			Assert.assertEquals(5d, client.requestGovernor.riverLimits.get(tested.riverName().getName())[2]);
+			Assert.assertEquals(30000d, client.requestGovernor.riverLimits.get(tested.riverName().getName())[3]);
+			Assert.assertEquals(4, client.maxRetries);
+			Assert.assertEquals(2000, client.retryBackoffInitial);
+			Assert.assertEquals(60000, client.retryBackoffMax);
+		} finally {
+			tested.closeJiraClient();
+		}
+
+		// case - bad value
+		jiraSettings.put("maxConcurrentRequests", -1);
+		try {
+			prepareJiraRiverInstanceForTest("https://issues.jboss.org", jiraSettings, null, false);
+			Assert.fail("No SettingsException thrown");
+		} catch (SettingsException e) {
+			// OK
+		}
+	}
+
 	@Test
 	public void constructor_postprocessors() throws Exception {
 
@@ -514,6 +683,121 @@ public class JiraRiverTest extends ESRealClientTestBase {
 
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void readDatetimeValue_cache() throws Exception {
+		final JiraRiver tested = prepareJiraRiverInstanceForTest(null);
+		// request builders need internal client
+		final InternalClient clientMock = mock(InternalClient.class);
+		tested.client = clientMock;
+		tested.allIndexedProjectsKeys = new ArrayList<String>();
+		tested.allIndexedProjectsKeys.add("ORG");
+		tested.allIndexedProjectsKeys.add("AAA");
+		final String propertyName = JIRAProjectIndexerCoordinator.STORE_PROPERTYNAME_LAST_INDEX_FULL_UPDATE_DATE;
+		final Date d1 = DateTimeUtils.parseISODateTime("2012-09-03T18:12:45");
+		final Date d2 = DateTimeUtils.parseISODateTime("2012-09-04T18:12:45");
+
+		when(clientMock.prepareMultiGet()).thenReturn(new MultiGetRequestBuilder(clientMock));
+		final List<MultiGetRequest> multiGets = new ArrayList<MultiGetRequest>();
+		Mockito.doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				MultiGetRequest request = (MultiGetRequest) invocation.getArguments()[0];
+				multiGets.add(request);
+				// items of request are not accessible, so responses are prepared in expected order
+				List<MultiGetItemResponse> items = new ArrayList<MultiGetItemResponse>();
+				for (String projectKey : tested.allIndexedProjectsKeys) {
+					for (String pn : tested.datetimeValueCache.getPropertyNames()) {
+						items.add(new MultiGetItemResponse(prepareGetResponse(
+								JiraRiver.prepareValueStoreDocumentName(projectKey, pn),
+								"ORG".equals(projectKey) && propertyName.equals(pn) ? d1 : null), null));
+					}
+				}
+				((ActionListener<MultiGetResponse>) invocation.getArguments()[1]).onResponse(new MultiGetResponse(items
+						.toArray(new MultiGetItemResponse[items.size()])));
+				return null;
+			}
+		}).when(clientMock).multiGet(Mockito.any(MultiGetRequest.class), Mockito.any(ActionListener.class));
+		final List<GetRequest> gets = new ArrayList<GetRequest>();
+		Mockito.doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				GetRequest request = (GetRequest) invocation.getArguments()[0];
+				gets.add(request);
+				((ActionListener<GetResponse>) invocation.getArguments()[1]).onResponse(prepareGetResponse(request.id(),
+						null));
+				return null;
+			}
+		}).when(clientMock).get(Mockito.any(GetRequest.class), Mockito.any(ActionListener.class));
+		when(clientMock.prepareGet(Mockito.anyString(), Mockito.anyString(), Mockito.anyString())).thenAnswer(
+				new Answer<GetRequestBuilder>() {
+					@Override
+					public GetRequestBuilder answer(InvocationOnMock invocation) throws Throwable {
+						return new GetRequestBuilder(clientMock, (String) invocation.getArguments()[0]).setType(
+								(String) invocation.getArguments()[1]).setId((String) invocation.getArguments()[2]);
+					}
+				});
+
+		// case - values of all indexed projects loaded by one multi get
+		Assert.assertEquals(d1, tested.readDatetimeValue("ORG", propertyName));
+		Assert.assertNull(tested.readDatetimeValue("AAA", propertyName));
+		Assert.assertNull(tested.readDatetimeValue("AAA",
+				JIRAProjectIndexerCoordinator.STORE_PROPERTYNAME_LAST_INDEX_UPDATE_START_DATE));
+		Assert.assertEquals(1, multiGets.size());
+		Assert.assertTrue(multiGets.get(0).realtime());
+		Assert.assertEquals(0, gets.size());
+
+		// case - value of project not loaded is read by realtime get once
+		Assert.assertNull(tested.readDatetimeValue("NEW", propertyName));
+		Assert.assertNull(tested.readDatetimeValue("NEW", propertyName));
+		Assert.assertEquals(1, gets.size());
+		Assert.assertEquals("_" + propertyName + "_NEW", gets.get(0).id());
+		Assert.assertTrue(gets.get(0).realtime());
+
+		// case - values not cached are always read
+		tested.readDatetimeValue("ORG", JIRAProjectIndexer.STORE_PROPERTYNAME_LAST_INDEXED_ISSUE_UPDATE_DATE);
+		tested.readDatetimeValue("ORG", JIRAProjectIndexer.STORE_PROPERTYNAME_LAST_INDEXED_ISSUE_UPDATE_DATE);
+		Assert.assertEquals(3, gets.size());
+
+		// case - value written directly is written into cache too
+		when(clientMock.prepareIndex(Mockito.anyString(), Mockito.anyString(), Mockito.anyString())).thenReturn(
+				new IndexRequestBuilder(clientMock));
+		Mockito.doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				((ActionListener<IndexResponse>) invocation.getArguments()[1]).onResponse(new IndexResponse("_river",
+						"my_jira_river", "id", 1, true));
+				return null;
+			}
+		}).when(clientMock).index(Mockito.any(IndexRequest.class), Mockito.any(ActionListener.class));
+		tested.storeDatetimeValue("AAA", propertyName, d2, null);
+		Assert.assertEquals(d2, tested.readDatetimeValue("AAA", propertyName));
+		Assert.assertEquals(3, gets.size());
+
+		// case - value written by bulk is read from persistent store next time
+		tested.storeDatetimeValue("ORG", propertyName, d2, new BulkRequestBuilder(null));
+		Assert.assertNull(tested.readDatetimeValue("ORG", propertyName));
+		Assert.assertEquals(4, gets.size());
+
+		// case - cache is loaded again after restart
+		tested.datetimeValueCache.clear();
+		Assert.assertEquals(d1, tested.readDatetimeValue("ORG", propertyName));
+		Assert.assertEquals(2, multiGets.size());
+		Assert.assertEquals(4, gets.size());
+	}
+
+	private static GetResponse prepareGetResponse(String id, Date value) {
+		GetResponse response = mock(GetResponse.class);
+		when(response.getId()).thenReturn(id);
+		when(response.isExists()).thenReturn(value != null);
+		if (value != null) {
+			Map<String, Object> source = new HashMap<String, Object>();
+			source.put(JiraRiver.STORE_FIELD_VALUE, DateTimeUtils.formatISODateTime(value));
+			when(response.getSourceAsMap()).thenReturn(source);
+		}
+		return response;
+	}
+
 	@Test
 	public void prepareESScrollSearchRequestBuilder() throws Exception {
 		JiraRiver tested = prepareJiraRiverInstanceForTest(null);
@@ -77,6 +77,19 @@ public class ProjectIndexingInfoTest {
         DateTimeUtils.parseISODateTime("2012-09-11T02:55:58Z"), false, 125, "Error"));
   }
 
+  @Test
+  public void deletesExecuted() throws IOException {
+    ProjectIndexingInfo src = new ProjectIndexingInfo("ORG", true, 10, 1, 1,
+        DateTimeUtils.parseISODateTime("2012-09-10T12:55:58Z"), true, 1250, null);
+    Assert.assertFalse(src.buildDocument(XContentFactory.jsonBuilder(), true, true).string()
+        .contains(ProjectIndexingInfo.DOCFIELD_DELETES_EXECUTED));
+
+    src.deletesExecuted = 1500;
+    ProjectIndexingInfo result = ProjectIndexingInfo.readFromDocument(XContentFactory.xContent(XContentType.JSON)
+        .createParser(src.buildDocument(XContentFactory.jsonBuilder(), true, true).string()).mapAndClose());
+    Assert.assertEquals(1500, result.deletesExecuted);
+  }
+
   private void readFromDocumentInternalTest(ProjectIndexingInfo src) throws IOException {
     ProjectIndexingInfo result = ProjectIndexingInfo.readFromDocument(XContentFactory.xContent(XContentType.JSON)
         .createParser(src.buildDocument(XContentFactory.jsonBuilder(), true, true).string()).mapAndClose());